@@ -10,7 +10,10 @@ import org.springframework.jmx.export.annotation.ManagedResource;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Encapsulates the list of repositories to be evaluated by the git inspector.
@@ -24,6 +27,8 @@ public class TargetRepositories {
 
     private List<String> gitReposOutOfScope;
 
+    private Map<String, Date> pushedAtByRepo = new ConcurrentHashMap<>();
+
     public TargetRepositories(GitHub gitHub, List<String> gitOrgsInScope, List<String> gitReposOutOfScope) {
         this.gitHub = gitHub;
         this.gitOrgsInScope = new ArrayList<>(gitOrgsInScope);
@@ -39,6 +44,7 @@ public class TargetRepositories {
             for (GHRepository repo : reposForOrg) {
                 if (!gitReposOutOfScope.contains(repo.getFullName())) {
                     targetedRepos.add(repo);
+                    recordPushedAt(repo);
                 }
             }
         }
@@ -46,6 +52,21 @@ public class TargetRepositories {
         return targetedRepos;
     }
 
+    /**
+     * Return when the provided repository was last pushed to, as of the last time the targeted repositories were
+     * listed. Tasks use it to tell whether a repository changed since their previous run.
+     *
+     * @param repoFullName the full name of the repository (e.g. OMDev/omapi)
+     * @return the pushed_at of the repository or null if it is unknown
+     */
+    public Date getPushedAt(String repoFullName) {
+        return pushedAtByRepo.get(repoFullName);
+    }
+
+    public GitHub getGitHub() {
+        return gitHub;
+    }
+
     @ManagedAttribute
     public List<String> getGitOrgNamesInScope() {
         return gitOrgsInScope;
@@ -69,4 +90,13 @@ public class TargetRepositories {
             gitReposOutOfScope.remove(repositoryFullName);
         }
     }
+
+    private void recordPushedAt(GHRepository repo) {
+        final Date pushedAt = repo.getPushedAt();
+        if (pushedAt == null) {
+            pushedAtByRepo.remove(repo.getFullName());
+        } else {
+            pushedAtByRepo.put(repo.getFullName(), pushedAt);
+        }
+    }
 }
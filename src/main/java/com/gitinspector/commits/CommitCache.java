@@ -0,0 +1,152 @@
+package com.gitinspector.commits;
+
+import com.gitinspector.domain.GitCommit;
+import com.gitinspector.store.CommitStore;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches commits by SHA. Commits never change, so a commit fetched once never needs to be fetched again: the most
+ * recently used commits are kept in memory, in front of a CommitStore that keeps all of them on disk between runs.
+ */
+@ManagedResource(description = "Caches the commits fetched from git by SHA, in memory and on disk")
+public class CommitCache {
+    private static final Logger log = LoggerFactory.getLogger(CommitCache.class);
+
+    private static final int DEFAULT_MAXIMUM_HEAP_ENTRIES = 50000;
+
+    private CommitStore commitStore;
+
+    private Cache<String, GitCommit> recentCommits;
+
+    private AtomicLong heapHits = new AtomicLong();
+
+    private AtomicLong diskHits = new AtomicLong();
+
+    private AtomicLong misses = new AtomicLong();
+
+    public CommitCache(CommitStore commitStore) {
+        this(commitStore, DEFAULT_MAXIMUM_HEAP_ENTRIES);
+    }
+
+    /**
+     * @param commitStore        keeps the commits on disk between runs; null to only keep them in memory
+     * @param maximumHeapEntries the number of commits kept in memory
+     */
+    public CommitCache(CommitStore commitStore, int maximumHeapEntries) {
+        this.commitStore = commitStore;
+        this.recentCommits = CacheBuilder.newBuilder().maximumSize(maximumHeapEntries).build();
+    }
+
+    /**
+     * @param sha1 the SHA of a commit
+     * @return the cached commit or null if it is not cached
+     */
+    public GitCommit get(String sha1) {
+        GitCommit commit = recentCommits.getIfPresent(sha1);
+        if (commit != null) {
+            heapHits.incrementAndGet();
+            return commit;
+        }
+
+        if (commitStore != null) {
+            try {
+                commit = commitStore.get(sha1);
+            } catch (IOException e) {
+                log.warn("Could not read commit {} from the commit store", sha1, e);
+            }
+            if (commit != null) {
+                diskHits.incrementAndGet();
+                recentCommits.put(sha1, commit);
+                return commit;
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(GitCommit commit) {
+        recentCommits.put(commit.getSha1(), commit);
+        if (commitStore != null) {
+            try {
+                commitStore.put(commit);
+            } catch (IOException e) {
+                // not fatal, the commit will just be fetched again after a restart
+                log.warn("Could not write commit {} to the commit store", commit.getSha1(), e);
+            }
+        }
+    }
+
+    /**
+     * Return a commit from the cache, fetching (and caching) it if it is not cached.
+     *
+     * @param repo the repository the commit belongs to
+     * @param sha1 the SHA of the commit
+     * @return the commit
+     * @throws IOException if the commit could not be fetched
+     */
+    public GitCommit getCommit(GHRepository repo, String sha1) throws IOException {
+        GitCommit commit = get(sha1);
+        if (commit == null) {
+            commit = toGitCommit(repo.getCommit(sha1));
+            put(commit);
+        }
+        return commit;
+    }
+
+    @ManagedAttribute
+    public long getHeapHits() {
+        return heapHits.get();
+    }
+
+    @ManagedAttribute
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    @ManagedAttribute
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of commits kept in memory
+     */
+    @ManagedAttribute
+    public long getHeapSize() {
+        return recentCommits.size();
+    }
+
+    /**
+     * Forget the commits kept in memory; the commits kept on disk are kept.
+     */
+    @ManagedOperation
+    public void clearHeap() {
+        recentCommits.invalidateAll();
+    }
+
+    /**
+     * @param commit a commit fetched from GitHub
+     * @return the commit, reduced to what the scheduled tasks need
+     */
+    public static GitCommit toGitCommit(GHCommit commit) {
+        final GitUser committer = commit.getCommitShortInfo().getCommitter();
+        final List<String> parentSha1s = commit.getParentSHA1s();
+        return new GitCommit(commit.getSHA1(), parentSha1s == null ? Collections.<String>emptyList() : parentSha1s,
+            committer.getName(), committer.getEmail(), committer.getDate(), commit.getCommitShortInfo().getMessage());
+    }
+}
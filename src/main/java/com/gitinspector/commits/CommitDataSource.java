@@ -0,0 +1,40 @@
+package com.gitinspector.commits;
+
+import com.gitinspector.domain.GitCommit;
+import org.kohsuke.github.GHRepository;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Where commits and branch tips are read from (e.g. the GitHub API, or a local mirror of the repository). Every
+ * source returns the same data for the same state of a repository, so what the tasks report does not depend on the
+ * source they read from.
+ */
+public interface CommitDataSource {
+
+    /**
+     * @param repo the repository the commit belongs to
+     * @param sha1 the SHA of the commit
+     * @return the commit
+     * @throws IOException if the commit could not be read
+     */
+    GitCommit getCommit(GHRepository repo, String sha1) throws IOException;
+
+    /**
+     * @param repo    the repository the commits belong to
+     * @param tipSha1 the SHA of the commit the listing starts at (e.g. the tip of master)
+     * @param since   the commit date of the oldest commits listed
+     * @return the commits reachable from the tip commit that were made on or after the since date, by SHA
+     * @throws IOException if the commits could not be listed
+     */
+    Map<String, GitCommit> listCommitsSince(GHRepository repo, String tipSha1, Date since) throws IOException;
+
+    /**
+     * @param repo the repository whose branches are requested
+     * @return the SHA of the tip commit of each branch of the repository, by branch name, in the order of the names
+     * @throws IOException if the branches could not be read
+     */
+    Map<String, String> getBranchTips(GHRepository repo) throws IOException;
+}
@@ -0,0 +1,242 @@
+package com.gitinspector.commits;
+
+import com.gitinspector.domain.GitCommit;
+import org.joda.time.DateTime;
+import org.kohsuke.github.GHRepository;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assembles the window of commits leading up to a tip commit (e.g. the tip of master) whose commit date falls
+ * within a number of days.
+ * The commit graph is walked iteratively and every SHA is visited at most once, so merges that share ancestry
+ * do not cause the shared commits to be fetched or reported more than once.
+ * When commit listing is enabled, the window is prefetched by listing the commits made since a "since" date and
+ * the walk is resolved against that listing instead of fetching each parent individually.
+ * Commits are read from a CommitDataSource: the GitHub API unless told otherwise.
+ */
+public class CommitWindowWalker {
+
+    private boolean firstParentOnly;
+
+    private boolean useCommitListing;
+
+    private CommitDataSource commitDataSource = new RestCommitDataSource(null);
+
+    public CommitWindowWalker() {
+        this(false, true);
+    }
+
+    /**
+     * @param firstParentOnly  if true, only the first parent of each commit is followed (i.e. the commits made
+     *                         directly on the branch, not the commits of the branches merged into it)
+     * @param useCommitListing if true, the window is prefetched using the commit listing; if false,
+     *                         each commit is fetched individually as the parents are walked
+     */
+    public CommitWindowWalker(boolean firstParentOnly, boolean useCommitListing) {
+        this.firstParentOnly = firstParentOnly;
+        this.useCommitListing = useCommitListing;
+    }
+
+    /**
+     * Assemble the commits leading up to (and including) the provided tip commit that were made within the
+     * provided number of days. Commits are returned in the order in which they are visited: the tip commit first,
+     * followed by its first parent line, with the commits of merged branches following the merge that brought
+     * them in.
+     *
+     * @param repo                  the repository the commits belong to
+     * @param tipSha1               the SHA of the commit at which the walk should start (e.g. the tip of master)
+     * @param numberOfDaysThreshold the number of days (counting back from now) that the window should cover
+     * @return the commits within the window; each commit appears only once
+     * @throws IOException if there was an error retrieving commits from the repository
+     */
+    public List<GitCommit> assembleCommits(GHRepository repo, String tipSha1, int numberOfDaysThreshold)
+        throws IOException {
+        final Date since = getSinceDate(numberOfDaysThreshold);
+
+        Map<String, GitCommit> listedCommits = null;
+        if (useCommitListing) {
+            listedCommits = commitDataSource.listCommitsSince(repo, tipSha1, since);
+        }
+
+        return walk(repo, listedCommits, false, tipSha1, since, Collections.<String>emptySet());
+    }
+
+    /**
+     * Assemble the commits within the window that are not already known, i.e. the commits made since a previous
+     * walk. The walk does not go past any of the known commits, so its cost is proportional to the number of new
+     * commits rather than the size of the window.
+     *
+     * @param repo                  the repository the commits belong to
+     * @param tipSha1               the SHA of the commit at which the walk should start (e.g. the tip of master)
+     * @param numberOfDaysThreshold the number of days (counting back from now) that the window should cover
+     * @param knownSha1s            the SHAs of the commits that are already known (e.g. that were evaluated before)
+     * @param listingSince          when commit listing is enabled, the date from which the commits are listed
+     *                              (e.g. the commit date of the previously walked tip); new commits older than
+     *                              that (e.g. commits of a long lived branch merged since) are fetched individually
+     * @return the new commits within the window, in the same order as assembleCommits would return them
+     * @throws IOException if there was an error retrieving commits from the repository
+     */
+    public List<GitCommit> assembleNewCommits(GHRepository repo, String tipSha1, int numberOfDaysThreshold,
+                                              Set<String> knownSha1s, Date listingSince) throws IOException {
+        if (knownSha1s.contains(tipSha1)) {
+            return new ArrayList<>();
+        }
+
+        final Date since = getSinceDate(numberOfDaysThreshold);
+
+        Map<String, GitCommit> listedCommits = null;
+        if (useCommitListing) {
+            listedCommits = commitDataSource.listCommitsSince(repo, tipSha1,
+                listingSince.after(since) ? listingSince : since);
+        }
+
+        return walk(repo, listedCommits, true, tipSha1, since, knownSha1s);
+    }
+
+    /**
+     * Narrow a window previously assembled by this walker down to a smaller number of days without making any
+     * further requests. The result is the same as assembling the smaller window from scratch.
+     *
+     * @param window                a window assembled by this walker (the tip commit must be the first element)
+     * @param numberOfDaysThreshold the number of days (counting back from now) that the narrowed window should cover
+     * @return the commits of the provided window that fall within the narrowed window
+     */
+    public List<GitCommit> narrowWindow(List<GitCommit> window, int numberOfDaysThreshold) {
+        if (window.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, GitCommit> windowCommits = new HashMap<>();
+        for (GitCommit commit : window) {
+            windowCommits.put(commit.getSha1(), commit);
+        }
+
+        try {
+            return walk(null, windowCommits, false, window.get(0).getSha1(), getSinceDate(numberOfDaysThreshold),
+                Collections.<String>emptySet());
+        } catch (IOException e) {
+            // cannot happen; without a repository no requests are made
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param repo                the repository to fetch commits from; null if no requests should be made
+     * @param knownCommits        commits that have already been fetched, by SHA; null if there are none
+     * @param fetchUnknownCommits if true, commits missing from the known commits are fetched individually; otherwise
+     *                            they are assumed to be outside of the window
+     * @param tipSha1             the SHA of the commit at which the walk should start
+     * @param since               the start of the window
+     * @param stopSha1s           the SHAs of commits that should not be walked (nor their parents)
+     */
+    private List<GitCommit> walk(GHRepository repo, Map<String, GitCommit> knownCommits, boolean fetchUnknownCommits,
+                                 String tipSha1, Date since, Set<String> stopSha1s) throws IOException {
+        List<GitCommit> assembledCommits = new ArrayList<>();
+        Sha1Table visitedSha1s = new Sha1Table();
+        Deque<String> sha1sToVisit = new ArrayDeque<>();
+        sha1sToVisit.push(tipSha1);
+
+        while (!sha1sToVisit.isEmpty()) {
+            final String sha1 = sha1sToVisit.pop();
+            if (visitedSha1s.contains(sha1) || stopSha1s.contains(sha1)) {
+                continue;
+            }
+            visitedSha1s.add(sha1);
+
+            GitCommit commit = knownCommits != null ? knownCommits.get(sha1) : null;
+            if (commit == null) {
+                // unless told otherwise, the known commits contain every reachable commit made on or after the since
+                // date, so anything missing from them is outside of our window and does not need to be fetched
+                if (repo == null || (knownCommits != null && !fetchUnknownCommits)) {
+                    continue;
+                }
+                commit = getCommit(repo, sha1);
+            }
+
+            // check if the commit is within our time threshold and if not, don't bother adding it or its parents
+            if (commit.getCommittedAt().before(since)) {
+                continue;
+            }
+
+            assembledCommits.add(commit);
+
+            final List<String> parentSha1s = commit.getParentSha1s();
+            if (parentSha1s.isEmpty()) {
+                continue;
+            }
+
+            if (firstParentOnly) {
+                sha1sToVisit.push(parentSha1s.get(0));
+            } else {
+                // push the parents in reverse so that the first parent is the next one visited
+                List<String> reversedParentSha1s = new ArrayList<>(parentSha1s);
+                Collections.reverse(reversedParentSha1s);
+                for (String parentSha1 : reversedParentSha1s) {
+                    if (!visitedSha1s.contains(parentSha1)) {
+                        sha1sToVisit.push(parentSha1);
+                    }
+                }
+            }
+        }
+
+        return assembledCommits;
+    }
+
+    public boolean isFirstParentOnly() {
+        return firstParentOnly;
+    }
+
+    public void setFirstParentOnly(boolean firstParentOnly) {
+        this.firstParentOnly = firstParentOnly;
+    }
+
+    public boolean isUseCommitListing() {
+        return useCommitListing;
+    }
+
+    public void setUseCommitListing(boolean useCommitListing) {
+        this.useCommitListing = useCommitListing;
+    }
+
+    /**
+     * Fetch a single commit from the commit data source.
+     *
+     * @param repo the repository the commit belongs to
+     * @param sha1 the SHA of the commit
+     * @return the commit
+     * @throws IOException if there was an error retrieving the commit from the repository
+     */
+    public GitCommit getCommit(GHRepository repo, String sha1) throws IOException {
+        return commitDataSource.getCommit(repo, sha1);
+    }
+
+    public CommitDataSource getCommitDataSource() {
+        return commitDataSource;
+    }
+
+    /**
+     * @param commitDataSource where the commits are read from (e.g. the GitHub API through a CommitCache, or the
+     *                         local mirrors of the repositories)
+     */
+    public void setCommitDataSource(CommitDataSource commitDataSource) {
+        this.commitDataSource = commitDataSource;
+    }
+
+    /**
+     * @param numberOfDaysThreshold the number of days (counting back from now) that a window covers
+     * @return the start of the window
+     */
+    public Date getSinceDate(int numberOfDaysThreshold) {
+        return DateTime.now().minusDays(numberOfDaysThreshold).toDate();
+    }
+}
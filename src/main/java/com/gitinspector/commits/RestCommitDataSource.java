@@ -0,0 +1,71 @@
+package com.gitinspector.commits;
+
+import com.gitinspector.domain.GitCommit;
+import org.kohsuke.github.GHBranch;
+import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.PagedIterable;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads commits and branch tips from the GitHub API. When a CommitCache is provided, commits are read through it, so
+ * that a commit is only ever fetched once.
+ */
+public class RestCommitDataSource implements CommitDataSource {
+
+    private static final int COMMIT_PAGE_SIZE = 100;
+
+    private CommitCache commitCache;
+
+    /**
+     * @param commitCache caches the commits by SHA so that each commit is only fetched once; null to fetch the
+     *                    commits every time they are needed
+     */
+    public RestCommitDataSource(CommitCache commitCache) {
+        this.commitCache = commitCache;
+    }
+
+    @Override
+    public GitCommit getCommit(GHRepository repo, String sha1) throws IOException {
+        if (commitCache != null) {
+            return commitCache.getCommit(repo, sha1);
+        }
+        return CommitCache.toGitCommit(repo.getCommit(sha1));
+    }
+
+    /**
+     * Lists the commits using the paginated commit listing bounded by the since date (up to 100 commits per request).
+     */
+    @Override
+    public Map<String, GitCommit> listCommitsSince(GHRepository repo, String tipSha1, Date since) {
+        Map<String, GitCommit> listedCommits = new HashMap<>();
+        final PagedIterable<GHCommit> listing =
+            repo.queryCommits().from(tipSha1).since(since).pageSize(COMMIT_PAGE_SIZE).list();
+        for (GHCommit listedCommit : listing) {
+            final GitCommit commit = CommitCache.toGitCommit(listedCommit);
+            listedCommits.put(commit.getSha1(), commit);
+            if (commitCache != null) {
+                commitCache.put(commit);
+            }
+        }
+        return listedCommits;
+    }
+
+    @Override
+    public Map<String, String> getBranchTips(GHRepository repo) throws IOException {
+        final Map<String, String> branchTips = new TreeMap<>();
+        for (Map.Entry<String, GHBranch> branch : repo.getBranches().entrySet()) {
+            branchTips.put(branch.getKey(), branch.getValue().getSHA1());
+        }
+        return branchTips;
+    }
+
+    public CommitCache getCommitCache() {
+        return commitCache;
+    }
+}
@@ -0,0 +1,142 @@
+package com.gitinspector.commits;
+
+import java.util.Arrays;
+
+/**
+ * Assigns each SHA added to it an index (0, 1, 2, ... in the order they were added), so that whatever is known about
+ * a commit can be kept in arrays rather than in maps keyed by String.
+ * SHAs are kept as 20 bytes of binary (in 3 longs) in an open addressing hash table, which takes a fraction of the
+ * memory a 40 character String and a map entry take. The hex digits of a SHA may be in either case.
+ */
+public class Sha1Table {
+
+    private static final int SHA1_HEX_LENGTH = 40;
+
+    private static final int LONGS_PER_SHA1 = 3;
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    // the SHAs by index, 3 longs each (the last one only holds 4 bytes)
+    private long[] sha1s;
+
+    // open addressing with linear probing; each slot holds the index of a SHA plus 1, or 0 if empty
+    private int[] slots;
+
+    private int size;
+
+    public Sha1Table() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity the number of SHAs the table holds before it grows
+     */
+    public Sha1Table(int initialCapacity) {
+        final int capacity = Math.max(DEFAULT_INITIAL_CAPACITY, initialCapacity);
+        sha1s = new long[capacity * LONGS_PER_SHA1];
+        // at most half of the slots are used
+        slots = new int[Integer.highestOneBit(capacity - 1) << 2];
+    }
+
+    /**
+     * @param sha1 a SHA
+     * @return the index of the SHA, which is added to the table if it is not in it yet
+     * @throws IllegalArgumentException if the provided string is not a full hex SHA
+     */
+    public int add(String sha1) {
+        final long[] key = parse(sha1);
+        int slot = findSlot(key);
+        if (slots[slot] != 0) {
+            return slots[slot] - 1;
+        }
+
+        if ((size + 1) * 2 > slots.length) {
+            grow();
+            slot = findSlot(key);
+        }
+        final int index = size++;
+        if (size * LONGS_PER_SHA1 > sha1s.length) {
+            sha1s = Arrays.copyOf(sha1s, Math.max(sha1s.length * 2, size * LONGS_PER_SHA1));
+        }
+        System.arraycopy(key, 0, sha1s, index * LONGS_PER_SHA1, LONGS_PER_SHA1);
+        slots[slot] = index + 1;
+        return index;
+    }
+
+    /**
+     * @param sha1 a SHA
+     * @return the index of the SHA, or -1 if it is not in the table
+     * @throws IllegalArgumentException if the provided string is not a full hex SHA
+     */
+    public int indexOf(String sha1) {
+        final int slot = findSlot(parse(sha1));
+        return slots[slot] - 1;
+    }
+
+    public boolean contains(String sha1) {
+        return indexOf(sha1) >= 0;
+    }
+
+    /**
+     * @return the number of SHAs in the table; the indexes of the SHAs range from 0 to size - 1
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the slot holding the SHA, or the empty slot where it belongs if it is not in the table
+     */
+    private int findSlot(long[] key) {
+        final int mask = slots.length - 1;
+        // the bits of a SHA are as good as random, so no further hashing is needed
+        int slot = (int) (key[0] ^ (key[0] >>> 32)) & mask;
+        while (slots[slot] != 0 && !matches(slots[slot] - 1, key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean matches(int index, long[] key) {
+        final int offset = index * LONGS_PER_SHA1;
+        return sha1s[offset] == key[0] && sha1s[offset + 1] == key[1] && sha1s[offset + 2] == key[2];
+    }
+
+    private void grow() {
+        final int[] oldSlots = slots;
+        slots = new int[oldSlots.length * 2];
+        final long[] key = new long[LONGS_PER_SHA1];
+        for (int oldSlot : oldSlots) {
+            if (oldSlot != 0) {
+                System.arraycopy(sha1s, (oldSlot - 1) * LONGS_PER_SHA1, key, 0, LONGS_PER_SHA1);
+                slots[findSlot(key)] = oldSlot;
+            }
+        }
+    }
+
+    /**
+     * @return the SHA as 3 longs
+     * @throws IllegalArgumentException if the provided string is not a full hex SHA
+     */
+    private static long[] parse(String sha1) {
+        if (sha1 == null || sha1.length() != SHA1_HEX_LENGTH) {
+            throw new IllegalArgumentException("Not a SHA: " + sha1);
+        }
+        final long[] key = new long[LONGS_PER_SHA1];
+        for (int i = 0; i < SHA1_HEX_LENGTH; i++) {
+            final char c = sha1.charAt(i);
+            final int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else if (c >= 'A' && c <= 'F') {
+                digit = c - 'A' + 10;
+            } else {
+                throw new IllegalArgumentException("Not a SHA: " + sha1);
+            }
+            key[i / 16] = (key[i / 16] << 4) | digit;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,75 @@
+package com.gitinspector.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A closed pull request, reduced to what the code review strategies need.
+ * Closed pull requests hardly ever change, so these are kept in a PullRequestStore between runs.
+ */
+public class ClosedPullRequest {
+    private int number;
+    private String title;
+    private Date closedAt;
+    private Date updatedAt;
+    private String headSha1;
+    private String mergeCommitSha1;
+    private List<String> commitSha1s;
+
+    public ClosedPullRequest(int number, String title, Date closedAt, Date updatedAt, String headSha1,
+                             String mergeCommitSha1, List<String> commitSha1s) {
+        this.number = number;
+        this.title = title;
+        this.closedAt = closedAt;
+        this.updatedAt = updatedAt;
+        this.headSha1 = headSha1;
+        this.mergeCommitSha1 = mergeCommitSha1;
+        this.commitSha1s = Collections.unmodifiableList(new ArrayList<>(commitSha1s));
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Date getClosedAt() {
+        return closedAt;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * @return the SHA of the head commit of the pull request or null if it isn't known
+     */
+    public String getHeadSha1() {
+        return headSha1;
+    }
+
+    /**
+     * @return the SHA of the commit the pull request was merged with (a merge, squash or rebased commit), or null if
+     * it was closed without being merged
+     */
+    public String getMergeCommitSha1() {
+        return mergeCommitSha1;
+    }
+
+    public List<String> getCommitSha1s() {
+        return commitSha1s;
+    }
+
+    @Override
+    public String toString() {
+        return "ClosedPullRequest{" +
+               "number=" + number +
+               ", title='" + title + '\'' +
+               ", closedAt=" + closedAt +
+               '}';
+    }
+}
@@ -0,0 +1,56 @@
+package com.gitinspector.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The outcome of evaluating a commit against a rule. Kept between runs so that a commit is only evaluated once.
+ * Positive means the statement the rule counts holds for the commit (e.g. "has a valid JIRA tag",
+ * "has profane language in its message"); details holds anything else the rule reports (e.g. the terms found).
+ */
+public class CommitVerdict {
+    private String sha1;
+    private String committerName;
+    private Date committedAt;
+    private boolean positive;
+    private List<String> details;
+
+    public CommitVerdict(String sha1, String committerName, Date committedAt, boolean positive, List<String> details) {
+        this.sha1 = sha1;
+        this.committerName = committerName;
+        this.committedAt = committedAt;
+        this.positive = positive;
+        this.details = Collections.unmodifiableList(new ArrayList<>(details));
+    }
+
+    public String getSha1() {
+        return sha1;
+    }
+
+    public String getCommitterName() {
+        return committerName;
+    }
+
+    public Date getCommittedAt() {
+        return committedAt;
+    }
+
+    public boolean isPositive() {
+        return positive;
+    }
+
+    public List<String> getDetails() {
+        return details;
+    }
+
+    @Override
+    public String toString() {
+        return "CommitVerdict{" +
+               "sha1='" + sha1 + '\'' +
+               ", positive=" + positive +
+               ", details=" + details +
+               '}';
+    }
+}
@@ -0,0 +1,66 @@
+package com.gitinspector.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A commit, reduced to what the scheduled tasks need.
+ * Commits never change once made, so these are kept in a CommitCache between runs and a commit is only ever
+ * fetched once.
+ */
+public class GitCommit {
+    private String sha1;
+    private List<String> parentSha1s;
+    private String committerName;
+    private String committerEmail;
+    private Date committedAt;
+    private String message;
+
+    public GitCommit(String sha1, List<String> parentSha1s, String committerName, String committerEmail,
+                     Date committedAt, String message) {
+        this.sha1 = sha1;
+        this.parentSha1s = Collections.unmodifiableList(new ArrayList<>(parentSha1s));
+        this.committerName = committerName;
+        this.committerEmail = committerEmail;
+        this.committedAt = committedAt;
+        this.message = message;
+    }
+
+    public String getSha1() {
+        return sha1;
+    }
+
+    /**
+     * @return the SHAs of the parents of the commit, the first parent first
+     */
+    public List<String> getParentSha1s() {
+        return parentSha1s;
+    }
+
+    public String getCommitterName() {
+        return committerName;
+    }
+
+    public String getCommitterEmail() {
+        return committerEmail;
+    }
+
+    public Date getCommittedAt() {
+        return committedAt;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "GitCommit{" +
+               "sha1='" + sha1 + '\'' +
+               ", committerName='" + committerName + '\'' +
+               ", committedAt=" + committedAt +
+               '}';
+    }
+}
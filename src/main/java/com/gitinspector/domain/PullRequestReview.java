@@ -0,0 +1,59 @@
+package com.gitinspector.domain;
+
+import java.util.Date;
+
+/**
+ * A review of a pull request, reduced to what the code review strategies need.
+ */
+public class PullRequestReview {
+    public static final String APPROVED = "APPROVED";
+    public static final String CHANGES_REQUESTED = "CHANGES_REQUESTED";
+    public static final String COMMENTED = "COMMENTED";
+    public static final String DISMISSED = "DISMISSED";
+
+    private String reviewerLogin;
+    private String state;
+    private String commitSha1;
+    private Date submittedAt;
+
+    public PullRequestReview(String reviewerLogin, String state, String commitSha1, Date submittedAt) {
+        this.reviewerLogin = reviewerLogin;
+        this.state = state;
+        this.commitSha1 = commitSha1;
+        this.submittedAt = submittedAt;
+    }
+
+    public String getReviewerLogin() {
+        return reviewerLogin;
+    }
+
+    /**
+     * @return the state of the review (e.g. APPROVED, CHANGES_REQUESTED, COMMENTED or DISMISSED)
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * @return the SHA of the head commit of the pull request when it was reviewed or null if it isn't known
+     */
+    public String getCommitSha1() {
+        return commitSha1;
+    }
+
+    /**
+     * @return when the review was submitted or null if it is still pending
+     */
+    public Date getSubmittedAt() {
+        return submittedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "PullRequestReview{" +
+               "reviewerLogin='" + reviewerLogin + '\'' +
+               ", state='" + state + '\'' +
+               ", commitSha1='" + commitSha1 + '\'' +
+               '}';
+    }
+}
@@ -7,6 +7,7 @@ import java.util.List;
 
 /**
  * The results of running a git report. Tracks violations and statistics.
+ * Safe to add to from several threads; entries keep the order in which they were added.
  */
 public class ReportResult<V extends ReportingRecordable, S extends ReportingRecordable> {
     private List<V> violations = new ArrayList<>();
@@ -16,16 +17,29 @@ public class ReportResult<V extends ReportingRecordable, S extends ReportingReco
     public ReportResult() {
     }
 
-    public void addViolation(V violation) {
+    public synchronized void addViolation(V violation) {
         violations.add(violation);
         allReportingRecordables.add(violation);
     }
 
-    public void addStatistic(S statistic) {
+    public synchronized void addStatistic(S statistic) {
         statistics.add(statistic);
         allReportingRecordables.add(statistic);
     }
 
+    /**
+     * Add all of the violations and statistics of another result, in the order they were added to it.
+     *
+     * @param reportResult the result whose violations and statistics are to be added
+     */
+    public synchronized void addAll(ReportResult<V, S> reportResult) {
+        synchronized (reportResult) {
+            violations.addAll(reportResult.violations);
+            statistics.addAll(reportResult.statistics);
+            allReportingRecordables.addAll(reportResult.allReportingRecordables);
+        }
+    }
+
     public List<V> getViolations() {
         return violations;
     }
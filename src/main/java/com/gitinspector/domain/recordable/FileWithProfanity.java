@@ -1,7 +1,9 @@
 package com.gitinspector.domain.recordable;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class FileWithProfanity extends Violation {
 
@@ -9,11 +11,23 @@ public class FileWithProfanity extends Violation {
 
     private List<String> profanityList;
 
+    private Map<String, List<Integer>> lineNumbers;
+
     public FileWithProfanity(String orgName, String repoFullName, String repoOwner, String fileName,
                              List<String> profanityList) {
+        this(orgName, repoFullName, repoOwner, fileName, profanityList, new LinkedHashMap<String, List<Integer>>());
+    }
+
+    /**
+     * @param lineNumbers the lines (counted from 1) on which each of the terms was found, by term; empty when only the
+     *                    file is known, as with code search
+     */
+    public FileWithProfanity(String orgName, String repoFullName, String repoOwner, String fileName,
+                             List<String> profanityList, Map<String, List<Integer>> lineNumbers) {
         super(orgName, repoFullName, repoOwner);
         this.fileName = fileName;
         this.profanityList = new ArrayList<>(profanityList);
+        this.lineNumbers = new LinkedHashMap<>(lineNumbers);
     }
 
     public String getFileName() {
@@ -32,10 +46,19 @@ public class FileWithProfanity extends Violation {
         this.profanityList = prfainWordList;
     }
 
+    public Map<String, List<Integer>> getLineNumbers() {
+        return lineNumbers;
+    }
+
+    public void setLineNumbers(Map<String, List<Integer>> lineNumbers) {
+        this.lineNumbers = lineNumbers;
+    }
+
     @Override
     public String toString() {
         return super.toString() +
                 " fileName='" + fileName +
-                " profanityList=" + profanityList;
+                " profanityList=" + profanityList +
+                (lineNumbers.isEmpty() ? "" : " lineNumbers=" + lineNumbers);
     }
 }
@@ -0,0 +1,47 @@
+package com.gitinspector.domain.recordable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a commit that violates one or more Git Inspector rules, evaluated together, along with what each of the
+ * rules found.
+ */
+public class FlaggedCommit extends BadCommit {
+
+    private Map<String, List<String>> findingsByRule = new LinkedHashMap<>();
+
+    public FlaggedCommit(String orgName, String repoFullName, String repoOwner, String committer, String commitSha) {
+        super(orgName, repoFullName, repoOwner, committer, commitSha);
+    }
+
+    /**
+     * @param ruleName the name of a rule the commit violates (e.g. JiraTagJob)
+     * @param findings what the rule found, if anything (e.g. the terms found in the message)
+     */
+    public void addRule(String ruleName, List<String> findings) {
+        findingsByRule.put(ruleName, new ArrayList<>(findings));
+    }
+
+    /**
+     * @return the names of the rules the commit violates
+     */
+    public List<String> getRuleNames() {
+        return new ArrayList<>(findingsByRule.keySet());
+    }
+
+    /**
+     * @return what each of the rules the commit violates found, by rule name
+     */
+    public Map<String, List<String>> getFindingsByRule() {
+        return findingsByRule;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() +
+            " rules=" + findingsByRule;
+    }
+}
@@ -0,0 +1,211 @@
+package com.gitinspector.github;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+
+/**
+ * Limits the number of GitHub requests in flight, adapting the limit to how GitHub copes (AIMD): the limit grows by
+ * one per limit's worth of successful requests while latency stays flat, and is cut by a factor when a request is
+ * answered with a 5xx or a secondary rate limit, or when the p95 latency of the latest requests rises well above
+ * the usual p95.
+ */
+@ManagedResource(description = "Adapts the number of GitHub requests in flight to how GitHub copes")
+public class AdaptiveConcurrencyLimiter {
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    // the number of latencies kept for the percentiles; the p95 is compared to the usual p95 once per window
+    private static final int WINDOW_SIZE = 50;
+
+    private static final double BACKOFF_FACTOR = 0.7;
+
+    // how much the p95 of a window may exceed the usual p95 before we back off
+    private static final double LATENCY_TOLERANCE = 1.5;
+
+    // how quickly the usual p95 follows the p95 of the latest windows
+    private static final double BASELINE_SMOOTHING = 0.2;
+
+    private int minLimit;
+
+    private int maxLimit;
+
+    private double limit;
+
+    private int inFlight;
+
+    private long[] latencies = new long[WINDOW_SIZE];
+
+    private int nextLatency;
+
+    private int latencyCount;
+
+    private int samplesInWindow;
+
+    // the usual p95 latency; 0 until the first window is complete
+    private double baselineP95Millis;
+
+    // requests released since the limit was last cut; the limit is cut at most once per limit's worth of requests
+    private int releasedSinceBackoff;
+
+    private long backoffCount;
+
+    /**
+     * @param initialLimit the number of requests allowed in flight to begin with
+     * @param minLimit     the number of requests always allowed in flight
+     * @param maxLimit     the number of requests never exceeded in flight
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.releasedSinceBackoff = maxLimit;
+    }
+
+    /**
+     * Wait until another request may be in flight.
+     *
+     * @throws InterruptedIOException if the thread was interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedIOException {
+        while (inFlight >= getLimit()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to send a GitHub request");
+            }
+        }
+        inFlight++;
+    }
+
+    /**
+     * Record the outcome of a request acquired earlier.
+     *
+     * @param latencyMillis how long it took for the response to arrive
+     * @param overloaded    true if the response (or the lack of one) shows that GitHub is overloaded, e.g. a 5xx or a
+     *                      secondary rate limit
+     */
+    public synchronized void release(long latencyMillis, boolean overloaded) {
+        inFlight--;
+        releasedSinceBackoff = Math.min(releasedSinceBackoff + 1, maxLimit);
+
+        latencies[nextLatency] = latencyMillis;
+        nextLatency = (nextLatency + 1) % WINDOW_SIZE;
+        latencyCount = Math.min(latencyCount + 1, WINDOW_SIZE);
+        samplesInWindow++;
+
+        if (overloaded) {
+            backOff("overloaded response");
+        } else if (samplesInWindow >= WINDOW_SIZE && isLatencyRising()) {
+            backOff("rising p95 latency");
+        } else if (limit < maxLimit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Give back a request acquired earlier that was never sent.
+     */
+    public synchronized void cancel() {
+        inFlight--;
+        notifyAll();
+    }
+
+    @ManagedAttribute
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    @ManagedAttribute
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    @ManagedAttribute
+    public synchronized int getMinLimit() {
+        return minLimit;
+    }
+
+    @ManagedAttribute
+    public synchronized void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+        limit = Math.max(limit, minLimit);
+        notifyAll();
+    }
+
+    @ManagedAttribute
+    public synchronized int getMaxLimit() {
+        return maxLimit;
+    }
+
+    @ManagedAttribute
+    public synchronized void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+        limit = Math.min(limit, maxLimit);
+    }
+
+    @ManagedAttribute
+    public synchronized long getLatencyP50Millis() {
+        return getLatencyPercentile(50);
+    }
+
+    @ManagedAttribute
+    public synchronized long getLatencyP95Millis() {
+        return getLatencyPercentile(95);
+    }
+
+    @ManagedAttribute
+    public synchronized long getLatencyP99Millis() {
+        return getLatencyPercentile(99);
+    }
+
+    /**
+     * @return the number of times the limit was cut
+     */
+    @ManagedAttribute
+    public synchronized long getBackoffCount() {
+        return backoffCount;
+    }
+
+    /**
+     * Compare the p95 of the window that just completed to the usual p95, which it then becomes a part of (so that a
+     * lasting change in latency stops causing back offs after a few windows).
+     */
+    private boolean isLatencyRising() {
+        samplesInWindow = 0;
+        final long p95Millis = getLatencyPercentile(95);
+        if (baselineP95Millis == 0) {
+            baselineP95Millis = p95Millis;
+            return false;
+        }
+
+        final boolean rising = p95Millis > baselineP95Millis * LATENCY_TOLERANCE;
+        baselineP95Millis += (p95Millis - baselineP95Millis) * BASELINE_SMOOTHING;
+        return rising;
+    }
+
+    private void backOff(String reason) {
+        // the requests that were already in flight when we backed off tell us nothing new
+        if (releasedSinceBackoff < getLimit()) {
+            return;
+        }
+        releasedSinceBackoff = 0;
+        backoffCount++;
+        limit = Math.max(minLimit, limit * BACKOFF_FACTOR);
+        log.info("Backing off to {} GitHub requests in flight because of {}", getLimit(), reason);
+    }
+
+    private long getLatencyPercentile(int percentile) {
+        if (latencyCount == 0) {
+            return 0;
+        }
+        final long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, (int) Math.ceil(latencyCount * percentile / 100.0) - 1)];
+    }
+}
@@ -0,0 +1,197 @@
+package com.gitinspector.github;
+
+import com.gitinspector.github.ConditionalRequestCache.CachedResponse;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * An HttpConnector that makes GET requests conditional using the ETags kept in a ConditionalRequestCache.
+ * When the server answers with a 304 the cached body is handed back to the caller as a regular 200 response;
+ * when it answers with a 200 carrying an ETag the body is stored for the next time the same request is made.
+ * Requests for the same URL with another media type or on behalf of another user are different requests: their
+ * responses are kept apart, keyed on the Accept header and on a hash of the Authorization header as well.
+ */
+public class CachingHttpConnector implements HttpConnector {
+
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    private HttpConnector delegate;
+
+    private ConditionalRequestCache cache;
+
+    public CachingHttpConnector(HttpConnector delegate, ConditionalRequestCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        return new CachingHttpURLConnection(delegate.connect(url));
+    }
+
+    /**
+     * @param url           the URL of the request
+     * @param accept        the Accept header of the request or null if there is none
+     * @param authorization the Authorization header of the request or null if there is none; only its hash is kept
+     * @return the key the response to the request is cached with
+     */
+    static String getCacheKey(String url, String accept, String authorization) {
+        final StringBuilder key = new StringBuilder(url);
+        if (accept != null) {
+            key.append(" Accept: ").append(accept);
+        }
+        if (authorization != null) {
+            key.append(" Authorization: ").append(Hashing.sha1().hashString(authorization, Charsets.UTF_8));
+        }
+        return key.toString();
+    }
+
+    private class CachingHttpURLConnection extends DelegatingHttpURLConnection {
+
+        private boolean requestPrepared;
+
+        private boolean responseResolved;
+
+        // recorded as they are set, since the connections of the JDK never hand the Authorization header back
+        private String accept;
+
+        private String authorization;
+
+        private String cacheKey;
+
+        private CachedResponse cachedResponse;
+
+        private boolean servedFromCache;
+
+        private byte[] body;
+
+        public CachingHttpURLConnection(HttpURLConnection delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            prepareRequest();
+            super.connect();
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            resolveResponse();
+            return servedFromCache ? HTTP_OK : super.getResponseCode();
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException {
+            resolveResponse();
+            return servedFromCache ? "OK" : super.getResponseMessage();
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            try {
+                resolveResponse();
+            } catch (IOException e) {
+                // let the delegate report the failure the way it normally would
+                return super.getHeaderField(name);
+            }
+
+            if (servedFromCache) {
+                if ("Link".equalsIgnoreCase(name)) {
+                    return cachedResponse.getLink();
+                }
+                if ("Content-Encoding".equalsIgnoreCase(name)) {
+                    return cachedResponse.getContentEncoding();
+                }
+            }
+            return super.getHeaderField(name);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            resolveResponse();
+            return body != null ? new ByteArrayInputStream(body) : super.getInputStream();
+        }
+
+        @Override
+        public void setRequestProperty(String key, String value) {
+            super.setRequestProperty(key, value);
+            if ("Accept".equalsIgnoreCase(key)) {
+                accept = value;
+            } else if ("Authorization".equalsIgnoreCase(key)) {
+                authorization = value;
+            }
+        }
+
+        @Override
+        public void addRequestProperty(String key, String value) {
+            super.addRequestProperty(key, value);
+            if ("Accept".equalsIgnoreCase(key)) {
+                accept = accept == null ? value : accept + ", " + value;
+            } else if ("Authorization".equalsIgnoreCase(key)) {
+                authorization = authorization == null ? value : authorization + ", " + value;
+            }
+        }
+
+        /**
+         * Add the If-None-Match header to GET requests for which we have a cached response.
+         * Must happen before the delegate sends the request.
+         */
+        private void prepareRequest() {
+            if (requestPrepared) {
+                return;
+            }
+            requestPrepared = true;
+
+            if (isGet()) {
+                cacheKey = getCacheKey(getURL().toString(), accept, authorization);
+                cachedResponse = cache.get(cacheKey);
+                if (cachedResponse != null) {
+                    delegate.setRequestProperty("If-None-Match", cachedResponse.getEtag());
+                }
+            }
+        }
+
+        private void resolveResponse() throws IOException {
+            if (responseResolved) {
+                return;
+            }
+            prepareRequest();
+            responseResolved = true;
+
+            if (!isGet()) {
+                return;
+            }
+
+            final int responseCode = delegate.getResponseCode();
+            if (responseCode == HTTP_NOT_MODIFIED && cachedResponse != null) {
+                servedFromCache = true;
+                body = cachedResponse.getBody();
+                cache.recordHit(cachedResponse);
+                return;
+            }
+
+            cache.recordMiss();
+            final String etag = delegate.getHeaderField("ETag");
+            if (responseCode == HTTP_OK && etag != null) {
+                try (InputStream in = delegate.getInputStream()) {
+                    body = ByteStreams.toByteArray(in);
+                }
+                cache.put(cacheKey, new CachedResponse(etag, delegate.getHeaderField("Link"),
+                    delegate.getHeaderField("Content-Encoding"), body));
+            }
+        }
+
+        private boolean isGet() {
+            return "GET".equals(delegate.getRequestMethod());
+        }
+    }
+}
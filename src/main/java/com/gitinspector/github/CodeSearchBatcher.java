@@ -0,0 +1,83 @@
+package com.gitinspector.github;
+
+import com.google.common.base.Joiner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs the terms to search code for into as few search queries as GitHub accepts, by OR-ing them together, so that
+ * a long list of terms does not take a search request per term. GitHub caps both the length of a query and the
+ * number of operators (AND, OR, NOT) in it.
+ */
+public class CodeSearchBatcher {
+
+    public static final int DEFAULT_MAX_QUERY_LENGTH = 256;
+
+    public static final int DEFAULT_MAX_OPERATORS = 5;
+
+    private int maxQueryLength;
+
+    private int maxOperators;
+
+    public CodeSearchBatcher() {
+        this(DEFAULT_MAX_QUERY_LENGTH, DEFAULT_MAX_OPERATORS);
+    }
+
+    /**
+     * @param maxQueryLength the number of characters of the longest query, qualifiers included
+     * @param maxOperators   the number of operators of the query with the most operators
+     */
+    public CodeSearchBatcher(int maxQueryLength, int maxOperators) {
+        this.maxQueryLength = maxQueryLength;
+        this.maxOperators = maxOperators;
+    }
+
+    /**
+     * Split the terms into batches, each of which fits in a single query. A term too long to fit in a query along
+     * with any other term gets a batch of its own.
+     *
+     * @param terms      the terms to search for, each as a phrase
+     * @param qualifiers the qualifiers each query is sent with (e.g. repo:OMDev/omapi)
+     * @return the batches of terms, in the order of the terms
+     */
+    public List<List<String>> batch(List<String> terms, String qualifiers) {
+        final List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        for (String term : terms) {
+            batch.add(term);
+            if (batch.size() > 1 && !fits(batch, qualifiers)) {
+                batch.remove(batch.size() - 1);
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batch.add(term);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * @param terms the terms to search for, each as a phrase
+     * @return a query finding the code that holds any of the terms
+     */
+    public static String toQuery(List<String> terms) {
+        return "\"" + Joiner.on("\" OR \"").join(terms) + "\"";
+    }
+
+    public int getMaxQueryLength() {
+        return maxQueryLength;
+    }
+
+    public int getMaxOperators() {
+        return maxOperators;
+    }
+
+    private boolean fits(List<String> batch, String qualifiers) {
+        // the terms are joined with an OR each, and the qualifiers follow after a space
+        return batch.size() - 1 <= maxOperators
+            && toQuery(batch).length() + 1 + qualifiers.length() <= maxQueryLength;
+    }
+}
@@ -0,0 +1,175 @@
+package com.gitinspector.github;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * An HttpConnector that keeps the number of requests in flight within the limit of an AdaptiveConcurrencyLimiter,
+ * and reports the latency and outcome of every request back to it.
+ * A request is in flight from the moment it is connected until its response code is known, or until its response
+ * is closed or disconnected without the code being asked for.
+ */
+public class ConcurrencyLimitedHttpConnector implements HttpConnector {
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    // the messages of the 403s GitHub answers with when a secondary rate limit is hit
+    private static final Pattern SECONDARY_RATE_LIMIT_MESSAGE =
+        Pattern.compile("secondary rate limit|abuse detection", Pattern.CASE_INSENSITIVE);
+
+    private HttpConnector delegate;
+
+    private AdaptiveConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitedHttpConnector(HttpConnector delegate, AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        limiter.acquire();
+        try {
+            return new ConcurrencyLimitedHttpURLConnection(delegate.connect(url));
+        } catch (IOException | RuntimeException e) {
+            limiter.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * @param responseCode the code of the response
+     * @param retryAfter   the Retry-After header of the response or null if there is none
+     * @param errorBody    the body of the response if it is an error, or null if it was not read
+     * @return true if the response is a secondary rate limit, i.e. a 403 telling how long to wait or saying so in its
+     * message; the other 403s are either an exhausted budget (handled by the RateLimitGovernor) or unrelated to load
+     */
+    static boolean isSecondaryRateLimit(int responseCode, String retryAfter, String errorBody) {
+        return responseCode == HttpURLConnection.HTTP_FORBIDDEN
+               && (retryAfter != null || errorBody != null && SECONDARY_RATE_LIMIT_MESSAGE.matcher(errorBody).find());
+    }
+
+    private class ConcurrencyLimitedHttpURLConnection extends DelegatingHttpURLConnection {
+
+        private final long connectedAt = System.nanoTime();
+
+        private boolean released;
+
+        // the body of a 403 that was read to tell a secondary rate limit from the other ones
+        private byte[] errorBody;
+
+        public ConcurrencyLimitedHttpURLConnection(HttpURLConnection delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            try {
+                final int responseCode = super.getResponseCode();
+                if (!released) {
+                    release(isOverloaded(responseCode, readErrorBody(responseCode)));
+                }
+                return responseCode;
+            } catch (IOException e) {
+                // no response at all (e.g. a timeout)
+                release(true);
+                throw e;
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            // resolves the response code, releasing the request
+            getResponseCode();
+            return new ReleasingInputStream(super.getInputStream());
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            final InputStream errorStream = errorBody != null ? new ByteArrayInputStream(errorBody)
+                : super.getErrorStream();
+            return errorStream == null ? null : new ReleasingInputStream(errorStream);
+        }
+
+        @Override
+        public void disconnect() {
+            if (!released) {
+                // disconnected before the response was asked for
+                released = true;
+                limiter.cancel();
+            }
+            super.disconnect();
+        }
+
+        private boolean isOverloaded(int responseCode, String errorBody) {
+            return responseCode >= HTTP_INTERNAL_ERROR || responseCode == HTTP_TOO_MANY_REQUESTS
+                   || isSecondaryRateLimit(responseCode, delegate.getHeaderField("Retry-After"), errorBody);
+        }
+
+        /**
+         * @return the body of a 403 that says nothing of a secondary rate limit in its headers, or null if there is
+         * none; it is kept for the error stream
+         */
+        private String readErrorBody(int responseCode) {
+            if (responseCode != HTTP_FORBIDDEN || delegate.getHeaderField("Retry-After") != null) {
+                return null;
+            }
+            final InputStream errorStream = delegate.getErrorStream();
+            if (errorStream == null) {
+                return null;
+            }
+
+            try (InputStream in = errorStream) {
+                errorBody = ByteStreams.toByteArray(in);
+            } catch (IOException e) {
+                // the body is lost to the caller either way
+                errorBody = new byte[0];
+            }
+            return new String(errorBody, Charsets.UTF_8);
+        }
+
+        private void release(boolean overloaded) {
+            if (released) {
+                return;
+            }
+            released = true;
+            limiter.release(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectedAt), overloaded);
+        }
+
+        /**
+         * Releases the request when closed, in case its response code was never asked for.
+         */
+        private class ReleasingInputStream extends FilterInputStream {
+
+            ReleasingInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!released) {
+                        // a response arrived, whose code is known without reading its body again
+                        try {
+                            release(isOverloaded(delegate.getResponseCode(), null));
+                        } catch (IOException e) {
+                            release(true);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
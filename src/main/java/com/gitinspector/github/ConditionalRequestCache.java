@@ -0,0 +1,207 @@
+package com.gitinspector.github;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A disk backed cache of GitHub API responses keyed on the request (its URL and the headers that select the response).
+ * Each entry keeps the response body along with its ETag so that the request can be revalidated using
+ * If-None-Match. GitHub answers a revalidated request with a 304 (which does not count against the rate limit)
+ * when nothing has changed, in which case the body is served from disk.
+ */
+@ManagedResource(description = "A disk backed cache of GitHub API responses revalidated using ETags")
+public class ConditionalRequestCache {
+    private static final Logger log = LoggerFactory.getLogger(ConditionalRequestCache.class);
+    private static final String ENTRY_FILE_SUFFIX = ".entry";
+
+    private File cacheDirectory;
+
+    private AtomicLong hits = new AtomicLong();
+
+    private AtomicLong misses = new AtomicLong();
+
+    private AtomicLong bytesSaved = new AtomicLong();
+
+    public ConditionalRequestCache(String cacheDirectory) throws IOException {
+        this.cacheDirectory = new File(cacheDirectory);
+        if (!this.cacheDirectory.isDirectory() && !this.cacheDirectory.mkdirs()) {
+            throw new IOException("Could not create response cache directory " + cacheDirectory);
+        }
+    }
+
+    /**
+     * @param url the URL of the request, along with the headers that select the response (see CachingHttpConnector)
+     * @return the cached response for the URL or null if there is none
+     */
+    public CachedResponse get(String url) {
+        final File entryFile = getEntryFile(url);
+        if (!entryFile.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile)))) {
+            final String entryUrl = in.readUTF();
+            final String etag = in.readUTF();
+            final String link = readNullableUTF(in);
+            final String contentEncoding = readNullableUTF(in);
+            final byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+
+            // guard against the (unlikely) case of two URLs hashing to the same file
+            return url.equals(entryUrl) ? new CachedResponse(etag, link, contentEncoding, body) : null;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable response cache entry {}", entryFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Store a response in the cache, replacing any previous response for the same URL.
+     *
+     * @param url      the URL of the request, along with the headers that select the response
+     * @param response the response to be cached
+     */
+    public void put(String url, CachedResponse response) {
+        final File entryFile = getEntryFile(url);
+        try {
+            // write to a temp file first so that readers never see a partially written entry
+            final File tempFile = File.createTempFile(entryFile.getName(), ".tmp", cacheDirectory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeUTF(url);
+                out.writeUTF(response.getEtag());
+                writeNullableUTF(out, response.getLink());
+                writeNullableUTF(out, response.getContentEncoding());
+                out.writeInt(response.getBody().length);
+                out.write(response.getBody());
+            }
+            Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write response cache entry for {}", url, e);
+        }
+    }
+
+    /**
+     * Record that a response was served from the cache after the server confirmed it had not changed.
+     *
+     * @param response the response that was served from the cache
+     */
+    public void recordHit(CachedResponse response) {
+        hits.incrementAndGet();
+        bytesSaved.addAndGet(response.getBody().length);
+    }
+
+    /**
+     * Record that a response had to be fetched from the server.
+     */
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    @ManagedAttribute
+    public long getHits() {
+        return hits.get();
+    }
+
+    @ManagedAttribute
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @ManagedAttribute
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    @ManagedAttribute
+    public String getCacheDirectory() {
+        return cacheDirectory.getAbsolutePath();
+    }
+
+    @ManagedOperation
+    public void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+        bytesSaved.set(0);
+    }
+
+    @ManagedOperation
+    public void clear() {
+        final File[] entryFiles = cacheDirectory.listFiles();
+        if (entryFiles != null) {
+            for (File entryFile : entryFiles) {
+                if (entryFile.getName().endsWith(ENTRY_FILE_SUFFIX) && !entryFile.delete()) {
+                    log.warn("Could not delete response cache entry {}", entryFile);
+                }
+            }
+        }
+    }
+
+    private File getEntryFile(String url) {
+        return new File(cacheDirectory, Hashing.sha1().hashString(url, Charsets.UTF_8).toString() + ENTRY_FILE_SUFFIX);
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * A cached response: the body as it was sent by the server along with the headers needed to serve it again.
+     */
+    public static class CachedResponse {
+        private String etag;
+        private String link;
+        private String contentEncoding;
+        private byte[] body;
+
+        public CachedResponse(String etag, String link, String contentEncoding, byte[] body) {
+            this.etag = etag;
+            this.link = link;
+            this.contentEncoding = contentEncoding;
+            this.body = body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * @return the pagination Link header of the response or null if it had none
+         */
+        public String getLink() {
+            return link;
+        }
+
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.gitinspector.github;
+
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpConnector;
+import org.kohsuke.github.RateLimitHandler;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * Builds the GitHub client shared by TargetRepositories, the RepoOwnership implementations and the scheduled tasks.
+ * Layers our HttpConnectors (e.g. the conditional request cache) on top of the default connector when they
+ * have been configured.
+ */
+public class GitHubClientFactory {
+
+    private String gitHubServer;
+
+    private String gitHubToken;
+
+    private ConditionalRequestCache responseCache;
+
+    private RateLimitGovernor rateLimitGovernor;
+
+    private RateLimitGovernor searchRateLimitGovernor;
+
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    private RequestCoalescer requestCoalescer;
+
+    /**
+     * @param gitHubServer the URL of the GitHub API (e.g. http://github.wvrgroup.internal/api/v3/)
+     * @param gitHubToken  the OAuth token to authenticate with
+     */
+    public GitHubClientFactory(String gitHubServer, String gitHubToken) {
+        this.gitHubServer = gitHubServer;
+        this.gitHubToken = gitHubToken;
+    }
+
+    public GitHub createClient() throws IOException {
+        final GitHubBuilder gitHubBuilder = new GitHubBuilder()
+            .withEndpoint(gitHubServer)
+            .withOAuthToken(gitHubToken)
+            .withConnector(createConnector());
+        if (rateLimitGovernor != null || searchRateLimitGovernor != null) {
+            gitHubBuilder.withRateLimitHandler(createRateLimitHandler());
+        }
+        return gitHubBuilder.build();
+    }
+
+    /**
+     * @param responseCache a cache used to make GET requests conditional; null to disable caching
+     */
+    public void setResponseCache(ConditionalRequestCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public ConditionalRequestCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * @param rateLimitGovernor shares the rate limit between the scheduled tasks; null to send requests regardless
+     *                          of the remaining budget
+     */
+    public void setRateLimitGovernor(RateLimitGovernor rateLimitGovernor) {
+        this.rateLimitGovernor = rateLimitGovernor;
+    }
+
+    public RateLimitGovernor getRateLimitGovernor() {
+        return rateLimitGovernor;
+    }
+
+    /**
+     * @param searchRateLimitGovernor keeps the search requests within the search rate limit, which GitHub keeps
+     *                                apart from the other one; null to send them regardless of the search budget
+     */
+    public void setSearchRateLimitGovernor(RateLimitGovernor searchRateLimitGovernor) {
+        this.searchRateLimitGovernor = searchRateLimitGovernor;
+    }
+
+    public RateLimitGovernor getSearchRateLimitGovernor() {
+        return searchRateLimitGovernor;
+    }
+
+    /**
+     * @param concurrencyLimiter adapts the number of requests in flight to how GitHub copes; null to send requests
+     *                           as soon as they are made
+     */
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * @param requestCoalescer lets concurrent identical requests share a single call; null to send each of them
+     */
+    public void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * @return a downloader of repository archives that shares the rate limit and the concurrency limit with the client,
+     * but neither its cache nor its coalescing, both of which hold whole responses in memory
+     */
+    public RepositoryArchiveDownloader createArchiveDownloader() {
+        return new RepositoryArchiveDownloader(gitHubToken, createWireConnector());
+    }
+
+    /**
+     * @return a client for the calls the GitHub client lacks, that goes through the same connectors as the client,
+     * cache included
+     */
+    public GitHubRestClient createRestClient() {
+        return new GitHubRestClient(gitHubToken, createConnector());
+    }
+
+    /**
+     * @return a fetcher of pull request reviews that goes through the same connectors as the client, cache included
+     */
+    public PullRequestReviewFetcher createReviewFetcher() {
+        return new PullRequestReviewFetcher(createRestClient());
+    }
+
+    private HttpConnector createConnector() {
+        HttpConnector connector = createWireConnector();
+        // requests that share the response of an identical request are never sent, so they must not go through the
+        // governor or the limiter; they do go through the cache, which makes them conditional the same way
+        if (requestCoalescer != null) {
+            connector = new SingleFlightHttpConnector(connector, requestCoalescer);
+        }
+        if (responseCache != null) {
+            connector = new CachingHttpConnector(connector, responseCache);
+        }
+        return connector;
+    }
+
+    private HttpConnector createWireConnector() {
+        HttpConnector connector = HttpConnector.DEFAULT;
+        // the limiter and the governor sit closest to the wire so that they see every request that is actually sent;
+        // the governor wraps the limiter so that requests waiting for budget do not hold on to a slot
+        if (concurrencyLimiter != null) {
+            connector = new ConcurrencyLimitedHttpConnector(connector, concurrencyLimiter);
+        }
+        if (rateLimitGovernor != null || searchRateLimitGovernor != null) {
+            connector = new RateLimitedHttpConnector(connector, rateLimitGovernor, searchRateLimitGovernor);
+        }
+        return connector;
+    }
+
+    /**
+     * @return a RateLimitHandler that has the governor of the limit that was hit wait for it to reset
+     */
+    private RateLimitHandler createRateLimitHandler() {
+        final RateLimitHandler handler =
+            rateLimitGovernor == null ? RateLimitHandler.WAIT : rateLimitGovernor.getRateLimitHandler();
+        final RateLimitHandler searchHandler =
+            searchRateLimitGovernor == null ? RateLimitHandler.WAIT : searchRateLimitGovernor.getRateLimitHandler();
+        return new RateLimitHandler() {
+            @Override
+            public void onError(IOException e, HttpURLConnection connection) throws IOException {
+                if (RateLimitedHttpConnector.isSearchRequest(connection.getURL())) {
+                    searchHandler.onError(e, connection);
+                } else {
+                    handler.onError(e, connection);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,227 @@
+package com.gitinspector.github;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import org.joda.time.DateTime;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.HttpConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Field;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Makes the requests to the GitHub API that its client has no call for (e.g. listing pull requests sorted by update
+ * time, listing the reviews of a pull request, or searching code along with the fragments that matched), through the
+ * same HttpConnector as those of the client so that they are made conditional and count against the rate limit the
+ * same way.
+ */
+public class GitHubRestClient {
+    private static final Logger log = LoggerFactory.getLogger(GitHubRestClient.class);
+
+    private static final Pattern NEXT_PAGE_LINK = Pattern.compile("<([^>]+)>;\\s*rel=\"next\"");
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    // how many times in a row a page is asked for again after a rate limit response
+    private static final int MAX_RATE_LIMIT_RETRIES = 3;
+
+    // the longest we wait for a rate limit to lift (e.g. the search one, which lifts within a minute)
+    private static final long MAX_RATE_LIMIT_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    // how long we wait after a secondary rate limit that does not tell
+    private static final long DEFAULT_RATE_LIMIT_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private String authorization;
+
+    private HttpConnector connector;
+
+    /**
+     * Reads the elements of a list, one at a time.
+     */
+    public interface ElementReader {
+
+        /**
+         * @param element an element of the list
+         * @return true to read the next element, false to stop reading (and fetching) the list
+         * @throws IOException if the element could not be read
+         */
+        boolean read(JsonNode element) throws IOException;
+    }
+
+    /**
+     * @param gitHubToken the OAuth token to authenticate with; null to read public repositories only
+     * @param connector   opens the connections
+     */
+    public GitHubRestClient(String gitHubToken, HttpConnector connector) {
+        this.authorization = gitHubToken == null ? null : "token " + gitHubToken;
+        this.connector = connector;
+    }
+
+    /**
+     * @param gitHub a GitHub client
+     * @return a client that authenticates the way the GitHub client does, through the same connector
+     * @throws IllegalStateException if the credentials of the GitHub client cannot be told
+     */
+    public static GitHubRestClient forClient(GitHub gitHub) {
+        final GitHubRestClient restClient = new GitHubRestClient(null, gitHub.getConnector());
+        try {
+            // the client keeps its credentials to itself
+            final Field authorizationField = GitHub.class.getDeclaredField("encodedAuthorization");
+            authorizationField.setAccessible(true);
+            restClient.authorization = (String) authorizationField.get(gitHub);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not tell the credentials of the GitHub client; a GitHubRestClient "
+                                            + "must be provided (see GitHubClientFactory.createRestClient)", e);
+        }
+        return restClient;
+    }
+
+    /**
+     * Read the elements of a list, fetching its pages one after the other (following the Link header) until there
+     * are no more or the reader stops.
+     *
+     * @param url    the URL of the first page of the list
+     * @param reader reads the elements of the list, in the order of the list
+     * @throws IOException if GitHub does not answer with a page of the list
+     */
+    public void list(String url, ElementReader reader) throws IOException {
+        read(url, null, null, reader);
+    }
+
+    /**
+     * Read the items of search results, fetching their pages one after the other until there are no more or the
+     * reader stops. A page answered with a search rate limit (or a secondary one) is asked for again once the limit
+     * lifts, provided it does within a couple of minutes; the RateLimitGovernor of the search requests, if any, keeps
+     * that from happening in the first place.
+     *
+     * @param url       the URL of the first page of the results, query included
+     * @param mediaType the media type to ask for (e.g. that of the text matches); null for the default one
+     * @param reader    reads the items of the results, in the order of the results
+     * @throws IOException if GitHub does not answer with a page of the results
+     */
+    public void search(String url, String mediaType, ElementReader reader) throws IOException {
+        read(url, mediaType, "items", reader);
+    }
+
+    /**
+     * @param field the field of each page holding its elements; null if the page is the list of elements itself
+     */
+    private void read(String url, String mediaType, String field, ElementReader reader) throws IOException {
+        URL pageUrl = new URL(url);
+        int retries = 0;
+        while (pageUrl != null) {
+            final HttpURLConnection connection = connector.connect(pageUrl);
+            if (authorization != null) {
+                connection.setRequestProperty("Authorization", authorization);
+            }
+            if (mediaType != null) {
+                connection.setRequestProperty("Accept", mediaType);
+            }
+
+            final int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                final String responseMessage = connection.getResponseMessage();
+                final long waitMillis = getRateLimitWaitMillis(connection, responseCode);
+                connection.disconnect();
+                if (waitMillis < 0 || waitMillis > MAX_RATE_LIMIT_WAIT_MILLIS || retries == MAX_RATE_LIMIT_RETRIES) {
+                    throw new IOException("Could not fetch " + pageUrl + ": " + responseCode + " " + responseMessage);
+                }
+
+                log.info("Rate limited fetching {}, trying again in {} ms", pageUrl, waitMillis);
+                retries++;
+                sleep(waitMillis);
+                continue;
+            }
+            retries = 0;
+
+            final JsonNode page;
+            try (InputStream in = connection.getInputStream()) {
+                page = objectMapper.readTree(in);
+            }
+            for (JsonNode element : field == null ? page : page.path(field)) {
+                if (!reader.read(element)) {
+                    return;
+                }
+            }
+            pageUrl = getNextPage(connection.getHeaderField("Link"));
+        }
+    }
+
+    /**
+     * @param node a timestamp field of a response (e.g. updated_at); may be missing or null
+     * @return the timestamp or null if there is none
+     */
+    public static Date parseDate(JsonNode node) {
+        final String text = node.textValue();
+        return text == null ? null : new DateTime(text).toDate();
+    }
+
+    /**
+     * @return how long to wait for the rate limit the response shows to lift, or -1 if it shows none
+     */
+    private static long getRateLimitWaitMillis(HttpURLConnection connection, int responseCode) {
+        if (responseCode != HttpURLConnection.HTTP_FORBIDDEN && responseCode != HTTP_TOO_MANY_REQUESTS) {
+            return -1;
+        }
+
+        final String retryAfter = connection.getHeaderField("Retry-After");
+        if (retryAfter != null && retryAfter.matches("\\d+")) {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter));
+        }
+        final String reset = connection.getHeaderField("X-RateLimit-Reset");
+        if ("0".equals(connection.getHeaderField("X-RateLimit-Remaining")) && reset != null && reset.matches("\\d+")) {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(reset)) - System.currentTimeMillis());
+        }
+        if (responseCode == HTTP_TOO_MANY_REQUESTS || ConcurrencyLimitedHttpConnector
+            .isSecondaryRateLimit(responseCode, retryAfter, readErrorBody(connection))) {
+            return DEFAULT_RATE_LIMIT_WAIT_MILLIS;
+        }
+        return -1;
+    }
+
+    private static String readErrorBody(HttpURLConnection connection) {
+        final InputStream errorStream = connection.getErrorStream();
+        if (errorStream == null) {
+            return null;
+        }
+        try (InputStream in = errorStream) {
+            return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rate limit to lift");
+        }
+    }
+
+    /**
+     * @return the URL of the next page of results named by the provided Link header or null if there is none
+     */
+    private static URL getNextPage(String linkHeader) throws IOException {
+        if (linkHeader == null) {
+            return null;
+        }
+        final Matcher matcher = NEXT_PAGE_LINK.matcher(linkHeader);
+        return matcher.find() ? new URL(matcher.group(1)) : null;
+    }
+}
@@ -0,0 +1,46 @@
+package com.gitinspector.github;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.gitinspector.domain.PullRequestReview;
+import org.kohsuke.github.GHRepository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fetches the reviews of pull requests, a page of up to 100 reviews per request. The client of the GitHub API has no
+ * such call, hence the requests are made through a GitHubRestClient.
+ */
+public class PullRequestReviewFetcher {
+
+    private GitHubRestClient restClient;
+
+    /**
+     * @param restClient makes the requests
+     */
+    public PullRequestReviewFetcher(GitHubRestClient restClient) {
+        this.restClient = restClient;
+    }
+
+    /**
+     * @param repository        the repository of the pull request
+     * @param pullRequestNumber the number of the pull request
+     * @return the reviews of the pull request, in the order in which they were submitted
+     * @throws IOException if GitHub does not answer with the reviews
+     */
+    public List<PullRequestReview> getReviews(GHRepository repository, int pullRequestNumber) throws IOException {
+        final List<PullRequestReview> reviews = new ArrayList<>();
+        restClient.list(repository.getUrl() + "/pulls/" + pullRequestNumber + "/reviews?per_page=100",
+            new GitHubRestClient.ElementReader() {
+                @Override
+                public boolean read(JsonNode review) {
+                    reviews.add(new PullRequestReview(review.path("user").path("login").textValue(),
+                        review.path("state").textValue(), review.path("commit_id").textValue(),
+                        GitHubRestClient.parseDate(review.path("submitted_at"))));
+                    return true;
+                }
+            });
+        return reviews;
+    }
+}
@@ -0,0 +1,356 @@
+package com.gitinspector.github;
+
+import org.kohsuke.github.RateLimitHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the rate limit of the GitHub token between all of the scheduled tasks.
+ * The budget is taken from the X-RateLimit-* headers of the responses. Every request first acquires a unit of
+ * budget; when there is none left the request is queued until the budget resets rather than being sent and failed.
+ * Each running task is guaranteed an equal share of the budget (less the reserve): a task may use more than its
+ * share, but not the part of the budget that the other running tasks have yet to use of theirs. Idle tasks are
+ * guaranteed nothing, so a task running on its own may use the whole budget.
+ * A task registers once, when it is wired with the governor, and marks each of its runs (see startTask and
+ * finishTask).
+ * The task a request is made for is taken from the thread making it (see setCurrentTask).
+ */
+@ManagedResource(description = "Shares the GitHub API rate limit between the scheduled tasks")
+public class RateLimitGovernor {
+    private static final Logger log = LoggerFactory.getLogger(RateLimitGovernor.class);
+
+    private static final ThreadLocal<String> CURRENT_TASK = new ThreadLocal<>();
+
+    // how long to wait when a limit was hit without telling us when it resets
+    private static final long DEFAULT_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private int reserve;
+
+    // -1 until the first response tells us
+    private int limit = -1;
+
+    private int remaining = -1;
+
+    // 0 when unknown
+    private long resetAtMillis;
+
+    private Set<String> registeredTasks = new LinkedHashSet<>();
+
+    // by the number of runs in progress
+    private Map<String, Integer> runningTasks = new HashMap<>();
+
+    private Map<String, Integer> usedByTask = new HashMap<>();
+
+    private int waitingRequests;
+
+    private long totalWaitMillis;
+
+    /**
+     * @param reserve the number of requests to keep back from the tasks (e.g. for requests made over JMX)
+     */
+    public RateLimitGovernor(int reserve) {
+        this.reserve = reserve;
+    }
+
+    /**
+     * @param taskName the task the requests made by the current thread are made for; null if they are not made for
+     *                 a task
+     */
+    public static void setCurrentTask(String taskName) {
+        if (taskName == null) {
+            CURRENT_TASK.remove();
+        } else {
+            CURRENT_TASK.set(taskName);
+        }
+    }
+
+    public static String getCurrentTask() {
+        return CURRENT_TASK.get();
+    }
+
+    /**
+     * Register a task so that its usage is reported; it is guaranteed a share of the budget while it is running.
+     *
+     * @param taskName the name of the task
+     */
+    public synchronized void registerTask(String taskName) {
+        registeredTasks.add(taskName);
+    }
+
+    /**
+     * Guarantee a task a share of the budget until it finishes. Must be followed by a call to finishTask.
+     *
+     * @param taskName the name of the task that started running
+     */
+    public synchronized void startTask(String taskName) {
+        registeredTasks.add(taskName);
+        final Integer runs = runningTasks.get(taskName);
+        runningTasks.put(taskName, runs == null ? 1 : runs + 1);
+    }
+
+    /**
+     * Hand the share of a task that finished running back to the other tasks.
+     *
+     * @param taskName the name of the task that finished running
+     */
+    public synchronized void finishTask(String taskName) {
+        final Integer runs = runningTasks.get(taskName);
+        if (runs == null || runs <= 1) {
+            runningTasks.remove(taskName);
+        } else {
+            runningTasks.put(taskName, runs - 1);
+        }
+        // requests held back for the share of the task may be made now
+        notifyAll();
+    }
+
+    /**
+     * Acquire a unit of budget for a request made by the current thread, waiting for the budget to reset if the
+     * request may not be made now.
+     *
+     * @throws InterruptedIOException if the thread was interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedIOException {
+        final String taskName = CURRENT_TASK.get();
+        boolean waited = false;
+        while (!tryAcquire(taskName)) {
+            if (!waited) {
+                log.info("GitHub API budget exhausted for {}, waiting {}s for it to reset", taskName,
+                    TimeUnit.MILLISECONDS.toSeconds(getMillisUntilReset()));
+                waited = true;
+            }
+            awaitReset();
+        }
+    }
+
+    /**
+     * Acquire a unit of budget for a request made for the provided task, if it may be made now.
+     *
+     * @param taskName the task the request is made for; null if it is not made for a task
+     * @return true if the request may be made
+     */
+    public synchronized boolean tryAcquire(String taskName) {
+        rollOverIfReset();
+        if (remaining < 0) {
+            // nothing is known about the budget until the first response
+            return true;
+        }
+
+        int available = remaining - reserve;
+        if (taskName != null) {
+            available -= getOwedToOtherTasks(taskName);
+        }
+        if (available <= 0) {
+            return false;
+        }
+
+        remaining--;
+        if (taskName != null) {
+            usedByTask.put(taskName, getUsed(taskName) + 1);
+        }
+        return true;
+    }
+
+    /**
+     * Take the budget from the rate limit headers of a response.
+     *
+     * @param connection the connection the response was received on
+     */
+    public void update(HttpURLConnection connection) {
+        final Long limitHeader = parseLong(connection.getHeaderField("X-RateLimit-Limit"));
+        final Long remainingHeader = parseLong(connection.getHeaderField("X-RateLimit-Remaining"));
+        final Long resetHeader = parseLong(connection.getHeaderField("X-RateLimit-Reset"));
+        if (limitHeader != null && remainingHeader != null && resetHeader != null) {
+            update(limitHeader.intValue(), remainingHeader.intValue(), TimeUnit.SECONDS.toMillis(resetHeader));
+        }
+    }
+
+    /**
+     * @param limit         the number of requests allowed per window
+     * @param remaining     the number of requests left in the current window
+     * @param resetAtMillis when the current window ends
+     */
+    public synchronized void update(int limit, int remaining, long resetAtMillis) {
+        this.limit = limit;
+        if (resetAtMillis != this.resetAtMillis) {
+            // a new window
+            this.resetAtMillis = resetAtMillis;
+            this.remaining = remaining;
+            notifyAll();
+        } else {
+            // responses to concurrent requests arrive in any order, and we already counted the requests in flight
+            this.remaining = Math.min(this.remaining, remaining);
+        }
+    }
+
+    /**
+     * @return a RateLimitHandler for the GitHub client that waits for the budget to reset when a request failed
+     * because the limit was hit, after which the request is retried
+     */
+    public RateLimitHandler getRateLimitHandler() {
+        return new RateLimitHandler() {
+            @Override
+            public void onError(IOException e, HttpURLConnection connection) throws IOException {
+                update(connection);
+                synchronized (RateLimitGovernor.this) {
+                    remaining = 0;
+                    log.warn("GitHub API rate limit hit, waiting {}s for it to reset",
+                        TimeUnit.MILLISECONDS.toSeconds(getMillisUntilReset()));
+                    awaitReset();
+                }
+            }
+        };
+    }
+
+    @ManagedAttribute
+    public synchronized int getReserve() {
+        return reserve;
+    }
+
+    @ManagedAttribute
+    public synchronized void setReserve(int reserve) {
+        this.reserve = reserve;
+        notifyAll();
+    }
+
+    /**
+     * @return the number of requests per window, or -1 if unknown
+     */
+    @ManagedAttribute
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the number of requests left in the current window, or -1 if unknown
+     */
+    @ManagedAttribute
+    public synchronized int getRemainingBudget() {
+        rollOverIfReset();
+        return remaining;
+    }
+
+    @ManagedAttribute
+    public synchronized long getSecondsUntilReset() {
+        return TimeUnit.MILLISECONDS.toSeconds(getMillisUntilReset());
+    }
+
+    /**
+     * @return the number of requests waiting for the budget to reset
+     */
+    @ManagedAttribute
+    public synchronized int getWaitingRequests() {
+        return waitingRequests;
+    }
+
+    /**
+     * @return how long requests have waited for the budget in total
+     */
+    @ManagedAttribute
+    public synchronized long getTotalWaitSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(totalWaitMillis);
+    }
+
+    /**
+     * @return the number of requests each task made in the current window, along with its share (0 while the task is
+     * not running)
+     */
+    @ManagedAttribute
+    public synchronized List<String> getTaskUsage() {
+        final List<String> taskUsage = new ArrayList<>();
+        for (String taskName : registeredTasks) {
+            taskUsage.add(taskName + "=" + getUsed(taskName) + "/"
+                + (runningTasks.containsKey(taskName) ? getShare() : 0));
+        }
+        return taskUsage;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private void awaitReset() throws InterruptedIOException {
+        final long waitMillis = Math.max(1, getMillisUntilReset());
+        final long waitStart = currentTimeMillis();
+        waitingRequests++;
+        try {
+            wait(waitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the GitHub API budget to reset");
+        } finally {
+            waitingRequests--;
+            totalWaitMillis += currentTimeMillis() - waitStart;
+        }
+        rollOverIfReset();
+        if (resetAtMillis == 0 && remaining == 0) {
+            // we were never told when the budget resets, so let the next request find out
+            remaining = -1;
+        }
+    }
+
+    private long getMillisUntilReset() {
+        if (resetAtMillis == 0) {
+            return remaining == 0 ? DEFAULT_WAIT_MILLIS : 0;
+        }
+        return Math.max(0, resetAtMillis - currentTimeMillis());
+    }
+
+    /**
+     * Start a new window once the current one ended, until a response tells us what it looks like.
+     */
+    private void rollOverIfReset() {
+        if (resetAtMillis != 0 && currentTimeMillis() >= resetAtMillis) {
+            resetAtMillis = 0;
+            remaining = limit;
+            usedByTask.clear();
+        }
+    }
+
+    private int getOwedToOtherTasks(String taskName) {
+        final int share = getShare();
+        int owed = 0;
+        for (String otherTaskName : runningTasks.keySet()) {
+            if (!otherTaskName.equals(taskName)) {
+                owed += Math.max(0, share - getUsed(otherTaskName));
+            }
+        }
+        return owed;
+    }
+
+    private int getShare() {
+        if (limit < 0 || runningTasks.isEmpty()) {
+            return 0;
+        }
+        return Math.max(0, limit - reserve) / runningTasks.size();
+    }
+
+    private int getUsed(String taskName) {
+        final Integer used = usedByTask.get(taskName);
+        return used == null ? 0 : used;
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
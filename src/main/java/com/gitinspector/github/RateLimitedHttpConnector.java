@@ -0,0 +1,95 @@
+package com.gitinspector.github;
+
+import org.kohsuke.github.HttpConnector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * An HttpConnector that makes every request acquire a unit of budget from a RateLimitGovernor before it is sent,
+ * and hands the rate limit headers of every response back to the governor.
+ * GitHub limits the search requests separately (and far more tightly) from the others, so they are governed by a
+ * governor of their own.
+ */
+public class RateLimitedHttpConnector implements HttpConnector {
+
+    private HttpConnector delegate;
+
+    private RateLimitGovernor governor;
+
+    private RateLimitGovernor searchGovernor;
+
+    public RateLimitedHttpConnector(HttpConnector delegate, RateLimitGovernor governor) {
+        this(delegate, governor, null);
+    }
+
+    /**
+     * @param delegate       sends the requests
+     * @param governor       governs the requests other than the search requests; null to send them regardless of the
+     *                       budget
+     * @param searchGovernor governs the search requests; null to send them regardless of the search budget
+     */
+    public RateLimitedHttpConnector(HttpConnector delegate, RateLimitGovernor governor,
+                                    RateLimitGovernor searchGovernor) {
+        this.delegate = delegate;
+        this.governor = governor;
+        this.searchGovernor = searchGovernor;
+    }
+
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        final RateLimitGovernor urlGovernor = isSearchRequest(url) ? searchGovernor : governor;
+        if (urlGovernor == null) {
+            return delegate.connect(url);
+        }
+        urlGovernor.acquire();
+        return new RateLimitedHttpURLConnection(delegate.connect(url), urlGovernor);
+    }
+
+    /**
+     * @param url the URL of a request
+     * @return true if the request counts against the search rate limit rather than the core one
+     */
+    public static boolean isSearchRequest(URL url) {
+        return url.getPath().contains("/search/");
+    }
+
+    private static class RateLimitedHttpURLConnection extends DelegatingHttpURLConnection {
+
+        private RateLimitGovernor governor;
+
+        private boolean responseObserved;
+
+        public RateLimitedHttpURLConnection(HttpURLConnection delegate, RateLimitGovernor governor) {
+            super(delegate);
+            this.governor = governor;
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            final int responseCode = super.getResponseCode();
+            observeResponse();
+            return responseCode;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            try {
+                return super.getInputStream();
+            } finally {
+                // error responses carry the headers too
+                observeResponse();
+            }
+        }
+
+        private void observeResponse() {
+            if (responseObserved) {
+                return;
+            }
+            responseObserved = true;
+            governor.update(delegate);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.gitinspector.github;
+
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Downloads the archives GitHub builds of the content of a repository at a given ref, as streams, so that they can be
+ * read while they are being downloaded. The client of the GitHub API has no such call, and its own HttpConnector
+ * may hold whole responses in memory (e.g. to cache them), hence a connector of its own.
+ */
+public class RepositoryArchiveDownloader {
+
+    private String gitHubToken;
+
+    private HttpConnector connector;
+
+    /**
+     * @param gitHubToken the OAuth token to authenticate with; null to download the archives of public repositories
+     *                    only
+     * @param connector   opens the connections, without holding the responses in memory
+     */
+    public RepositoryArchiveDownloader(String gitHubToken, HttpConnector connector) {
+        this.gitHubToken = gitHubToken;
+        this.connector = connector;
+    }
+
+    /**
+     * @param repository the repository whose content to download
+     * @param ref        the branch, tag or SHA1 of the commit whose content to download
+     * @return the zip archive of the content, to be closed by the caller
+     * @throws IOException if GitHub does not answer with the archive
+     */
+    public InputStream openZipball(GHRepository repository, String ref) throws IOException {
+        final URL url = new URL(repository.getUrl() + "/zipball/" + ref);
+        final HttpURLConnection connection = connector.connect(url);
+        if (gitHubToken != null) {
+            connection.setRequestProperty("Authorization", "token " + gitHubToken);
+        }
+        // GitHub redirects to the host that serves the archives
+        connection.setInstanceFollowRedirects(true);
+
+        final int responseCode = connection.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            final String responseMessage = connection.getResponseMessage();
+            connection.disconnect();
+            throw new IOException("Could not download " + url + ": " + responseCode + " " + responseMessage);
+        }
+        return connection.getInputStream();
+    }
+}
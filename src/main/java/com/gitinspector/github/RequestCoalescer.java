@@ -0,0 +1,200 @@
+package com.gitinspector.github;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets concurrent identical requests share a single call (single-flight): the first request for a key is sent,
+ * and every identical request made while it is in flight waits for its response instead of being sent as well.
+ * Nothing is kept once the response arrives; repeated requests are the business of the ConditionalRequestCache.
+ */
+@ManagedResource(description = "Lets concurrent identical GitHub requests share a single call")
+public class RequestCoalescer {
+
+    private final Map<String, InFlightRequest> inFlight = new HashMap<>();
+
+    private AtomicLong sentRequests = new AtomicLong();
+
+    private AtomicLong coalescedRequests = new AtomicLong();
+
+    /**
+     * Send a request, unless an identical request is already in flight in which case its response is shared.
+     *
+     * @param key    the identity of the request
+     * @param sender sends the request if it is not in flight yet
+     * @return the response to the request
+     * @throws IOException if the request failed, or the identical request in flight failed
+     */
+    public Response send(String key, Sender sender) throws IOException {
+        final InFlightRequest request;
+        final boolean shared;
+        synchronized (inFlight) {
+            final InFlightRequest sharedRequest = inFlight.get(key);
+            if (sharedRequest != null) {
+                coalescedRequests.incrementAndGet();
+                request = sharedRequest;
+            } else {
+                sentRequests.incrementAndGet();
+                request = new InFlightRequest();
+                inFlight.put(key, request);
+            }
+            shared = sharedRequest != null;
+        }
+        if (shared) {
+            return request.await();
+        }
+
+        try {
+            final Response response = sender.send();
+            request.complete(response, null);
+            return response;
+        } catch (IOException | RuntimeException | Error e) {
+            request.complete(null, e);
+            throw e;
+        } finally {
+            synchronized (inFlight) {
+                inFlight.remove(key);
+            }
+        }
+    }
+
+    /**
+     * @return the number of requests that were sent
+     */
+    @ManagedAttribute
+    public long getSentRequests() {
+        return sentRequests.get();
+    }
+
+    /**
+     * @return the number of requests that shared the response of an identical request in flight instead of being
+     * sent
+     */
+    @ManagedAttribute
+    public long getCoalescedRequests() {
+        return coalescedRequests.get();
+    }
+
+    @ManagedAttribute
+    public int getInFlightRequests() {
+        synchronized (inFlight) {
+            return inFlight.size();
+        }
+    }
+
+    /**
+     * Sends a request on behalf of every identical request made while it is in flight.
+     */
+    public interface Sender {
+        Response send() throws IOException;
+    }
+
+    /**
+     * A response read in full so that it can be handed to every request that shares it.
+     */
+    public static class Response {
+        private final int responseCode;
+        private final String responseMessage;
+        private final List<String> headerKeys;
+        private final List<String> headerValues;
+        private final byte[] body;
+
+        /**
+         * @param responseCode    the status code
+         * @param responseMessage the status message
+         * @param headerKeys      the header names in the order of the response, null for the status line
+         * @param headerValues    the header values in the order of the response
+         * @param body            the body of the response (of the error stream for an error), null if there is none
+         */
+        public Response(int responseCode, String responseMessage, List<String> headerKeys, List<String> headerValues,
+                        byte[] body) {
+            this.responseCode = responseCode;
+            this.responseMessage = responseMessage;
+            this.headerKeys = headerKeys;
+            this.headerValues = headerValues;
+            this.body = body;
+        }
+
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        public String getResponseMessage() {
+            return responseMessage;
+        }
+
+        public String getHeaderField(String name) {
+            // the last occurrence wins, like it does for HttpURLConnection
+            for (int i = headerKeys.size() - 1; i >= 0; i--) {
+                if (name != null && name.equalsIgnoreCase(headerKeys.get(i))) {
+                    return headerValues.get(i);
+                }
+            }
+            return null;
+        }
+
+        public String getHeaderField(int n) {
+            return n >= 0 && n < headerValues.size() ? headerValues.get(n) : null;
+        }
+
+        public String getHeaderFieldKey(int n) {
+            return n >= 0 && n < headerKeys.size() ? headerKeys.get(n) : null;
+        }
+
+        public Map<String, List<String>> getHeaderFields() {
+            final Map<String, List<String>> headerFields = new HashMap<>();
+            for (int i = 0; i < headerKeys.size(); i++) {
+                List<String> values = headerFields.get(headerKeys.get(i));
+                if (values == null) {
+                    values = new ArrayList<>();
+                    headerFields.put(headerKeys.get(i), values);
+                }
+                values.add(headerValues.get(i));
+            }
+            return Collections.unmodifiableMap(headerFields);
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    private static class InFlightRequest {
+        private boolean completed;
+
+        private Response response;
+
+        private Throwable failure;
+
+        synchronized void complete(Response response, Throwable failure) {
+            this.response = response;
+            this.failure = failure;
+            completed = true;
+            notifyAll();
+        }
+
+        synchronized Response await() throws IOException {
+            while (!completed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for an identical GitHub request");
+                }
+            }
+            if (failure != null) {
+                throw new IOException("The identical request in flight failed: " + failure.getMessage(), failure);
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.gitinspector.github;
+
+import com.gitinspector.github.RequestCoalescer.Response;
+import com.google.common.io.ByteStreams;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An HttpConnector that lets concurrent identical GET requests share a single call through a RequestCoalescer.
+ * Two requests are identical when they are for the same URL with the same request headers (so the same token,
+ * media type and ETag).
+ * The connection of the delegate is only opened for the request that is actually sent, so the requests that share
+ * its response neither wait for a slot nor use up any budget.
+ */
+public class SingleFlightHttpConnector implements HttpConnector {
+
+    private HttpConnector delegate;
+
+    private RequestCoalescer coalescer;
+
+    public SingleFlightHttpConnector(HttpConnector delegate, RequestCoalescer coalescer) {
+        this.delegate = delegate;
+        this.coalescer = coalescer;
+    }
+
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        return new SingleFlightHttpURLConnection(url);
+    }
+
+    /**
+     * Collects the request until it is either sent or found to be in flight already.
+     * GET responses are served from the shared response; any other request is handed to the connection of the
+     * delegate as soon as it is connected.
+     */
+    private class SingleFlightHttpURLConnection extends HttpURLConnection {
+
+        private HttpURLConnection connection;
+
+        private Response response;
+
+        private IOException failure;
+
+        public SingleFlightHttpURLConnection(URL url) {
+            super(url);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            // a GET request is sent (or not) once its response is asked for
+            if (!isGet()) {
+                open().connect();
+            }
+        }
+
+        @Override
+        public void disconnect() {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return connection != null && connection.usingProxy();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return open().getOutputStream();
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            return isGet() ? resolveResponse().getResponseCode() : open().getResponseCode();
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException {
+            return isGet() ? resolveResponse().getResponseMessage() : open().getResponseMessage();
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            if (!isGet()) {
+                return connection == null ? null : connection.getHeaderField(name);
+            }
+            final Response sharedResponse = resolveResponseQuietly();
+            return sharedResponse == null ? null : sharedResponse.getHeaderField(name);
+        }
+
+        @Override
+        public String getHeaderField(int n) {
+            if (!isGet()) {
+                return connection == null ? null : connection.getHeaderField(n);
+            }
+            final Response sharedResponse = resolveResponseQuietly();
+            return sharedResponse == null ? null : sharedResponse.getHeaderField(n);
+        }
+
+        @Override
+        public String getHeaderFieldKey(int n) {
+            if (!isGet()) {
+                return connection == null ? null : connection.getHeaderFieldKey(n);
+            }
+            final Response sharedResponse = resolveResponseQuietly();
+            return sharedResponse == null ? null : sharedResponse.getHeaderFieldKey(n);
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            if (!isGet()) {
+                return connection == null ? super.getHeaderFields() : connection.getHeaderFields();
+            }
+            final Response sharedResponse = resolveResponseQuietly();
+            return sharedResponse == null ? super.getHeaderFields() : sharedResponse.getHeaderFields();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (!isGet()) {
+                return open().getInputStream();
+            }
+
+            final Response sharedResponse = resolveResponse();
+            final int responseCode = sharedResponse.getResponseCode();
+            // fail the way HttpURLConnection does
+            if (responseCode == HTTP_NOT_FOUND || responseCode == HTTP_GONE) {
+                throw new FileNotFoundException(getURL().toString());
+            }
+            if (responseCode >= HTTP_BAD_REQUEST) {
+                throw new IOException("Server returned HTTP response code: " + responseCode + " for URL: " + getURL());
+            }
+            return new ByteArrayInputStream(sharedResponse.getBody() == null ? new byte[0] : sharedResponse.getBody());
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            if (!isGet()) {
+                return connection == null ? null : connection.getErrorStream();
+            }
+            final Response sharedResponse = resolveResponseQuietly();
+            if (sharedResponse == null || sharedResponse.getResponseCode() < HTTP_BAD_REQUEST
+                || sharedResponse.getBody() == null) {
+                return null;
+            }
+            return new ByteArrayInputStream(sharedResponse.getBody());
+        }
+
+        private Response resolveResponse() throws IOException {
+            if (response == null && failure == null) {
+                try {
+                    response = coalescer.send(getRequestKey(), new RequestCoalescer.Sender() {
+                        @Override
+                        public Response send() throws IOException {
+                            return readResponse(open());
+                        }
+                    });
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return response;
+        }
+
+        private Response resolveResponseQuietly() {
+            try {
+                return resolveResponse();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private String getRequestKey() {
+            return getURL() + " " + new TreeMap<>(getRequestProperties());
+        }
+
+        /**
+         * Open the connection of the delegate and hand it the request collected so far.
+         */
+        private HttpURLConnection open() throws IOException {
+            if (connection != null) {
+                return connection;
+            }
+
+            final HttpURLConnection opened = delegate.connect(getURL());
+            try {
+                opened.setRequestMethod(method);
+            } catch (ProtocolException e) {
+                // e.g. PATCH, which callers set reflectively on this connection
+                DelegatingHttpURLConnection.setMethodField(opened, method, e);
+            }
+            for (Map.Entry<String, List<String>> property : getRequestProperties().entrySet()) {
+                for (String value : property.getValue()) {
+                    opened.addRequestProperty(property.getKey(), value);
+                }
+            }
+            opened.setDoOutput(doOutput);
+            opened.setDoInput(doInput);
+            opened.setUseCaches(useCaches);
+            opened.setConnectTimeout(getConnectTimeout());
+            opened.setReadTimeout(getReadTimeout());
+            opened.setInstanceFollowRedirects(instanceFollowRedirects);
+
+            connection = opened;
+            // the request can no longer be changed
+            connected = true;
+            return connection;
+        }
+
+        private boolean isGet() {
+            return "GET".equals(method);
+        }
+    }
+
+    private static Response readResponse(HttpURLConnection connection) throws IOException {
+        final int responseCode = connection.getResponseCode();
+
+        final List<String> headerKeys = new ArrayList<>();
+        final List<String> headerValues = new ArrayList<>();
+        for (int i = 0; connection.getHeaderField(i) != null; i++) {
+            headerKeys.add(connection.getHeaderFieldKey(i));
+            headerValues.add(connection.getHeaderField(i));
+        }
+
+        byte[] body = null;
+        final InputStream in = responseCode >= HttpURLConnection.HTTP_BAD_REQUEST
+            ? connection.getErrorStream() : connection.getInputStream();
+        if (in != null) {
+            try (InputStream bodyStream = in) {
+                body = ByteStreams.toByteArray(bodyStream);
+            }
+        }
+        return new Response(responseCode, connection.getResponseMessage(), headerKeys, headerValues, body);
+    }
+}
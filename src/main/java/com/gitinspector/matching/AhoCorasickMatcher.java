@@ -0,0 +1,226 @@
+package com.gitinspector.matching;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Finds which of a set of literal terms occur in a text in a single pass over the text, however many terms there are
+ * (the Aho-Corasick algorithm). The terms are compiled once into a trie whose nodes are linked to the longest suffix
+ * of theirs that is also in the trie, so that the scan never has to go back in the text.
+ */
+public class AhoCorasickMatcher {
+
+    private static final int ROOT = 0;
+
+    private boolean caseInsensitive;
+
+    private boolean wholeWords;
+
+    private int[] termLengths;
+
+    // the trie; the edges of each node are sorted by character once the trie is complete
+    private char[][] edgeChars;
+    private int[][] edgeTargets;
+    private int[] edgeCounts;
+    private int nodeCount;
+
+    // the node of the longest proper suffix of each node that is in the trie
+    private int[] failureLinks;
+
+    // the terms ending at each node, and the next node along the failure links at which terms end
+    private int[][] nodeTerms;
+    private int[] outputLinks;
+
+    /**
+     * @param terms           the terms to look for, none of them empty; a term is reported by its index in this list
+     * @param caseInsensitive if true, terms match regardless of case
+     * @param wholeWords      if true, terms only match where they are not part of a longer word
+     */
+    public AhoCorasickMatcher(List<String> terms, boolean caseInsensitive, boolean wholeWords) {
+        this.caseInsensitive = caseInsensitive;
+        this.wholeWords = wholeWords;
+        this.termLengths = new int[terms.size()];
+
+        int maxNodes = 1;
+        for (String term : terms) {
+            if (term.isEmpty()) {
+                throw new IllegalArgumentException("Cannot look for an empty term");
+            }
+            maxNodes += term.length();
+        }
+        edgeChars = new char[maxNodes][];
+        edgeTargets = new int[maxNodes][];
+        edgeCounts = new int[maxNodes];
+        nodeTerms = new int[maxNodes][];
+        nodeCount = 1;
+
+        for (int i = 0; i < terms.size(); i++) {
+            addTerm(terms.get(i), i);
+        }
+        sortEdges();
+        linkSuffixes();
+    }
+
+    /**
+     * @param text the text to look for the terms in
+     * @return the indexes of the terms that occur in the text
+     */
+    public BitSet match(CharSequence text) {
+        final BitSet found = new BitSet(termLengths.length);
+        match(text, found);
+        return found;
+    }
+
+    /**
+     * @param text  the text to look for the terms in
+     * @param found the set to which the index of each term that occurs in the text is added
+     */
+    public void match(CharSequence text, BitSet found) {
+        int node = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = fold(text.charAt(i));
+            int next = getTarget(node, c);
+            while (next < 0 && node != ROOT) {
+                node = failureLinks[node];
+                next = getTarget(node, c);
+            }
+            node = next < 0 ? ROOT : next;
+
+            for (int output = nodeTerms[node] != null ? node : outputLinks[node]; output > ROOT;
+                 output = outputLinks[output]) {
+                for (int term : nodeTerms[output]) {
+                    if (!wholeWords || isWholeWord(text, i + 1 - termLengths[term], i + 1)) {
+                        found.set(term);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addTerm(String term, int termIndex) {
+        termLengths[termIndex] = term.length();
+        int node = ROOT;
+        for (int i = 0; i < term.length(); i++) {
+            final char c = fold(term.charAt(i));
+            int next = findTarget(node, c);
+            if (next < 0) {
+                next = nodeCount++;
+                addEdge(node, c, next);
+            }
+            node = next;
+        }
+        nodeTerms[node] = nodeTerms[node] == null ? new int[] {termIndex} : append(nodeTerms[node], termIndex);
+    }
+
+    private void addEdge(int node, char c, int target) {
+        if (edgeChars[node] == null) {
+            edgeChars[node] = new char[2];
+            edgeTargets[node] = new int[2];
+        } else if (edgeCounts[node] == edgeChars[node].length) {
+            edgeChars[node] = Arrays.copyOf(edgeChars[node], edgeCounts[node] * 2);
+            edgeTargets[node] = Arrays.copyOf(edgeTargets[node], edgeCounts[node] * 2);
+        }
+        edgeChars[node][edgeCounts[node]] = c;
+        edgeTargets[node][edgeCounts[node]] = target;
+        edgeCounts[node]++;
+    }
+
+    /**
+     * Find an edge while the trie is being built, before the edges are sorted.
+     */
+    private int findTarget(int node, char c) {
+        for (int i = 0; i < edgeCounts[node]; i++) {
+            if (edgeChars[node][i] == c) {
+                return edgeTargets[node][i];
+            }
+        }
+        return -1;
+    }
+
+    private void sortEdges() {
+        for (int node = 0; node < nodeCount; node++) {
+            final char[] chars = edgeChars[node];
+            final int[] targets = edgeTargets[node];
+            // nodes have few edges, so an insertion sort is as good as any
+            for (int i = 1; i < edgeCounts[node]; i++) {
+                final char c = chars[i];
+                final int target = targets[i];
+                int j = i - 1;
+                while (j >= 0 && chars[j] > c) {
+                    chars[j + 1] = chars[j];
+                    targets[j + 1] = targets[j];
+                    j--;
+                }
+                chars[j + 1] = c;
+                targets[j + 1] = target;
+            }
+        }
+    }
+
+    /**
+     * Link each node to its longest proper suffix in the trie, breadth first so that the links of the shorter nodes
+     * are known by the time they are needed.
+     */
+    private void linkSuffixes() {
+        failureLinks = new int[nodeCount];
+        outputLinks = new int[nodeCount];
+        final Deque<Integer> nodesToLink = new ArrayDeque<>();
+        for (int i = 0; i < edgeCounts[ROOT]; i++) {
+            nodesToLink.add(edgeTargets[ROOT][i]);
+        }
+
+        while (!nodesToLink.isEmpty()) {
+            final int node = nodesToLink.poll();
+            for (int i = 0; i < edgeCounts[node]; i++) {
+                final char c = edgeChars[node][i];
+                final int child = edgeTargets[node][i];
+                int suffix = failureLinks[node];
+                int suffixChild = getTarget(suffix, c);
+                while (suffixChild < 0 && suffix != ROOT) {
+                    suffix = failureLinks[suffix];
+                    suffixChild = getTarget(suffix, c);
+                }
+                failureLinks[child] = suffixChild < 0 ? ROOT : suffixChild;
+                final int failure = failureLinks[child];
+                outputLinks[child] = nodeTerms[failure] != null ? failure : outputLinks[failure];
+                nodesToLink.add(child);
+            }
+        }
+    }
+
+    private int getTarget(int node, char c) {
+        if (edgeCounts[node] == 0) {
+            return -1;
+        }
+        final int i = Arrays.binarySearch(edgeChars[node], 0, edgeCounts[node], c);
+        return i < 0 ? -1 : edgeTargets[node][i];
+    }
+
+    private char fold(char c) {
+        return caseInsensitive ? Character.toLowerCase(Character.toUpperCase(c)) : c;
+    }
+
+    /**
+     * @return false if the range starts with a word character preceded by another one, or ends with a word character
+     * followed by another one, i.e. if the range is part of a longer word
+     */
+    static boolean isWholeWord(CharSequence text, int start, int end) {
+        if (start > 0 && isWordChar(text.charAt(start)) && isWordChar(text.charAt(start - 1))) {
+            return false;
+        }
+        return !(end < text.length() && isWordChar(text.charAt(end - 1)) && isWordChar(text.charAt(end)));
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static int[] append(int[] values, int value) {
+        final int[] appended = Arrays.copyOf(values, values.length + 1);
+        appended[values.length] = value;
+        return appended;
+    }
+}
@@ -0,0 +1,132 @@
+package com.gitinspector.matching;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A set of named rules about commit messages, each a regular expression a message either holds or not (as with
+ * Pattern.find()). The rules are given declaratively, by name, and compiled together once into a TermMatcher, so that
+ * evaluating a message against all of them takes about as long as evaluating it against one, however many rules an
+ * organization adds.
+ * A rule ignores case if its expression starts with (?i).
+ */
+public class CommitMessageRules {
+
+    /**
+     * The message mentions a JIRA ticket (e.g. OM-1234).
+     */
+    public static final String JIRA_KEY = "jiraKey";
+
+    /**
+     * The message states who reviewed the commit.
+     */
+    public static final String REVIEWED_BY = "reviewedBy";
+
+    /**
+     * The commit was made by a release plugin (e.g. when preparing the next development iteration).
+     */
+    public static final String RELEASE_PLUGIN = "releasePlugin";
+
+    private static final Map<String, String> DEFAULT_RULES = new LinkedHashMap<>();
+
+    static {
+        DEFAULT_RULES.put(JIRA_KEY, "[A-Z]+\\-[0-9]+");
+        DEFAULT_RULES.put(REVIEWED_BY, "(?i)reviewed by");
+        DEFAULT_RULES.put(RELEASE_PLUGIN, "^\\[(?:maven|grunt)-release-plugin\\]");
+    }
+
+    private Map<String, String> rules;
+
+    private List<String> ruleNames;
+
+    private TermMatcher matcher;
+
+    /**
+     * Create the default rules: JIRA_KEY, REVIEWED_BY and RELEASE_PLUGIN.
+     */
+    public CommitMessageRules() {
+        this(DEFAULT_RULES);
+    }
+
+    /**
+     * @param rules the regular expression of each rule, by name; the index of a rule in the outcomes is its position in
+     *              this map
+     * @throws PatternSyntaxException if one of the expressions is not a valid regular expression
+     */
+    public CommitMessageRules(Map<String, String> rules) {
+        this.rules = Collections.unmodifiableMap(new LinkedHashMap<>(rules));
+        this.ruleNames = Collections.unmodifiableList(new ArrayList<>(rules.keySet()));
+        this.matcher = new TermMatcher(new ArrayList<>(rules.values()));
+    }
+
+    /**
+     * @return the default rules along with more of an organization's own, which replace the default ones of the same
+     * name
+     */
+    public static CommitMessageRules withDefaultRules(Map<String, String> moreRules) {
+        final Map<String, String> rules = new LinkedHashMap<>(DEFAULT_RULES);
+        rules.putAll(moreRules);
+        return new CommitMessageRules(rules);
+    }
+
+    /**
+     * @param message a commit message
+     * @return the indexes of the rules the message holds
+     */
+    public BitSet evaluate(String message) {
+        return matcher.match(message);
+    }
+
+    /**
+     * @param message a commit message
+     * @param mask    the indexes of the rules to check, as returned by getMask()
+     * @return true if the message holds at least one of the rules
+     */
+    public boolean holdsAny(String message, BitSet mask) {
+        return evaluate(message).intersects(mask);
+    }
+
+    /**
+     * @param ruleNames the names of some of the rules
+     * @return the indexes of the rules
+     * @throws IllegalArgumentException if there is no rule of one of the names
+     */
+    public BitSet getMask(Collection<String> ruleNames) {
+        final BitSet mask = new BitSet(this.ruleNames.size());
+        for (String ruleName : ruleNames) {
+            final int index = this.ruleNames.indexOf(ruleName);
+            if (index < 0) {
+                throw new IllegalArgumentException("There is no commit message rule named " + ruleName);
+            }
+            mask.set(index);
+        }
+        return mask;
+    }
+
+    /**
+     * @return the names of the rules, in the order of their indexes
+     */
+    public List<String> getRuleNames() {
+        return ruleNames;
+    }
+
+    /**
+     * @return the regular expression of each rule, by name
+     */
+    public Map<String, String> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return identifies the rules, so that verdicts reached with other rules can be told apart
+     */
+    public String getVersion() {
+        return String.valueOf(rules.hashCode());
+    }
+}
@@ -0,0 +1,210 @@
+package com.gitinspector.matching;
+
+import com.google.common.primitives.Ints;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Finds which of a list of terms occur in a text. Each term is a regular expression, as with Pattern.find(); the
+ * terms are compiled once, when the matcher is created, rather than every time a text is matched.
+ * The terms that are plain literals (typically all of them) are matched with an AhoCorasickMatcher, in a single pass
+ * over the text whatever their number. The other terms are compiled into a single alternation with a capturing group
+ * per term, which is also matched in a single pass: the group that took part in each match tells which term was
+ * found, and the pass ends as soon as all of them were. Only the terms with back references, whose group numbers
+ * would change once combined, are matched with a pass of their own.
+ */
+public class TermMatcher {
+
+    private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    private static final String WORD_CHARACTER = "[\\p{L}\\p{Nd}_]";
+
+    // the edge of a match is not both a word character and next to another one (see AhoCorasickMatcher.isWholeWord)
+    private static final String WORD_EDGE = "(?:(?<!" + WORD_CHARACTER + ")|(?!" + WORD_CHARACTER + "))";
+
+    // a numbered or named back reference, not itself escaped
+    private static final Pattern BACK_REFERENCE = Pattern.compile("(?<!\\\\)(?:\\\\\\\\)*\\\\(?:[1-9]|k<)");
+
+    private List<String> terms;
+
+    private AhoCorasickMatcher literalMatcher;
+
+    private int[] literalTermIndexes;
+
+    private Pattern combinedPattern;
+
+    private List<Pattern> patterns = new ArrayList<>();
+
+    private int[] patternTermIndexes;
+
+    // the group of each pattern in the combined pattern, or -1 for those matched with a pass of their own
+    private int[] combinedGroups;
+
+    private int combinedCount;
+
+    /**
+     * @param terms the terms to look for, matched with their case and anywhere in the text, as with Pattern.find()
+     * @throws PatternSyntaxException if one of the terms is not a valid regular expression
+     */
+    public TermMatcher(List<String> terms) {
+        this(terms, false, false);
+    }
+
+    /**
+     * @param terms           the terms to look for, none of them empty; a term is reported by its index in this list
+     * @param caseInsensitive if true, terms match regardless of case
+     * @param wholeWords      if true, terms only match where they are not part of a longer word
+     * @throws PatternSyntaxException if one of the terms is not a valid regular expression
+     */
+    public TermMatcher(List<String> terms, boolean caseInsensitive, boolean wholeWords) {
+        this.terms = Collections.unmodifiableList(new ArrayList<>(terms));
+
+        final List<String> literals = new ArrayList<>();
+        final List<Integer> literalIndexes = new ArrayList<>();
+        final List<Integer> patternIndexes = new ArrayList<>();
+        final List<Integer> groups = new ArrayList<>();
+        final StringBuilder combinedRegex = new StringBuilder();
+        int groupCount = 0;
+        final int flags = caseInsensitive ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+        for (int i = 0; i < terms.size(); i++) {
+            final String term = terms.get(i);
+            if (isLiteral(term)) {
+                literals.add(term);
+                literalIndexes.add(i);
+            } else {
+                final String regex = wholeWords ? WORD_EDGE + "(?:" + term + ")" + WORD_EDGE : term;
+                final Pattern pattern = Pattern.compile(regex, flags);
+                patterns.add(pattern);
+                patternIndexes.add(i);
+                if (BACK_REFERENCE.matcher(term).find()) {
+                    groups.add(-1);
+                } else {
+                    groups.add(groupCount + 1);
+                    groupCount += 1 + pattern.matcher("").groupCount();
+                    combinedRegex.append(combinedRegex.length() == 0 ? "" : "|").append('(').append(regex).append(')');
+                }
+            }
+        }
+
+        literalMatcher = new AhoCorasickMatcher(literals, caseInsensitive, wholeWords);
+        literalTermIndexes = Ints.toArray(literalIndexes);
+        patternTermIndexes = Ints.toArray(patternIndexes);
+        combinedGroups = Ints.toArray(groups);
+        if (groupCount > 0) {
+            try {
+                combinedPattern = Pattern.compile(combinedRegex.toString(), flags);
+            } catch (PatternSyntaxException e) {
+                // e.g. the same group name in two of the terms; each pattern is matched with a pass of its own instead
+                combinedPattern = null;
+                Arrays.fill(combinedGroups, -1);
+            }
+        }
+        for (int group : combinedGroups) {
+            combinedCount += group < 0 ? 0 : 1;
+        }
+    }
+
+    /**
+     * @param text the text to look for the terms in
+     * @return the indexes of the terms that occur in the text
+     */
+    public BitSet match(CharSequence text) {
+        final BitSet found = new BitSet(terms.size());
+
+        if (literalTermIndexes.length > 0) {
+            final BitSet foundLiterals = literalMatcher.match(text);
+            for (int i = foundLiterals.nextSetBit(0); i >= 0; i = foundLiterals.nextSetBit(i + 1)) {
+                found.set(literalTermIndexes[i]);
+            }
+        }
+
+        if (combinedPattern != null) {
+            matchCombined(text, found);
+        }
+        for (int i = 0; i < patterns.size(); i++) {
+            if (combinedGroups[i] < 0 && patterns.get(i).matcher(text).find()) {
+                found.set(patternTermIndexes[i]);
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Match the combined pattern in a single pass over the text, until each of the combined terms was found.
+     */
+    private void matchCombined(CharSequence text, BitSet found) {
+        final Matcher matcher = combinedPattern.matcher(text);
+        int remaining = combinedCount;
+        int from = 0;
+        while (remaining > 0 && from <= text.length() && matcher.find(from)) {
+            final int start = matcher.start();
+            int matched = 0;
+            while (combinedGroups[matched] < 0 || matcher.start(combinedGroups[matched]) < 0) {
+                matched++;
+            }
+            remaining -= markFound(matched, found);
+
+            // the alternation stops at the first term matching here, but the terms after it may match here as well
+            for (int i = matched + 1; i < patterns.size() && remaining > 0; i++) {
+                if (combinedGroups[i] >= 0 && !found.get(patternTermIndexes[i]) && patterns.get(i).matcher(text)
+                    .region(start, text.length()).useTransparentBounds(true).useAnchoringBounds(false).lookingAt()) {
+                    remaining -= markFound(i, found);
+                }
+            }
+
+            // a term may start within the match of another
+            from = start + 1;
+        }
+    }
+
+    /**
+     * @return 1 if the pattern was not found before, 0 otherwise
+     */
+    private int markFound(int patternIndex, BitSet found) {
+        final int termIndex = patternTermIndexes[patternIndex];
+        if (found.get(termIndex)) {
+            return 0;
+        }
+        found.set(termIndex);
+        return 1;
+    }
+
+    /**
+     * @param text the text to look for the terms in
+     * @return the terms that occur in the text, in the order of the terms
+     */
+    public List<String> findTerms(CharSequence text) {
+        final BitSet found = match(text);
+        final List<String> foundTerms = new ArrayList<>(found.cardinality());
+        for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            foundTerms.add(terms.get(i));
+        }
+        return foundTerms;
+    }
+
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    /**
+     * @param term a regular expression
+     * @return true if the term only matches itself, i.e. holds none of the characters that mean something in a regular
+     * expression
+     */
+    public static boolean isLiteral(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            if (REGEX_META_CHARACTERS.indexOf(term.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
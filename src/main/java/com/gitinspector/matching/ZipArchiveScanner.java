@@ -0,0 +1,224 @@
+package com.gitinspector.matching;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Finds the terms of a TermMatcher in the files of a zip archive (e.g. a repository's zipball) while the archive is
+ * being read: the entries are decompressed as they stream by and matched a line at a time, so that neither the
+ * archive nor any of its files is ever held in memory as a whole. Binary files are told apart by the first bytes of
+ * their content, as git does, and are skipped along with the files that are too large.
+ */
+public class ZipArchiveScanner {
+
+    public static final int DEFAULT_MAX_FILE_SIZE = 1024 * 1024;
+
+    // as much of a file as git looks at to decide whether it is binary
+    private static final int SNIFF_LENGTH = 8000;
+
+    private TermMatcher termMatcher;
+
+    private int maxFileSize = DEFAULT_MAX_FILE_SIZE;
+
+    private boolean stripTopDirectory = true;
+
+    private AtomicLong scannedFiles = new AtomicLong();
+
+    private AtomicLong skippedBinaryFiles = new AtomicLong();
+
+    private AtomicLong skippedLargeFiles = new AtomicLong();
+
+    /**
+     * @param termMatcher finds the terms in each line of the files
+     */
+    public ZipArchiveScanner(TermMatcher termMatcher) {
+        this.termMatcher = termMatcher;
+    }
+
+    /**
+     * Read the archive to its end and find the terms in its files. The stream is not closed.
+     *
+     * @param archive a zip archive
+     * @return the files in which at least one of the terms was found, in the order of the archive
+     */
+    public List<FileMatches> scan(InputStream archive) throws IOException {
+        final List<FileMatches> filesWithMatches = new ArrayList<>();
+        final ZipInputStream zip = new ZipInputStream(archive, StandardCharsets.UTF_8);
+        for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            final FileMatches fileMatches = scanFile(getPath(entry), zip, entry.getSize());
+            if (fileMatches != null && !fileMatches.getTerms().isEmpty()) {
+                filesWithMatches.add(fileMatches);
+            }
+        }
+        return filesWithMatches;
+    }
+
+    /**
+     * Find the terms in a single file (e.g. a blob), unless it is binary or too large. The stream is not read further
+     * than needed to tell, and is not closed.
+     *
+     * @param path    the path of the file, as reported
+     * @param content the content of the file
+     * @param size    the size of the file in bytes, or -1 if unknown
+     * @return the terms found in the file, or null if the file was skipped
+     */
+    public FileMatches scanFile(String path, InputStream content, long size) throws IOException {
+        if (size > maxFileSize) {
+            skippedLargeFiles.incrementAndGet();
+            return null;
+        }
+
+        // the size of an entry is not always known up front; reading one byte past the limit tells it was exceeded
+        final CountingInputStream counted = new CountingInputStream(ByteStreams.limit(content, maxFileSize + 1L));
+        final BufferedInputStream in = new BufferedInputStream(counted, SNIFF_LENGTH);
+        if (isBinary(in)) {
+            skippedBinaryFiles.incrementAndGet();
+            return null;
+        }
+
+        final List<String> terms = termMatcher.getTerms();
+        final List<List<Integer>> lineNumbers =
+            new ArrayList<>(Collections.nCopies(terms.size(), (List<Integer>) null));
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)));
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            final BitSet found = termMatcher.match(line);
+            for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+                if (lineNumbers.get(i) == null) {
+                    lineNumbers.set(i, new ArrayList<Integer>());
+                }
+                lineNumbers.get(i).add(lineNumber);
+            }
+        }
+
+        if (counted.getCount() > maxFileSize) {
+            skippedLargeFiles.incrementAndGet();
+            return null;
+        }
+
+        scannedFiles.incrementAndGet();
+        final Map<String, List<Integer>> lineNumbersByTerm = new LinkedHashMap<>();
+        for (int i = 0; i < terms.size(); i++) {
+            if (lineNumbers.get(i) != null) {
+                lineNumbersByTerm.put(terms.get(i), lineNumbers.get(i));
+            }
+        }
+        return new FileMatches(path, lineNumbersByTerm);
+    }
+
+    private static boolean isBinary(BufferedInputStream in) throws IOException {
+        in.mark(SNIFF_LENGTH);
+        try {
+            final byte[] head = new byte[SNIFF_LENGTH];
+            final int length = ByteStreams.read(in, head, 0, SNIFF_LENGTH);
+            for (int i = 0; i < length; i++) {
+                if (head[i] == 0) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            in.reset();
+        }
+    }
+
+    private String getPath(ZipEntry entry) {
+        final String name = entry.getName();
+        final int slash = name.indexOf('/');
+        return stripTopDirectory && slash >= 0 ? name.substring(slash + 1) : name;
+    }
+
+    public int getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * @param maxFileSize the size in bytes of the largest file that is scanned; larger ones are skipped
+     */
+    public void setMaxFileSize(int maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public boolean isStripTopDirectory() {
+        return stripTopDirectory;
+    }
+
+    /**
+     * @param stripTopDirectory if true, the first directory of each path is left out of the path reported, since
+     *                          GitHub puts all of the files of an archive in a directory named after the commit
+     */
+    public void setStripTopDirectory(boolean stripTopDirectory) {
+        this.stripTopDirectory = stripTopDirectory;
+    }
+
+    public long getScannedFiles() {
+        return scannedFiles.get();
+    }
+
+    public long getSkippedBinaryFiles() {
+        return skippedBinaryFiles.get();
+    }
+
+    public long getSkippedLargeFiles() {
+        return skippedLargeFiles.get();
+    }
+
+    /**
+     * The terms found in a file of an archive, and where.
+     */
+    public static class FileMatches {
+
+        private String path;
+
+        private Map<String, List<Integer>> lineNumbers;
+
+        public FileMatches(String path, Map<String, List<Integer>> lineNumbers) {
+            this.path = path;
+            this.lineNumbers = lineNumbers;
+        }
+
+        /**
+         * @return the path of the file within the repository
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return the terms found, in the order of the terms of the matcher
+         */
+        public List<String> getTerms() {
+            return new ArrayList<>(lineNumbers.keySet());
+        }
+
+        /**
+         * @return the lines (counted from 1) on which each term was found, by term
+         */
+        public Map<String, List<Integer>> getLineNumbers() {
+            return lineNumbers;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.gitinspector.mirror;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the git command line client. Configuration set on the runner (e.g. an authorization header) is handed to git
+ * through its environment rather than its arguments, so that it never shows up in a process listing or in the
+ * message of a failure.
+ */
+public class GitCommandRunner {
+
+    private String gitExecutable = "git";
+
+    private Map<String, String> config = new LinkedHashMap<>();
+
+    /**
+     * Run git and return what it wrote to its standard output.
+     *
+     * @param workingDirectory the directory git runs in
+     * @param args             the arguments of git (e.g. "fetch", "--prune")
+     * @return the standard output of git
+     * @throws IOException if git could not be run or exited with a status other than 0; the message holds what git
+     *                     wrote to its standard error
+     */
+    public String run(File workingDirectory, String... args) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        run(workingDirectory, null, new OutputReader() {
+            @Override
+            public void read(InputStream out) throws IOException {
+                ByteStreams.copy(out, output);
+            }
+        }, args);
+        return new String(output.toByteArray(), Charsets.UTF_8);
+    }
+
+    /**
+     * Run git and hand its standard output to a reader as it is written, for output too large to be held in memory
+     * (e.g. the content of blobs).
+     *
+     * @param workingDirectory the directory git runs in
+     * @param input            what git reads from its standard input, or null for nothing
+     * @param reader           reads the standard output of git; whatever it leaves unread is discarded
+     * @param args             the arguments of git (e.g. "cat-file", "--batch")
+     * @throws IOException if git could not be run, exited with a status other than 0 or the reader failed; the
+     *                     message holds what git wrote to its standard error
+     */
+    public void run(File workingDirectory, String input, OutputReader reader, String... args) throws IOException {
+        final List<String> command = new ArrayList<>();
+        command.add(gitExecutable);
+        command.addAll(Arrays.asList(args));
+
+        // the other streams go to files so that none of them can fill up and block git while the output is read
+        final File errorFile = File.createTempFile("git", ".err");
+        final File inputFile = File.createTempFile("git", ".in");
+        try {
+            Files.write(inputFile.toPath(), Strings.nullToEmpty(input).getBytes(Charsets.UTF_8));
+            final ProcessBuilder processBuilder = new ProcessBuilder(command)
+                .directory(workingDirectory)
+                .redirectInput(inputFile)
+                .redirectError(errorFile);
+            setEnvironment(processBuilder.environment());
+
+            final Process process = processBuilder.start();
+            try (InputStream in = process.getInputStream()) {
+                reader.read(in);
+                ByteStreams.copy(in, ByteStreams.nullOutputStream());
+            } catch (IOException e) {
+                process.destroy();
+                throw e;
+            }
+
+            final int exitCode;
+            try {
+                exitCode = process.waitFor();
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while running git " + Joiner.on(' ').join(args));
+            }
+            if (exitCode != 0) {
+                throw new IOException("git " + Joiner.on(' ').join(args) + " failed with exit code " + exitCode + ": "
+                    + new String(Files.readAllBytes(errorFile.toPath()), Charsets.UTF_8).trim());
+            }
+        } finally {
+            Files.deleteIfExists(errorFile.toPath());
+            Files.deleteIfExists(inputFile.toPath());
+        }
+    }
+
+    public String getGitExecutable() {
+        return gitExecutable;
+    }
+
+    /**
+     * @param gitExecutable the path of the git client, or just "git" to look it up on the PATH
+     */
+    public void setGitExecutable(String gitExecutable) {
+        this.gitExecutable = gitExecutable;
+    }
+
+    /**
+     * Set a configuration variable for every git command run from now on, as if passed with -c.
+     *
+     * @param key   the name of the variable (e.g. http.extraHeader)
+     * @param value the value of the variable, or null to stop setting it
+     */
+    public synchronized void setConfig(String key, String value) {
+        if (value == null) {
+            config.remove(key);
+        } else {
+            config.put(key, value);
+        }
+    }
+
+    /**
+     * Reads the standard output of git.
+     */
+    public interface OutputReader {
+        void read(InputStream out) throws IOException;
+    }
+
+    private synchronized void setEnvironment(Map<String, String> environment) {
+        // fail rather than wait for someone to type in credentials
+        environment.put("GIT_TERMINAL_PROMPT", "0");
+        environment.put("GIT_CONFIG_COUNT", String.valueOf(config.size()));
+        int i = 0;
+        for (Map.Entry<String, String> entry : config.entrySet()) {
+            environment.put("GIT_CONFIG_KEY_" + i, entry.getKey());
+            environment.put("GIT_CONFIG_VALUE_" + i, entry.getValue());
+            i++;
+        }
+    }
+}
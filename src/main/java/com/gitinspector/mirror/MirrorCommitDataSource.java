@@ -0,0 +1,182 @@
+package com.gitinspector.mirror;
+
+import com.gitinspector.commits.CommitDataSource;
+import com.gitinspector.domain.GitCommit;
+import com.google.common.base.Splitter;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.github.GHRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads commits and branch tips from the local mirrors kept by a RepositoryMirrorManager, so that a whole commit
+ * window takes a single git log rather than a request per page or per commit.
+ * A repository is only read from its mirror while the mirror is not behind it (i.e. the repository was not pushed
+ * to since the mirror was last synced); otherwise, or if the mirror cannot be read, the fallback source is used.
+ * Commits read from a mirror are the same as the ones GitHub returns, so the mode does not change what is reported.
+ */
+@ManagedResource(description = "Reads commits and branch tips from the local mirrors of the repositories")
+public class MirrorCommitDataSource implements CommitDataSource {
+    private static final Logger log = LoggerFactory.getLogger(MirrorCommitDataSource.class);
+
+    // the fields of a commit, each followed by a NUL (with -z); a commit message cannot contain a NUL
+    private static final String COMMIT_FORMAT = "--format=%H%x00%P%x00%cn%x00%ce%x00%ct%x00%B";
+
+    private static final int COMMIT_FIELDS = 6;
+
+    private static final String BRANCH_REF_PREFIX = "refs/heads/";
+
+    private RepositoryMirrorManager mirrorManager;
+
+    private CommitDataSource fallback;
+
+    private boolean mirrorEnabled = true;
+
+    private AtomicLong mirrorReads = new AtomicLong();
+
+    private AtomicLong fallbackReads = new AtomicLong();
+
+    /**
+     * @param mirrorManager keeps the mirrors the commits are read from
+     * @param fallback      where the commits are read from when a mirror is behind or cannot be read (e.g. the
+     *                      GitHub API)
+     */
+    public MirrorCommitDataSource(RepositoryMirrorManager mirrorManager, CommitDataSource fallback) {
+        this.mirrorManager = mirrorManager;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public GitCommit getCommit(GHRepository repo, String sha1) throws IOException {
+        final File mirror = getUpToDateMirror(repo);
+        if (mirror != null) {
+            try {
+                final List<GitCommit> commits = parseCommits(git(mirror, "log", "-1", "-z", COMMIT_FORMAT, sha1, "--"));
+                if (commits.size() == 1) {
+                    mirrorReads.incrementAndGet();
+                    return commits.get(0);
+                }
+            } catch (IOException e) {
+                log.debug("Could not read commit {} from the mirror of {}", sha1, repo.getFullName(), e);
+            }
+        }
+
+        fallbackReads.incrementAndGet();
+        return fallback.getCommit(repo, sha1);
+    }
+
+    /**
+     * Lists the commits with git log bounded by the since date, which is how GitHub lists them as well.
+     */
+    @Override
+    public Map<String, GitCommit> listCommitsSince(GHRepository repo, String tipSha1, Date since) throws IOException {
+        final File mirror = getUpToDateMirror(repo);
+        if (mirror != null) {
+            try {
+                final Map<String, GitCommit> listedCommits = new HashMap<>();
+                for (GitCommit commit : parseCommits(git(mirror, "log", "-z", COMMIT_FORMAT,
+                    "--since=@" + since.getTime() / 1000, tipSha1, "--"))) {
+                    listedCommits.put(commit.getSha1(), commit);
+                }
+                mirrorReads.incrementAndGet();
+                return listedCommits;
+            } catch (IOException e) {
+                log.debug("Could not list the commits of {} from its mirror", repo.getFullName(), e);
+            }
+        }
+
+        fallbackReads.incrementAndGet();
+        return fallback.listCommitsSince(repo, tipSha1, since);
+    }
+
+    @Override
+    public Map<String, String> getBranchTips(GHRepository repo) throws IOException {
+        final File mirror = getUpToDateMirror(repo);
+        if (mirror != null) {
+            try {
+                final Map<String, String> branchTips = new TreeMap<>();
+                final String refs = git(mirror, "for-each-ref", "--format=%(objectname) %(refname)", BRANCH_REF_PREFIX);
+                for (String ref : Splitter.on('\n').omitEmptyStrings().split(refs)) {
+                    branchTips.put(StringUtils.substringAfter(ref, " " + BRANCH_REF_PREFIX),
+                        StringUtils.substringBefore(ref, " "));
+                }
+                mirrorReads.incrementAndGet();
+                return branchTips;
+            } catch (IOException e) {
+                log.debug("Could not read the branches of {} from its mirror", repo.getFullName(), e);
+            }
+        }
+
+        fallbackReads.incrementAndGet();
+        return fallback.getBranchTips(repo);
+    }
+
+    /**
+     * @return the number of reads served from a mirror
+     */
+    @ManagedAttribute
+    public long getMirrorReads() {
+        return mirrorReads.get();
+    }
+
+    /**
+     * @return the number of reads passed on to the fallback source
+     */
+    @ManagedAttribute
+    public long getFallbackReads() {
+        return fallbackReads.get();
+    }
+
+    @ManagedAttribute
+    public boolean isMirrorEnabled() {
+        return mirrorEnabled;
+    }
+
+    /**
+     * @param mirrorEnabled false to read everything from the fallback source, e.g. while the mirrors are rebuilt
+     */
+    @ManagedAttribute
+    public void setMirrorEnabled(boolean mirrorEnabled) {
+        this.mirrorEnabled = mirrorEnabled;
+    }
+
+    /**
+     * @return the mirror of the repository, or null if it should not be read from
+     */
+    private File getUpToDateMirror(GHRepository repo) {
+        if (!mirrorEnabled || mirrorManager.getSyncLagSeconds(repo.getFullName()) != 0) {
+            return null;
+        }
+        return mirrorManager.getMirror(repo.getFullName());
+    }
+
+    private String git(File mirror, String... args) throws IOException {
+        return mirrorManager.getGitCommandRunner().run(mirror, args);
+    }
+
+    private static List<GitCommit> parseCommits(String log) {
+        final List<String> fields = Splitter.on('\0').splitToList(log);
+        final List<GitCommit> commits = new ArrayList<>();
+        for (int i = 0; i + COMMIT_FIELDS <= fields.size(); i += COMMIT_FIELDS) {
+            final List<String> parentSha1s = fields.get(i + 1).isEmpty()
+                ? Collections.<String>emptyList() : Splitter.on(' ').splitToList(fields.get(i + 1));
+            // GitHub does not return the newline git ends a message with
+            commits.add(new GitCommit(fields.get(i), parentSha1s, fields.get(i + 2), fields.get(i + 3),
+                new Date(Long.parseLong(fields.get(i + 4)) * 1000), StringUtils.stripEnd(fields.get(i + 5), "\n")));
+        }
+        return commits;
+    }
+}
@@ -0,0 +1,311 @@
+package com.gitinspector.mirror;
+
+import com.gitinspector.matching.ZipArchiveScanner;
+import com.gitinspector.matching.ZipArchiveScanner.FileMatches;
+import com.gitinspector.mirror.GitCommandRunner.OutputReader;
+import com.gitinspector.store.BlobVerdict;
+import com.gitinspector.store.BlobVerdictStore;
+import com.gitinspector.store.ContentCheckpoint;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.github.GHRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scans the files of the default branch of the repositories from their local mirrors, blob by blob. When a
+ * BlobVerdictStore has been provided, only the blobs that are new since the tip scanned by the previous run (as told
+ * by diffing the two trees) are read; the files that did not change keep their verdicts, and so does a blob already
+ * known to hold terms that shows up at another path.
+ * The mirrors may be partial clones, which git would complete one missing blob (and one request to GitHub) at a
+ * time; the blobs to scan that are missing are fetched beforehand instead, all of them in a single request.
+ */
+@ManagedResource(description = "Scans the files of the repositories from their local mirrors, one new blob at a time")
+public class MirrorContentScanner {
+    private static final Logger log = LoggerFactory.getLogger(MirrorContentScanner.class);
+
+    private static final String NO_MODE = "000000";
+
+    // the mode of a submodule, whose object is a commit of another repository rather than a blob
+    private static final String GITLINK_MODE = "160000";
+
+    private RepositoryMirrorManager mirrorManager;
+
+    private BlobVerdictStore verdictStore;
+
+    private AtomicLong scannedBlobs = new AtomicLong();
+
+    private AtomicLong reusedVerdicts = new AtomicLong();
+
+    private AtomicLong fullScans = new AtomicLong();
+
+    private AtomicLong prefetchedBlobs = new AtomicLong();
+
+    /**
+     * @param mirrorManager keeps the mirrors the files are read from
+     * @param verdictStore  keeps the verdicts between runs; null to scan every file on every run
+     */
+    public MirrorContentScanner(RepositoryMirrorManager mirrorManager, BlobVerdictStore verdictStore) {
+        this.mirrorManager = mirrorManager;
+        this.verdictStore = verdictStore;
+    }
+
+    /**
+     * @param taskName     the name of the task the verdicts are kept for
+     * @param repo         the repository whose files to scan
+     * @param scanner      finds the terms in each blob
+     * @param rulesVersion identifies the terms and how they are found; verdicts reached with other rules are not reused
+     * @return the verdicts for the files of the default branch in which terms were found, by path, or null if the
+     * mirror is behind the repository or could not be read
+     */
+    public List<BlobVerdict> scan(String taskName, GHRepository repo, ZipArchiveScanner scanner, String rulesVersion) {
+        final String repoFullName = repo.getFullName();
+        if (mirrorManager.getSyncLagSeconds(repoFullName) != 0) {
+            return null;
+        }
+        if (repo.getMasterBranch() == null) {
+            // nothing was ever pushed
+            return new ArrayList<>();
+        }
+
+        final File mirror = mirrorManager.getMirror(repoFullName);
+        try {
+            final String tipSha1 =
+                git(mirror, "rev-parse", "--verify", "refs/heads/" + repo.getMasterBranch() + "^{commit}").trim();
+            ContentCheckpoint checkpoint = verdictStore == null ? null : verdictStore.load(taskName, repoFullName);
+            if (checkpoint != null && !checkpoint.getRulesVersion().equals(rulesVersion)) {
+                checkpoint = null;
+            }
+
+            final List<BlobVerdict> verdicts = scan(mirror, tipSha1, checkpoint, scanner);
+            if (verdictStore != null) {
+                verdictStore.save(taskName, repoFullName, new ContentCheckpoint(tipSha1, rulesVersion, verdicts));
+            }
+            return verdicts;
+        } catch (IOException e) {
+            log.warn("Could not scan the files of {} from its mirror", repoFullName, e);
+            return null;
+        }
+    }
+
+    private List<BlobVerdict> scan(File mirror, String tipSha1, ContentCheckpoint checkpoint, ZipArchiveScanner scanner)
+        throws IOException {
+        final Map<String, BlobVerdict> verdictsByPath = new TreeMap<>();
+        final Map<String, BlobVerdict> verdictsByBlob = new HashMap<>();
+        Map<String, String> changedBlobs = null;
+        if (checkpoint != null) {
+            for (BlobVerdict verdict : checkpoint.getVerdicts()) {
+                verdictsByPath.put(verdict.getPath(), verdict);
+                verdictsByBlob.put(verdict.getBlobSha1(), verdict);
+            }
+
+            try {
+                changedBlobs = diffTrees(mirror, checkpoint.getTipSha1(), tipSha1);
+            } catch (IOException e) {
+                // e.g. the previous tip is gone, the branch having been forced to another history
+                log.debug("Could not diff {} against {} in {}", checkpoint.getTipSha1(), tipSha1, mirror, e);
+            }
+        }
+        if (changedBlobs == null) {
+            fullScans.incrementAndGet();
+            verdictsByPath.clear();
+            changedBlobs = listBlobs(mirror, tipSha1);
+        }
+
+        final Map<String, List<String>> pathsToScan = new LinkedHashMap<>();
+        for (Map.Entry<String, String> changedBlob : changedBlobs.entrySet()) {
+            final String path = changedBlob.getKey();
+            final String blobSha1 = changedBlob.getValue();
+            verdictsByPath.remove(path);
+            if (blobSha1 == null) {
+                continue;
+            }
+
+            if (verdictsByBlob.containsKey(blobSha1)) {
+                verdictsByPath.put(path, verdictsByBlob.get(blobSha1).atPath(path));
+            } else {
+                if (!pathsToScan.containsKey(blobSha1)) {
+                    pathsToScan.put(blobSha1, new ArrayList<String>());
+                }
+                pathsToScan.get(blobSha1).add(path);
+            }
+        }
+        reusedVerdicts.addAndGet(verdictsByPath.size());
+
+        if (!pathsToScan.isEmpty()) {
+            prefetchMissingBlobs(mirror, pathsToScan.keySet());
+            scanBlobs(mirror, pathsToScan, scanner, verdictsByPath);
+        }
+        return new ArrayList<>(verdictsByPath.values());
+    }
+
+    /**
+     * Fetch the provided blobs that are missing from the mirror (i.e. from a partial clone) in a single request,
+     * the way git would fetch each of them on its own when it is read.
+     */
+    private void prefetchMissingBlobs(File mirror, Collection<String> blobSha1s) throws IOException {
+        final String input = Joiner.on('\n').join(blobSha1s) + "\n";
+        // lists the blobs that are present; the missing ones are neither listed nor fetched
+        final Set<String> missingBlobSha1s = new LinkedHashSet<>(blobSha1s);
+        missingBlobSha1s.removeAll(Splitter.on('\n').trimResults().omitEmptyStrings().splitToList(gitWithInput(mirror,
+            input, "rev-list", "--objects", "--no-walk", "--ignore-missing", "--missing=print", "--stdin")));
+        if (missingBlobSha1s.isEmpty()) {
+            return;
+        }
+
+        log.debug("Fetching {} missing blobs into {}", missingBlobSha1s.size(), mirror);
+        gitWithInput(mirror, Joiner.on('\n').join(missingBlobSha1s) + "\n", "-c", "fetch.negotiationAlgorithm=noop",
+            "fetch", "--quiet", "--no-tags", "--no-write-fetch-head", "--recurse-submodules=no", "--filter=blob:none",
+            "--stdin", "origin");
+        prefetchedBlobs.addAndGet(missingBlobSha1s.size());
+    }
+
+    /**
+     * Read the blobs in a single git cat-file and find the terms in each of them as they stream by.
+     */
+    private void scanBlobs(File mirror, final Map<String, List<String>> pathsByBlob, final ZipArchiveScanner scanner,
+                           final Map<String, BlobVerdict> verdictsByPath) throws IOException {
+        final String input = Joiner.on('\n').join(pathsByBlob.keySet()) + "\n";
+        mirrorManager.getGitCommandRunner().run(mirror, input, new OutputReader() {
+            @Override
+            public void read(InputStream out) throws IOException {
+                final BufferedInputStream in = new BufferedInputStream(out);
+                for (Map.Entry<String, List<String>> entry : pathsByBlob.entrySet()) {
+                    // each blob is written as "<sha1> blob <size>\n<content>\n"
+                    final String header = readLine(in);
+                    final List<String> fields = Splitter.on(' ').splitToList(header);
+                    if (fields.size() != 3 || !"blob".equals(fields.get(1))) {
+                        throw new IOException("Could not read blob " + entry.getKey() + ": " + header);
+                    }
+
+                    final long size = Long.parseLong(fields.get(2));
+                    final InputStream content = ByteStreams.limit(in, size);
+                    final FileMatches fileMatches = scanner.scanFile(entry.getValue().get(0), content, size);
+                    ByteStreams.copy(content, ByteStreams.nullOutputStream());
+                    if (in.read() != '\n') {
+                        throw new IOException("Could not read past blob " + entry.getKey());
+                    }
+                    scannedBlobs.incrementAndGet();
+
+                    if (fileMatches != null && !fileMatches.getTerms().isEmpty()) {
+                        for (String path : entry.getValue()) {
+                            verdictsByPath.put(path, new BlobVerdict(entry.getKey(), path,
+                                fileMatches.getLineNumbers()));
+                        }
+                    }
+                }
+            }
+        }, "cat-file", "--batch");
+    }
+
+    /**
+     * @return the blob of each file of the tree, by path
+     */
+    private Map<String, String> listBlobs(File mirror, String tipSha1) throws IOException {
+        final Map<String, String> blobs = new LinkedHashMap<>();
+        // each entry is "<mode> <type> <sha1>\t<path>"
+        for (String entry : Splitter.on('\0').omitEmptyStrings().split(git(mirror, "ls-tree", "-r", "-z", tipSha1))) {
+            final List<String> fields = Splitter.on(' ').limit(3).splitToList(StringUtils.substringBefore(entry, "\t"));
+            if ("blob".equals(fields.get(1))) {
+                blobs.put(StringUtils.substringAfter(entry, "\t"), fields.get(2));
+            }
+        }
+        return blobs;
+    }
+
+    /**
+     * @return the new blob of each file that changed between the trees, by path; null for the files that are gone
+     */
+    private Map<String, String> diffTrees(File mirror, String fromSha1, String toSha1) throws IOException {
+        final Map<String, String> changedBlobs = new LinkedHashMap<>();
+        // each change is ":<old mode> <new mode> <old sha1> <new sha1> <status>" followed by the path
+        final List<String> fields = Splitter.on('\0').splitToList(
+            git(mirror, "diff-tree", "-r", "-z", "--no-renames", "--no-commit-id", fromSha1, toSha1));
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            final List<String> change = Splitter.on(' ').splitToList(fields.get(i));
+            final String newMode = change.get(1);
+            final boolean isBlob = !NO_MODE.equals(newMode) && !GITLINK_MODE.equals(newMode);
+            changedBlobs.put(fields.get(i + 1), isBlob ? change.get(3) : null);
+        }
+        return changedBlobs;
+    }
+
+    private String git(File mirror, String... args) throws IOException {
+        return mirrorManager.getGitCommandRunner().run(mirror, args);
+    }
+
+    private String gitWithInput(File mirror, String input, String... args) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        mirrorManager.getGitCommandRunner().run(mirror, input, new OutputReader() {
+            @Override
+            public void read(InputStream out) throws IOException {
+                ByteStreams.copy(out, output);
+            }
+        }, args);
+        return new String(output.toByteArray(), Charsets.UTF_8);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                throw new IOException("Unexpected end of the output of git");
+            }
+            line.write(b);
+        }
+        return new String(line.toByteArray(), Charsets.UTF_8);
+    }
+
+    /**
+     * @return the number of blobs read and scanned
+     */
+    @ManagedAttribute
+    public long getScannedBlobs() {
+        return scannedBlobs.get();
+    }
+
+    /**
+     * @return the number of verdicts carried over from a previous run rather than reached by scanning the blob again
+     */
+    @ManagedAttribute
+    public long getReusedVerdicts() {
+        return reusedVerdicts.get();
+    }
+
+    /**
+     * @return the number of blobs fetched into partial clones before being scanned
+     */
+    @ManagedAttribute
+    public long getPrefetchedBlobs() {
+        return prefetchedBlobs.get();
+    }
+
+    /**
+     * @return the number of times all of the files of a repository had to be scanned
+     */
+    @ManagedAttribute
+    public long getFullScans() {
+        return fullScans.get();
+    }
+}
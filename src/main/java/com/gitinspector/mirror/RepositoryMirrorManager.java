@@ -0,0 +1,370 @@
+package com.gitinspector.mirror;
+
+import com.gitinspector.TargetRepositories;
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.kohsuke.github.GHRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a bare mirror of each of the targeted repositories on disk, so that the commits of a repository can be read
+ * locally rather than with a request per commit. Mirrors are cloned without blobs (a partial clone) since the rules
+ * only read commit metadata, and are then kept up to date with incremental fetches, several repositories at once.
+ * Mirrors of repositories that are no longer targeted (e.g. excluded from scope) are deleted by the next sync.
+ * Each mirror is at mirrorDirectory/owner/name.git. Running the manager (e.g. as a scheduled task) syncs all of them.
+ */
+@ManagedResource(description = "Keeps bare mirrors of the targeted repositories on disk")
+public class RepositoryMirrorManager implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(RepositoryMirrorManager.class);
+
+    private static final int DEFAULT_SYNC_PARALLELISM = 4;
+
+    private static final String MIRROR_SUFFIX = ".git";
+
+    private static final String CLONE_SUFFIX = ".clone";
+
+    private TargetRepositories targetRepositories;
+
+    private File mirrorDirectory;
+
+    private GitCommandRunner gitCommandRunner = new GitCommandRunner();
+
+    private String cloneUrlFormat;
+
+    private boolean partialClone = true;
+
+    private int syncParallelism = DEFAULT_SYNC_PARALLELISM;
+
+    // when the last successful sync of each mirror started
+    private Map<String, Date> syncedAtByRepo = new ConcurrentHashMap<>();
+
+    private AtomicLong syncs = new AtomicLong();
+
+    private AtomicLong failedSyncs = new AtomicLong();
+
+    public RepositoryMirrorManager(TargetRepositories targetRepositories, String mirrorDirectory) throws IOException {
+        this.targetRepositories = targetRepositories;
+        this.mirrorDirectory = new File(mirrorDirectory);
+        if (!this.mirrorDirectory.isDirectory() && !this.mirrorDirectory.mkdirs()) {
+            throw new IOException("Could not create mirror directory " + mirrorDirectory);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            syncAll();
+        } catch (IOException e) {
+            log.warn("Could not list the repositories to mirror", e);
+        }
+    }
+
+    /**
+     * Bring the mirrors in line with the targeted repositories: clone the new ones, fetch into the existing ones and
+     * delete the ones that are no longer targeted. A repository that fails to sync keeps its mirror as it was.
+     *
+     * @throws IOException if the targeted repositories could not be listed; no mirror is touched then
+     */
+    @ManagedOperation
+    public void syncAll() throws IOException {
+        final Map<String, String> cloneUrlsByRepo = new LinkedHashMap<>();
+        for (GHRepository repo : targetRepositories.getTargetedRepositories()) {
+            cloneUrlsByRepo.put(repo.getFullName(), getCloneUrl(repo));
+        }
+        syncAll(cloneUrlsByRepo);
+    }
+
+    /**
+     * Bring the mirrors in line with the provided repositories.
+     *
+     * @param cloneUrlsByRepo the URL to clone each repository from, by repository full name
+     */
+    public void syncAll(Map<String, String> cloneUrlsByRepo) {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, syncParallelism),
+            new ThreadFactoryBuilder().setNameFormat("mirror-sync-%d").setDaemon(true).build());
+        try {
+            final Map<String, Future<?>> syncsByRepo = new LinkedHashMap<>();
+            for (final Map.Entry<String, String> entry : cloneUrlsByRepo.entrySet()) {
+                syncsByRepo.put(entry.getKey(), executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        sync(entry.getKey(), entry.getValue());
+                        return null;
+                    }
+                }));
+            }
+
+            for (Map.Entry<String, Future<?>> sync : syncsByRepo.entrySet()) {
+                try {
+                    sync.getValue().get();
+                } catch (ExecutionException e) {
+                    log.warn("Could not sync the mirror of {}", sync.getKey(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        deleteMirrorsOtherThan(cloneUrlsByRepo.keySet());
+    }
+
+    /**
+     * Clone the mirror of a repository if there is none yet, or fetch what changed into it otherwise.
+     *
+     * @param repoFullName the full name of the repository (e.g. OMDev/omapi)
+     * @param cloneUrl     the URL to clone the repository from
+     * @throws IOException if the repository could not be cloned or fetched
+     */
+    public void sync(String repoFullName, String cloneUrl) throws IOException {
+        final File mirror = getMirror(repoFullName);
+        final Date startedAt = new Date();
+        try {
+            if (new File(mirror, "HEAD").isFile()) {
+                gitCommandRunner.run(mirror, "fetch", "--prune", "--quiet", "origin");
+            } else {
+                clone(mirror, cloneUrl);
+            }
+            // lets git log walk the commits without parsing each of them
+            gitCommandRunner.run(mirror, "commit-graph", "write", "--reachable", "--split");
+        } catch (IOException e) {
+            failedSyncs.incrementAndGet();
+            throw e;
+        }
+        syncs.incrementAndGet();
+        syncedAtByRepo.put(repoFullName, startedAt);
+    }
+
+    /**
+     * @param repoFullName the full name of the repository (e.g. OMDev/omapi)
+     * @return the directory of the mirror of the repository, which only exists once the repository was synced
+     */
+    public File getMirror(String repoFullName) {
+        return new File(mirrorDirectory, repoFullName + MIRROR_SUFFIX);
+    }
+
+    /**
+     * @param repoFullName the full name of the repository (e.g. OMDev/omapi)
+     * @return when the last successful sync of the mirror of the repository started, or null if it was not synced
+     * since this manager was created
+     */
+    public Date getSyncedAt(String repoFullName) {
+        return syncedAtByRepo.get(repoFullName);
+    }
+
+    /**
+     * Return how far behind the repository the mirror of a repository may be: 0 if the repository was not pushed to
+     * since its last successful sync started, or the number of seconds since that sync started otherwise.
+     *
+     * @param repoFullName the full name of the repository (e.g. OMDev/omapi)
+     * @return the lag of the mirror in seconds, or -1 if it was not synced since this manager was created
+     */
+    @ManagedOperation
+    public long getSyncLagSeconds(String repoFullName) {
+        final Date syncedAt = syncedAtByRepo.get(repoFullName);
+        if (syncedAt == null) {
+            return -1;
+        }
+        final Date pushedAt = targetRepositories.getPushedAt(repoFullName);
+        if (pushedAt == null || pushedAt.before(syncedAt)) {
+            return 0;
+        }
+        return (System.currentTimeMillis() - syncedAt.getTime()) / 1000;
+    }
+
+    /**
+     * @return the lag of each mirror that is behind its repository (e.g. OMDev/omapi=120s)
+     */
+    @ManagedAttribute
+    public List<String> getSyncLags() {
+        final List<String> syncLags = new ArrayList<>();
+        for (String repoFullName : new TreeMap<>(syncedAtByRepo).keySet()) {
+            final long syncLagSeconds = getSyncLagSeconds(repoFullName);
+            if (syncLagSeconds > 0) {
+                syncLags.add(repoFullName + "=" + syncLagSeconds + "s");
+            }
+        }
+        return syncLags;
+    }
+
+    @ManagedAttribute
+    public int getMirrorCount() {
+        return syncedAtByRepo.size();
+    }
+
+    @ManagedAttribute
+    public long getSyncs() {
+        return syncs.get();
+    }
+
+    @ManagedAttribute
+    public long getFailedSyncs() {
+        return failedSyncs.get();
+    }
+
+    @ManagedAttribute
+    public String getMirrorDirectory() {
+        return mirrorDirectory.getAbsolutePath();
+    }
+
+    public GitCommandRunner getGitCommandRunner() {
+        return gitCommandRunner;
+    }
+
+    /**
+     * Authenticate the clones and fetches with the provided token rather than with whatever credentials git is
+     * configured with.
+     *
+     * @param accessToken a GitHub access token that can read the targeted repositories; null to stop using one
+     */
+    public void setAccessToken(String accessToken) {
+        gitCommandRunner.setConfig("http.extraHeader", accessToken == null ? null : "Authorization: Basic "
+            + BaseEncoding.base64().encode(("x-access-token:" + accessToken).getBytes(Charsets.UTF_8)));
+    }
+
+    public String getCloneUrlFormat() {
+        return cloneUrlFormat;
+    }
+
+    /**
+     * @param cloneUrlFormat the URL to clone each repository from, with %s standing for the full name of the
+     *                       repository (e.g. file:///srv/git/%s.git); null to clone from the HTTP URL GitHub reports
+     */
+    public void setCloneUrlFormat(String cloneUrlFormat) {
+        this.cloneUrlFormat = cloneUrlFormat;
+    }
+
+    @ManagedAttribute
+    public boolean isPartialClone() {
+        return partialClone;
+    }
+
+    /**
+     * @param partialClone true to clone without blobs, which only affects the mirrors cloned from now on
+     */
+    @ManagedAttribute
+    public void setPartialClone(boolean partialClone) {
+        this.partialClone = partialClone;
+    }
+
+    @ManagedAttribute
+    public int getSyncParallelism() {
+        return syncParallelism;
+    }
+
+    /**
+     * @param syncParallelism the number of repositories synced at once
+     */
+    @ManagedAttribute
+    public void setSyncParallelism(int syncParallelism) {
+        this.syncParallelism = syncParallelism;
+    }
+
+    private String getCloneUrl(GHRepository repo) {
+        return cloneUrlFormat == null ? repo.gitHttpTransportUrl() : String.format(cloneUrlFormat, repo.getFullName());
+    }
+
+    private void clone(File mirror, String cloneUrl) throws IOException {
+        // cloned next to the mirror and then moved into place, so that an interrupted clone never passes for a mirror
+        final File clone = new File(mirror.getParentFile(), mirror.getName() + CLONE_SUFFIX);
+        deleteRecursively(clone);
+        if (!mirror.getParentFile().isDirectory() && !mirror.getParentFile().mkdirs()) {
+            throw new IOException("Could not create mirror directory " + mirror.getParentFile());
+        }
+
+        final List<String> args = new ArrayList<>();
+        Collections.addAll(args, "clone", "--mirror", "--quiet");
+        if (partialClone) {
+            args.add("--filter=blob:none");
+        }
+        Collections.addAll(args, cloneUrl, clone.getAbsolutePath());
+        try {
+            gitCommandRunner.run(mirrorDirectory, args.toArray(new String[args.size()]));
+            deleteRecursively(mirror);
+            Files.move(clone.toPath(), mirror.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            deleteRecursively(clone);
+        }
+    }
+
+    private void deleteMirrorsOtherThan(Set<String> repoFullNames) {
+        final File[] ownerDirectories = mirrorDirectory.listFiles();
+        if (ownerDirectories == null) {
+            return;
+        }
+        for (File ownerDirectory : ownerDirectories) {
+            final File[] mirrors = ownerDirectory.listFiles();
+            if (mirrors == null) {
+                continue;
+            }
+            for (File mirror : mirrors) {
+                final String repoFullName = ownerDirectory.getName() + "/" + mirror.getName().replaceAll(
+                    "\\" + MIRROR_SUFFIX + "(\\" + CLONE_SUFFIX + ")?$", "");
+                if (!repoFullNames.contains(repoFullName)) {
+                    log.info("Deleting the mirror of {}, which is no longer targeted", repoFullName);
+                    syncedAtByRepo.remove(repoFullName);
+                    try {
+                        deleteRecursively(mirror);
+                    } catch (IOException e) {
+                        log.warn("Could not delete the mirror of {}", repoFullName, e);
+                    }
+                }
+            }
+            // only deletes the owner directory once it is empty
+            ownerDirectory.delete();
+        }
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) throws IOException {
+                Files.delete(path);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
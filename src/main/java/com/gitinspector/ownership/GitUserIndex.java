@@ -0,0 +1,66 @@
+package com.gitinspector.ownership;
+
+import com.gitinspector.domain.GitUser;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks GitUsers up by username or email address, ignoring case, so that matching a user against a list of users
+ * (e.g. the reviewers of a repository) is a hash lookup rather than a walk over the list.
+ */
+public class GitUserIndex {
+
+    private Map<String, GitUser> usersByUsername = new HashMap<>();
+
+    private Map<String, GitUser> usersByEmailAddress = new HashMap<>();
+
+    /**
+     * @param users the users to index; may be null
+     */
+    public GitUserIndex(List<GitUser> users) {
+        if (users == null) {
+            return;
+        }
+        for (GitUser user : users) {
+            if (StringUtils.isNotBlank(user.getUsername())) {
+                usersByUsername.put(user.getUsername().toLowerCase(), user);
+            }
+            if (StringUtils.isNotBlank(user.getEmailaddress())) {
+                usersByEmailAddress.put(user.getEmailaddress().toLowerCase(), user);
+            }
+        }
+    }
+
+    /**
+     * @param username the username (i.e. the GitHub login) of a user; may be null
+     * @return the user with that username or null if there is none
+     */
+    public GitUser getByUsername(String username) {
+        return username == null ? null : usersByUsername.get(username.toLowerCase());
+    }
+
+    /**
+     * @param emailAddress the email address of a user; may be null
+     * @return the user with that email address or null if there is none
+     */
+    public GitUser getByEmailAddress(String emailAddress) {
+        return emailAddress == null ? null : usersByEmailAddress.get(emailAddress.toLowerCase());
+    }
+
+    /**
+     * @param username     the username of a user; may be null
+     * @param emailAddress the email address of the same user; may be null
+     * @return the user with that username or, failing that, with that email address; null if there is none
+     */
+    public GitUser get(String username, String emailAddress) {
+        final GitUser user = getByUsername(username);
+        return user != null ? user : getByEmailAddress(emailAddress);
+    }
+
+    public boolean isEmpty() {
+        return usersByUsername.isEmpty() && usersByEmailAddress.isEmpty();
+    }
+}
@@ -1,22 +1,36 @@
 package com.gitinspector.scheduling;
 
 import com.gitinspector.TargetRepositories;
+import com.gitinspector.domain.CommitVerdict;
+import com.gitinspector.domain.GitCommit;
 import com.gitinspector.domain.GitUser;
 import com.gitinspector.domain.ReportResult;
 import com.gitinspector.domain.recordable.ReportingRecordable;
 import com.gitinspector.domain.recordable.StringStatistic;
+import com.gitinspector.github.RateLimitGovernor;
 import com.gitinspector.ownership.RepoOwnership;
 import com.gitinspector.recording.TaskMessageRecorder;
 import com.gitinspector.stats.GitStatisticsTracker;
 import com.gitinspector.stats.StatsLevel;
+import com.gitinspector.store.CommitVerdictStore;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.joda.time.DateTime;
-import org.kohsuke.github.GHCommit;
 import org.kohsuke.github.GHRepository;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Abstract class for all git related scheduled tasks.
@@ -35,12 +49,31 @@ public abstract class AbstractScheduledTask<V extends ReportingRecordable> imple
 
     protected TargetRepositories targetRepositories;
 
+    protected FetchCycleContext fetchCycleContext;
+
+    private boolean ownsFetchCycleContext;
+
+    private CommitVerdictStore commitVerdictStore;
+
+    private RepositoryResultCache<V> repositoryResultCache = new RepositoryResultCache<>();
+
+    private int repositoryParallelism = 1;
+
+    private int itemParallelism = 1;
+
+    private RateLimitGovernor rateLimitGovernor;
+
     public AbstractScheduledTask(TaskMessageRecorder messageRecorder, RepoOwnership repoOwnership,
         TargetRepositories targetRepositories) {
         taskName = this.getClass().getSimpleName();
         this.messageRecorder = messageRecorder;
         this.repoOwnership = repoOwnership;
         this.targetRepositories = targetRepositories;
+
+        // until a shared context is provided, each task fetches through a context of its own
+        this.fetchCycleContext = new FetchCycleContext(targetRepositories);
+        this.ownsFetchCycleContext = true;
+        this.fetchCycleContext.registerTask(this);
     }
 
     /**
@@ -52,6 +85,13 @@ public abstract class AbstractScheduledTask<V extends ReportingRecordable> imple
         messageRecorder.recordStateRelatedMessage(taskName, "starting");
         messageRecorder.recordReportingMessage(taskName, "message=" + getRuleMessage());
 
+        if (ownsFetchCycleContext) {
+            fetchCycleContext.beginCycle();
+        }
+
+        // the requests made while executing count against the share of this task
+        RateLimitGovernor.setCurrentTask(taskName);
+        claimRateLimitShare();
         try {
             final ReportResult<V, StringStatistic> reportResult = execute();
 
@@ -60,6 +100,13 @@ public abstract class AbstractScheduledTask<V extends ReportingRecordable> imple
             }
         } catch (Exception e) {
             messageRecorder.recordError(taskName, ExceptionUtils.getFullStackTrace(e));
+        } finally {
+            releaseRateLimitShare();
+            RateLimitGovernor.setCurrentTask(null);
+        }
+
+        if (ownsFetchCycleContext) {
+            fetchCycleContext.endCycle();
         }
 
         messageRecorder.recordStateRelatedMessage(taskName, "complete");
@@ -75,6 +122,175 @@ public abstract class AbstractScheduledTask<V extends ReportingRecordable> imple
      */
     public abstract String getRuleMessage();
 
+    /**
+     * To be overridden by the tasks whose run can be split by repository, so that a FusedTaskRunner can visit each
+     * repository once for several tasks.
+     *
+     * @return a new pass of this task over the repositories, or null if the task can only be run as a whole
+     */
+    protected RepositoryPass<V> startPass() {
+        return null;
+    }
+
+    /**
+     * Run a pass of this task over the targeted repositories.
+     *
+     * @param pass the pass, as started by startPass()
+     * @return the report of the pass
+     * @throws Exception the first exception thrown by the pass, in the order of the repositories
+     */
+    protected ReportResult<V, StringStatistic> executePass(RepositoryPass<V> pass) throws Exception {
+        final ReportResult<V, StringStatistic> reportResult = new ReportResult<>();
+        evaluateRepositories(reportResult, pass);
+        pass.finish(reportResult);
+        return reportResult;
+    }
+
+    /**
+     * @return the name the task records its messages and keeps its state under
+     */
+    protected String getTaskName() {
+        return taskName;
+    }
+
+    /**
+     * @return the number of days of master commits and pull requests this task evaluates, or 0 if it evaluates none.
+     * Used to determine how much data a shared FetchCycleContext needs to fetch.
+     */
+    protected int getCommitWindowDays() {
+        return 0;
+    }
+
+    /**
+     * @return identifies the rules this task evaluates with; stored commit verdicts and cached repository results
+     * reached with a different version are discarded. Tasks whose rules are configurable (e.g. a list of terms or a
+     * number of days) should override this.
+     */
+    protected String getRulesVersion() {
+        return "1";
+    }
+
+    /**
+     * Evaluate each of the targeted repositories. When the repository parallelism is greater than 1, that many
+     * repositories are evaluated at once, each into a report of its own; the reports are then added to the provided
+     * one in the order of the repositories, so that the output does not depend on which repository finished first.
+     * Statistics trackers shared by the evaluations must only be read for org level stats once this returns.
+     *
+     * @param reportResult the report to which the violations and statistics of all repositories are added
+     * @param evaluator    evaluates a single repository
+     * @throws Exception the first exception thrown by the evaluator, in the order of the repositories
+     */
+    protected void evaluateRepositories(ReportResult<V, StringStatistic> reportResult,
+                                        final RepositoryEvaluator<V> evaluator) throws Exception {
+        final List<GHRepository> repos = fetchCycleContext.getTargetedRepositories();
+        if (repositoryParallelism <= 1 || repos.size() <= 1) {
+            for (GHRepository repo : repos) {
+                evaluator.evaluate(repo, reportResult);
+            }
+            return;
+        }
+
+        final List<Callable<ReportResult<V, StringStatistic>>> evaluations = new ArrayList<>();
+        for (final GHRepository repo : repos) {
+            evaluations.add(new Callable<ReportResult<V, StringStatistic>>() {
+                @Override
+                public ReportResult<V, StringStatistic> call() throws Exception {
+                    final ReportResult<V, StringStatistic> repoResult = new ReportResult<>();
+                    evaluator.evaluate(repo, repoResult);
+                    return repoResult;
+                }
+            });
+        }
+
+        for (ReportResult<V, StringStatistic> repoResult : invokeInOrder(evaluations, repositoryParallelism, "-%d")) {
+            reportResult.addAll(repoResult);
+        }
+    }
+
+    /**
+     * Look up the data needed for each of the provided items of a repository. When the item parallelism is greater
+     * than 1, that many lookups are issued at once; the results are returned in the order of the items either way.
+     *
+     * @param items  the items to look up (e.g. the branches of a repository)
+     * @param lookup looks up a single item
+     * @return the result of the lookup of each item, in the order of the items
+     * @throws IOException the first IOException thrown by a lookup, in the order of the items; the remaining lookups
+     *                     are cancelled
+     */
+    protected <T, R> List<R> lookUpAll(List<T> items, final ItemLookup<T, R> lookup) throws IOException {
+        if (itemParallelism <= 1 || items.size() <= 1) {
+            final List<R> results = new ArrayList<>(items.size());
+            for (T item : items) {
+                results.add(lookup.lookUp(item));
+            }
+            return results;
+        }
+
+        final List<Callable<R>> lookups = new ArrayList<>(items.size());
+        for (final T item : items) {
+            lookups.add(new Callable<R>() {
+                @Override
+                public R call() throws IOException {
+                    return lookup.lookUp(item);
+                }
+            });
+        }
+
+        try {
+            return invokeInOrder(lookups, itemParallelism, "-lookup-%d");
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Run the provided calls with at most the provided number of them at once, on threads that only live as long as
+     * this method does.
+     *
+     * @return the results of the calls, in the order of the calls
+     * @throws Exception the first exception thrown by a call, in the order of the calls; the remaining calls are
+     *                   cancelled
+     */
+    private <R> List<R> invokeInOrder(List<Callable<R>> calls, int parallelism, String threadNameSuffix)
+        throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, calls.size()),
+            new ThreadFactoryBuilder().setNameFormat(taskName + threadNameSuffix).setDaemon(true).build());
+        try {
+            final String currentTask = RateLimitGovernor.getCurrentTask();
+            final List<Future<R>> futures = new ArrayList<>(calls.size());
+            for (final Callable<R> call : calls) {
+                futures.add(executor.submit(new Callable<R>() {
+                    @Override
+                    public R call() throws Exception {
+                        // the requests made on the pool count against the share of the calling task
+                        RateLimitGovernor.setCurrentTask(currentTask);
+                        try {
+                            return call.call();
+                        } finally {
+                            RateLimitGovernor.setCurrentTask(null);
+                        }
+                    }
+                }));
+            }
+
+            final List<R> results = new ArrayList<>(calls.size());
+            for (Future<R> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    Throwables.propagateIfPossible(e.getCause(), Exception.class);
+                    throw Throwables.propagate(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            // interrupts the calls still running if one of them failed
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Adds the standard 3 statistics we typically record to the provided ReportResult.
      * 1) The total number of object evaluated
@@ -142,29 +358,206 @@ public abstract class AbstractScheduledTask<V extends ReportingRecordable> imple
         return StringUtils.substringBefore(repoFullName, "/");
     }
 
-    //TODO: Move this to a utility class
-    protected void assembleCommits(GHRepository repo, GHCommit currentCommit, List<GHCommit> assembledCommits, int numberOfDaysThreshold)
-            throws IOException {
-        // NOTE: "parent" commits are predecessor commits (i.e. the commits that lead up to the current commit)
+    /**
+     * Assemble the commits made to the master branch of the provided repository within the provided number of days.
+     *
+     * @param repo                  the repository whose master commits are to be assembled
+     * @param numberOfDaysThreshold the number of days (counting back from now) that the commits should cover
+     * @return the master commits within the window; each commit appears only once
+     * @throws IOException if there was an error retrieving the branches or commits of the repository
+     */
+    protected List<GitCommit> assembleMasterCommits(GHRepository repo, int numberOfDaysThreshold) throws IOException {
+        return fetchCycleContext.getMasterCommits(repo, numberOfDaysThreshold);
+    }
 
-        // check if the current commit is within our time threshold and if not, don't bother adding it or continuing
-        DateTime commitDate = new DateTime(currentCommit.getCommitShortInfo().getCommitter().getDate());
-        if (commitDate.isBefore(DateTime.now().minusDays(numberOfDaysThreshold))) {
-            return;
+    /**
+     * Evaluate the master commits of the provided repository made within the provided number of days.
+     * When a CommitVerdictStore has been provided, only the commits made since the previous run are evaluated and the
+     * verdicts of the others are taken from the store.
+     *
+     * @param repo                  the repository whose master commits are to be evaluated
+     * @param numberOfDaysThreshold the number of days (counting back from now) that the commits should cover
+     * @param evaluator             evaluates a commit against the rule of this task
+     * @return the verdicts for the master commits within the window, tip first; each commit appears only once
+     * @throws IOException if there was an error retrieving the branches or commits of the repository
+     */
+    protected List<CommitVerdict> evaluateMasterCommits(GHRepository repo, int numberOfDaysThreshold,
+                                                        CommitEvaluator evaluator) throws IOException {
+        return evaluateMasterCommitsInBatch(repo, numberOfDaysThreshold, new PerCommitEvaluator(evaluator));
+    }
+
+    /**
+     * Evaluate the master commits of the provided repository made within the provided number of days, all of those
+     * that need evaluating at once.
+     * When a CommitVerdictStore has been provided, only the commits made since the previous run are evaluated and the
+     * verdicts of the others are taken from the store.
+     *
+     * @param repo                  the repository whose master commits are to be evaluated
+     * @param numberOfDaysThreshold the number of days (counting back from now) that the commits should cover
+     * @param evaluator             evaluates the commits against the rule of this task
+     * @return the verdicts for the master commits within the window, tip first; each commit appears only once
+     * @throws IOException if there was an error retrieving the branches or commits of the repository
+     */
+    protected List<CommitVerdict> evaluateMasterCommitsInBatch(GHRepository repo, int numberOfDaysThreshold,
+                                                               CommitBatchEvaluator evaluator) throws IOException {
+        if (commitVerdictStore != null) {
+            return new IncrementalCommitEvaluator(commitVerdictStore, fetchCycleContext)
+                .evaluateInBatch(taskName, getRulesVersion(), repo, numberOfDaysThreshold, evaluator);
         }
 
-        // go ahead and add the current commit
-        assembledCommits.add(currentCommit);
+        return evaluator.evaluate(assembleMasterCommits(repo, numberOfDaysThreshold));
+    }
 
-        // check if this commit has any parents and if not, end our recursion
-        final List<String> parentSHA1s = currentCommit.getParentSHA1s();
-        if(parentSHA1s == null || parentSHA1s.isEmpty()) {
-            return;
+    /**
+     * Replay what this task reported for the provided repository on a previous run, provided that the repository has
+     * not been pushed to since, the rules did not change and the result did not expire. Nothing is replayed when the
+     * FetchCycleContext forces a full evaluation.
+     *
+     * @param repo          the repository whose result is to be replayed
+     * @param reportResult  the report to which the cached violations and statistics are added
+     * @param statsTrackers the trackers to which the cached hits are added, so that org level stats include them
+     * @return true if the result was replayed, in which case the repository need not be evaluated
+     */
+    protected boolean replayRepositoryResult(GHRepository repo, ReportResult<V, StringStatistic> reportResult,
+                                             GitStatisticsTracker... statsTrackers) {
+        if (fetchCycleContext.isForceFullEvaluation()) {
+            return false;
         }
+        final String repoFullName = repo.getFullName();
+        return repositoryResultCache.replay(repoFullName, targetRepositories.getPushedAt(repoFullName),
+            getReplayVersion(), reportResult, statsTrackers);
+    }
+
+    /**
+     * Start recording what this task reports for the provided repository so that it can be replayed on the next run.
+     * The recording must be finished once the repository has been evaluated.
+     *
+     * @param repo          the repository being evaluated
+     * @param reportResult  the report the task adds its violations and statistics to
+     * @param statsTrackers the trackers the task adds its hits to; same order as when replaying
+     * @return the recording
+     */
+    protected RepositoryResultCache<V>.Recording recordRepositoryResult(GHRepository repo,
+                                                                        ReportResult<V, StringStatistic> reportResult,
+                                                                        GitStatisticsTracker... statsTrackers) {
+        final String repoFullName = repo.getFullName();
+        return repositoryResultCache.startRecording(repoFullName, targetRepositories.getPushedAt(repoFullName),
+            getReplayVersion(), reportResult, statsTrackers);
+    }
 
-        // recurse over all of the parents
-        for(String parentSHA1 : parentSHA1s) {
-            assembleCommits(repo, repo.getCommit(parentSHA1), assembledCommits, numberOfDaysThreshold);
+    /**
+     * @param verdicts              the verdicts for the master commits within a window
+     * @param numberOfDaysThreshold the number of days (counting back from now) that the window covers
+     * @return when the oldest of the commits leaves the window, or null if there are no commits in the window
+     */
+    protected static Date getWindowExpiry(List<CommitVerdict> verdicts, int numberOfDaysThreshold) {
+        Date expiresAt = null;
+        for (CommitVerdict verdict : verdicts) {
+            final Date leavesWindowAt = new DateTime(verdict.getCommittedAt()).plusDays(numberOfDaysThreshold).toDate();
+            if (expiresAt == null || leavesWindowAt.before(expiresAt)) {
+                expiresAt = leavesWindowAt;
+            }
         }
+        return expiresAt;
+    }
+
+    private String getReplayVersion() {
+        return getRulesVersion() + "/" + getCommitWindowDays();
+    }
+
+    protected CommitVerdict newVerdict(GitCommit commit, boolean positive) {
+        return newVerdict(commit, positive, Collections.<String>emptyList());
+    }
+
+    protected CommitVerdict newVerdict(GitCommit commit, boolean positive, List<String> details) {
+        return new CommitVerdict(commit.getSha1(), commit.getCommitterName(), commit.getCommittedAt(), positive,
+            details);
+    }
+
+    public CommitVerdictStore getCommitVerdictStore() {
+        return commitVerdictStore;
+    }
+
+    /**
+     * @param commitVerdictStore keeps the verdicts of this task between runs, so that only new commits are evaluated;
+     *                           null to evaluate every commit in the window on every run
+     */
+    public void setCommitVerdictStore(CommitVerdictStore commitVerdictStore) {
+        this.commitVerdictStore = commitVerdictStore;
+    }
+
+    public RepositoryResultCache<V> getRepositoryResultCache() {
+        return repositoryResultCache;
+    }
+
+    @ManagedAttribute
+    public int getRepositoryParallelism() {
+        return repositoryParallelism;
+    }
+
+    /**
+     * @param repositoryParallelism the number of repositories to evaluate at once; 1 to evaluate them one by one
+     */
+    @ManagedAttribute
+    public void setRepositoryParallelism(int repositoryParallelism) {
+        this.repositoryParallelism = repositoryParallelism;
+    }
+
+    @ManagedAttribute
+    public int getItemParallelism() {
+        return itemParallelism;
+    }
+
+    /**
+     * @param itemParallelism the number of lookups (e.g. of branch head commits) to issue at once for a repository;
+     *                        1 to issue them one by one
+     */
+    @ManagedAttribute
+    public void setItemParallelism(int itemParallelism) {
+        this.itemParallelism = itemParallelism;
+    }
+
+    /**
+     * @param rateLimitGovernor shares the GitHub API rate limit between the tasks; this task is guaranteed a share
+     *                          while it is running
+     */
+    public void setRateLimitGovernor(RateLimitGovernor rateLimitGovernor) {
+        this.rateLimitGovernor = rateLimitGovernor;
+        rateLimitGovernor.registerTask(taskName);
+    }
+
+    /**
+     * Have the RateLimitGovernor, if any, guarantee this task a share of the budget until releaseRateLimitShare()
+     * is called.
+     */
+    void claimRateLimitShare() {
+        if (rateLimitGovernor != null) {
+            rateLimitGovernor.startTask(taskName);
+        }
+    }
+
+    /**
+     * Hand the share of this task back to the other tasks, once it stopped making requests.
+     */
+    void releaseRateLimitShare() {
+        if (rateLimitGovernor != null) {
+            rateLimitGovernor.finishTask(taskName);
+        }
+    }
+
+    public FetchCycleContext getFetchCycleContext() {
+        return fetchCycleContext;
+    }
+
+    /**
+     * Share a FetchCycleContext with other tasks so that data fetched by one task is reused by the others.
+     * The owner of a shared context is responsible for beginning and ending its cycles.
+     *
+     * @param fetchCycleContext the context to be shared
+     */
+    public void setFetchCycleContext(FetchCycleContext fetchCycleContext) {
+        this.fetchCycleContext = fetchCycleContext;
+        this.ownsFetchCycleContext = false;
+        fetchCycleContext.registerTask(this);
     }
 }
@@ -0,0 +1,22 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.domain.CommitVerdict;
+import com.gitinspector.domain.GitCommit;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Evaluates the commits of a repository against the rule of a task all at once, so that whatever the rule needs
+ * (e.g. indexes of the pull requests of the repository) can be set up, and its requests batched, once per repository
+ * rather than once per commit.
+ */
+public interface CommitBatchEvaluator {
+
+    /**
+     * @param commits the commits to evaluate, all from the same repository, tip first
+     * @return the verdicts for the commits, in the order of the commits
+     * @throws IOException if there was an error retrieving what the rule needs
+     */
+    List<CommitVerdict> evaluate(List<GitCommit> commits) throws IOException;
+}
@@ -0,0 +1,14 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.domain.CommitVerdict;
+import com.gitinspector.domain.GitCommit;
+
+import java.io.IOException;
+
+/**
+ * Evaluates a single commit against the rule of a task.
+ */
+public interface CommitEvaluator {
+
+    CommitVerdict evaluate(GitCommit commit) throws IOException;
+}
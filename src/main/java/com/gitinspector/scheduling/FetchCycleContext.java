@@ -0,0 +1,316 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.TargetRepositories;
+import com.gitinspector.commits.CommitDataSource;
+import com.gitinspector.commits.CommitWindowWalker;
+import com.gitinspector.domain.GitCommit;
+import com.gitinspector.github.GitHubRestClient;
+import com.gitinspector.store.PullRequestStore;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.kohsuke.github.GHRepository;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the data the scheduled tasks read from git (targeted repositories, branch tips, master commit windows
+ * and closed pull requests) that can be shared by all of the tasks that run during the same cycle, so that each
+ * piece of data is fetched once per cycle rather than once per task.
+ * Master commit windows and pull request lists are fetched for the widest number of days needed by any of the
+ * registered tasks and narrowed in memory for the tasks that need fewer days.
+ * A cycle is started explicitly via beginCycle() (e.g. by JmxSchedulingManager.executeAllTasksImmediately); entries
+ * also expire after a TTL so that tasks triggered independently of each other never see stale data.
+ */
+@ManagedResource(description = "Shares the data fetched from git between the scheduled tasks of a cycle")
+public class FetchCycleContext {
+
+    private static final int DEFAULT_CYCLE_TTL_MINUTES = 60;
+
+    private static final String TARGETED_REPOSITORIES_KEY = "targetedRepositories";
+
+    private TargetRepositories targetRepositories;
+
+    private CommitWindowWalker commitWindowWalker = new CommitWindowWalker();
+
+    private PullRequestStore pullRequestStore;
+
+    private GitHubRestClient restClient;
+
+    private boolean forceFullEvaluation;
+
+    private List<AbstractScheduledTask<?>> registeredTasks = new CopyOnWriteArrayList<>();
+
+    private Cache<String, List<GHRepository>> targetedRepositoriesCache;
+
+    private Cache<String, Map<String, String>> branchTipsCache;
+
+    private Cache<String, CommitWindow> masterCommitWindowCache;
+
+    private Cache<String, PullRequestFetcher> pullRequestFetcherCache;
+
+    public FetchCycleContext(TargetRepositories targetRepositories) {
+        this(targetRepositories, DEFAULT_CYCLE_TTL_MINUTES);
+    }
+
+    public FetchCycleContext(TargetRepositories targetRepositories, int cycleTtlMinutes) {
+        this.targetRepositories = targetRepositories;
+        this.targetedRepositoriesCache = buildCache(cycleTtlMinutes);
+        this.branchTipsCache = buildCache(cycleTtlMinutes);
+        this.masterCommitWindowCache = buildCache(cycleTtlMinutes);
+        this.pullRequestFetcherCache = buildCache(cycleTtlMinutes);
+    }
+
+    /**
+     * Register a task that reads from this context so that its commit window is taken into account when
+     * determining how many days of commits and pull requests to fetch.
+     *
+     * @param task the task reading from this context
+     */
+    public void registerTask(AbstractScheduledTask<?> task) {
+        if (!registeredTasks.contains(task)) {
+            registeredTasks.add(task);
+        }
+    }
+
+    /**
+     * Start a new cycle; everything fetched during the previous cycle is discarded.
+     */
+    @ManagedOperation
+    public void beginCycle() {
+        invalidateAll();
+    }
+
+    /**
+     * End the current cycle, releasing everything that was fetched during it.
+     */
+    @ManagedOperation
+    public void endCycle() {
+        invalidateAll();
+    }
+
+    /**
+     * @return the widest number of days of master commits and pull requests needed by any of the registered tasks
+     */
+    @ManagedAttribute
+    public int getWidestCommitWindowDays() {
+        int widestCommitWindowDays = 0;
+        for (AbstractScheduledTask<?> task : registeredTasks) {
+            widestCommitWindowDays = Math.max(widestCommitWindowDays, task.getCommitWindowDays());
+        }
+        return widestCommitWindowDays;
+    }
+
+    public List<GHRepository> getTargetedRepositories() throws IOException {
+        return new ArrayList<>(get(targetedRepositoriesCache, TARGETED_REPOSITORIES_KEY, new Callable<List<GHRepository>>() {
+            @Override
+            public List<GHRepository> call() throws Exception {
+                return targetRepositories.getTargetedRepositories();
+            }
+        }));
+    }
+
+    /**
+     * @param repo the repository whose branches are requested
+     * @return the SHA of the tip commit of each branch of the repository, by branch name, read from the commit data
+     * source of the walker
+     * @throws IOException if there was an error retrieving the branches of the repository
+     */
+    public Map<String, String> getBranchTips(final GHRepository repo) throws IOException {
+        return get(branchTipsCache, repo.getFullName(), new Callable<Map<String, String>>() {
+            @Override
+            public Map<String, String> call() throws Exception {
+                return commitWindowWalker.getCommitDataSource().getBranchTips(repo);
+            }
+        });
+    }
+
+    /**
+     * @param repo the repository whose master tip is being requested
+     * @return the SHA of the commit at the tip of the repository's master branch, or null if it has no master branch
+     * (e.g. it is empty)
+     * @throws IOException if there was an error retrieving the branches of the repository
+     */
+    public String getMasterTipSha1(GHRepository repo) throws IOException {
+        return getBranchTips(repo).get(repo.getMasterBranch());
+    }
+
+    /**
+     * Return the commits made to the master branch of the provided repository within the provided number of days.
+     *
+     * @param repo                  the repository whose master commits are to be returned
+     * @param numberOfDaysThreshold the number of days (counting back from now) that the commits should cover
+     * @return the master commits within the window; each commit appears only once
+     * @throws IOException if there was an error retrieving the branches or commits of the repository
+     */
+    public List<GitCommit> getMasterCommits(GHRepository repo, int numberOfDaysThreshold) throws IOException {
+        final String repoFullName = repo.getFullName();
+
+        CommitWindow commitWindow = masterCommitWindowCache.getIfPresent(repoFullName);
+        if (commitWindow == null || commitWindow.getNumberOfDaysThreshold() < numberOfDaysThreshold) {
+            final int widestNumberOfDays = Math.max(numberOfDaysThreshold, getWidestCommitWindowDays());
+            commitWindow = new CommitWindow(widestNumberOfDays,
+                commitWindowWalker.assembleCommits(repo, getMasterTipSha1(repo), widestNumberOfDays));
+            masterCommitWindowCache.put(repoFullName, commitWindow);
+        }
+
+        if (commitWindow.getNumberOfDaysThreshold() == numberOfDaysThreshold) {
+            return new ArrayList<>(commitWindow.getCommits());
+        }
+        return commitWindowWalker.narrowWindow(commitWindow.getCommits(), numberOfDaysThreshold);
+    }
+
+    /**
+     * Return a single commit of the provided repository, read from the commit data source of the walker.
+     *
+     * @param repo the repository the commit belongs to
+     * @param sha1 the SHA of the commit (e.g. the head of a branch or pull request)
+     * @return the commit
+     * @throws IOException if there was an error retrieving the commit
+     */
+    public GitCommit getCommit(GHRepository repo, String sha1) throws IOException {
+        return commitWindowWalker.getCommit(repo, sha1);
+    }
+
+    /**
+     * Return a PullRequestFetcher for the closed pull requests of the provided repository. The pull requests are
+     * loaded once per cycle for the widest number of days needed by any of the registered tasks.
+     *
+     * @param repo                  the repository whose pull requests are to be fetched
+     * @param numberOfDaysThreshold the number of days (counting back from now) that the pull requests should cover
+     * @return a PullRequestFetcher covering the requested number of days
+     * @throws IOException if the fetcher could not be created
+     */
+    public PullRequestFetcher getPullRequestFetcher(final GHRepository repo, int numberOfDaysThreshold) throws IOException {
+        final String repoFullName = repo.getFullName();
+
+        PullRequestFetcher pullRequestFetcher = pullRequestFetcherCache.getIfPresent(repoFullName);
+        if (pullRequestFetcher == null || pullRequestFetcher.getNumberOfDaysThreshold() < numberOfDaysThreshold) {
+            pullRequestFetcher = new PullRequestFetcher(getRestClient(), repo,
+                Math.max(numberOfDaysThreshold, getWidestCommitWindowDays()), pullRequestStore);
+            pullRequestFetcherCache.put(repoFullName, pullRequestFetcher);
+        }
+
+        return pullRequestFetcher.narrowTo(numberOfDaysThreshold);
+    }
+
+    /**
+     * @return true if the registered tasks evaluate every repository, rather than replaying their previous result for
+     * the repositories that have not been pushed to since
+     */
+    @ManagedAttribute
+    public boolean isForceFullEvaluation() {
+        return forceFullEvaluation;
+    }
+
+    @ManagedAttribute
+    public void setForceFullEvaluation(boolean forceFullEvaluation) {
+        this.forceFullEvaluation = forceFullEvaluation;
+    }
+
+    public CommitWindowWalker getCommitWindowWalker() {
+        return commitWindowWalker;
+    }
+
+    public void setCommitWindowWalker(CommitWindowWalker commitWindowWalker) {
+        this.commitWindowWalker = commitWindowWalker;
+        masterCommitWindowCache.invalidateAll();
+    }
+
+    /**
+     * Choose where the commits and branch tips are read from (e.g. the GitHub API or the local mirrors of the
+     * repositories) by all of the tasks reading from this context.
+     *
+     * @param commitDataSource where the commits and branch tips are read from
+     */
+    public void setCommitDataSource(CommitDataSource commitDataSource) {
+        commitWindowWalker.setCommitDataSource(commitDataSource);
+        branchTipsCache.invalidateAll();
+        masterCommitWindowCache.invalidateAll();
+    }
+
+    public PullRequestStore getPullRequestStore() {
+        return pullRequestStore;
+    }
+
+    /**
+     * @param pullRequestStore keeps closed pull requests between runs, so that only the changed ones are fetched;
+     *                         null to fetch all of them every cycle
+     */
+    public void setPullRequestStore(PullRequestStore pullRequestStore) {
+        this.pullRequestStore = pullRequestStore;
+        pullRequestFetcherCache.invalidateAll();
+    }
+
+    /**
+     * @return the client the pull requests are listed with; unless one was provided, a client authenticating the way
+     * the GitHub client of the targeted repositories does, through its connector
+     */
+    public GitHubRestClient getRestClient() {
+        if (restClient == null) {
+            restClient = GitHubRestClient.forClient(targetRepositories.getGitHub());
+        }
+        return restClient;
+    }
+
+    /**
+     * @param restClient the client the pull requests are listed with (see GitHubClientFactory.createRestClient)
+     */
+    public void setRestClient(GitHubRestClient restClient) {
+        this.restClient = restClient;
+        pullRequestFetcherCache.invalidateAll();
+    }
+
+    private void invalidateAll() {
+        targetedRepositoriesCache.invalidateAll();
+        branchTipsCache.invalidateAll();
+        masterCommitWindowCache.invalidateAll();
+        pullRequestFetcherCache.invalidateAll();
+    }
+
+    private static <T> Cache<String, T> buildCache(int cycleTtlMinutes) {
+        return CacheBuilder.newBuilder()
+            .expireAfterWrite(cycleTtlMinutes, TimeUnit.MINUTES)
+            .build();
+    }
+
+    private static <T> T get(Cache<String, T> cache, String key, Callable<T> loader) throws IOException {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * The master commits of a repository along with the number of days they cover.
+     */
+    private static class CommitWindow {
+        private int numberOfDaysThreshold;
+        private List<GitCommit> commits;
+
+        public CommitWindow(int numberOfDaysThreshold, List<GitCommit> commits) {
+            this.numberOfDaysThreshold = numberOfDaysThreshold;
+            this.commits = commits;
+        }
+
+        public int getNumberOfDaysThreshold() {
+            return numberOfDaysThreshold;
+        }
+
+        public List<GitCommit> getCommits() {
+            return commits;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.domain.ReportResult;
+import com.gitinspector.domain.recordable.BadCommit;
+import com.gitinspector.domain.recordable.CommitWithProfanity;
+import com.gitinspector.domain.recordable.FlaggedCommit;
+import com.gitinspector.domain.recordable.ReportingRecordable;
+import com.gitinspector.domain.recordable.StringStatistic;
+import com.gitinspector.domain.recordable.Violation;
+import com.gitinspector.github.RateLimitGovernor;
+import com.gitinspector.recording.TaskMessageRecorder;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.kohsuke.github.GHRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs several tasks as a single pass over the targeted repositories: each repository is visited once and evaluated
+ * by each of the tasks in turn, so that what is loaded for it (e.g. its master commits) is loaded once, through the
+ * FetchCycleContext the tasks share, and used by all of them while it is at hand, rather than each task crawling all
+ * of the repositories on its own.
+ * Each task still reports under its own name, with statistics of its own; the commits flagged by any of the tasks are
+ * reported once each instead, under the name of the runner, as a FlaggedCommit naming every task that flagged it.
+ * Tasks that cannot be split by repository are run on their own once the pass is over, within the same cycle.
+ */
+public class FusedTaskRunner implements Runnable {
+
+    private String name = FusedTaskRunner.class.getSimpleName();
+
+    private FetchCycleContext fetchCycleContext;
+
+    private TaskMessageRecorder messageRecorder;
+
+    private List<AbstractScheduledTask<Violation>> tasks;
+
+    /**
+     * @param fetchCycleContext the context the tasks are made to share, and whose cycle the runner begins and ends
+     * @param messageRecorder   records the messages of the runner, including the flagged commits
+     * @param tasks             the tasks to run, in the order in which they evaluate each repository
+     */
+    public FusedTaskRunner(FetchCycleContext fetchCycleContext, TaskMessageRecorder messageRecorder,
+                           List<? extends AbstractScheduledTask<Violation>> tasks) {
+        this.fetchCycleContext = fetchCycleContext;
+        this.messageRecorder = messageRecorder;
+        this.tasks = new ArrayList<>(tasks);
+        for (AbstractScheduledTask<Violation> task : tasks) {
+            task.setFetchCycleContext(fetchCycleContext);
+        }
+    }
+
+    @Override
+    public void run() {
+        messageRecorder.recordStateRelatedMessage(name, "starting");
+        fetchCycleContext.beginCycle();
+        try {
+            final List<AbstractScheduledTask<Violation>> unfusedTasks = runPass();
+
+            for (AbstractScheduledTask<Violation> task : unfusedTasks) {
+                task.run();
+            }
+        } finally {
+            fetchCycleContext.endCycle();
+        }
+        messageRecorder.recordStateRelatedMessage(name, "complete");
+    }
+
+    /**
+     * Run a pass of each of the tasks that can be split by repository, visiting each repository once.
+     *
+     * @return the tasks that cannot be split by repository
+     */
+    private List<AbstractScheduledTask<Violation>> runPass() {
+        final List<AbstractScheduledTask<Violation>> unfusedTasks = new ArrayList<>();
+        final Map<AbstractScheduledTask<Violation>, RepositoryPass<Violation>> passes = new LinkedHashMap<>();
+        final Map<AbstractScheduledTask<Violation>, ReportResult<Violation, StringStatistic>> reportResults =
+            new LinkedHashMap<>();
+        for (AbstractScheduledTask<Violation> task : tasks) {
+            final RepositoryPass<Violation> pass = task.startPass();
+            if (pass == null) {
+                unfusedTasks.add(task);
+                continue;
+            }
+
+            messageRecorder.recordStateRelatedMessage(task.getTaskName(), "starting");
+            messageRecorder.recordReportingMessage(task.getTaskName(), "message=" + task.getRuleMessage());
+            passes.put(task, pass);
+            reportResults.put(task, new ReportResult<Violation, StringStatistic>());
+        }
+
+        // each task is guaranteed its share of the rate limit for as long as the pass runs, or until it fails
+        final Set<AbstractScheduledTask<Violation>> runningTasks = new HashSet<>(passes.keySet());
+        for (AbstractScheduledTask<Violation> task : runningTasks) {
+            task.claimRateLimitShare();
+        }
+        try {
+            visitRepositories(passes, reportResults, runningTasks);
+        } finally {
+            for (AbstractScheduledTask<Violation> task : runningTasks) {
+                task.releaseRateLimitShare();
+            }
+        }
+        return unfusedTasks;
+    }
+
+    private void visitRepositories(Map<AbstractScheduledTask<Violation>, RepositoryPass<Violation>> passes,
+                                   Map<AbstractScheduledTask<Violation>, ReportResult<Violation, StringStatistic>>
+                                       reportResults,
+                                   Set<AbstractScheduledTask<Violation>> runningTasks) {
+        List<GHRepository> repos;
+        try {
+            repos = fetchCycleContext.getTargetedRepositories();
+        } catch (Exception e) {
+            for (AbstractScheduledTask<Violation> task : passes.keySet()) {
+                fail(task, e);
+            }
+            return;
+        }
+
+        for (GHRepository repo : repos) {
+            final Iterator<AbstractScheduledTask<Violation>> taskIterator = passes.keySet().iterator();
+            while (taskIterator.hasNext()) {
+                final AbstractScheduledTask<Violation> task = taskIterator.next();
+                // the requests made while evaluating count against the share of the task
+                RateLimitGovernor.setCurrentTask(task.getTaskName());
+                try {
+                    passes.get(task).evaluate(repo, reportResults.get(task));
+                } catch (Exception e) {
+                    // as when the task runs on its own, a failure ends its run; the other tasks go on
+                    fail(task, e);
+                    taskIterator.remove();
+                    reportResults.remove(task);
+                    runningTasks.remove(task);
+                    task.releaseRateLimitShare();
+                } finally {
+                    RateLimitGovernor.setCurrentTask(null);
+                }
+            }
+        }
+
+        for (Map.Entry<AbstractScheduledTask<Violation>, RepositoryPass<Violation>> entry : passes.entrySet()) {
+            entry.getValue().finish(reportResults.get(entry.getKey()));
+        }
+        record(reportResults);
+    }
+
+    /**
+     * Record what each task reported under its own name, except for the flagged commits, which are consolidated
+     * into a single FlaggedCommit per commit.
+     */
+    private void record(Map<AbstractScheduledTask<Violation>, ReportResult<Violation, StringStatistic>> reportResults) {
+        final Map<String, FlaggedCommit> flaggedCommits = new LinkedHashMap<>();
+        for (Map.Entry<AbstractScheduledTask<Violation>, ReportResult<Violation, StringStatistic>> entry
+            : reportResults.entrySet()) {
+            final String taskName = entry.getKey().getTaskName();
+            for (ReportingRecordable reportingRecordable : entry.getValue().getAllReportingRecordables()) {
+                if (reportingRecordable instanceof BadCommit) {
+                    addFlaggedCommit(flaggedCommits, taskName, (BadCommit) reportingRecordable);
+                } else {
+                    messageRecorder.recordReportingRecordable(taskName, reportingRecordable);
+                }
+            }
+        }
+
+        for (FlaggedCommit flaggedCommit : flaggedCommits.values()) {
+            messageRecorder.recordReportingRecordable(name, flaggedCommit);
+        }
+        for (AbstractScheduledTask<Violation> task : reportResults.keySet()) {
+            messageRecorder.recordStateRelatedMessage(task.getTaskName(), "complete");
+        }
+    }
+
+    private static void addFlaggedCommit(Map<String, FlaggedCommit> flaggedCommits, String taskName,
+                                         BadCommit badCommit) {
+        final String key = badCommit.getRepoFullName() + "@" + badCommit.getCommitSha();
+        FlaggedCommit flaggedCommit = flaggedCommits.get(key);
+        if (flaggedCommit == null) {
+            flaggedCommit = new FlaggedCommit(badCommit.getOrgName(), badCommit.getRepoFullName(),
+                badCommit.getRepoOwner(), badCommit.getCommitter(), badCommit.getCommitSha());
+            flaggedCommits.put(key, flaggedCommit);
+        }
+
+        flaggedCommit.addRule(taskName, badCommit instanceof CommitWithProfanity
+            ? ((CommitWithProfanity) badCommit).getProfanityList() : Collections.<String>emptyList());
+    }
+
+    private void fail(AbstractScheduledTask<Violation> task, Exception e) {
+        messageRecorder.recordError(task.getTaskName(), ExceptionUtils.getFullStackTrace(e));
+        messageRecorder.recordStateRelatedMessage(task.getTaskName(), "complete");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name the name the runner records its messages, including the flagged commits, under
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,138 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.commits.CommitWindowWalker;
+import com.gitinspector.domain.CommitVerdict;
+import com.gitinspector.domain.GitCommit;
+import com.gitinspector.store.CommitCheckpoint;
+import com.gitinspector.store.CommitVerdictStore;
+import org.kohsuke.github.GHRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates the master commits of a repository using the checkpoint a task stored on its previous run: only the
+ * commits between the checkpointed tip and the current tip are evaluated, and their verdicts are merged with the
+ * stored ones that are still within the window.
+ * The whole window is evaluated when there is no usable checkpoint, i.e. when there is none, when the rules or the
+ * window changed, or when the checkpointed tip is no longer an ancestor of the current tip (e.g. after a force push).
+ */
+public class IncrementalCommitEvaluator {
+    private static final Logger log = LoggerFactory.getLogger(IncrementalCommitEvaluator.class);
+
+    private CommitVerdictStore commitVerdictStore;
+
+    private FetchCycleContext fetchCycleContext;
+
+    public IncrementalCommitEvaluator(CommitVerdictStore commitVerdictStore, FetchCycleContext fetchCycleContext) {
+        this.commitVerdictStore = commitVerdictStore;
+        this.fetchCycleContext = fetchCycleContext;
+    }
+
+    /**
+     * @param taskName              the name of the task the commits are evaluated for
+     * @param rulesVersion          identifies the rules of the task; a checkpoint made with other rules is discarded
+     * @param repo                  the repository whose master commits are evaluated
+     * @param numberOfDaysThreshold the number of days (counting back from now) that the window covers
+     * @param evaluator             evaluates a commit
+     * @return the verdicts for all of the master commits within the window, tip first
+     * @throws IOException if there was an error retrieving the branches or commits of the repository
+     */
+    public List<CommitVerdict> evaluate(String taskName, String rulesVersion, GHRepository repo,
+                                        int numberOfDaysThreshold, CommitEvaluator evaluator) throws IOException {
+        return evaluateInBatch(taskName, rulesVersion, repo, numberOfDaysThreshold, new PerCommitEvaluator(evaluator));
+    }
+
+    /**
+     * @param taskName              the name of the task the commits are evaluated for
+     * @param rulesVersion          identifies the rules of the task; a checkpoint made with other rules is discarded
+     * @param repo                  the repository whose master commits are evaluated
+     * @param numberOfDaysThreshold the number of days (counting back from now) that the window covers
+     * @param evaluator             evaluates the commits that have no stored verdict, all at once
+     * @return the verdicts for all of the master commits within the window, tip first
+     * @throws IOException if there was an error retrieving the branches or commits of the repository
+     */
+    public List<CommitVerdict> evaluateInBatch(String taskName, String rulesVersion, GHRepository repo,
+                                               int numberOfDaysThreshold, CommitBatchEvaluator evaluator)
+        throws IOException {
+        final String repoFullName = repo.getFullName();
+        final CommitWindowWalker walker = fetchCycleContext.getCommitWindowWalker();
+        final String tipSha1 = fetchCycleContext.getMasterTipSha1(repo);
+        final Date since = walker.getSinceDate(numberOfDaysThreshold);
+
+        CommitCheckpoint checkpoint = commitVerdictStore.load(taskName, repoFullName);
+        if (checkpoint != null && (!rulesVersion.equals(checkpoint.getRulesVersion())
+            || checkpoint.getNumberOfDaysThreshold() < numberOfDaysThreshold)) {
+            checkpoint = null;
+        }
+
+        List<CommitVerdict> verdicts = null;
+        if (checkpoint != null) {
+            verdicts = evaluateNewCommits(repo, tipSha1, numberOfDaysThreshold, checkpoint, evaluator);
+        }
+        if (verdicts == null) {
+            verdicts = evaluator.evaluate(fetchCycleContext.getMasterCommits(repo, numberOfDaysThreshold));
+        }
+
+        // drop the verdicts of commits that have aged out of the window
+        final List<CommitVerdict> windowVerdicts = new ArrayList<>();
+        for (CommitVerdict verdict : verdicts) {
+            if (!verdict.getCommittedAt().before(since)) {
+                windowVerdicts.add(verdict);
+            }
+        }
+
+        try {
+            commitVerdictStore.save(taskName, repoFullName,
+                new CommitCheckpoint(tipSha1, numberOfDaysThreshold, rulesVersion, windowVerdicts));
+        } catch (IOException e) {
+            // not fatal, the next run will just have to evaluate the whole window again
+            log.warn("Could not store the checkpoint of {} for {}", taskName, repoFullName, e);
+        }
+
+        return windowVerdicts;
+    }
+
+    /**
+     * @return the verdicts for the new commits followed by the stored verdicts, or null if the checkpointed tip is
+     * not an ancestor of the current tip
+     */
+    private List<CommitVerdict> evaluateNewCommits(GHRepository repo, String tipSha1, int numberOfDaysThreshold,
+                                                   CommitCheckpoint checkpoint, CommitBatchEvaluator evaluator)
+        throws IOException {
+        final Map<String, CommitVerdict> storedVerdicts = new HashMap<>();
+        for (CommitVerdict verdict : checkpoint.getVerdicts()) {
+            storedVerdicts.put(verdict.getSha1(), verdict);
+        }
+
+        final String checkpointTipSha1 = checkpoint.getTipSha1();
+        final CommitVerdict checkpointTip = storedVerdicts.get(checkpointTipSha1);
+        if (checkpointTip == null) {
+            // the checkpointed tip is outside of the window, so the new commits make up the whole window anyway
+            return null;
+        }
+
+        final List<GitCommit> newCommits = fetchCycleContext.getCommitWindowWalker().assembleNewCommits(repo, tipSha1,
+            numberOfDaysThreshold, storedVerdicts.keySet(), checkpointTip.getCommittedAt());
+
+        boolean reachesCheckpoint = tipSha1.equals(checkpointTipSha1);
+        for (GitCommit commit : newCommits) {
+            reachesCheckpoint |= commit.getParentSha1s().contains(checkpointTipSha1);
+        }
+        if (!reachesCheckpoint) {
+            log.info("{} is not an ancestor of the master tip of {}, evaluating the whole window", checkpointTipSha1,
+                repo.getFullName());
+            return null;
+        }
+
+        final List<CommitVerdict> verdicts = new ArrayList<>(evaluator.evaluate(newCommits));
+        verdicts.addAll(checkpoint.getVerdicts());
+        return verdicts;
+    }
+}
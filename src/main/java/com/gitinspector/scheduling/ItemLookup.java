@@ -0,0 +1,12 @@
+package com.gitinspector.scheduling;
+
+import java.io.IOException;
+
+/**
+ * Looks up the data a task needs for a single item of a repository (e.g. the head commit of a branch). Lookups of
+ * different items are independent of each other and may run concurrently.
+ */
+public interface ItemLookup<T, R> {
+
+    R lookUp(T item) throws IOException;
+}
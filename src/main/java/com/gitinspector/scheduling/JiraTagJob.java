@@ -1,22 +1,23 @@
 package com.gitinspector.scheduling;
 
 import com.gitinspector.TargetRepositories;
+import com.gitinspector.domain.CommitVerdict;
+import com.gitinspector.domain.GitCommit;
 import com.gitinspector.domain.ReportResult;
 import com.gitinspector.domain.recordable.BadCommit;
 import com.gitinspector.domain.recordable.StringStatistic;
 import com.gitinspector.domain.recordable.Violation;
+import com.gitinspector.matching.CommitMessageRules;
 import com.gitinspector.ownership.RepoOwnership;
 import com.gitinspector.recording.TaskMessageRecorder;
 import com.gitinspector.stats.GitStatisticsTracker;
-import org.kohsuke.github.GHBranch;
-import org.kohsuke.github.GHCommit;
 import org.kohsuke.github.GHRepository;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.regex.Pattern;
 
 import static com.gitinspector.stats.StatsLevel.ORG_LEVEL;
 import static com.gitinspector.stats.StatsLevel.REPOSITORY_LEVEL;
@@ -33,6 +34,13 @@ public class JiraTagJob extends AbstractScheduledTask<Violation> {
 
     private int numberOfDaysThreshold;
 
+    private CommitMessageRules commitMessageRules = new CommitMessageRules();
+
+    private List<String> validRuleNames =
+        Arrays.asList(CommitMessageRules.JIRA_KEY, CommitMessageRules.RELEASE_PLUGIN);
+
+    private BitSet validRuleMask = commitMessageRules.getMask(validRuleNames);
+
     public JiraTagJob(TargetRepositories targetRepositories, TaskMessageRecorder messageRecorder,
         RepoOwnership repoOwnership, int numberOfDaysThreshold) {
         super(messageRecorder, repoOwnership, targetRepositories);
@@ -41,40 +49,57 @@ public class JiraTagJob extends AbstractScheduledTask<Violation> {
 
     @Override
     public ReportResult<Violation, StringStatistic> execute() throws Exception {
+        return executePass(startPass());
+    }
 
-        ReportResult<Violation, StringStatistic> reportResult = new ReportResult<>();
-        GitStatisticsTracker statsTracker = new GitStatisticsTracker("commitsWithJIRATag");
+    @Override
+    protected RepositoryPass<Violation> startPass() {
+        final GitStatisticsTracker statsTracker = new GitStatisticsTracker("commitsWithJIRATag");
+
+        return new RepositoryPass<Violation>() {
+            @Override
+            public void evaluate(GHRepository repo, ReportResult<Violation, StringStatistic> repoResult)
+                throws Exception {
+                // nothing was pushed since the previous run, so the result would be the same
+                if (replayRepositoryResult(repo, repoResult, statsTracker)) {
+                    return;
+                }
 
-        for (GHRepository repo : targetRepositories.getTargetedRepositories()) {
-            String repoFullName = repo.getFullName();
+                String repoFullName = repo.getFullName();
+                final RepositoryResultCache<Violation>.Recording recording =
+                    recordRepositoryResult(repo, repoResult, statsTracker);
 
-            final GHBranch masterBranch = repo.getBranches().get(repo.getMasterBranch());
-            final GHCommit masterTipCommit = repo.getCommit(masterBranch.getSHA1());
-            List<GHCommit> masterCommits = new ArrayList<>();
-            assembleCommits(repo, masterTipCommit, masterCommits, numberOfDaysThreshold);
+                final List<CommitVerdict> verdicts = evaluateMasterCommits(repo, numberOfDaysThreshold, new CommitEvaluator() {
+                    @Override
+                    public CommitVerdict evaluate(GitCommit commit) {
+                        return newVerdict(commit, isCommitValid(commit.getMessage()));
+                    }
+                });
 
-            for (GHCommit commit : masterCommits) {
-                String commitMessage = commit.getCommitShortInfo().getMessage();
+                for (CommitVerdict verdict : verdicts) {
+                    boolean isCommitValid = verdict.isPositive();
 
-                boolean isCommitValid = isCommitValid(commitMessage);
+                    if (!isCommitValid) {
+                        repoResult.addViolation(new BadCommit(getOrgNameFromRepoName(repoFullName), repoFullName,
+                            getOwnerUsername(repoFullName), verdict.getCommitterName(), verdict.getSha1()));
+                    }
 
-                if (!isCommitValid) {
-                    reportResult.addViolation(new BadCommit(getOrgNameFromRepoName(repoFullName), repoFullName,
-                        getOwnerUsername(repoFullName), commit.getCommitShortInfo().getCommitter().getName(), commit.getSHA1()));
+                    statsTracker.addHitToRepo(repoFullName, isCommitValid);
                 }
 
-                statsTracker.addHitToRepo(repoFullName, isCommitValid);
+                addStandardStatistics(repoResult, REPOSITORY_LEVEL, statsTracker, repoFullName, JIRA_TAGS, WITH_VALID_JIRA_TAGS);
+                recording.finish(getWindowExpiry(verdicts, numberOfDaysThreshold));
             }
 
-            addStandardStatistics(reportResult, REPOSITORY_LEVEL, statsTracker, repoFullName, JIRA_TAGS, WITH_VALID_JIRA_TAGS);
-        }
-
-        // record the percentage of commits with valid JIRA tag for each organization that we encountered
-        for (String orgName : statsTracker.getAllOrgsWithHits()) {
-            addStandardStatistics(reportResult, ORG_LEVEL, statsTracker, orgName, JIRA_TAGS, WITH_VALID_JIRA_TAGS);
-        }
-
-        return reportResult;
+            @Override
+            public void finish(ReportResult<Violation, StringStatistic> reportResult) {
+                // record the percentage of commits with valid JIRA tag for each organization that we encountered
+                for (String orgName : statsTracker.getAllOrgsWithHits()) {
+                    addStandardStatistics(reportResult, ORG_LEVEL, statsTracker, orgName, JIRA_TAGS,
+                        WITH_VALID_JIRA_TAGS);
+                }
+            }
+        };
     }
 
     @ManagedAttribute
@@ -87,13 +112,42 @@ public class JiraTagJob extends AbstractScheduledTask<Violation> {
         this.numberOfDaysThreshold = numberOfDaysThreshold;
     }
 
+    public CommitMessageRules getCommitMessageRules() {
+        return commitMessageRules;
+    }
+
+    public List<String> getValidRuleNames() {
+        return validRuleNames;
+    }
+
+    /**
+     * @param commitMessageRules the rules commit messages are evaluated against, e.g. the default ones along with an
+     *                           organization's own
+     * @param validRuleNames     the names of the rules a commit message is valid by holding any of
+     */
+    public void setCommitMessageRules(CommitMessageRules commitMessageRules, List<String> validRuleNames) {
+        final BitSet mask = commitMessageRules.getMask(validRuleNames);
+        this.commitMessageRules = commitMessageRules;
+        this.validRuleNames = validRuleNames;
+        this.validRuleMask = mask;
+    }
+
+    @Override
+    protected int getCommitWindowDays() {
+        return numberOfDaysThreshold;
+    }
+
+    @Override
+    protected String getRulesVersion() {
+        return commitMessageRules.getVersion() + "/" + validRuleNames.hashCode();
+    }
+
     @Override
     public String getRuleMessage() {
         return "Commit should begin with an associated JIRA tag.";
     }
 
     protected boolean isCommitValid(String commitMessage) {
-        Pattern pattern = Pattern.compile(".*[A-Z]+\\-[0-9]+.*|^\\[(maven|grunt)-release-plugin\\].*", Pattern.DOTALL);
-        return pattern.matcher(commitMessage).matches();
+        return commitMessageRules.holdsAny(commitMessage, validRuleMask);
     }
 }
@@ -7,8 +7,11 @@ import org.apache.commons.lang.exception.ExceptionUtils;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.support.CronTrigger;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 
 // TODO: consider NOT having this be a JMX enabled class. Design it as a standalone manager. In our webapp we can create a JMX enabled
@@ -87,17 +90,40 @@ public class JmxSchedulingManager {
 
 //    @ManagedOperation
     public String executeAllTasksImmediately() {
+        // all of the tasks run as a single cycle so that any FetchCycleContext they share only fetches once
+        final Set<FetchCycleContext> fetchCycleContexts = getFetchCycleContexts();
         try {
+            for (FetchCycleContext fetchCycleContext : fetchCycleContexts) {
+                fetchCycleContext.beginCycle();
+            }
+
             for (ScheduledTaskInfo scheduledTaskInfo : scheduledTaskInfoMap.values()) {
                 scheduledTaskInfo.getTask().run();
             }
         } catch (Exception e) {
             return ExceptionUtils.getFullStackTrace(e);
+        } finally {
+            for (FetchCycleContext fetchCycleContext : fetchCycleContexts) {
+                fetchCycleContext.endCycle();
+            }
         }
 
         return "All tasks complete";
     }
 
+    /**
+     * @return the distinct FetchCycleContexts used by the scheduled tasks
+     */
+    private Set<FetchCycleContext> getFetchCycleContexts() {
+        Set<FetchCycleContext> fetchCycleContexts = Collections.newSetFromMap(new IdentityHashMap<FetchCycleContext, Boolean>());
+        for (ScheduledTaskInfo scheduledTaskInfo : scheduledTaskInfoMap.values()) {
+            if (scheduledTaskInfo.getTask() instanceof AbstractScheduledTask) {
+                fetchCycleContexts.add(((AbstractScheduledTask<?>) scheduledTaskInfo.getTask()).getFetchCycleContext());
+            }
+        }
+        return fetchCycleContexts;
+    }
+
     /**
      * Schedule a task.
      *
@@ -0,0 +1,32 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.domain.CommitVerdict;
+import com.gitinspector.domain.GitCommit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates a batch of commits one commit at a time, for the rules that look at each commit on its own.
+ */
+public class PerCommitEvaluator implements CommitBatchEvaluator {
+
+    private CommitEvaluator evaluator;
+
+    /**
+     * @param evaluator evaluates each of the commits
+     */
+    public PerCommitEvaluator(CommitEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    @Override
+    public List<CommitVerdict> evaluate(List<GitCommit> commits) throws IOException {
+        final List<CommitVerdict> verdicts = new ArrayList<>(commits.size());
+        for (GitCommit commit : commits) {
+            verdicts.add(evaluator.evaluate(commit));
+        }
+        return verdicts;
+    }
+}
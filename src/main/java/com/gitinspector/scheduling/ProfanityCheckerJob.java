@@ -1,26 +1,51 @@
 package com.gitinspector.scheduling;
 
 import com.gitinspector.TargetRepositories;
+import com.gitinspector.domain.CommitVerdict;
+import com.gitinspector.domain.GitCommit;
 import com.gitinspector.domain.ReportResult;
 import com.gitinspector.domain.recordable.CommitWithProfanity;
 import com.gitinspector.domain.recordable.FileWithProfanity;
 import com.gitinspector.domain.recordable.StringStatistic;
 import com.gitinspector.domain.recordable.Violation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.gitinspector.github.CodeSearchBatcher;
+import com.gitinspector.github.GitHubRestClient;
+import com.gitinspector.github.RepositoryArchiveDownloader;
+import com.gitinspector.matching.AhoCorasickMatcher;
+import com.gitinspector.matching.TermMatcher;
+import com.gitinspector.matching.ZipArchiveScanner;
+import com.gitinspector.matching.ZipArchiveScanner.FileMatches;
+import com.gitinspector.mirror.MirrorContentScanner;
 import com.gitinspector.ownership.RepoOwnership;
 import com.gitinspector.recording.TaskMessageRecorder;
 import com.gitinspector.stats.GitStatisticsTracker;
 import com.gitinspector.stats.StatsLevel;
+import com.gitinspector.store.BlobVerdict;
 import com.google.common.base.Strings;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang.StringUtils;
 import org.kohsuke.github.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 public class ProfanityCheckerJob extends AbstractScheduledTask<Violation> {
+    private static final Logger log = LoggerFactory.getLogger(ProfanityCheckerJob.class);
+
+    private static final String TEXT_MATCH_MEDIA_TYPE = "application/vnd.github.v3.text-match+json";
 
     private int numberOfDaysThreshold;
 
@@ -36,8 +61,24 @@ public class ProfanityCheckerJob extends AbstractScheduledTask<Violation> {
 
     private GitHub gitHub;
 
+    private GitHubRestClient restClient;
+
     private List<String> profanityList;
 
+    private boolean caseInsensitive;
+
+    private boolean wholeWords;
+
+    private TermMatcher profanityMatcher;
+
+    private CodeSearchBatcher codeSearchBatcher = new CodeSearchBatcher();
+
+    private RepositoryArchiveDownloader archiveDownloader;
+
+    private ZipArchiveScanner archiveScanner;
+
+    private MirrorContentScanner mirrorContentScanner;
+
     public ProfanityCheckerJob(TargetRepositories targetRepositories, TaskMessageRecorder messageRecorder,
                                RepoOwnership repoOwnership, int numberOfDaysThreshold, GitHub gitHub,
                                List<String> profanityList) {
@@ -46,6 +87,9 @@ public class ProfanityCheckerJob extends AbstractScheduledTask<Violation> {
         this.gitHub = gitHub;
         this.profanityList = new ArrayList<>();
         copyProfanityList(profanityList);
+        this.profanityMatcher = new TermMatcher(this.profanityList);
+        // the files are matched the way the code search matches them, so that either way finds the same terms
+        this.archiveScanner = new ZipArchiveScanner(new TermMatcher(this.profanityList, true, true));
     }
 
     private void copyProfanityList(List<String> profanityList) throws IllegalArgumentException {
@@ -66,14 +110,35 @@ public class ProfanityCheckerJob extends AbstractScheduledTask<Violation> {
 
     @Override
     public ReportResult<Violation, StringStatistic> execute() throws Exception {
-        ReportResult<Violation, StringStatistic> reportResult = new ReportResult<>();
+        return executePass(startPass());
+    }
 
-        for (GHRepository repository : targetRepositories.getTargetedRepositories()) {
-            addOrgLevelStatsStats(reportResult, checkFiles(repository, reportResult),
-                    checkCommitMessages(repository, reportResult));
-        }
+    @Override
+    protected RepositoryPass<Violation> startPass() {
+        return new RepositoryPass<Violation>() {
+            @Override
+            public void evaluate(GHRepository repository, ReportResult<Violation, StringStatistic> repoResult)
+                throws Exception {
+                addOrgLevelStatsStats(repoResult, checkFiles(repository, repoResult),
+                        checkCommitMessages(repository, repoResult));
+            }
+
+            @Override
+            public void finish(ReportResult<Violation, StringStatistic> reportResult) {
+                // the statistics are all added repository by repository
+            }
+        };
+    }
+
+    @Override
+    protected int getCommitWindowDays() {
+        return numberOfDaysThreshold;
+    }
 
-        return reportResult;
+    @Override
+    protected String getRulesVersion() {
+        // the verdicts depend on the terms we look for and on how we look for them
+        return String.valueOf(profanityList.hashCode()) + (caseInsensitive ? "i" : "") + (wholeWords ? "w" : "");
     }
 
     @Override
@@ -81,6 +146,90 @@ public class ProfanityCheckerJob extends AbstractScheduledTask<Violation> {
         return "Profanity Checker";
     }
 
+    public boolean isCaseInsensitive() {
+        return caseInsensitive;
+    }
+
+    /**
+     * @param caseInsensitive if true, the terms are found in commit messages regardless of case
+     */
+    public void setCaseInsensitive(boolean caseInsensitive) {
+        this.caseInsensitive = caseInsensitive;
+        this.profanityMatcher = new TermMatcher(profanityList, caseInsensitive, wholeWords);
+    }
+
+    public boolean isWholeWords() {
+        return wholeWords;
+    }
+
+    /**
+     * @param wholeWords if true, the terms are only found in commit messages where they are not part of a longer word
+     */
+    public void setWholeWords(boolean wholeWords) {
+        this.wholeWords = wholeWords;
+        this.profanityMatcher = new TermMatcher(profanityList, caseInsensitive, wholeWords);
+    }
+
+    public CodeSearchBatcher getCodeSearchBatcher() {
+        return codeSearchBatcher;
+    }
+
+    /**
+     * @param codeSearchBatcher packs the terms into the code search queries made for each repository
+     */
+    public void setCodeSearchBatcher(CodeSearchBatcher codeSearchBatcher) {
+        this.codeSearchBatcher = codeSearchBatcher;
+    }
+
+    /**
+     * @return the client the files are searched with; unless one was provided, a client authenticating the way the
+     * GitHub client does, through its connector
+     */
+    public GitHubRestClient getRestClient() {
+        if (restClient == null) {
+            restClient = GitHubRestClient.forClient(gitHub);
+        }
+        return restClient;
+    }
+
+    /**
+     * @param restClient the client the files are searched with (see GitHubClientFactory.createRestClient), which
+     *                   asks for the fragments that matched along with the files found
+     */
+    public void setRestClient(GitHubRestClient restClient) {
+        this.restClient = restClient;
+    }
+
+    public RepositoryArchiveDownloader getArchiveDownloader() {
+        return archiveDownloader;
+    }
+
+    /**
+     * @param archiveDownloader if set, the files are scanned from the archive of the default branch of each repository
+     *                          rather than searched with the code search, which misses large files and recent changes;
+     *                          null to use the code search
+     */
+    public void setArchiveDownloader(RepositoryArchiveDownloader archiveDownloader) {
+        this.archiveDownloader = archiveDownloader;
+    }
+
+    public ZipArchiveScanner getArchiveScanner() {
+        return archiveScanner;
+    }
+
+    public MirrorContentScanner getMirrorContentScanner() {
+        return mirrorContentScanner;
+    }
+
+    /**
+     * @param mirrorContentScanner if set, the files are scanned from the local mirror of each repository that is up to
+     *                             date, only those that changed since the previous run; null to download or search
+     *                             them instead
+     */
+    public void setMirrorContentScanner(MirrorContentScanner mirrorContentScanner) {
+        this.mirrorContentScanner = mirrorContentScanner;
+    }
+
     private void addOrgLevelStatsStats(ReportResult<Violation, StringStatistic> reportResult,
                                        GitStatisticsTracker srcTracker, GitStatisticsTracker commitMessageTracker) {
 
@@ -100,29 +249,24 @@ public class ProfanityCheckerJob extends AbstractScheduledTask<Violation> {
         throws Exception {
         GitStatisticsTracker commitMessageTracker = new GitStatisticsTracker(STATS_TRACKER_COMMIT_MSG_NAME);
         String repoFullName = repository.getFullName();
-        GHBranch masterBranch = repository.getBranches().get(repository.getMasterBranch());
-        GHCommit masterTipCommit = repository.getCommit(masterBranch.getSHA1());
-        List<GHCommit> masterCommits = new ArrayList<>();
-        assembleCommits(repository, masterTipCommit, masterCommits, numberOfDaysThreshold);
-
-        for (GHCommit commit : masterCommits) {
-            String commitMessage = commit.getCommitShortInfo().getMessage();
-            List<String> foundTermList = new ArrayList<>();
-
-            for (String term : profanityList) {
-                Pattern pattern = Pattern.compile(term);
-                if (pattern.matcher(commitMessage).find()) {
-                    foundTermList.add(term);
-                }
+        final List<CommitVerdict> verdicts = evaluateMasterCommits(repository, numberOfDaysThreshold, new CommitEvaluator() {
+            @Override
+            public CommitVerdict evaluate(GitCommit commit) {
+                // all of the terms are looked for in a single pass over the message
+                List<String> foundTermList = profanityMatcher.findTerms(commit.getMessage());
+
+                return newVerdict(commit, !foundTermList.isEmpty(), foundTermList);
             }
+        });
 
-            if (!foundTermList.isEmpty()) {
+        for (CommitVerdict verdict : verdicts) {
+            if (verdict.isPositive()) {
                 reportResult.addViolation(new CommitWithProfanity(getOrgNameFromRepoName(repoFullName), repoFullName,
-                        getOwnerUsername(repoFullName), commit.getCommitShortInfo().getCommitter().getName(),
-                        commit.getSHA1(), foundTermList));
+                        getOwnerUsername(repoFullName), verdict.getCommitterName(), verdict.getSha1(),
+                        verdict.getDetails()));
             }
 
-            commitMessageTracker.addHitToRepo(repoFullName, !foundTermList.isEmpty());
+            commitMessageTracker.addHitToRepo(repoFullName, verdict.isPositive());
         }
 
         addStandardStatistics(reportResult, StatsLevel.REPOSITORY_LEVEL, commitMessageTracker, repoFullName,
@@ -132,39 +276,169 @@ public class ProfanityCheckerJob extends AbstractScheduledTask<Violation> {
     }
 
     private GitStatisticsTracker checkFiles(GHRepository repository, ReportResult<Violation,
-            StringStatistic> reportResult) {
+            StringStatistic> reportResult) throws IOException {
         GitStatisticsTracker srcTracker = new GitStatisticsTracker(STATS_TRACKER_SRC_NAME);
         String repoFullName = repository.getFullName();
 
-        Map<String, List<String>> foundTermMap = new HashMap<>();
+        List<FileWithProfanity> filesWithProfanity = mirrorContentScanner == null ? null : scanMirror(repository);
+        if (filesWithProfanity == null) {
+            filesWithProfanity = archiveDownloader == null ? searchFiles(repository) : scanArchive(repository);
+        }
+
+        Set<String> foundTerms = new HashSet<>();
+        for (FileWithProfanity fileWithProfanity : filesWithProfanity) {
+            reportResult.addViolation(fileWithProfanity);
+            foundTerms.addAll(fileWithProfanity.getProfanityList());
+        }
 
         for (String term : profanityList) {
-            GHContentSearchBuilder search = gitHub.searchContent();
-            search.repo(repository.getFullName()).q("\"" + term + "\"");
-            PagedSearchIterable<GHContent> list = search.list();
-
-            if (list.getTotalCount() > 0) {
-                for (GHContent content : list.asList()) {
-                    if (!foundTermMap.containsKey(content.getPath())) {
-                        foundTermMap.put(content.getPath(), new ArrayList<String>());
-                    }
+            srcTracker.addHitToRepo(repoFullName, foundTerms.contains(term));
+        }
 
-                    foundTermMap.get(content.getPath()).add(term);
-                }
+        addStandardStatistics(reportResult, StatsLevel.REPOSITORY_LEVEL, srcTracker, repoFullName, PROFANITY_ENTITY,
+            WITH_PROFANE_LANGUAGE_IN_SRC);
+
+        return srcTracker;
+    }
+
+    /**
+     * @return the files with profanity, or null if the mirror of the repository cannot be scanned
+     */
+    private List<FileWithProfanity> scanMirror(GHRepository repository) {
+        final String repoFullName = repository.getFullName();
+        final List<BlobVerdict> verdicts =
+            mirrorContentScanner.scan(getTaskName(), repository, archiveScanner, getRulesVersion());
+        if (verdicts == null) {
+            return null;
+        }
+
+        final List<FileWithProfanity> filesWithProfanity = new ArrayList<>();
+        for (BlobVerdict verdict : verdicts) {
+            filesWithProfanity.add(new FileWithProfanity(getOrgNameFromRepoName(repoFullName), repoFullName,
+                getOwnerUsername(repoFullName), verdict.getPath(), verdict.getTerms(), verdict.getLineNumbers()));
+        }
+        return filesWithProfanity;
+    }
+
+    private List<FileWithProfanity> scanArchive(GHRepository repository) throws IOException {
+        final String repoFullName = repository.getFullName();
+        final List<FileWithProfanity> filesWithProfanity = new ArrayList<>();
+        if (repository.getMasterBranch() == null) {
+            // nothing was ever pushed
+            return filesWithProfanity;
+        }
+
+        try (InputStream archive = archiveDownloader.openZipball(repository, repository.getMasterBranch())) {
+            for (FileMatches fileMatches : archiveScanner.scan(archive)) {
+                filesWithProfanity.add(new FileWithProfanity(getOrgNameFromRepoName(repoFullName), repoFullName,
+                    getOwnerUsername(repoFullName), fileMatches.getPath(), fileMatches.getTerms(),
+                    fileMatches.getLineNumbers()));
             }
+        }
+        return filesWithProfanity;
+    }
+
+    List<FileWithProfanity> searchFiles(GHRepository repository) throws IOException {
+        final String repoFullName = repository.getFullName();
+        final Map<String, List<String>> foundTermMap = new LinkedHashMap<>();
 
-            srcTracker.addHitToRepo(repoFullName, list.getTotalCount() > 0);
+        // the terms are searched for several at a time, since the search rate limit is much tighter than the other one
+        for (List<String> batch : codeSearchBatcher.batch(profanityList, "repo:" + repoFullName)) {
+            for (Map.Entry<String, List<String>> entry : searchFiles(repository, batch).entrySet()) {
+                if (!foundTermMap.containsKey(entry.getKey())) {
+                    foundTermMap.put(entry.getKey(), new ArrayList<String>());
+                }
+
+                foundTermMap.get(entry.getKey()).addAll(entry.getValue());
+            }
         }
 
+        final List<FileWithProfanity> filesWithProfanity = new ArrayList<>();
         for (Map.Entry<String, List<String>> entry : foundTermMap.entrySet()) {
-            reportResult.addViolation(
-                    new FileWithProfanity(getOrgNameFromRepoName(repoFullName), repoFullName,
-                            getOwnerUsername(repoFullName), entry.getKey(), entry.getValue()));
+            filesWithProfanity.add(new FileWithProfanity(getOrgNameFromRepoName(repoFullName), repoFullName,
+                getOwnerUsername(repoFullName), entry.getKey(), entry.getValue()));
         }
+        return filesWithProfanity;
+    }
 
-        addStandardStatistics(reportResult, StatsLevel.REPOSITORY_LEVEL, srcTracker, repoFullName, PROFANITY_ENTITY,
-            WITH_PROFANE_LANGUAGE_IN_SRC);
+    /**
+     * Search the files of a repository for any of a batch of terms, with a single query. The search results do not
+     * tell which of the terms a file holds, so they are asked for with the fragments of each file that matched, and
+     * the terms are looked for in those the way the code search finds them: regardless of case and as whole words.
+     *
+     * @return the terms of the batch found in each file, in the order of the terms, by path
+     */
+    private Map<String, List<String>> searchFiles(GHRepository repository, final List<String> batch)
+        throws IOException {
+        final Map<String, List<String>> termsByPath = new LinkedHashMap<>();
+        final AhoCorasickMatcher batchMatcher = new AhoCorasickMatcher(batch, true, true);
+        searchContent(repository, batch, new GitHubRestClient.ElementReader() {
+            @Override
+            public boolean read(JsonNode item) {
+                final List<String> terms = batch.size() == 1 ? new ArrayList<>(batch)
+                    : findTerms(item.path("text_matches"), batch, batchMatcher);
+                termsByPath.put(item.path("path").asText(), terms);
+                return true;
+            }
+        });
 
-        return srcTracker;
+        final Set<String> unattributedPaths = new HashSet<>();
+        for (Map.Entry<String, List<String>> entry : termsByPath.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                unattributedPaths.add(entry.getKey());
+            }
+        }
+        if (!unattributedPaths.isEmpty()) {
+            // we do not find what the search found; only a search per term can tell which of the terms it was
+            log.debug("Could not tell which term was found in {} of {}", unattributedPaths, repository.getFullName());
+            searchFilesOneTermAtATime(repository, batch, unattributedPaths, termsByPath);
+            termsByPath.values().removeAll(Collections.singleton(Collections.<String>emptyList()));
+        }
+        return termsByPath;
+    }
+
+    /**
+     * Search the files of a repository for each of a batch of terms, with a query per term, and add the terms found
+     * in the provided files only; those found in the other files are already known.
+     */
+    private void searchFilesOneTermAtATime(GHRepository repository, List<String> batch, final Set<String> paths,
+                                           final Map<String, List<String>> termsByPath) throws IOException {
+        for (final String term : batch) {
+            searchContent(repository, Arrays.asList(term), new GitHubRestClient.ElementReader() {
+                @Override
+                public boolean read(JsonNode item) {
+                    final String path = item.path("path").asText();
+                    if (paths.contains(path)) {
+                        termsByPath.get(path).add(term);
+                    }
+                    return true;
+                }
+            });
+        }
+    }
+
+    private void searchContent(GHRepository repository, List<String> terms, GitHubRestClient.ElementReader reader)
+        throws IOException {
+        final String query = CodeSearchBatcher.toQuery(terms) + " repo:" + repository.getFullName();
+        final String apiUrl = StringUtils.substringBeforeLast(repository.getUrl().toString(), "/repos/");
+        getRestClient().search(apiUrl + "/search/code?q=" + URLEncoder.encode(query, "UTF-8") + "&per_page=100",
+            TEXT_MATCH_MEDIA_TYPE, reader);
+    }
+
+    /**
+     * @param textMatches the fragments of a file that matched a search
+     * @return the terms of the batch the fragments hold
+     */
+    private static List<String> findTerms(JsonNode textMatches, List<String> batch, AhoCorasickMatcher batchMatcher) {
+        final BitSet found = new BitSet(batch.size());
+        for (JsonNode textMatch : textMatches) {
+            found.or(batchMatcher.match(textMatch.path("fragment").asText()));
+        }
+
+        final List<String> terms = new ArrayList<>(found.cardinality());
+        for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            terms.add(batch.get(i));
+        }
+        return terms;
     }
-}
\ No newline at end of file
+}
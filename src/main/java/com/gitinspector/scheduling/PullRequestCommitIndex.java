@@ -0,0 +1,92 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.commits.Sha1Table;
+import com.gitinspector.domain.ClosedPullRequest;
+import com.gitinspector.domain.GitCommit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps commit SHAs to the pull requests they were a part of.
+ * Built once per repository from the commits of each pull request (plus its head and merge commit SHAs, the latter
+ * being the only way to match a squash merge) so that checking whether a master commit went through a pull request
+ * is a hash lookup rather than a walk over every pull request's commits.
+ * Makes no requests; the commits of each pull request are fetched (and stored) by the PullRequestFetcher.
+ * The SHAs are kept in a Sha1Table, as the index holds every commit of every pull request within the window.
+ */
+public class PullRequestCommitIndex {
+
+    private Sha1Table sha1s = new Sha1Table();
+
+    // by the index of the SHA in the table
+    private List<ClosedPullRequest> pullRequestsByIndex = new ArrayList<>();
+
+    /**
+     * @param pullRequests the pull requests to index
+     */
+    public PullRequestCommitIndex(List<ClosedPullRequest> pullRequests) {
+        for (ClosedPullRequest pullRequest : pullRequests) {
+            if (pullRequest.getHeadSha1() != null) {
+                put(pullRequest.getHeadSha1(), pullRequest);
+            }
+            if (pullRequest.getMergeCommitSha1() != null) {
+                put(pullRequest.getMergeCommitSha1(), pullRequest);
+            }
+            for (String commitSha1 : pullRequest.getCommitSha1s()) {
+                put(commitSha1, pullRequest);
+            }
+        }
+    }
+
+    /**
+     * @param sha1 the SHA of a commit
+     * @return the pull request containing the commit or null if there is none
+     */
+    public ClosedPullRequest getPullRequest(String sha1) {
+        final int index = sha1s.indexOf(sha1);
+        return index < 0 ? null : pullRequestsByIndex.get(index);
+    }
+
+    /**
+     * Find the pull request a commit on master came from. This is either the pull request containing the commit
+     * itself (fast-forward and rebase merges) or merged with it (merge and squash merges) or, for a merge commit made
+     * outside of GitHub, the pull request containing one of the merged parents.
+     *
+     * @param commit a commit on master
+     * @return the pull request the commit came from or null if there is none
+     */
+    public ClosedPullRequest getPullRequest(GitCommit commit) {
+        final ClosedPullRequest pullRequest = getPullRequest(commit.getSha1());
+        if (pullRequest != null) {
+            return pullRequest;
+        }
+
+        // the first parent of a merge commit is the previous master commit; the others are what was merged in
+        final List<String> parentSha1s = commit.getParentSha1s();
+        for (int i = 1; i < parentSha1s.size(); i++) {
+            final ClosedPullRequest mergedPullRequest = getPullRequest(parentSha1s.get(i));
+            if (mergedPullRequest != null) {
+                return mergedPullRequest;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the number of commit SHAs in this index
+     */
+    public int size() {
+        return sha1s.size();
+    }
+
+    private void put(String sha1, ClosedPullRequest pullRequest) {
+        final int index = sha1s.add(sha1);
+        if (index == pullRequestsByIndex.size()) {
+            pullRequestsByIndex.add(pullRequest);
+        } else {
+            pullRequestsByIndex.set(index, pullRequest);
+        }
+    }
+}
@@ -1,46 +1,226 @@
 package com.gitinspector.scheduling;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.gitinspector.domain.ClosedPullRequest;
+import com.gitinspector.github.GitHubRestClient;
+import com.gitinspector.store.PullRequestStore;
+import com.gitinspector.store.StoredPullRequests;
+import com.google.common.base.Throwables;
 import org.joda.time.Days;
 import org.joda.time.LocalDate;
-import org.kohsuke.github.GHIssueState;
-import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GHRepository;
-import org.kohsuke.github.PagedIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * This is a helper class that will lazy load pull requests
- * associated with a specified repository
+ * This is a helper class that will lazy load the pull requests closed within a number of days
+ * associated with a specified repository.
+ * The closed pull requests are listed sorted by update time, most recent first, and only until they were last updated
+ * before the window (a pull request closed within the window was updated within it too), so we never page through
+ * the older ones. When a PullRequestStore is provided the listing stops at the previous sync instead, and only the
+ * pull requests that were updated since are fetched; the rest come from the store.
+ * The listing is made on the core rate limit rather than with the issue search, whose limit is much lower and whose
+ * results are capped.
  */
 public class PullRequestFetcher {
+    private static final Logger log = LoggerFactory.getLogger(PullRequestFetcher.class);
 
-    private List<GHPullRequest> cachedPullRequests;
+    // how far back before the previous sync the listing goes, for the updates GitHub lists a little late
+    private static final long SYNC_OVERLAP_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private List<ClosedPullRequest> cachedPullRequests;
+
+    private PullRequestCommitIndex commitIndex;
+
+    private PullRequestTicketIndex ticketIndex;
+
+    private GitHubRestClient restClient;
 
     private GHRepository repository;
 
     private int numberOfDaysThreshold;
 
-    public PullRequestFetcher(GHRepository repository, int numberOfDaysThreshold) {
+    private PullRequestStore pullRequestStore;
+
+    private PullRequestFetcher widerFetcher;
+
+    /**
+     * @param restClient            the client used to list the pull requests and their commits
+     * @param repository            the repository whose pull requests are fetched
+     * @param numberOfDaysThreshold the number of days (counting back from today) the pull requests were closed within
+     * @param pullRequestStore      keeps the pull requests between runs; may be null
+     */
+    public PullRequestFetcher(GitHubRestClient restClient, GHRepository repository, int numberOfDaysThreshold,
+                              PullRequestStore pullRequestStore) {
+        this.restClient = restClient;
         this.repository = repository;
         this.numberOfDaysThreshold = numberOfDaysThreshold;
+        this.pullRequestStore = pullRequestStore;
+    }
+
+    private PullRequestFetcher(PullRequestFetcher widerFetcher, int numberOfDaysThreshold) {
+        this(widerFetcher.restClient, widerFetcher.repository, numberOfDaysThreshold, widerFetcher.pullRequestStore);
+        this.widerFetcher = widerFetcher;
     }
 
-    public List<GHPullRequest> getCachedPullRequests() {
+    public List<ClosedPullRequest> getCachedPullRequests() {
         if (cachedPullRequests == null) {
+            final LocalDate now = LocalDate.now();
+            final List<ClosedPullRequest> pullRequests;
+            if (widerFetcher != null) {
+                // the pull requests we need are a subset of the ones the wider fetcher loads; filter them from there
+                pullRequests = widerFetcher.getCachedPullRequests();
+            } else {
+                try {
+                    pullRequests = syncPullRequests(now);
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+
             cachedPullRequests = new ArrayList<>();
-            LocalDate now = LocalDate.now();
-            final PagedIterator<GHPullRequest> prIterator = repository.listPullRequests(GHIssueState.CLOSED).iterator();
-            while (prIterator.hasNext()) {
-                final GHPullRequest pullRequest = prIterator.next();
-                //We need to keep an eye on the date range for the pull requests we're pulling back
-                //and if need be, modify the threshold value for that.
-                if (Days.daysBetween(LocalDate.fromDateFields(pullRequest.getClosedAt()), now).getDays() < numberOfDaysThreshold) {
+            for (ClosedPullRequest pullRequest : pullRequests) {
+                if (isWithinThreshold(pullRequest, now)) {
                     cachedPullRequests.add(pullRequest);
                 }
             }
         }
         return this.cachedPullRequests;
     }
+
+    /**
+     * Lazily build an index of the commits in the cached pull requests.
+     *
+     * @return an index mapping commit SHAs to the cached pull requests
+     */
+    public PullRequestCommitIndex getCommitIndex() {
+        if (commitIndex == null) {
+            commitIndex = new PullRequestCommitIndex(getCachedPullRequests());
+        }
+        return commitIndex;
+    }
+
+    /**
+     * Lazily build an index of the Jira tickets mentioned in the titles of the cached pull requests.
+     *
+     * @return an index mapping ticket keys to the cached pull requests
+     */
+    public PullRequestTicketIndex getTicketIndex() {
+        if (ticketIndex == null) {
+            ticketIndex = new PullRequestTicketIndex(getCachedPullRequests());
+        }
+        return ticketIndex;
+    }
+
+    /**
+     * Return a fetcher for a smaller (or equal) number of days that shares the pull requests loaded by this one,
+     * so that no additional requests need to be made.
+     *
+     * @param numberOfDaysThreshold the number of days the returned fetcher should cover
+     * @return a fetcher covering the requested number of days; this fetcher if the number of days is not smaller
+     */
+    public PullRequestFetcher narrowTo(int numberOfDaysThreshold) {
+        if (numberOfDaysThreshold >= this.numberOfDaysThreshold) {
+            return this;
+        }
+        return new PullRequestFetcher(this, numberOfDaysThreshold);
+    }
+
+    public int getNumberOfDaysThreshold() {
+        return numberOfDaysThreshold;
+    }
+
+    private List<ClosedPullRequest> syncPullRequests(LocalDate now) throws IOException {
+        final String repoFullName = repository.getFullName();
+        final Date windowStart = now.minusDays(Math.max(numberOfDaysThreshold - 1, 0)).toDate();
+
+        final StoredPullRequests storedPullRequests = pullRequestStore != null
+            ? pullRequestStore.load(repoFullName) : new StoredPullRequests();
+        // only pull requests updated since the last sync can differ from the stored ones, unless the window got wider;
+        // a pull request closed within the window was updated within it too
+        final Date syncedAt = storedPullRequests.covers(windowStart)
+            && storedPullRequests.getSyncedAt().after(windowStart) ? storedPullRequests.getSyncedAt() : windowStart;
+        final Date updatedSince = new Date(Math.max(windowStart.getTime(), syncedAt.getTime() - SYNC_OVERLAP_MILLIS));
+        // the sync is marked with the newest update it saw, so that it only ever compares times told by GitHub
+        final AtomicReference<Date> newestUpdatedAt = new AtomicReference<>(syncedAt);
+
+        final List<JsonNode> changedPullRequests = new ArrayList<>();
+        restClient.list(repository.getUrl() + "/pulls?state=closed&sort=updated&direction=desc&per_page=100",
+            new GitHubRestClient.ElementReader() {
+                @Override
+                public boolean read(JsonNode pullRequest) {
+                    final Date updatedAt = GitHubRestClient.parseDate(pullRequest.path("updated_at"));
+                    if (updatedAt.before(updatedSince)) {
+                        // the pull requests are sorted by update time, most recent first, so the rest are unchanged
+                        return false;
+                    }
+                    if (updatedAt.after(newestUpdatedAt.get())) {
+                        newestUpdatedAt.set(updatedAt);
+                    }
+
+                    final Date closedAt = GitHubRestClient.parseDate(pullRequest.path("closed_at"));
+                    final ClosedPullRequest storedPullRequest =
+                        storedPullRequests.get(pullRequest.path("number").intValue());
+                    if (closedAt != null && !closedAt.before(windowStart)
+                        && (storedPullRequest == null || storedPullRequest.getUpdatedAt().before(updatedAt))) {
+                        changedPullRequests.add(pullRequest);
+                    }
+                    return true;
+                }
+            });
+
+        for (JsonNode pullRequest : changedPullRequests) {
+            storedPullRequests.put(toClosedPullRequest(pullRequest));
+        }
+        log.debug("Fetched {} changed pull requests for {}", changedPullRequests.size(), repoFullName);
+
+        storedPullRequests.removeClosedBefore(windowStart);
+        storedPullRequests.setSynced(newestUpdatedAt.get(), windowStart);
+        if (pullRequestStore != null) {
+            try {
+                pullRequestStore.save(repoFullName, storedPullRequests);
+            } catch (IOException e) {
+                // not fatal, the next run will just have to fetch everything again
+                log.warn("Could not store the pull requests of {}", repoFullName, e);
+            }
+        }
+
+        return storedPullRequests.getPullRequests();
+    }
+
+    /**
+     * @param pullRequest a pull request, as listed
+     * @return the pull request along with its commits, which are not listed with it
+     */
+    private ClosedPullRequest toClosedPullRequest(JsonNode pullRequest) throws IOException {
+        final int number = pullRequest.path("number").intValue();
+        final List<String> commitSha1s = new ArrayList<>();
+        restClient.list(repository.getUrl() + "/pulls/" + number + "/commits?per_page=100",
+            new GitHubRestClient.ElementReader() {
+                @Override
+                public boolean read(JsonNode commit) {
+                    commitSha1s.add(commit.path("sha").textValue());
+                    return true;
+                }
+            });
+
+        return new ClosedPullRequest(number, pullRequest.path("title").textValue(),
+            GitHubRestClient.parseDate(pullRequest.path("closed_at")),
+            GitHubRestClient.parseDate(pullRequest.path("updated_at")),
+            pullRequest.path("head").path("sha").textValue(),
+            // the merge commit of a pull request closed without being merged is only a test merge
+            pullRequest.path("merged_at").isTextual() ? pullRequest.path("merge_commit_sha").textValue() : null,
+            commitSha1s);
+    }
+
+    private boolean isWithinThreshold(ClosedPullRequest pullRequest, LocalDate now) {
+        return Days.daysBetween(LocalDate.fromDateFields(pullRequest.getClosedAt()), now).getDays() < numberOfDaysThreshold;
+    }
 }
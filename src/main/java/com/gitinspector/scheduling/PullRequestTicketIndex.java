@@ -0,0 +1,80 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.domain.ClosedPullRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maps Jira ticket keys (e.g. OM-1234) to the pull requests that mention them in their title.
+ * Built once per repository from the titles of the pull requests, so it makes no requests of its own.
+ */
+public class PullRequestTicketIndex {
+
+    private static final Pattern TICKET_KEY_PATTERN = Pattern.compile("\\b([A-Za-z][A-Za-z0-9_]*-[0-9]+)\\b");
+
+    private Map<String, List<ClosedPullRequest>> pullRequestsByTicketKey = new HashMap<>();
+
+    public PullRequestTicketIndex(List<ClosedPullRequest> pullRequests) {
+        for (ClosedPullRequest pullRequest : pullRequests) {
+            final String title = pullRequest.getTitle();
+            if (title == null) {
+                continue;
+            }
+
+            final Matcher matcher = TICKET_KEY_PATTERN.matcher(title);
+            while (matcher.find()) {
+                final String ticketKey = normalize(matcher.group(1));
+                List<ClosedPullRequest> ticketPullRequests = pullRequestsByTicketKey.get(ticketKey);
+                if (ticketPullRequests == null) {
+                    ticketPullRequests = new ArrayList<>();
+                    pullRequestsByTicketKey.put(ticketKey, ticketPullRequests);
+                }
+                // a title may mention the same ticket twice
+                if (!ticketPullRequests.contains(pullRequest)) {
+                    ticketPullRequests.add(pullRequest);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param ticketKey a Jira ticket key, in any case
+     * @return the pull requests whose title mentions the ticket; empty if there are none
+     */
+    public List<ClosedPullRequest> getPullRequests(String ticketKey) {
+        final List<ClosedPullRequest> pullRequests = pullRequestsByTicketKey.get(normalize(ticketKey));
+        return pullRequests != null ? pullRequests : Collections.<ClosedPullRequest>emptyList();
+    }
+
+    /**
+     * @return the number of distinct ticket keys in this index
+     */
+    public int size() {
+        return pullRequestsByTicketKey.size();
+    }
+
+    /**
+     * Extract the first Jira ticket key from some text (typically a commit message).
+     *
+     * @param text the text to extract the ticket key from
+     * @return the normalized ticket key or null if the text doesn't contain one
+     */
+    public static String extractTicketKey(String text) {
+        if (text == null) {
+            return null;
+        }
+        final Matcher matcher = TICKET_KEY_PATTERN.matcher(text);
+        return matcher.find() ? normalize(matcher.group(1)) : null;
+    }
+
+    private static String normalize(String ticketKey) {
+        return ticketKey.toUpperCase(Locale.ENGLISH);
+    }
+}
@@ -33,19 +33,31 @@ public class ReadMeJob extends AbstractScheduledTask<Violation> {
 
     @Override
     public ReportResult<Violation, StringStatistic> execute() throws Exception {
-        ReportResult<Violation, StringStatistic> reportResult = new ReportResult<>();
-        GitStatisticsTracker statsTracker = new GitStatisticsTracker("reposWithReadMe");
+        final ReportResult<Violation, StringStatistic> reportResult = new ReportResult<>();
+        final GitStatisticsTracker statsTracker = new GitStatisticsTracker("reposWithReadMe");
 
-        for (GHRepository repo : targetRepositories.getTargetedRepositories()) {
-            final String repoFullName = repo.getFullName();
-            final boolean foundValidReadMe = isReadMeValid(getReadMeContents(repo), repoFullName);
-            if (!foundValidReadMe) {
-                reportResult.addViolation(new Violation(getOrgNameFromRepoName(repoFullName),
-                                                        repoFullName,
-                                                        getOwnerUsername(repoFullName)));
+        evaluateRepositories(reportResult, new RepositoryEvaluator<Violation>() {
+            @Override
+            public void evaluate(GHRepository repo, ReportResult<Violation, StringStatistic> repoResult)
+                throws Exception {
+                // the README can only have changed if something was pushed since the previous run
+                if (replayRepositoryResult(repo, repoResult, statsTracker)) {
+                    return;
+                }
+
+                final String repoFullName = repo.getFullName();
+                final RepositoryResultCache<Violation>.Recording recording =
+                    recordRepositoryResult(repo, repoResult, statsTracker);
+                final boolean foundValidReadMe = isReadMeValid(getReadMeContents(repo), repoFullName);
+                if (!foundValidReadMe) {
+                    repoResult.addViolation(new Violation(getOrgNameFromRepoName(repoFullName),
+                                                          repoFullName,
+                                                          getOwnerUsername(repoFullName)));
+                }
+                statsTracker.addHitToRepo(repoFullName, foundValidReadMe);
+                recording.finish(null);
             }
-            statsTracker.addHitToRepo(repoFullName, foundValidReadMe);
-        }
+        });
 
         // record the percentage of repos with read me files for each organization that we encountered
         for (String orgName : statsTracker.getAllOrgsWithHits()) {
@@ -0,0 +1,15 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.domain.ReportResult;
+import com.gitinspector.domain.recordable.ReportingRecordable;
+import com.gitinspector.domain.recordable.StringStatistic;
+import org.kohsuke.github.GHRepository;
+
+/**
+ * Evaluates a single repository against the rule of a task, adding the resulting violations and repository level
+ * statistics to the provided report. May be invoked for several repositories at once.
+ */
+public interface RepositoryEvaluator<V extends ReportingRecordable> {
+
+    void evaluate(GHRepository repo, ReportResult<V, StringStatistic> reportResult) throws Exception;
+}
@@ -0,0 +1,19 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.domain.ReportResult;
+import com.gitinspector.domain.recordable.ReportingRecordable;
+import com.gitinspector.domain.recordable.StringStatistic;
+
+/**
+ * A single run of a task over the targeted repositories, split by repository: each repository is evaluated on its
+ * own, and the pass is finished once all of them have been. Lets the repositories be visited by whoever drives the
+ * pass (the task itself or a FusedTaskRunner), holding whatever the task tracks across repositories in the meantime.
+ */
+public interface RepositoryPass<V extends ReportingRecordable> extends RepositoryEvaluator<V> {
+
+    /**
+     * Add what covers all of the repositories (e.g. org level statistics) to the report, once every repository has
+     * been evaluated.
+     */
+    void finish(ReportResult<V, StringStatistic> reportResult);
+}
@@ -0,0 +1,168 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.domain.ReportResult;
+import com.gitinspector.domain.recordable.ReportingRecordable;
+import com.gitinspector.domain.recordable.StringStatistic;
+import com.gitinspector.stats.GitStatisticsTracker;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers what a task reported for each repository (violations, statistics and statistics tracker hits) so that
+ * it can be replayed on the next run if the repository has not been pushed to since, instead of fetching and
+ * evaluating everything again.
+ * A result is only replayed if the repository's pushed_at, the rules of the task and the time at which the result
+ * was recorded still allow it; results of tasks that depend on the current time (e.g. the age of a commit) carry
+ * an expiry date after which they are no longer replayed.
+ */
+public class RepositoryResultCache<V extends ReportingRecordable> {
+
+    private Map<String, CachedResult<V>> cachedResults = new ConcurrentHashMap<>();
+
+    /**
+     * Replay the cached result of a repository, if there is one that is still valid.
+     *
+     * @param repoFullName  the full name of the repository
+     * @param pushedAt      when the repository was last pushed to; null if unknown, in which case nothing is replayed
+     * @param rulesVersion  identifies the rules of the task (including its configuration)
+     * @param reportResult  the report to which the cached violations and statistics are added
+     * @param statsTrackers the trackers to which the cached hits are added; same order as when recording
+     * @return true if a cached result was replayed
+     */
+    public boolean replay(String repoFullName, Date pushedAt, String rulesVersion,
+                          ReportResult<V, StringStatistic> reportResult, GitStatisticsTracker... statsTrackers) {
+        final CachedResult<V> cachedResult = cachedResults.get(repoFullName);
+        if (pushedAt == null || cachedResult == null || !cachedResult.isValidFor(pushedAt, rulesVersion, new Date())) {
+            return false;
+        }
+
+        for (V violation : cachedResult.violations) {
+            reportResult.addViolation(violation);
+        }
+        for (StringStatistic statistic : cachedResult.statistics) {
+            reportResult.addStatistic(statistic);
+        }
+        for (int i = 0; i < statsTrackers.length; i++) {
+            final int[] hits = cachedResult.trackerHits.get(i);
+            for (int hit = 0; hit < hits[0]; hit++) {
+                statsTrackers[i].addHitToRepo(repoFullName, hit < hits[1]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start recording what is reported for a repository. Everything added to the report and trackers until the
+     * recording is finished is attributed to the repository.
+     *
+     * @param repoFullName  the full name of the repository
+     * @param pushedAt      when the repository was last pushed to; null if unknown, in which case nothing is cached
+     * @param rulesVersion  identifies the rules of the task (including its configuration)
+     * @param reportResult  the report the task adds its violations and statistics to
+     * @param statsTrackers the trackers the task adds its hits to
+     * @return the recording, to be finished once the repository has been evaluated
+     */
+    public Recording startRecording(String repoFullName, Date pushedAt, String rulesVersion,
+                                    ReportResult<V, StringStatistic> reportResult,
+                                    GitStatisticsTracker... statsTrackers) {
+        return new Recording(repoFullName, pushedAt, rulesVersion, reportResult, statsTrackers);
+    }
+
+    public void clear() {
+        cachedResults.clear();
+    }
+
+    public int size() {
+        return cachedResults.size();
+    }
+
+    /**
+     * What was reported for a repository while it was being evaluated.
+     */
+    public class Recording {
+        private final String repoFullName;
+        private final Date pushedAt;
+        private final String rulesVersion;
+        private final ReportResult<V, StringStatistic> reportResult;
+        private final GitStatisticsTracker[] statsTrackers;
+        private final int violationsBefore;
+        private final int statisticsBefore;
+        private final List<int[]> trackerHitsBefore = new ArrayList<>();
+
+        private Recording(String repoFullName, Date pushedAt, String rulesVersion,
+                          ReportResult<V, StringStatistic> reportResult, GitStatisticsTracker[] statsTrackers) {
+            this.repoFullName = repoFullName;
+            this.pushedAt = pushedAt;
+            this.rulesVersion = rulesVersion;
+            this.reportResult = reportResult;
+            this.statsTrackers = statsTrackers;
+            this.violationsBefore = reportResult.getViolations().size();
+            this.statisticsBefore = reportResult.getStatistics().size();
+            for (GitStatisticsTracker statsTracker : statsTrackers) {
+                trackerHitsBefore.add(getHits(statsTracker));
+            }
+        }
+
+        /**
+         * Cache what was reported for the repository since the recording started.
+         *
+         * @param expiresAt when the result stops being valid regardless of pushes (e.g. when the oldest commit it
+         *                  counted leaves the window); null if it only depends on what was pushed
+         */
+        public void finish(Date expiresAt) {
+            if (pushedAt == null) {
+                cachedResults.remove(repoFullName);
+                return;
+            }
+
+            final List<V> violations = new ArrayList<>(
+                reportResult.getViolations().subList(violationsBefore, reportResult.getViolations().size()));
+            final List<StringStatistic> statistics = new ArrayList<>(
+                reportResult.getStatistics().subList(statisticsBefore, reportResult.getStatistics().size()));
+            final List<int[]> trackerHits = new ArrayList<>();
+            for (int i = 0; i < statsTrackers.length; i++) {
+                final int[] hitsAfter = getHits(statsTrackers[i]);
+                final int[] hitsBefore = trackerHitsBefore.get(i);
+                trackerHits.add(new int[]{hitsAfter[0] - hitsBefore[0], hitsAfter[1] - hitsBefore[1]});
+            }
+
+            cachedResults.put(repoFullName,
+                new CachedResult<>(pushedAt, rulesVersion, expiresAt, violations, statistics, trackerHits));
+        }
+
+        private int[] getHits(GitStatisticsTracker statsTracker) {
+            return new int[]{statsTracker.getTotalHitsForRepo(repoFullName),
+                statsTracker.getPositiveHitsForRepo(repoFullName)};
+        }
+    }
+
+    private static class CachedResult<V> {
+        private final Date pushedAt;
+        private final String rulesVersion;
+        private final Date expiresAt;
+        private final List<V> violations;
+        private final List<StringStatistic> statistics;
+        // total and positive hits per tracker
+        private final List<int[]> trackerHits;
+
+        private CachedResult(Date pushedAt, String rulesVersion, Date expiresAt, List<V> violations,
+                             List<StringStatistic> statistics, List<int[]> trackerHits) {
+            this.pushedAt = pushedAt;
+            this.rulesVersion = rulesVersion;
+            this.expiresAt = expiresAt;
+            this.violations = violations;
+            this.statistics = statistics;
+            this.trackerHits = trackerHits;
+        }
+
+        private boolean isValidFor(Date pushedAt, String rulesVersion, Date now) {
+            return this.pushedAt.equals(pushedAt)
+                   && this.rulesVersion.equals(rulesVersion)
+                   && (expiresAt == null || now.before(expiresAt));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.gitinspector.scheduling;
 
 import com.gitinspector.TargetRepositories;
+import com.gitinspector.domain.GitCommit;
 import com.gitinspector.domain.ReportResult;
 import com.gitinspector.domain.recordable.StaleObject;
 import com.gitinspector.domain.recordable.StringStatistic;
@@ -8,12 +9,13 @@ import com.gitinspector.ownership.RepoOwnership;
 import com.gitinspector.recording.TaskMessageRecorder;
 import com.gitinspector.stats.GitStatisticsTracker;
 import org.joda.time.DateTime;
-import org.kohsuke.github.GHBranch;
-import org.kohsuke.github.GHCommit;
 import org.kohsuke.github.GHRepository;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static com.gitinspector.stats.StatsLevel.ORG_LEVEL;
@@ -38,42 +40,70 @@ public class StaleBranchesJob extends AbstractScheduledTask<StaleObject> {
 
     @Override
     public ReportResult<StaleObject, StringStatistic> execute() throws Exception {
-        ReportResult<StaleObject, StringStatistic> reportResult = new ReportResult<>();
-        GitStatisticsTracker statsTracker = new GitStatisticsTracker("branchesWithRecentCommits");
+        final ReportResult<StaleObject, StringStatistic> reportResult = new ReportResult<>();
+        final GitStatisticsTracker statsTracker = new GitStatisticsTracker("branchesWithRecentCommits");
+
+        evaluateRepositories(reportResult, new RepositoryEvaluator<StaleObject>() {
+            @Override
+            public void evaluate(final GHRepository repo, ReportResult<StaleObject, StringStatistic> repoResult)
+                throws Exception {
+                // the branches can only have changed if something was pushed since the previous run
+                if (replayRepositoryResult(repo, repoResult, statsTracker)) {
+                    return;
+                }
 
-        for (GHRepository repo : targetRepositories.getTargetedRepositories()) {
-            final Map<String, GHBranch> branches = repo.getBranches();
+                final RepositoryResultCache<StaleObject>.Recording recording =
+                    recordRepositoryResult(repo, repoResult, statsTracker);
+                final Map<String, String> branchTips = fetchCycleContext.getBranchTips(repo);
 
-            // ignore repos that only have a master branch and nothing else
-            if (branches.size() <= 1) {
-                continue;
-            }
+                // ignore repos that only have a master branch and nothing else
+                if (branchTips.size() <= 1) {
+                    recording.finish(null);
+                    return;
+                }
 
-            String repoFullName = repo.getFullName();
-            for (GHBranch branch : branches.values()) {
+                String repoFullName = repo.getFullName();
                 // master doesn't count
-                if ("master".equalsIgnoreCase(branch.getName())) {
-                    continue;
+                final List<String> nonMasterBranches = new ArrayList<>();
+                for (String branch : branchTips.keySet()) {
+                    if (!"master".equalsIgnoreCase(branch)) {
+                        nonMasterBranches.add(branch);
+                    }
                 }
 
-                final GHCommit commit = branch.getOwner().getCommit(branch.getSHA1());
-                final GHCommit.ShortInfo commitShortInfo = commit.getCommitShortInfo();
-                DateTime commitDate = new DateTime(commitShortInfo.getCommitter().getDate());
-                boolean isBranchStale = commitDate.isBefore(DateTime.now().minusDays(daysSinceLastCommit));
-                if (isBranchStale) {
-                    reportResult.addViolation(new StaleObject(getOrgNameFromRepoName(repoFullName),
-                                                              repoFullName,
-                                                              getOwnerUsername(repoFullName),
-                                                              branch.getName(),
-                                                              commitShortInfo.getCommitter().getEmail(),
-                                                              commitDate.toString(LAST_TOUCH_DATE_FORMAT)));
+                // the head commits of the branches are independent of each other, so they may be looked up at once
+                final List<GitCommit> headCommits = lookUpAll(nonMasterBranches, new ItemLookup<String, GitCommit>() {
+                    @Override
+                    public GitCommit lookUp(String branch) throws IOException {
+                        return fetchCycleContext.getCommit(repo, branchTips.get(branch));
+                    }
+                });
+
+                // the result no longer holds once the first of the recent branches becomes stale
+                DateTime expiresAt = null;
+                for (int i = 0; i < nonMasterBranches.size(); i++) {
+                    final String branch = nonMasterBranches.get(i);
+                    final GitCommit headCommit = headCommits.get(i);
+                    DateTime commitDate = new DateTime(headCommit.getCommittedAt());
+                    boolean isBranchStale = commitDate.isBefore(DateTime.now().minusDays(daysSinceLastCommit));
+                    if (isBranchStale) {
+                        repoResult.addViolation(new StaleObject(getOrgNameFromRepoName(repoFullName),
+                                                                repoFullName,
+                                                                getOwnerUsername(repoFullName),
+                                                                branch,
+                                                                headCommit.getCommitterEmail(),
+                                                                commitDate.toString(LAST_TOUCH_DATE_FORMAT)));
+                    } else if (expiresAt == null || commitDate.plusDays(daysSinceLastCommit).isBefore(expiresAt)) {
+                        expiresAt = commitDate.plusDays(daysSinceLastCommit);
+                    }
+
+                    statsTracker.addHitToRepo(repoFullName, !isBranchStale);
                 }
 
-                statsTracker.addHitToRepo(repoFullName, !isBranchStale);
+                addStandardStatistics(repoResult, REPOSITORY_LEVEL, statsTracker, repoFullName, BRANCHES, WITH_RECENT_COMMITS);
+                recording.finish(expiresAt == null ? null : expiresAt.toDate());
             }
-
-            addStandardStatistics(reportResult, REPOSITORY_LEVEL, statsTracker, repoFullName, BRANCHES, WITH_RECENT_COMMITS);
-        }
+        });
 
         // record the percentage of branches with recent commits for each organization that we encountered
         for (String orgName : statsTracker.getAllOrgsWithHits()) {
@@ -88,6 +118,11 @@ public class StaleBranchesJob extends AbstractScheduledTask<StaleObject> {
         return "Branch should have a commit within the last " + daysSinceLastCommit + " days.";
     }
 
+    @Override
+    protected String getRulesVersion() {
+        return String.valueOf(daysSinceLastCommit);
+    }
+
     @ManagedAttribute
     public int getDaysSinceLastCommit() {
         return daysSinceLastCommit;
@@ -1,6 +1,7 @@
 package com.gitinspector.scheduling;
 
 import com.gitinspector.TargetRepositories;
+import com.gitinspector.domain.GitCommit;
 import com.gitinspector.domain.ReportResult;
 import com.gitinspector.domain.recordable.StaleObject;
 import com.gitinspector.domain.recordable.StringStatistic;
@@ -10,11 +11,11 @@ import com.gitinspector.stats.GitStatisticsTracker;
 import org.apache.commons.collections4.CollectionUtils;
 import org.joda.time.Days;
 import org.joda.time.LocalDate;
-import org.kohsuke.github.GHCommit;
 import org.kohsuke.github.GHIssueState;
 import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GHPullRequestCommitDetail;
 import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.PagedIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
@@ -50,41 +51,62 @@ public class StalePullRequestsJob extends AbstractScheduledTask<StaleObject> {
 
     @Override
     public ReportResult<StaleObject, StringStatistic> execute() throws Exception {
-        ReportResult<StaleObject, StringStatistic> reportResult = new ReportResult<>();
-        GitStatisticsTracker statsTracker = new GitStatisticsTracker("pullRequestsWithRecentCommits");
+        final ReportResult<StaleObject, StringStatistic> reportResult = new ReportResult<>();
+        final GitStatisticsTracker statsTracker = new GitStatisticsTracker("pullRequestsWithRecentCommits");
 
         final LocalDate now = LocalDate.now();
 
-        for (GHRepository repository : targetRepositories.getTargetedRepositories()) {
-            final String repoFullName = repository.getFullName();
-            //Retrieve all open pull requests
-            final List<GHPullRequest> pullRequests = repository.getPullRequests(GHIssueState.OPEN);
-            for (GHPullRequest pullRequest : pullRequests) {
-                String stalePullRequestName = repoFullName + "/pull/" + Integer.toString(pullRequest.getNumber());
-                final GHCommit commit = repository.getCommit(pullRequest.getHead().getSha());
-                final LocalDate lastCommitDate = LocalDate.fromDateFields(commit.getCommitShortInfo().getCommitter().getDate());
-
-                final boolean isPullRequestStale = Days.daysBetween(lastCommitDate, now).getDays() > daysSinceLastCommit;
-                if (isPullRequestStale) {
-                    reportResult.addViolation(
-                            new StaleObject(
-                                    getOrgNameFromRepoName(repoFullName),
-                                    repoFullName,
-                                    getOwnerUsername(repoFullName),
-                                    stalePullRequestName,
-                                    getLastTouchedBy(pullRequest),
-                                    lastCommitDate.toString(LAST_TOUCH_DATE_FORMAT)
-                            )
-                    );
+        evaluateRepositories(reportResult, new RepositoryEvaluator<StaleObject>() {
+            @Override
+            public void evaluate(final GHRepository repository, ReportResult<StaleObject, StringStatistic> repoResult)
+                throws Exception {
+                final String repoFullName = repository.getFullName();
+                //Retrieve all open pull requests
+                final List<GHPullRequest> pullRequests = repository.getPullRequests(GHIssueState.OPEN);
+
+                // the pull requests are independent of each other, so their activity may be looked up at once
+                final List<PullRequestActivity> activities = lookUpAll(pullRequests,
+                    new ItemLookup<GHPullRequest, PullRequestActivity>() {
+                        @Override
+                        public PullRequestActivity lookUp(GHPullRequest pullRequest) throws IOException {
+                            final GitCommit commit =
+                                fetchCycleContext.getCommit(repository, pullRequest.getHead().getSha());
+                            final LocalDate lastCommitDate = LocalDate.fromDateFields(commit.getCommittedAt());
+
+                            final boolean isPullRequestStale =
+                                Days.daysBetween(lastCommitDate, now).getDays() > daysSinceLastCommit;
+                            return new PullRequestActivity(lastCommitDate, isPullRequestStale,
+                                isPullRequestStale ? getLastTouchedBy(pullRequest) : null);
+                        }
+                    });
+
+                for (int i = 0; i < pullRequests.size(); i++) {
+                    final GHPullRequest pullRequest = pullRequests.get(i);
+                    final PullRequestActivity activity = activities.get(i);
+                    String stalePullRequestName = repoFullName + "/pull/" + Integer.toString(pullRequest.getNumber());
+
+                    final boolean isPullRequestStale = activity.isStale();
+                    if (isPullRequestStale) {
+                        repoResult.addViolation(
+                                new StaleObject(
+                                        getOrgNameFromRepoName(repoFullName),
+                                        repoFullName,
+                                        getOwnerUsername(repoFullName),
+                                        stalePullRequestName,
+                                        activity.getLastTouchedBy(),
+                                        activity.getLastCommitDate().toString(LAST_TOUCH_DATE_FORMAT)
+                                )
+                        );
+                    }
+
+                    statsTracker.addHitToRepo(repoFullName, !isPullRequestStale);
                 }
 
-                statsTracker.addHitToRepo(repoFullName, !isPullRequestStale);
-            }
-
-            if (CollectionUtils.isNotEmpty(pullRequests)) {
-                addStandardStatistics(reportResult, REPOSITORY_LEVEL, statsTracker, repoFullName, PULL_REQUESTS, WITH_RECENT_COMMITS);
+                if (CollectionUtils.isNotEmpty(pullRequests)) {
+                    addStandardStatistics(repoResult, REPOSITORY_LEVEL, statsTracker, repoFullName, PULL_REQUESTS, WITH_RECENT_COMMITS);
+                }
             }
-        }
+        });
 
         for (String orgName : statsTracker.getAllOrgsWithHits()) {
             addStandardStatistics(reportResult, ORG_LEVEL, statsTracker, orgName, PULL_REQUESTS, WITH_RECENT_COMMITS);
@@ -118,10 +140,38 @@ public class StalePullRequestsJob extends AbstractScheduledTask<StaleObject> {
     private String getLastTouchedBy(GHPullRequest pullRequest) throws IOException {
         //grab the most recent commit and return the author
         String lastCommitOwner = "unavailable";
-        if (pullRequest.listCommits().iterator().hasNext()) {
-            final GHPullRequestCommitDetail mostRecentCommit = pullRequest.listCommits().iterator().next();
+        final PagedIterator<GHPullRequestCommitDetail> commits = pullRequest.listCommits().iterator();
+        if (commits.hasNext()) {
+            final GHPullRequestCommitDetail mostRecentCommit = commits.next();
             lastCommitOwner = mostRecentCommit.getCommit().getCommitter().getName();
         }
         return lastCommitOwner;
     }
+
+    /**
+     * The date of the last commit made to a pull request and, if the pull request is stale, who last touched it.
+     */
+    private static class PullRequestActivity {
+        private LocalDate lastCommitDate;
+        private boolean stale;
+        private String lastTouchedBy;
+
+        public PullRequestActivity(LocalDate lastCommitDate, boolean stale, String lastTouchedBy) {
+            this.lastCommitDate = lastCommitDate;
+            this.stale = stale;
+            this.lastTouchedBy = lastTouchedBy;
+        }
+
+        public LocalDate getLastCommitDate() {
+            return lastCommitDate;
+        }
+
+        public boolean isStale() {
+            return stale;
+        }
+
+        public String getLastTouchedBy() {
+            return lastTouchedBy;
+        }
+    }
 }
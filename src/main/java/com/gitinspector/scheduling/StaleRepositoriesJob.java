@@ -1,6 +1,7 @@
 package com.gitinspector.scheduling;
 
 import com.gitinspector.TargetRepositories;
+import com.gitinspector.domain.GitCommit;
 import com.gitinspector.domain.ReportResult;
 import com.gitinspector.domain.recordable.StaleObject;
 import com.gitinspector.domain.recordable.StringStatistic;
@@ -8,9 +9,7 @@ import com.gitinspector.ownership.RepoOwnership;
 import com.gitinspector.recording.TaskMessageRecorder;
 import com.gitinspector.stats.GitStatisticsTracker;
 import org.joda.time.DateTime;
-import org.kohsuke.github.GHCommit;
 import org.kohsuke.github.GHRepository;
-import org.kohsuke.github.PagedIterator;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
 
@@ -31,29 +30,45 @@ public class StaleRepositoriesJob extends AbstractScheduledTask<StaleObject> {
 
     @Override
     public ReportResult<StaleObject, StringStatistic> execute() throws Exception {
-        ReportResult<StaleObject, StringStatistic> reportResult = new ReportResult<>();
-        GitStatisticsTracker statsTracker = new GitStatisticsTracker("reposWithRecentCommits");
+        final ReportResult<StaleObject, StringStatistic> reportResult = new ReportResult<>();
+        final GitStatisticsTracker statsTracker = new GitStatisticsTracker("reposWithRecentCommits");
 
-        for (GHRepository repo : targetRepositories.getTargetedRepositories()) {
-            boolean repoIsStale = false;
-            final PagedIterator<GHCommit> iterator = repo.listCommits().iterator();
-            final String repoFullName = repo.getFullName();
-            if (iterator.hasNext()) {
-                final GHCommit lastCommit = iterator.next();
-                final GHCommit.ShortInfo commitShortInfo = lastCommit.getCommitShortInfo();
-                DateTime commitDate = new DateTime(commitShortInfo.getCommitter().getDate());
-                repoIsStale = commitDate.isBefore(DateTime.now().minusDays(daysSinceLastCommit));
-                if (repoIsStale) {
-                    reportResult.addViolation(new StaleObject(getOrgNameFromRepoName(repoFullName),
-                                                              repoFullName,
-                                                              getOwnerUsername(repoFullName),
-                                                              repoFullName,
-                                                              commitShortInfo.getCommitter().getEmail(),
-                                                              commitDate.toString(LAST_TOUCH_DATE_FORMAT)));
+        evaluateRepositories(reportResult, new RepositoryEvaluator<StaleObject>() {
+            @Override
+            public void evaluate(GHRepository repo, ReportResult<StaleObject, StringStatistic> repoResult)
+                throws Exception {
+                // the last commit can only have changed if something was pushed since the previous run
+                if (replayRepositoryResult(repo, repoResult, statsTracker)) {
+                    return;
                 }
+
+                final RepositoryResultCache<StaleObject>.Recording recording =
+                    recordRepositoryResult(repo, repoResult, statsTracker);
+                // the result no longer holds once a recently committed to repository becomes stale
+                DateTime expiresAt = null;
+                boolean repoIsStale = false;
+                // the last commit is the tip of master, which an empty repository does not have
+                final String masterTipSha1 = fetchCycleContext.getMasterTipSha1(repo);
+                final String repoFullName = repo.getFullName();
+                if (masterTipSha1 != null) {
+                    final GitCommit lastCommit = fetchCycleContext.getCommit(repo, masterTipSha1);
+                    DateTime commitDate = new DateTime(lastCommit.getCommittedAt());
+                    repoIsStale = commitDate.isBefore(DateTime.now().minusDays(daysSinceLastCommit));
+                    if (repoIsStale) {
+                        repoResult.addViolation(new StaleObject(getOrgNameFromRepoName(repoFullName),
+                                                                repoFullName,
+                                                                getOwnerUsername(repoFullName),
+                                                                repoFullName,
+                                                                lastCommit.getCommitterEmail(),
+                                                                commitDate.toString(LAST_TOUCH_DATE_FORMAT)));
+                    } else {
+                        expiresAt = commitDate.plusDays(daysSinceLastCommit);
+                    }
+                }
+                statsTracker.addHitToRepo(repoFullName, !repoIsStale);
+                recording.finish(expiresAt == null ? null : expiresAt.toDate());
             }
-            statsTracker.addHitToRepo(repoFullName, !repoIsStale);
-        }
+        });
 
         // record the percentage of repos with recent commits for each organization that we encountered
         for (String orgName : statsTracker.getAllOrgsWithHits()) {
@@ -68,6 +83,11 @@ public class StaleRepositoriesJob extends AbstractScheduledTask<StaleObject> {
         return "Repository should have a commit to master within the last " + daysSinceLastCommit + " days.";
     }
 
+    @Override
+    protected String getRulesVersion() {
+        return String.valueOf(daysSinceLastCommit);
+    }
+
     @ManagedAttribute
     public int getDaysSinceLastCommit() {
         return daysSinceLastCommit;
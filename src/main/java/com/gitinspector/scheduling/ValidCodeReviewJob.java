@@ -1,25 +1,30 @@
 package com.gitinspector.scheduling;
 
 import com.gitinspector.TargetRepositories;
+import com.gitinspector.domain.CommitVerdict;
+import com.gitinspector.domain.GitCommit;
 import com.gitinspector.domain.ReportResult;
 import com.gitinspector.domain.recordable.BadCommit;
 import com.gitinspector.domain.recordable.StringStatistic;
 import com.gitinspector.domain.recordable.Violation;
+import com.gitinspector.github.PullRequestReviewFetcher;
 import com.gitinspector.ownership.RepoOwnership;
 import com.gitinspector.recording.TaskMessageRecorder;
+import com.gitinspector.scheduling.codereviewstrategy.ApprovedReviewStrategy;
 import com.gitinspector.scheduling.codereviewstrategy.MatchingCommitShaStrategy;
 import com.gitinspector.scheduling.codereviewstrategy.MatchingJiraTicketStrategy;
+import com.gitinspector.scheduling.codereviewstrategy.ReviewContext;
 import com.gitinspector.scheduling.codereviewstrategy.ValidCodeReviewStrategy;
 import com.gitinspector.scheduling.codereviewstrategy.ValidCommitMessageStrategy;
 import com.gitinspector.stats.GitStatisticsTracker;
 import org.apache.commons.collections4.CollectionUtils;
-import org.kohsuke.github.GHBranch;
-import org.kohsuke.github.GHCommit;
 import org.kohsuke.github.GHRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -41,6 +46,10 @@ public class ValidCodeReviewJob extends AbstractScheduledTask<Violation> {
 
     private int numberOfDaysThreshold;
 
+    private List<ValidCodeReviewStrategy> codeReviewStrategies;
+
+    private PullRequestReviewFetcher reviewFetcher;
+
     public ValidCodeReviewJob(TargetRepositories targetRepositories, TaskMessageRecorder messageRecorder,
         RepoOwnership repoOwnership, int numberOfDaysThreshold) {
         super(messageRecorder, repoOwnership, targetRepositories);
@@ -49,64 +58,140 @@ public class ValidCodeReviewJob extends AbstractScheduledTask<Violation> {
 
     @Override
     public ReportResult<Violation, StringStatistic> execute() throws Exception {
-        ReportResult<Violation, StringStatistic> reportResult = new ReportResult<>();
-        GitStatisticsTracker statsTracker = new GitStatisticsTracker("commitsWithValidCodeReviews");
-        List<ValidCodeReviewStrategy> validCodeReviewStrategies = loadCodeReviewStrategies();
-
-        for (GHRepository repository : targetRepositories.getTargetedRepositories()) {
-            String repoFullName = repository.getFullName();
-
-            final GHBranch masterBranch = repository.getBranches().get(repository.getMasterBranch());
-            final GHCommit masterTipCommit = repository.getCommit(masterBranch.getSHA1());
-            List<GHCommit> masterCommits = new ArrayList<>();
-            assembleCommits(repository, masterTipCommit, masterCommits, numberOfDaysThreshold);
-
-            PullRequestFetcher pullRequestFetcher = new PullRequestFetcher(repository, numberOfDaysThreshold);
-
-            // iterate over the master commits we've assembled to verify if the commit was valid
-            for (GHCommit commit : masterCommits) {
-                boolean isCommitValid = false;
+        return executePass(startPass());
+    }
 
-                // iterate over the strategies we have in place for validating if our commit is valid
-                final Iterator<ValidCodeReviewStrategy> strategyIterator = validCodeReviewStrategies.iterator();
-                while (strategyIterator.hasNext() && !isCommitValid) {
-                    final ValidCodeReviewStrategy strategy = strategyIterator.next();
-                    isCommitValid = strategy.isCommitValid(commit, pullRequestFetcher);
+    @Override
+    protected RepositoryPass<Violation> startPass() {
+        final GitStatisticsTracker statsTracker = new GitStatisticsTracker("commitsWithValidCodeReviews");
+        final List<ValidCodeReviewStrategy> validCodeReviewStrategies = getCodeReviewStrategies();
+
+        return new RepositoryPass<Violation>() {
+            @Override
+            public void evaluate(final GHRepository repository, ReportResult<Violation, StringStatistic> repoResult)
+                throws Exception {
+                // nothing was pushed since the previous run, so the result would be the same
+                if (replayRepositoryResult(repository, repoResult, statsTracker)) {
+                    return;
                 }
 
-                if (!isCommitValid) {
-                    reportResult.addViolation(new BadCommit(getOrgNameFromRepoName(repoFullName), repoFullName,
-                        getOwnerUsername(repoFullName), commit.getCommitShortInfo().getCommitter().getName(), commit.getSHA1()));
+                String repoFullName = repository.getFullName();
+                final RepositoryResultCache<Violation>.Recording recording =
+                    recordRepositoryResult(repository, repoResult, statsTracker);
+
+                // the pull requests are only fetched if there are new commits to evaluate
+                final PullRequestFetcher pullRequestFetcher = fetchCycleContext.getPullRequestFetcher(repository, numberOfDaysThreshold);
+
+                final List<CommitVerdict> verdicts = evaluateMasterCommitsInBatch(repository, numberOfDaysThreshold,
+                    new CommitBatchEvaluator() {
+                        @Override
+                        public List<CommitVerdict> evaluate(List<GitCommit> commits) throws IOException {
+                            final ReviewContext context = new ReviewContext(repository, commits, pullRequestFetcher,
+                                reviewFetcher);
+                            final BitSet validCommits = new BitSet(commits.size());
+
+                            // exercise the strategies in turn, each on the commits the previous ones did not validate
+                            final Iterator<ValidCodeReviewStrategy> strategyIterator =
+                                validCodeReviewStrategies.iterator();
+                            while (strategyIterator.hasNext() && validCommits.cardinality() < commits.size()) {
+                                strategyIterator.next().markValidCommits(commits, context, validCommits);
+                            }
+
+                            final List<CommitVerdict> verdicts = new ArrayList<>(commits.size());
+                            for (int i = 0; i < commits.size(); i++) {
+                                verdicts.add(newVerdict(commits.get(i), validCommits.get(i)));
+                            }
+                            return verdicts;
+                        }
+                    });
+
+                // iterate over the verdicts for the master commits we've assembled
+                for (CommitVerdict verdict : verdicts) {
+                    boolean isCommitValid = verdict.isPositive();
+
+                    if (!isCommitValid) {
+                        repoResult.addViolation(new BadCommit(getOrgNameFromRepoName(repoFullName), repoFullName,
+                            getOwnerUsername(repoFullName), verdict.getCommitterName(), verdict.getSha1()));
+                    }
+
+                    statsTracker.addHitToRepo(repoFullName, isCommitValid);
                 }
 
-                statsTracker.addHitToRepo(repoFullName, isCommitValid);
+                if (CollectionUtils.isNotEmpty(verdicts)) {
+                    addStandardStatistics(repoResult, REPOSITORY_LEVEL, statsTracker, repoFullName, COMMITS, WITH_VALID_CODE_REVIEWS);
+                }
+                recording.finish(getWindowExpiry(verdicts, numberOfDaysThreshold));
             }
 
-            if (CollectionUtils.isNotEmpty(masterCommits)) {
-                addStandardStatistics(reportResult, REPOSITORY_LEVEL, statsTracker, repoFullName, COMMITS, WITH_VALID_CODE_REVIEWS);
+            @Override
+            public void finish(ReportResult<Violation, StringStatistic> reportResult) {
+                // record the percentage of commits with valid review messages
+                for (String orgName : statsTracker.getAllOrgsWithHits()) {
+                    addStandardStatistics(reportResult, ORG_LEVEL, statsTracker, orgName, COMMITS,
+                        WITH_VALID_CODE_REVIEWS);
+                }
             }
-        }
-
-        // record the percentage of commits with valid review messages
-        for (String orgName : statsTracker.getAllOrgsWithHits()) {
-            addStandardStatistics(reportResult, ORG_LEVEL, statsTracker, orgName, COMMITS, WITH_VALID_CODE_REVIEWS);
-        }
-
-        return reportResult;
+        };
     }
 
     /**
      * This method initializes our list of code review strategies that we have in place.
      * It loads them in the order that we would like them to be exercised.
+     * Checking for approvals takes a request per pull request, so it comes last, for the commits the other strategies
+     * did not validate, and only when there is a PullRequestReviewFetcher to fetch the reviews with.
      */
     private List<ValidCodeReviewStrategy> loadCodeReviewStrategies() {
         List<ValidCodeReviewStrategy> strategies = new ArrayList<>();
         strategies.add(new ValidCommitMessageStrategy());
         strategies.add(new MatchingCommitShaStrategy());
         strategies.add(new MatchingJiraTicketStrategy());
+        if (reviewFetcher != null) {
+            strategies.add(new ApprovedReviewStrategy(repoOwnership));
+        }
         return strategies;
     }
 
+    public List<ValidCodeReviewStrategy> getCodeReviewStrategies() {
+        return codeReviewStrategies != null ? codeReviewStrategies : loadCodeReviewStrategies();
+    }
+
+    /**
+     * @param codeReviewStrategies the strategies a commit is valid by passing any of, in the order in which they are
+     *                             exercised (e.g. only an ApprovedReviewStrategy, to require an approval for each
+     *                             commit); null to use the default ones
+     */
+    public void setCodeReviewStrategies(List<ValidCodeReviewStrategy> codeReviewStrategies) {
+        this.codeReviewStrategies = codeReviewStrategies;
+    }
+
+    public PullRequestReviewFetcher getReviewFetcher() {
+        return reviewFetcher;
+    }
+
+    /**
+     * @param reviewFetcher fetches the reviews of the pull requests for the strategies that need them; if set, a
+     *                      commit whose pull request was approved by a reviewer of the repository is valid by default
+     *                      as well
+     */
+    public void setReviewFetcher(PullRequestReviewFetcher reviewFetcher) {
+        this.reviewFetcher = reviewFetcher;
+    }
+
+    @Override
+    protected String getRulesVersion() {
+        // the verdicts depend on which strategies validate the commits
+        final List<String> strategyNames = new ArrayList<>();
+        for (ValidCodeReviewStrategy strategy : getCodeReviewStrategies()) {
+            strategyNames.add(strategy.getClass().getSimpleName());
+        }
+        return String.valueOf(strategyNames.hashCode());
+    }
+
+    @Override
+    protected int getCommitWindowDays() {
+        return numberOfDaysThreshold;
+    }
+
     @Override
     public String getRuleMessage() {
         return "Commit must have a \"reviewed by\" in the comment or must be associated with closed Pull Request.";
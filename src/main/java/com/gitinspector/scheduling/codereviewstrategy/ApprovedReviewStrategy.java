@@ -0,0 +1,103 @@
+package com.gitinspector.scheduling.codereviewstrategy;
+
+import com.gitinspector.domain.ClosedPullRequest;
+import com.gitinspector.domain.GitCommit;
+import com.gitinspector.domain.GitUser;
+import com.gitinspector.domain.PullRequestReview;
+import com.gitinspector.ownership.GitUserIndex;
+import com.gitinspector.ownership.RepoOwnership;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This strategy will determine if a commit was correctly reviewed by
+ * finding the pull request the commit came from and checking that one
+ * of the reviewers of the repository approved it, other than the
+ * committer.
+ * The reviews of all of the pull requests the commits came from are fetched at once, before any commit is matched,
+ * so the strategy makes one request per pull request rather than one per commit. The reviewers are looked up by
+ * username and by email address, so matching a review or a committer against them is a hash lookup.
+ */
+public class ApprovedReviewStrategy implements ValidCodeReviewStrategy {
+
+    private RepoOwnership repoOwnership;
+
+    /**
+     * @param repoOwnership knows the reviewers of each repository
+     */
+    public ApprovedReviewStrategy(RepoOwnership repoOwnership) {
+        this.repoOwnership = repoOwnership;
+    }
+
+    @Override
+    public void markValidCommits(List<GitCommit> commits, ReviewContext context, BitSet validCommits)
+        throws IOException {
+        final GitUserIndex reviewers =
+            new GitUserIndex(repoOwnership.getRepositoryReviewers(context.getRepository().getFullName()));
+        if (reviewers.isEmpty()) {
+            // no one can approve the pull requests of this repository, so don't bother fetching their reviews
+            return;
+        }
+
+        // find the pull request each of the remaining commits came from
+        final Map<Integer, ClosedPullRequest> pullRequestsByCommit = new LinkedHashMap<>();
+        final Map<Integer, ClosedPullRequest> pullRequests = new HashMap<>();
+        for (int i = validCommits.nextClearBit(0); i < commits.size(); i = validCommits.nextClearBit(i + 1)) {
+            final ClosedPullRequest pullRequest = context.getCommitIndex().getPullRequest(commits.get(i));
+            if (pullRequest != null) {
+                pullRequestsByCommit.put(i, pullRequest);
+                pullRequests.put(pullRequest.getNumber(), pullRequest);
+            }
+        }
+        if (pullRequests.isEmpty()) {
+            return;
+        }
+
+        final Map<Integer, List<PullRequestReview>> reviews = context.getReviews(pullRequests.values());
+        final Map<Integer, Set<GitUser>> approversByPullRequest = new HashMap<>();
+        for (Map.Entry<Integer, List<PullRequestReview>> entry : reviews.entrySet()) {
+            approversByPullRequest.put(entry.getKey(), getApprovers(entry.getValue(), reviewers));
+        }
+
+        for (Map.Entry<Integer, ClosedPullRequest> entry : pullRequestsByCommit.entrySet()) {
+            final GitCommit commit = commits.get(entry.getKey());
+            final Set<GitUser> approvers = new HashSet<>(approversByPullRequest.get(entry.getValue().getNumber()));
+            // approving one's own changes is no review
+            approvers.remove(reviewers.get(commit.getCommitterName(), commit.getCommitterEmail()));
+            if (!approvers.isEmpty()) {
+                validCommits.set(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * @param reviews   the reviews of a pull request, in the order in which they were submitted
+     * @param reviewers the reviewers of the repository
+     * @return the reviewers whose latest say on the pull request is an approval; comments neither approve nor
+     * withdraw an approval, while a request for changes or a dismissal does withdraw it
+     */
+    private static Set<GitUser> getApprovers(List<PullRequestReview> reviews, GitUserIndex reviewers) {
+        final Set<GitUser> approvers = new HashSet<>();
+        for (PullRequestReview review : reviews) {
+            final GitUser reviewer = reviewers.getByUsername(review.getReviewerLogin());
+            if (reviewer == null || review.getSubmittedAt() == null
+                || PullRequestReview.COMMENTED.equals(review.getState())) {
+                continue;
+            }
+
+            if (PullRequestReview.APPROVED.equals(review.getState())) {
+                approvers.add(reviewer);
+            } else {
+                approvers.remove(reviewer);
+            }
+        }
+        return approvers;
+    }
+}
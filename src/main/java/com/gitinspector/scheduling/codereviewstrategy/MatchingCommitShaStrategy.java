@@ -1,30 +1,19 @@
 package com.gitinspector.scheduling.codereviewstrategy;
 
-import com.gitinspector.scheduling.PullRequestFetcher;
-import org.kohsuke.github.GHCommit;
-import org.kohsuke.github.GHPullRequest;
-import org.kohsuke.github.GHPullRequestCommitDetail;
+import com.gitinspector.domain.GitCommit;
 
 /**
  * This strategy will determine if a commit was correctly reviewed by checking
  * to see if the SHA associated with the commit on master has a matching
- * SHA on one of the commits on a pull request
+ * SHA on one of the commits on a pull request (or, for a merge commit, if
+ * one of the merged parents is on a pull request)
  */
-public class MatchingCommitShaStrategy implements ValidCodeReviewStrategy {
+public class MatchingCommitShaStrategy extends SingleCommitReviewStrategy {
 
     @Override
-    public boolean isCommitValid(GHCommit commit, PullRequestFetcher pullRequestFetcher) {
-        for (GHPullRequest pullRequest : pullRequestFetcher.getCachedPullRequests()) {
-            for (GHPullRequestCommitDetail prCommit : pullRequest.listCommits()) {
-                //iterate over the pull requests
-                //then iterate over the commits in the pull request
-                //If the commit sha matches one of the pull request's commit shas, commit is valid
-                if (prCommit.getSha().equals(commit.getSHA1())) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+    public boolean isCommitValid(GitCommit commit, ReviewContext context) {
+        //the index maps each pull request commit sha to its pull request, so this is a lookup rather than
+        //a walk over the commits of every pull request
+        return context.getCommitIndex().getPullRequest(commit) != null;
     }
 }
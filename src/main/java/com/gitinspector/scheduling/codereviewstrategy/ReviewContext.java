@@ -0,0 +1,118 @@
+package com.gitinspector.scheduling.codereviewstrategy;
+
+import com.gitinspector.domain.ClosedPullRequest;
+import com.gitinspector.domain.GitCommit;
+import com.gitinspector.domain.PullRequestReview;
+import com.gitinspector.github.PullRequestReviewFetcher;
+import com.gitinspector.scheduling.PullRequestCommitIndex;
+import com.gitinspector.scheduling.PullRequestFetcher;
+import com.gitinspector.scheduling.PullRequestTicketIndex;
+import org.kohsuke.github.GHRepository;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the code review strategies share while evaluating the commits of a repository: the commits themselves and
+ * what they are checked against (the pull requests of the repository, their indexes and their reviews). Nothing is
+ * loaded until a strategy asks for it, and whatever is loaded is loaded once for all of the strategies.
+ */
+public class ReviewContext {
+
+    private GHRepository repository;
+
+    private List<GitCommit> commits;
+
+    private PullRequestFetcher pullRequestFetcher;
+
+    private PullRequestReviewFetcher reviewFetcher;
+
+    // by pull request number
+    private Map<Integer, List<PullRequestReview>> reviews = new HashMap<>();
+
+    /**
+     * @param repository         the repository the commits are on
+     * @param commits            the commits being evaluated, tip first
+     * @param pullRequestFetcher lazily loads the pull requests the commits are checked against
+     */
+    public ReviewContext(GHRepository repository, List<GitCommit> commits, PullRequestFetcher pullRequestFetcher) {
+        this(repository, commits, pullRequestFetcher, null);
+    }
+
+    /**
+     * @param repository         the repository the commits are on
+     * @param commits            the commits being evaluated, tip first
+     * @param pullRequestFetcher lazily loads the pull requests the commits are checked against
+     * @param reviewFetcher      fetches the reviews of the pull requests; null if no strategy needs them
+     */
+    public ReviewContext(GHRepository repository, List<GitCommit> commits, PullRequestFetcher pullRequestFetcher,
+                         PullRequestReviewFetcher reviewFetcher) {
+        this.repository = repository;
+        this.commits = commits;
+        this.pullRequestFetcher = pullRequestFetcher;
+        this.reviewFetcher = reviewFetcher;
+    }
+
+    public GHRepository getRepository() {
+        return repository;
+    }
+
+    public List<GitCommit> getCommits() {
+        return commits;
+    }
+
+    public PullRequestFetcher getPullRequestFetcher() {
+        return pullRequestFetcher;
+    }
+
+    /**
+     * @return the pull requests closed within the window of the commits
+     */
+    public List<ClosedPullRequest> getPullRequests() {
+        return pullRequestFetcher.getCachedPullRequests();
+    }
+
+    /**
+     * @return an index mapping the SHAs of the commits of the pull requests to the pull requests
+     */
+    public PullRequestCommitIndex getCommitIndex() {
+        return pullRequestFetcher.getCommitIndex();
+    }
+
+    /**
+     * @return an index mapping the Jira tickets mentioned in the titles of the pull requests to the pull requests
+     */
+    public PullRequestTicketIndex getTicketIndex() {
+        return pullRequestFetcher.getTicketIndex();
+    }
+
+    /**
+     * Fetch the reviews of the provided pull requests, all of them before returning, each of them only once however
+     * many times (and by however many strategies) it is asked for.
+     *
+     * @param pullRequests the pull requests whose reviews are needed
+     * @return the reviews of the pull requests, by pull request number
+     * @throws IOException if the reviews of a pull request could not be fetched
+     */
+    public Map<Integer, List<PullRequestReview>> getReviews(Collection<ClosedPullRequest> pullRequests)
+        throws IOException {
+        if (reviewFetcher == null) {
+            throw new IllegalStateException("No PullRequestReviewFetcher was provided to fetch the reviews with");
+        }
+
+        final Map<Integer, List<PullRequestReview>> requestedReviews = new HashMap<>();
+        for (ClosedPullRequest pullRequest : pullRequests) {
+            final int number = pullRequest.getNumber();
+            List<PullRequestReview> pullRequestReviews = reviews.get(number);
+            if (pullRequestReviews == null) {
+                pullRequestReviews = reviewFetcher.getReviews(repository, number);
+                reviews.put(number, pullRequestReviews);
+            }
+            requestedReviews.put(number, pullRequestReviews);
+        }
+        return requestedReviews;
+    }
+}
@@ -0,0 +1,26 @@
+package com.gitinspector.scheduling.codereviewstrategy;
+
+import com.gitinspector.domain.GitCommit;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Base class for the strategies that can tell whether a commit was reviewed by looking at that commit on its own.
+ * Only the commits that no earlier strategy found to have been reviewed are evaluated.
+ */
+public abstract class SingleCommitReviewStrategy implements ValidCodeReviewStrategy {
+
+    @Override
+    public void markValidCommits(List<GitCommit> commits, ReviewContext context, BitSet validCommits)
+        throws IOException {
+        for (int i = validCommits.nextClearBit(0); i < commits.size(); i = validCommits.nextClearBit(i + 1)) {
+            if (isCommitValid(commits.get(i), context)) {
+                validCommits.set(i);
+            }
+        }
+    }
+
+    public abstract boolean isCommitValid(GitCommit commit, ReviewContext context) throws IOException;
+}
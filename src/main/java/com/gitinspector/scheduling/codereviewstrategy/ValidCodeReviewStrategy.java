@@ -1,13 +1,29 @@
 package com.gitinspector.scheduling.codereviewstrategy;
 
-import com.gitinspector.scheduling.PullRequestFetcher;
-import org.kohsuke.github.GHCommit;
+import com.gitinspector.domain.GitCommit;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
 
 /**
  * Common interface representing the strategies that will be used
  * to deterimine if a a commit is associated with a valid review.
+ * The strategies are given all of the commits of a repository at once, so that they can set up whatever they need
+ * (e.g. an index of the pull requests) once per repository and batch their requests. They are exercised in turn,
+ * each of them skipping the commits an earlier one already found to be reviewed.
  */
 public interface ValidCodeReviewStrategy {
 
-    boolean isCommitValid(GHCommit commit, PullRequestFetcher pullRequestFetcher);
+    /**
+     * Mark the commits this strategy finds to have been reviewed.
+     *
+     * @param commits      the commits to evaluate, tip first
+     * @param context      what the strategies share while evaluating the commits
+     * @param validCommits the indexes (in commits) of the commits found to have been reviewed so far; the commits
+     *                     already marked need not be evaluated, and those this strategy finds to have been reviewed
+     *                     are marked in turn
+     * @throws IOException if there was an error retrieving what the strategy checks the commits against
+     */
+    void markValidCommits(List<GitCommit> commits, ReviewContext context, BitSet validCommits) throws IOException;
 }
@@ -1,27 +1,40 @@
 package com.gitinspector.scheduling.codereviewstrategy;
 
-import com.gitinspector.scheduling.PullRequestFetcher;
-import org.kohsuke.github.GHCommit;
+import com.gitinspector.domain.GitCommit;
+import com.gitinspector.matching.CommitMessageRules;
 
-import java.util.regex.Pattern;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * This strategy will determine if a commit has was correctly reviewed by checking
  * to see if there is a "reviewed by" stated in the commit message
  */
-public class ValidCommitMessageStrategy implements ValidCodeReviewStrategy {
+public class ValidCommitMessageStrategy extends SingleCommitReviewStrategy {
 
+    private CommitMessageRules commitMessageRules;
 
-    @Override
-    public boolean isCommitValid(GHCommit commit, PullRequestFetcher pullRequestFetcher) {
-        final String commitMessage = commit.getCommitShortInfo().getMessage();
+    private BitSet reviewedRuleMask;
 
-        //If the commit message contains a "reviewed by" message, commit is valid
-        return doesCommitContainReviewedBy(commitMessage);
+    public ValidCommitMessageStrategy() {
+        this(new CommitMessageRules(), Collections.singletonList(CommitMessageRules.REVIEWED_BY));
+    }
+
+    /**
+     * @param commitMessageRules the rules commit messages are evaluated against
+     * @param reviewedRuleNames  the names of the rules a commit message tells the commit was reviewed by holding any of
+     */
+    public ValidCommitMessageStrategy(CommitMessageRules commitMessageRules, List<String> reviewedRuleNames) {
+        this.commitMessageRules = commitMessageRules;
+        this.reviewedRuleMask = commitMessageRules.getMask(reviewedRuleNames);
     }
 
-    private boolean doesCommitContainReviewedBy(String commitMessage) {
-        final Pattern pattern = Pattern.compile(".*reviewed by.*", Pattern.CASE_INSENSITIVE);
-        return pattern.matcher(commitMessage).matches();
+    @Override
+    public boolean isCommitValid(GitCommit commit, ReviewContext context) {
+        final String commitMessage = commit.getMessage();
+
+        //If the commit message contains a "reviewed by" message, commit is valid
+        return commitMessageRules.holdsAny(commitMessage, reviewedRuleMask);
     }
 }
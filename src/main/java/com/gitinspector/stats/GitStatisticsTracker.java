@@ -11,6 +11,7 @@ import java.util.Map;
 /**
  * Aids in the tracking of statistics on repositories and organizations as the git inspector tasks are iterating
  * over repositories. Each task should instantiate its OWN INSTANCE of this class.
+ * Hits may be added from several threads (e.g. when a task evaluates repositories in parallel).
  */
 public class GitStatisticsTracker {
 
@@ -28,14 +29,14 @@ public class GitStatisticsTracker {
         this.statisticName = statisticName;
     }
 
-    public void addHitToOrg(String orgName, boolean isPositiveHit) {
+    public synchronized void addHitToOrg(String orgName, boolean isPositiveHit) {
         incrementMapValue(orgNameToTotalHitsMap, orgName);
         if (isPositiveHit) {
             incrementMapValue(orgNameToPositiveHitsMap, orgName);
         }
     }
 
-    public void addHitToRepo(String repoFullName, boolean isPositiveHit) {
+    public synchronized void addHitToRepo(String repoFullName, boolean isPositiveHit) {
         incrementMapValue(repoNameToTotalHitsMap, repoFullName);
         if (isPositiveHit) {
             incrementMapValue(repoNameToPositiveHitsMap, repoFullName);
@@ -47,7 +48,7 @@ public class GitStatisticsTracker {
         return statisticName;
     }
 
-    public List<String> getAllOrgsWithHits() {
+    public synchronized List<String> getAllOrgsWithHits() {
         return new ArrayList<>(orgNameToTotalHitsMap.keySet());
     }
 
@@ -62,11 +63,11 @@ public class GitStatisticsTracker {
         }
     }
 
-    public int getTotalHitsForOrg(String orgName) {
+    public synchronized int getTotalHitsForOrg(String orgName) {
         return orgNameToTotalHitsMap.containsKey(orgName) ? orgNameToTotalHitsMap.get(orgName) : 0;
     }
 
-    public int getTotalHitsForRepo(String repoFullName) {
+    public synchronized int getTotalHitsForRepo(String repoFullName) {
         return repoNameToTotalHitsMap.containsKey(repoFullName) ? repoNameToTotalHitsMap.get(repoFullName) : 0;
     }
 
@@ -81,11 +82,11 @@ public class GitStatisticsTracker {
         }
     }
 
-    public int getPositiveHitsForOrg(String orgName) {
+    public synchronized int getPositiveHitsForOrg(String orgName) {
         return orgNameToPositiveHitsMap.containsKey(orgName) ? orgNameToPositiveHitsMap.get(orgName) : 0;
     }
 
-    public int getPositiveHitsForRepo(String repoFullName) {
+    public synchronized int getPositiveHitsForRepo(String repoFullName) {
         return repoNameToPositiveHitsMap.containsKey(repoFullName) ? repoNameToPositiveHitsMap.get(repoFullName) : 0;
     }
 
@@ -100,11 +101,11 @@ public class GitStatisticsTracker {
         }
     }
 
-    public int getPercentageOfPositiveHitsForOrg(String orgName) {
+    public synchronized int getPercentageOfPositiveHitsForOrg(String orgName) {
         return calculatePercentPositiveHits(getPositiveHitsForOrg(orgName), getTotalHitsForOrg(orgName));
     }
 
-    public int getPercentageOfPositiveHitsForRepo(String repoFullName) {
+    public synchronized int getPercentageOfPositiveHitsForRepo(String repoFullName) {
         return calculatePercentPositiveHits(getPositiveHitsForRepo(repoFullName), getTotalHitsForRepo(repoFullName));
     }
 
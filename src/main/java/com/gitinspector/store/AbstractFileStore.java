@@ -0,0 +1,118 @@
+package com.gitinspector.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Base class for the stores that keep what we learned about a repository on disk between runs.
+ * Each key (typically a repository full name) maps to one file in the store directory. Files are written to a
+ * temp file first and then moved into place, so a reader never sees a partially written file.
+ */
+public abstract class AbstractFileStore {
+
+    private File storeDirectory;
+
+    protected AbstractFileStore(String storeDirectory) throws IOException {
+        this.storeDirectory = new File(storeDirectory);
+        if (!this.storeDirectory.isDirectory() && !this.storeDirectory.mkdirs()) {
+            throw new IOException("Could not create store directory " + storeDirectory);
+        }
+    }
+
+    public String getStoreDirectory() {
+        return storeDirectory.getAbsolutePath();
+    }
+
+    /**
+     * @param key the key of the file
+     * @return a stream reading the file for the key or null if there is no such file
+     * @throws IOException if the file could not be opened
+     */
+    protected DataInputStream openForReading(String key) throws IOException {
+        final File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    /**
+     * Replace the file for a key with what the writer writes.
+     *
+     * @param key    the key of the file
+     * @param writer writes the new contents of the file
+     * @throws IOException if the file could not be written
+     */
+    protected void write(String key, ContentWriter writer) throws IOException {
+        final File file = getFile(key);
+        final File tempFile = File.createTempFile(file.getName(), ".tmp", storeDirectory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                writer.write(out);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Delete the file for a key, if any.
+     *
+     * @param key the key of the file
+     * @throws IOException if the file could not be deleted
+     */
+    protected void delete(String key) throws IOException {
+        Files.deleteIfExists(getFile(key).toPath());
+    }
+
+    /**
+     * Delete all of the files in the store.
+     */
+    protected void deleteAll() throws IOException {
+        final File[] files = storeDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    private File getFile(String key) {
+        try {
+            // keeps the file names readable (e.g. OMDev%2Fomapi) while making sure they are valid and unique
+            return new File(storeDirectory, URLEncoder.encode(key, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the contents of a file.
+     */
+    protected interface ContentWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    protected static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    protected static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
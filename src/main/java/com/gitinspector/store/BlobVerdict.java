@@ -0,0 +1,58 @@
+package com.gitinspector.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The terms found in a blob, at one of the paths it is checked in at. Blobs are identified by the SHA of their
+ * content, so the verdict holds wherever and whenever the same content turns up again.
+ */
+public class BlobVerdict {
+
+    private String blobSha1;
+
+    private String path;
+
+    private Map<String, List<Integer>> lineNumbers;
+
+    /**
+     * @param blobSha1    the SHA of the blob
+     * @param path        the path of the blob in the tree it was found in
+     * @param lineNumbers the lines (counted from 1) on which each of the terms was found, by term
+     */
+    public BlobVerdict(String blobSha1, String path, Map<String, List<Integer>> lineNumbers) {
+        this.blobSha1 = blobSha1;
+        this.path = path;
+        this.lineNumbers = Collections.unmodifiableMap(new LinkedHashMap<>(lineNumbers));
+    }
+
+    public String getBlobSha1() {
+        return blobSha1;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the terms found, in the order they were looked for
+     */
+    public List<String> getTerms() {
+        return new ArrayList<>(lineNumbers.keySet());
+    }
+
+    public Map<String, List<Integer>> getLineNumbers() {
+        return lineNumbers;
+    }
+
+    /**
+     * @param path another path the same blob is checked in at
+     * @return the verdict for the blob at that path
+     */
+    public BlobVerdict atPath(String path) {
+        return new BlobVerdict(blobSha1, path, lineNumbers);
+    }
+}
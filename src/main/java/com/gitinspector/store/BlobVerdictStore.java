@@ -0,0 +1,132 @@
+package com.gitinspector.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a ContentCheckpoint per task and repository on disk, so that a task only needs to scan the blobs that changed
+ * since its previous run.
+ */
+@ManagedResource(description = "Keeps the blob verdicts of each task and repository on disk between runs")
+public class BlobVerdictStore extends AbstractFileStore {
+    private static final Logger log = LoggerFactory.getLogger(BlobVerdictStore.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    public BlobVerdictStore(String storeDirectory) throws IOException {
+        super(storeDirectory);
+    }
+
+    /**
+     * @param taskName     the name of the task
+     * @param repoFullName the full name of the repository
+     * @return the checkpoint of the task for the repository or null if there is none
+     */
+    public ContentCheckpoint load(String taskName, String repoFullName) {
+        try (DataInputStream in = openForReading(getKey(taskName, repoFullName))) {
+            if (in == null || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+
+            final String tipSha1 = in.readUTF();
+            final String rulesVersion = in.readUTF();
+            final int count = in.readInt();
+            final List<BlobVerdict> verdicts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                verdicts.add(readVerdict(in));
+            }
+            return new ContentCheckpoint(tipSha1, rulesVersion, verdicts);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable content checkpoint of {} for {}", taskName, repoFullName, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param taskName     the name of the task
+     * @param repoFullName the full name of the repository
+     * @param checkpoint   the checkpoint to store; replaces the previous checkpoint of the task for the repository
+     * @throws IOException if the checkpoint could not be written
+     */
+    public void save(String taskName, String repoFullName, final ContentCheckpoint checkpoint) throws IOException {
+        write(getKey(taskName, repoFullName), new ContentWriter() {
+            @Override
+            public void write(DataOutputStream out) throws IOException {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(checkpoint.getTipSha1());
+                out.writeUTF(checkpoint.getRulesVersion());
+                out.writeInt(checkpoint.getVerdicts().size());
+                for (BlobVerdict verdict : checkpoint.getVerdicts()) {
+                    writeVerdict(out, verdict);
+                }
+            }
+        });
+    }
+
+    /**
+     * Forget the checkpoint of a task for a repository, so that all of its files are scanned on the next run.
+     *
+     * @param taskName     the name of the task (e.g. ProfanityCheckerJob)
+     * @param repoFullName the full name of the repository
+     */
+    @ManagedOperation
+    public void forget(String taskName, String repoFullName) throws IOException {
+        delete(getKey(taskName, repoFullName));
+    }
+
+    @ManagedOperation
+    public void clear() throws IOException {
+        deleteAll();
+    }
+
+    @ManagedAttribute
+    @Override
+    public String getStoreDirectory() {
+        return super.getStoreDirectory();
+    }
+
+    private static String getKey(String taskName, String repoFullName) {
+        return taskName + "/" + repoFullName;
+    }
+
+    private static BlobVerdict readVerdict(DataInputStream in) throws IOException {
+        final String blobSha1 = in.readUTF();
+        final String path = in.readUTF();
+        final int termCount = in.readInt();
+        final Map<String, List<Integer>> lineNumbers = new LinkedHashMap<>();
+        for (int i = 0; i < termCount; i++) {
+            final String term = in.readUTF();
+            final int lineCount = in.readInt();
+            final List<Integer> lines = new ArrayList<>(lineCount);
+            for (int j = 0; j < lineCount; j++) {
+                lines.add(in.readInt());
+            }
+            lineNumbers.put(term, lines);
+        }
+        return new BlobVerdict(blobSha1, path, lineNumbers);
+    }
+
+    private static void writeVerdict(DataOutputStream out, BlobVerdict verdict) throws IOException {
+        out.writeUTF(verdict.getBlobSha1());
+        out.writeUTF(verdict.getPath());
+        out.writeInt(verdict.getLineNumbers().size());
+        for (Map.Entry<String, List<Integer>> entry : verdict.getLineNumbers().entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (int line : entry.getValue()) {
+                out.writeInt(line);
+            }
+        }
+    }
+}
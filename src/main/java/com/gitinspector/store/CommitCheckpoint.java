@@ -0,0 +1,57 @@
+package com.gitinspector.store;
+
+import com.gitinspector.domain.CommitVerdict;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The master tip a task last evaluated for a repository, along with the verdicts for the commits in its window.
+ */
+public class CommitCheckpoint {
+
+    private String tipSha1;
+
+    private int numberOfDaysThreshold;
+
+    private String rulesVersion;
+
+    private List<CommitVerdict> verdicts;
+
+    public CommitCheckpoint(String tipSha1, int numberOfDaysThreshold, String rulesVersion,
+                            List<CommitVerdict> verdicts) {
+        this.tipSha1 = tipSha1;
+        this.numberOfDaysThreshold = numberOfDaysThreshold;
+        this.rulesVersion = rulesVersion;
+        this.verdicts = Collections.unmodifiableList(new ArrayList<>(verdicts));
+    }
+
+    /**
+     * @return the SHA of the master tip that was evaluated
+     */
+    public String getTipSha1() {
+        return tipSha1;
+    }
+
+    /**
+     * @return the number of days the window covered when the checkpoint was made
+     */
+    public int getNumberOfDaysThreshold() {
+        return numberOfDaysThreshold;
+    }
+
+    /**
+     * @return identifies the rules the verdicts were reached with (e.g. a hash of a term list)
+     */
+    public String getRulesVersion() {
+        return rulesVersion;
+    }
+
+    /**
+     * @return the verdicts, in the order the commits were walked (tip first)
+     */
+    public List<CommitVerdict> getVerdicts() {
+        return verdicts;
+    }
+}
@@ -0,0 +1,198 @@
+package com.gitinspector.store;
+
+import com.gitinspector.commits.Sha1Table;
+import com.gitinspector.domain.GitCommit;
+import com.google.common.base.Charsets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keeps commits on disk between runs, keyed by SHA. Commits never change, so the store is a single file that
+ * records are only ever appended to; an index of where each record starts (a Sha1Table and an array of offsets)
+ * is built when the store is opened.
+ * A record left incomplete by a crash is cut off when the store is opened.
+ */
+@ManagedResource(description = "Keeps the commits fetched from git on disk between runs")
+public class CommitStore extends AbstractFileStore {
+    private static final Logger log = LoggerFactory.getLogger(CommitStore.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String STORE_FILE_NAME = "commits.dat";
+
+    private RandomAccessFile storeFile;
+
+    private Sha1Table sha1s = new Sha1Table();
+
+    // the offset of each record, by the index of its SHA in the table
+    private long[] offsets = new long[0];
+
+    public CommitStore(String storeDirectory) throws IOException {
+        super(storeDirectory);
+        storeFile = new RandomAccessFile(new File(storeDirectory, STORE_FILE_NAME), "rw");
+        if (storeFile.length() >= 4 && storeFile.readInt() == FORMAT_VERSION) {
+            buildIndex();
+        } else {
+            if (storeFile.length() != 0) {
+                log.info("Discarding the commits stored in {} in another format", storeDirectory);
+            }
+            reset();
+        }
+    }
+
+    /**
+     * @param sha1 the SHA of a commit
+     * @return the stored commit or null if it is not stored
+     * @throws IOException if the commit could not be read
+     */
+    public synchronized GitCommit get(String sha1) throws IOException {
+        final int index = sha1s.indexOf(sha1);
+        if (index < 0) {
+            return null;
+        }
+
+        storeFile.seek(offsets[index]);
+        final byte[] record = new byte[storeFile.readInt()];
+        storeFile.readFully(record);
+        return readCommit(new DataInputStream(new ByteArrayInputStream(record)));
+    }
+
+    /**
+     * Append a commit to the store, unless it is stored already.
+     *
+     * @param commit the commit to store
+     * @throws IOException if the commit could not be written
+     */
+    public synchronized void put(GitCommit commit) throws IOException {
+        if (sha1s.contains(commit.getSha1())) {
+            return;
+        }
+
+        final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        writeCommit(new DataOutputStream(record), commit);
+
+        final long offset = storeFile.length();
+        storeFile.seek(offset);
+        storeFile.writeInt(record.size());
+        storeFile.write(record.toByteArray());
+        putOffset(commit.getSha1(), offset);
+    }
+
+    public synchronized boolean contains(String sha1) {
+        return sha1s.contains(sha1);
+    }
+
+    /**
+     * @return the number of commits stored
+     */
+    @ManagedAttribute
+    public synchronized int getSize() {
+        return sha1s.size();
+    }
+
+    @ManagedAttribute
+    public synchronized long getSizeInBytes() throws IOException {
+        return storeFile.length();
+    }
+
+    @ManagedOperation
+    public synchronized void clear() throws IOException {
+        reset();
+    }
+
+    @ManagedAttribute
+    @Override
+    public String getStoreDirectory() {
+        return super.getStoreDirectory();
+    }
+
+    public synchronized void close() throws IOException {
+        storeFile.close();
+    }
+
+    private void buildIndex() throws IOException {
+        // the records follow the format version
+        long offset = 4;
+        try {
+            while (offset < storeFile.length()) {
+                storeFile.seek(offset);
+                final int recordLength = storeFile.readInt();
+                if (recordLength < 0 || offset + 4 + recordLength > storeFile.length()) {
+                    throw new EOFException();
+                }
+                // the SHA is the first field of a record
+                putOffset(storeFile.readUTF(), offset);
+                offset += 4 + recordLength;
+            }
+        } catch (EOFException e) {
+            log.warn("Cutting off an incomplete commit record at offset {} of the commit store", offset);
+            storeFile.setLength(offset);
+        }
+    }
+
+    private void reset() throws IOException {
+        storeFile.setLength(0);
+        storeFile.writeInt(FORMAT_VERSION);
+        sha1s = new Sha1Table();
+        offsets = new long[0];
+    }
+
+    private void putOffset(String sha1, long offset) {
+        final int index = sha1s.add(sha1);
+        if (index >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(16, offsets.length * 2));
+        }
+        offsets[index] = offset;
+    }
+
+    private static GitCommit readCommit(DataInputStream in) throws IOException {
+        final String sha1 = in.readUTF();
+        final int parentCount = in.readInt();
+        final List<String> parentSha1s = new ArrayList<>(parentCount);
+        for (int i = 0; i < parentCount; i++) {
+            parentSha1s.add(in.readUTF());
+        }
+        final String committerName = readNullableUTF(in);
+        final String committerEmail = readNullableUTF(in);
+        final Date committedAt = in.readBoolean() ? new Date(in.readLong()) : null;
+        // messages may be longer than writeUTF allows
+        final byte[] message = new byte[in.readInt()];
+        in.readFully(message);
+        return new GitCommit(sha1, parentSha1s, committerName, committerEmail, committedAt,
+            new String(message, Charsets.UTF_8));
+    }
+
+    private static void writeCommit(DataOutputStream out, GitCommit commit) throws IOException {
+        out.writeUTF(commit.getSha1());
+        out.writeInt(commit.getParentSha1s().size());
+        for (String parentSha1 : commit.getParentSha1s()) {
+            out.writeUTF(parentSha1);
+        }
+        writeNullableUTF(out, commit.getCommitterName());
+        writeNullableUTF(out, commit.getCommitterEmail());
+        out.writeBoolean(commit.getCommittedAt() != null);
+        if (commit.getCommittedAt() != null) {
+            out.writeLong(commit.getCommittedAt().getTime());
+        }
+        final byte[] message = commit.getMessage() == null ? new byte[0] : commit.getMessage().getBytes(Charsets.UTF_8);
+        out.writeInt(message.length);
+        out.write(message);
+        out.flush();
+    }
+}
@@ -0,0 +1,128 @@
+package com.gitinspector.store;
+
+import com.gitinspector.domain.CommitVerdict;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keeps a CommitCheckpoint per task and repository on disk, so that a task only needs to evaluate the commits
+ * made since its previous run.
+ */
+@ManagedResource(description = "Keeps the commit verdicts of each task and repository on disk between runs")
+public class CommitVerdictStore extends AbstractFileStore {
+    private static final Logger log = LoggerFactory.getLogger(CommitVerdictStore.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    public CommitVerdictStore(String storeDirectory) throws IOException {
+        super(storeDirectory);
+    }
+
+    /**
+     * @param taskName     the name of the task
+     * @param repoFullName the full name of the repository
+     * @return the checkpoint of the task for the repository or null if there is none
+     */
+    public CommitCheckpoint load(String taskName, String repoFullName) {
+        try (DataInputStream in = openForReading(getKey(taskName, repoFullName))) {
+            if (in == null || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+
+            final String tipSha1 = in.readUTF();
+            final int numberOfDaysThreshold = in.readInt();
+            final String rulesVersion = in.readUTF();
+            final int count = in.readInt();
+            final List<CommitVerdict> verdicts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                verdicts.add(readVerdict(in));
+            }
+            return new CommitCheckpoint(tipSha1, numberOfDaysThreshold, rulesVersion, verdicts);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable checkpoint of {} for {}", taskName, repoFullName, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param taskName     the name of the task
+     * @param repoFullName the full name of the repository
+     * @param checkpoint   the checkpoint to store; replaces the previous checkpoint of the task for the repository
+     * @throws IOException if the checkpoint could not be written
+     */
+    public void save(String taskName, String repoFullName, final CommitCheckpoint checkpoint) throws IOException {
+        write(getKey(taskName, repoFullName), new ContentWriter() {
+            @Override
+            public void write(DataOutputStream out) throws IOException {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(checkpoint.getTipSha1());
+                out.writeInt(checkpoint.getNumberOfDaysThreshold());
+                out.writeUTF(checkpoint.getRulesVersion());
+                out.writeInt(checkpoint.getVerdicts().size());
+                for (CommitVerdict verdict : checkpoint.getVerdicts()) {
+                    writeVerdict(out, verdict);
+                }
+            }
+        });
+    }
+
+    /**
+     * Forget the checkpoint of a task for a repository, so that its whole window is evaluated on the next run.
+     *
+     * @param taskName     the name of the task (e.g. JiraTagJob)
+     * @param repoFullName the full name of the repository
+     */
+    @ManagedOperation
+    public void forget(String taskName, String repoFullName) throws IOException {
+        delete(getKey(taskName, repoFullName));
+    }
+
+    @ManagedOperation
+    public void clear() throws IOException {
+        deleteAll();
+    }
+
+    @ManagedAttribute
+    @Override
+    public String getStoreDirectory() {
+        return super.getStoreDirectory();
+    }
+
+    private static String getKey(String taskName, String repoFullName) {
+        return taskName + "/" + repoFullName;
+    }
+
+    private static CommitVerdict readVerdict(DataInputStream in) throws IOException {
+        final String sha1 = in.readUTF();
+        final String committerName = readNullableUTF(in);
+        final Date committedAt = new Date(in.readLong());
+        final boolean positive = in.readBoolean();
+        final int detailCount = in.readInt();
+        final List<String> details = new ArrayList<>(detailCount);
+        for (int i = 0; i < detailCount; i++) {
+            details.add(in.readUTF());
+        }
+        return new CommitVerdict(sha1, committerName, committedAt, positive, details);
+    }
+
+    private static void writeVerdict(DataOutputStream out, CommitVerdict verdict) throws IOException {
+        out.writeUTF(verdict.getSha1());
+        writeNullableUTF(out, verdict.getCommitterName());
+        out.writeLong(verdict.getCommittedAt().getTime());
+        out.writeBoolean(verdict.isPositive());
+        out.writeInt(verdict.getDetails().size());
+        for (String detail : verdict.getDetails()) {
+            out.writeUTF(detail);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.gitinspector.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The default branch tip whose files a task last scanned in a repository, along with the verdicts for the blobs in
+ * which it found terms. The blobs of the tree that have no verdict were found to hold none.
+ */
+public class ContentCheckpoint {
+
+    private String tipSha1;
+
+    private String rulesVersion;
+
+    private List<BlobVerdict> verdicts;
+
+    public ContentCheckpoint(String tipSha1, String rulesVersion, List<BlobVerdict> verdicts) {
+        this.tipSha1 = tipSha1;
+        this.rulesVersion = rulesVersion;
+        this.verdicts = Collections.unmodifiableList(new ArrayList<>(verdicts));
+    }
+
+    /**
+     * @return the SHA of the commit whose tree was scanned
+     */
+    public String getTipSha1() {
+        return tipSha1;
+    }
+
+    /**
+     * @return identifies the rules the verdicts were reached with (e.g. a hash of a term list)
+     */
+    public String getRulesVersion() {
+        return rulesVersion;
+    }
+
+    /**
+     * @return the verdicts for the files in which terms were found, by path
+     */
+    public List<BlobVerdict> getVerdicts() {
+        return verdicts;
+    }
+}
@@ -0,0 +1,125 @@
+package com.gitinspector.store;
+
+import com.gitinspector.domain.ClosedPullRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keeps the closed pull requests of each repository on disk, so that a run only needs to fetch the pull requests
+ * that changed since the previous one.
+ */
+@ManagedResource(description = "Keeps the closed pull requests of each repository on disk between runs")
+public class PullRequestStore extends AbstractFileStore {
+    private static final Logger log = LoggerFactory.getLogger(PullRequestStore.class);
+
+    private static final int FORMAT_VERSION = 2;
+
+    public PullRequestStore(String storeDirectory) throws IOException {
+        super(storeDirectory);
+    }
+
+    /**
+     * @param repoFullName the full name of the repository
+     * @return the stored pull requests of the repository; empty (and never synced) if none were stored
+     */
+    public StoredPullRequests load(String repoFullName) {
+        final StoredPullRequests storedPullRequests = new StoredPullRequests();
+        try (DataInputStream in = openForReading(repoFullName)) {
+            if (in == null || in.readInt() != FORMAT_VERSION) {
+                return storedPullRequests;
+            }
+
+            final Date syncedAt = new Date(in.readLong());
+            final Date windowStart = new Date(in.readLong());
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                storedPullRequests.put(readPullRequest(in));
+            }
+            storedPullRequests.setSynced(syncedAt, windowStart);
+            return storedPullRequests;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable pull requests stored for {}", repoFullName, e);
+            return new StoredPullRequests();
+        }
+    }
+
+    /**
+     * @param repoFullName       the full name of the repository
+     * @param storedPullRequests the pull requests to store; replaces whatever was stored for the repository
+     * @throws IOException if the pull requests could not be written
+     */
+    public void save(String repoFullName, final StoredPullRequests storedPullRequests) throws IOException {
+        write(repoFullName, new ContentWriter() {
+            @Override
+            public void write(DataOutputStream out) throws IOException {
+                final List<ClosedPullRequest> pullRequests = storedPullRequests.getPullRequests();
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(storedPullRequests.getSyncedAt().getTime());
+                out.writeLong(storedPullRequests.getWindowStart().getTime());
+                out.writeInt(pullRequests.size());
+                for (ClosedPullRequest pullRequest : pullRequests) {
+                    writePullRequest(out, pullRequest);
+                }
+            }
+        });
+    }
+
+    /**
+     * Forget the pull requests of a repository, so that they are all fetched again on the next run.
+     *
+     * @param repoFullName the full name of the repository
+     */
+    @ManagedOperation
+    public void forget(String repoFullName) throws IOException {
+        delete(repoFullName);
+    }
+
+    @ManagedOperation
+    public void clear() throws IOException {
+        deleteAll();
+    }
+
+    @ManagedAttribute
+    @Override
+    public String getStoreDirectory() {
+        return super.getStoreDirectory();
+    }
+
+    private static ClosedPullRequest readPullRequest(DataInputStream in) throws IOException {
+        final int number = in.readInt();
+        final String title = readNullableUTF(in);
+        final Date closedAt = new Date(in.readLong());
+        final Date updatedAt = new Date(in.readLong());
+        final String headSha1 = readNullableUTF(in);
+        final String mergeCommitSha1 = readNullableUTF(in);
+        final int commitCount = in.readInt();
+        final List<String> commitSha1s = new ArrayList<>(commitCount);
+        for (int i = 0; i < commitCount; i++) {
+            commitSha1s.add(in.readUTF());
+        }
+        return new ClosedPullRequest(number, title, closedAt, updatedAt, headSha1, mergeCommitSha1, commitSha1s);
+    }
+
+    private static void writePullRequest(DataOutputStream out, ClosedPullRequest pullRequest) throws IOException {
+        out.writeInt(pullRequest.getNumber());
+        writeNullableUTF(out, pullRequest.getTitle());
+        out.writeLong(pullRequest.getClosedAt().getTime());
+        out.writeLong(pullRequest.getUpdatedAt().getTime());
+        writeNullableUTF(out, pullRequest.getHeadSha1());
+        writeNullableUTF(out, pullRequest.getMergeCommitSha1());
+        out.writeInt(pullRequest.getCommitSha1s().size());
+        for (String commitSha1 : pullRequest.getCommitSha1s()) {
+            out.writeUTF(commitSha1);
+        }
+    }
+}
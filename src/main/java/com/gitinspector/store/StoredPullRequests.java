@@ -0,0 +1,83 @@
+package com.gitinspector.store;
+
+import com.gitinspector.domain.ClosedPullRequest;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The closed pull requests of a repository as of the last time they were synced with git.
+ */
+public class StoredPullRequests {
+
+    private Date syncedAt;
+
+    private Date windowStart;
+
+    private Map<Integer, ClosedPullRequest> pullRequestsByNumber = new TreeMap<>();
+
+    /**
+     * @return the newest update time (as told by GitHub) seen when the pull requests were last synced, or null if
+     * they never were
+     */
+    public Date getSyncedAt() {
+        return syncedAt;
+    }
+
+    /**
+     * @return the earliest close date covered by the last sync or null if the pull requests were never synced
+     */
+    public Date getWindowStart() {
+        return windowStart;
+    }
+
+    /**
+     * Record a sync.
+     *
+     * @param syncedAt    the newest update time (as told by GitHub) the sync saw; pull requests updated after this
+     *                    will be picked up by the next sync
+     * @param windowStart the earliest close date covered by the sync
+     */
+    public void setSynced(Date syncedAt, Date windowStart) {
+        this.syncedAt = syncedAt;
+        this.windowStart = windowStart;
+    }
+
+    /**
+     * @param windowStart the earliest close date needed
+     * @return true if the last sync covered pull requests closed as far back as the provided date
+     */
+    public boolean covers(Date windowStart) {
+        return this.windowStart != null && !this.windowStart.after(windowStart);
+    }
+
+    public ClosedPullRequest get(int number) {
+        return pullRequestsByNumber.get(number);
+    }
+
+    public void put(ClosedPullRequest pullRequest) {
+        pullRequestsByNumber.put(pullRequest.getNumber(), pullRequest);
+    }
+
+    /**
+     * Drop the pull requests that were closed before the provided date, they won't be needed again.
+     *
+     * @param date the earliest close date to keep
+     */
+    public void removeClosedBefore(Date date) {
+        final Iterator<ClosedPullRequest> iterator = pullRequestsByNumber.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getClosedAt().before(date)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public List<ClosedPullRequest> getPullRequests() {
+        return new ArrayList<>(pullRequestsByNumber.values());
+    }
+}
@@ -0,0 +1,162 @@
+package com.gitinspector.commits;
+
+import com.gitinspector.domain.GitCommit;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHCommitQueryBuilder;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitUser;
+import org.kohsuke.github.PagedIterable;
+import org.kohsuke.github.PagedIterator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the CommitWindowWalker class.
+ */
+public class CommitWindowWalkerTest {
+
+    private static final String MERGE = "14091a9f2461267ee7e02525b4f1f2923f1c9849";
+    private static final String MASTER = "4f26aeafdb2367620a393c973eddbe8f8b846ebd";
+    private static final String FEATURE = "4b7615dce52c4c05ce4e1d374e9c61a13717ac7c";
+    private static final String SHARED = "d18aac96b905b4b3c839891b7a91c9414149514c";
+    private static final String OLD = "c00dbbc9dadfbe1e232e93a729dd4752fade0abf";
+
+    private GHRepository repo;
+
+    private GHCommit merge;
+    private GHCommit featureCommit;
+    private GHCommit masterCommit;
+    private GHCommit sharedAncestor;
+    private GHCommit oldCommit;
+
+    /**
+     * Builds the following graph, where "old" falls outside of a 7 day window:
+     * {@code
+     * merge -> master -> shared -> old
+     *       \> feature -/
+     * }
+     */
+    @Before
+    public void setUp() throws IOException {
+        repo = mock(GHRepository.class);
+
+        oldCommit = mockCommit(OLD, 30);
+        sharedAncestor = mockCommit(SHARED, 5, OLD);
+        masterCommit = mockCommit(MASTER, 3, SHARED);
+        featureCommit = mockCommit(FEATURE, 2, SHARED);
+        merge = mockCommit(MERGE, 1, MASTER, FEATURE);
+    }
+
+    @Test
+    public void testWalkingParentsVisitsEachCommitOnce() throws IOException {
+        CommitWindowWalker walker = new CommitWindowWalker(false, false);
+
+        final List<GitCommit> commits = walker.assembleCommits(repo, MERGE, 7);
+
+        assertEquals(Arrays.asList(MERGE, MASTER, SHARED, FEATURE), getSha1s(commits));
+        verify(repo, times(1)).getCommit(SHARED);
+        verify(repo, times(1)).getCommit(OLD);
+    }
+
+    @Test
+    public void testWalkingFirstParentOnly() throws IOException {
+        CommitWindowWalker walker = new CommitWindowWalker(true, false);
+
+        final List<GitCommit> commits = walker.assembleCommits(repo, MERGE, 7);
+
+        assertEquals(Arrays.asList(MERGE, MASTER, SHARED), getSha1s(commits));
+        verify(repo, never()).getCommit(FEATURE);
+    }
+
+    @Test
+    public void testNarrowingAWindowMakesNoRequests() throws IOException {
+        CommitWindowWalker walker = new CommitWindowWalker(false, false);
+        final List<GitCommit> window = walker.assembleCommits(repo, MERGE, 7);
+
+        final List<GitCommit> narrowedWindow = walker.narrowWindow(window, 4);
+
+        assertEquals(Arrays.asList(MERGE, MASTER, FEATURE), getSha1s(narrowedWindow));
+        verify(repo, times(1)).getCommit(MERGE);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCommitListingIsUsedInsteadOfFetchingParents() throws IOException {
+        final GHCommitQueryBuilder queryBuilder = mock(GHCommitQueryBuilder.class);
+        when(repo.queryCommits()).thenReturn(queryBuilder);
+        when(queryBuilder.from(anyString())).thenReturn(queryBuilder);
+        when(queryBuilder.since(any(Date.class))).thenReturn(queryBuilder);
+        when(queryBuilder.pageSize(anyInt())).thenReturn(queryBuilder);
+
+        final PagedIterable<GHCommit> listing = mock(PagedIterable.class);
+        final PagedIterator<GHCommit> listingIterator = mock(PagedIterator.class);
+        when(queryBuilder.list()).thenReturn(listing);
+        when(listing.iterator()).thenReturn(listingIterator);
+        when(listingIterator.hasNext()).thenReturn(true, true, true, true, false);
+        when(listingIterator.next()).thenReturn(merge, featureCommit, masterCommit, sharedAncestor);
+
+        CommitWindowWalker walker = new CommitWindowWalker();
+
+        final List<GitCommit> commits = walker.assembleCommits(repo, MERGE, 7);
+
+        assertEquals(Arrays.asList(MERGE, MASTER, SHARED, FEATURE), getSha1s(commits));
+        verify(queryBuilder).from(MERGE);
+        verify(repo, never()).getCommit(anyString());
+    }
+
+    @Test
+    public void testCachedCommitsAreNotFetchedAgain() throws IOException {
+        CommitWindowWalker walker = new CommitWindowWalker(false, false);
+        final CommitCache commitCache = new CommitCache(null);
+        walker.setCommitDataSource(new RestCommitDataSource(commitCache));
+        walker.assembleCommits(repo, MERGE, 7);
+
+        final List<GitCommit> commits = walker.assembleCommits(repo, MERGE, 7);
+
+        assertEquals(Arrays.asList(MERGE, MASTER, SHARED, FEATURE), getSha1s(commits));
+        verify(repo, times(1)).getCommit(MERGE);
+        verify(repo, times(1)).getCommit(OLD);
+        assertEquals(5, commitCache.getHeapHits());
+    }
+
+    private static List<String> getSha1s(List<GitCommit> commits) {
+        final List<String> sha1s = new ArrayList<>();
+        for (GitCommit commit : commits) {
+            sha1s.add(commit.getSha1());
+        }
+        return sha1s;
+    }
+
+    private GHCommit mockCommit(String sha1, int daysAgo, String... parentSha1s) throws IOException {
+        final GitUser committer = mock(GitUser.class);
+        when(committer.getDate()).thenReturn(DateTime.now().minusDays(daysAgo).toDate());
+
+        final GHCommit.ShortInfo shortInfo = mock(GHCommit.ShortInfo.class);
+        when(shortInfo.getCommitter()).thenReturn(committer);
+
+        final GHCommit commit = mock(GHCommit.class);
+        when(commit.getSHA1()).thenReturn(sha1);
+        when(commit.getParentSHA1s()).thenReturn(Arrays.asList(parentSha1s));
+        when(commit.getCommitShortInfo()).thenReturn(shortInfo);
+
+        when(repo.getCommit(sha1)).thenReturn(commit);
+        return commit;
+    }
+}
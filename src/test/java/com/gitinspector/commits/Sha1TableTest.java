@@ -0,0 +1,63 @@
+package com.gitinspector.commits;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the Sha1Table class.
+ */
+public class Sha1TableTest {
+
+    @Test
+    public void testShasKeepTheirIndexAsTheTableGrows() {
+        final Sha1Table table = new Sha1Table();
+        final List<String> sha1s = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            sha1s.add(sha1("commit" + i));
+            assertEquals(i, table.add(sha1s.get(i)));
+        }
+
+        assertEquals(10000, table.size());
+        for (int i = 0; i < sha1s.size(); i++) {
+            assertEquals(i, table.indexOf(sha1s.get(i)));
+            assertEquals(i, table.add(sha1s.get(i)));
+        }
+        assertEquals(-1, table.indexOf(sha1("commit10000")));
+        assertEquals(10000, table.size());
+    }
+
+    @Test
+    public void testShasAreTheSameWhateverTheirCase() {
+        final Sha1Table table = new Sha1Table();
+
+        assertEquals(0, table.add(sha1("first")));
+        assertEquals(0, table.add(sha1("first").toUpperCase()));
+        assertEquals(1, table.add(sha1("second").toUpperCase()));
+
+        assertTrue(table.contains(sha1("second")));
+        assertFalse(table.contains(sha1("third")));
+        assertEquals(2, table.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAbbreviatedShasAreRejected() {
+        new Sha1Table().add("a1b2c3d");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOtherStringsAreRejected() {
+        new Sha1Table().indexOf("master-branch-tip-not-a-sha-at-all-12345");
+    }
+
+    private static String sha1(String content) {
+        return Hashing.sha1().hashString(content, Charsets.UTF_8).toString();
+    }
+}
@@ -0,0 +1,62 @@
+package com.gitinspector.github;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the AdaptiveConcurrencyLimiter class.
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    public void testLimitGrowsWhileLatencyIsFlat() throws IOException {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10);
+
+        // about a limit's worth of successful requests raises the limit by one
+        sendRequests(limiter, 3, 100, false);
+        assertEquals(3, limiter.getLimit());
+
+        sendRequests(limiter, 200, 100, false);
+        assertEquals(10, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(100, limiter.getLatencyP95Millis());
+    }
+
+    @Test
+    public void testLimitIsCutOncePerLimitOnOverload() throws IOException {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 10);
+
+        sendRequests(limiter, 3, 100, true);
+        assertEquals(7, limiter.getLimit());
+        assertEquals(1, limiter.getBackoffCount());
+
+        sendRequests(limiter, 7, 100, true);
+        assertEquals(4, limiter.getLimit());
+        assertEquals(2, limiter.getBackoffCount());
+    }
+
+    @Test
+    public void testLimitIsCutWhenLatencyRises() throws IOException {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 10);
+
+        sendRequests(limiter, 50, 100, false);
+        assertEquals(0, limiter.getBackoffCount());
+
+        sendRequests(limiter, 50, 400, false);
+        assertEquals(1, limiter.getBackoffCount());
+        assertEquals(7, limiter.getLimit());
+        assertTrue(limiter.getLatencyP50Millis() >= 100);
+    }
+
+    private void sendRequests(AdaptiveConcurrencyLimiter limiter, int count, long latencyMillis, boolean overloaded)
+        throws IOException {
+        for (int i = 0; i < count; i++) {
+            limiter.acquire();
+            limiter.release(latencyMillis, overloaded);
+        }
+    }
+}
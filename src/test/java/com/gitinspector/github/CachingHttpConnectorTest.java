@@ -0,0 +1,248 @@
+package com.gitinspector.github;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the CachingHttpConnector class.
+ */
+public class CachingHttpConnectorTest {
+
+    private static final String REPOS_URL = "https://github.example.com/api/v3/orgs/OMDev/repos";
+    private static final String LINK = "<https://github.example.com/api/v3/orgs/OMDev/repos?page=2>; rel=\"next\"";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ConditionalRequestCache cache;
+
+    private StubConnector server;
+
+    private CachingHttpConnector connector;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new ConditionalRequestCache(temporaryFolder.getRoot().getAbsolutePath());
+        server = new StubConnector();
+        connector = new CachingHttpConnector(server, cache);
+    }
+
+    @Test
+    public void testNotModifiedResponseIsServedFromDisk() throws IOException {
+        server.respond(200, "\"v1\"", "[{\"name\":\"omapi\"}]");
+        assertEquals("[{\"name\":\"omapi\"}]", get(REPOS_URL));
+        assertNull(server.lastConnection.getRequestProperty("If-None-Match"));
+
+        server.respond(304, "\"v1\"", "");
+        final HttpURLConnection connection = connector.connect(new URL(REPOS_URL));
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(LINK, connection.getHeaderField("Link"));
+        assertEquals("[{\"name\":\"omapi\"}]", read(connection));
+        assertEquals("\"v1\"", server.lastConnection.getRequestProperty("If-None-Match"));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals("[{\"name\":\"omapi\"}]".length(), cache.getBytesSaved());
+    }
+
+    @Test
+    public void testChangedResponseReplacesCachedEntry() throws IOException {
+        server.respond(200, "\"v1\"", "[]");
+        get(REPOS_URL);
+
+        server.respond(200, "\"v2\"", "[{\"name\":\"omapi\"}]");
+        assertEquals("[{\"name\":\"omapi\"}]", get(REPOS_URL));
+        assertEquals("\"v1\"", server.lastConnection.getRequestProperty("If-None-Match"));
+
+        assertEquals("\"v2\"", cache.get(REPOS_URL).getEtag());
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testResponsesForOtherMediaTypesOrUsersAreKeptApart() throws IOException {
+        server.respond(200, "\"v1\"", "[]");
+        get(REPOS_URL, "application/vnd.github.v3.text-match+json", "token alice");
+        server.respond(200, "\"v2\"", "[]");
+        get(REPOS_URL, null, "token alice");
+        assertNull(server.lastConnection.getRequestProperty("If-None-Match"));
+        server.respond(200, "\"v3\"", "[]");
+        get(REPOS_URL, "application/vnd.github.v3.text-match+json", "token bob");
+        assertNull(server.lastConnection.getRequestProperty("If-None-Match"));
+
+        server.respond(304, "\"v1\"", "");
+        get(REPOS_URL, "application/vnd.github.v3.text-match+json", "token alice");
+        assertEquals("\"v1\"", server.lastConnection.getRequestProperty("If-None-Match"));
+        assertEquals(1, cache.getHits());
+
+        // the token itself is not written to disk
+        final String cacheKey = CachingHttpConnector.getCacheKey(REPOS_URL, null, "token alice");
+        assertEquals("\"v2\"", cache.get(cacheKey).getEtag());
+        assertFalse(cacheKey.contains("alice"));
+    }
+
+    @Test
+    public void testResponsesForOtherUsersAreKeptApartOverRealConnections() throws IOException {
+        // the connections of the JDK never hand the Authorization header back, so the stub would not tell
+        final List<String> ifNoneMatches = new ArrayList<>();
+        final HttpServer httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                final String etag = "\"" + exchange.getRequestHeaders().getFirst("Authorization") + "\"";
+                final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                ifNoneMatches.add(ifNoneMatch);
+                exchange.getResponseHeaders().add("ETag", etag);
+                if (etag.equals(ifNoneMatch)) {
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    final byte[] body = etag.getBytes(Charsets.UTF_8);
+                    exchange.sendResponseHeaders(200, body.length);
+                    exchange.getResponseBody().write(body);
+                }
+                exchange.close();
+            }
+        });
+        httpServer.start();
+        try {
+            connector = new CachingHttpConnector(HttpConnector.DEFAULT, cache);
+            final String url = "http://localhost:" + httpServer.getAddress().getPort() + "/orgs/OMDev/repos";
+            assertEquals("\"token alice\"", get(url, null, "token alice"));
+            assertEquals("\"token bob\"", get(url, null, "token bob"));
+            assertEquals("\"token alice\"", get(url, null, "token alice"));
+            assertEquals(Arrays.asList(null, null, "\"token alice\""), ifNoneMatches);
+            assertEquals(1, cache.getHits());
+        } finally {
+            httpServer.stop(0);
+        }
+    }
+
+    @Test
+    public void testNonGetRequestsAreNotCached() throws IOException {
+        server.respond(200, "\"v1\"", "{}");
+        final HttpURLConnection connection = connector.connect(new URL(REPOS_URL));
+        connection.setRequestMethod("POST");
+        read(connection);
+
+        assertNull(cache.get(REPOS_URL));
+        assertEquals(0, cache.getMisses());
+    }
+
+    private String get(String url) throws IOException {
+        return read(connector.connect(new URL(url)));
+    }
+
+    private String get(String url, String accept, String authorization) throws IOException {
+        final HttpURLConnection connection = connector.connect(new URL(url));
+        if (accept != null) {
+            connection.setRequestProperty("Accept", accept);
+        }
+        connection.setRequestProperty("Authorization", authorization);
+        return read(connection);
+    }
+
+    private static String read(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+        }
+    }
+
+    /**
+     * Hands out connections that return canned responses, one per call to connect.
+     */
+    private static class StubConnector implements HttpConnector {
+        private Deque<StubConnection> responses = new ArrayDeque<>();
+        private StubConnection lastConnection;
+
+        void respond(int responseCode, String etag, String body) throws IOException {
+            responses.add(new StubConnection(responseCode, etag, body));
+        }
+
+        @Override
+        public HttpURLConnection connect(URL url) throws IOException {
+            lastConnection = responses.remove();
+            return lastConnection;
+        }
+    }
+
+    private static class StubConnection extends HttpURLConnection {
+        private final int code;
+        private final Map<String, String> headers = new HashMap<>();
+        private final Map<String, String> requestProperties = new HashMap<>();
+        private final byte[] body;
+
+        StubConnection(int code, String etag, String body) throws IOException {
+            super(new URL(REPOS_URL));
+            this.code = code;
+            this.body = body.getBytes(Charsets.UTF_8);
+            headers.put("ETag", etag);
+            if (code == 200) {
+                headers.put("Link", LINK);
+            }
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return code;
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return headers.get(name);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void setRequestProperty(String key, String value) {
+            requestProperties.put(key, value);
+        }
+
+        @Override
+        public String getRequestProperty(String key) {
+            return requestProperties.get(key);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.gitinspector.github;
+
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the CodeSearchBatcher class.
+ */
+public class CodeSearchBatcherTest {
+
+    @Test
+    public void testBatchesHoldNoMoreOperatorsThanAllowed() {
+        final List<String> terms = Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h");
+
+        final List<List<String>> batches = new CodeSearchBatcher().batch(terms, "repo:OMDev/omapi");
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c", "d", "e", "f"), Arrays.asList("g", "h")), batches);
+        assertEquals("\"g\" OR \"h\"", CodeSearchBatcher.toQuery(batches.get(1)));
+    }
+
+    @Test
+    public void testBatchesFitInTheQueryLengthWithTheQualifiers() {
+        // "darn" OR "heck" is 16 characters, and the qualifiers follow after a space
+        final CodeSearchBatcher batcher = new CodeSearchBatcher(16 + 1 + "repo:a/b".length(), 5);
+        final List<String> terms = Arrays.asList("darn", "heck", "a-very-long-term", "gosh");
+
+        assertEquals(Arrays.asList(Arrays.asList("darn", "heck"), Collections.singletonList("a-very-long-term"),
+            Collections.singletonList("gosh")), batcher.batch(terms, "repo:a/b"));
+        assertEquals(Arrays.asList(Arrays.asList("darn"), Arrays.asList("heck"),
+            Collections.singletonList("a-very-long-term"), Collections.singletonList("gosh")),
+            batcher.batch(terms, "repo:a/bc"));
+    }
+
+    @Test
+    public void testSearchRequestsAreRecognized() throws Exception {
+        assertTrue(RateLimitedHttpConnector.isSearchRequest(new URL("https://api.github.com/search/code?q=darn")));
+        assertFalse(RateLimitedHttpConnector.isSearchRequest(new URL("https://api.github.com/repos/OMDev/omapi")));
+    }
+}
@@ -0,0 +1,145 @@
+package com.gitinspector.github;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the ConcurrencyLimitedHttpConnector class.
+ */
+public class ConcurrencyLimitedHttpConnectorTest {
+
+    private static final String REPOS_URL = "https://github.example.com/api/v3/orgs/OMDev/repos";
+
+    private AdaptiveConcurrencyLimiter limiter;
+
+    private StubConnection response;
+
+    private ConcurrencyLimitedHttpConnector connector;
+
+    @Before
+    public void setUp() {
+        limiter = new AdaptiveConcurrencyLimiter(10, 1, 10);
+        connector = new ConcurrencyLimitedHttpConnector(new HttpConnector() {
+            @Override
+            public HttpURLConnection connect(URL url) {
+                return response;
+            }
+        }, limiter);
+    }
+
+    @Test
+    public void testSecondaryRateLimitIsToldFromItsMessage() throws IOException {
+        final String message = "{\"message\":\"You have exceeded a secondary rate limit. Please wait a few minutes.\"}";
+        response = new StubConnection(403, message);
+        final HttpURLConnection connection = connector.connect(new URL(REPOS_URL));
+        assertEquals(403, connection.getResponseCode());
+        assertEquals(1, limiter.getBackoffCount());
+
+        // the message was read to tell, but is still there for the caller
+        assertEquals(message, read(connection.getErrorStream()));
+    }
+
+    @Test
+    public void testSecondaryRateLimitIsToldFromRetryAfter() throws IOException {
+        response = new StubConnection(403, "{}");
+        response.headers.put("Retry-After", "60");
+        assertEquals(403, connector.connect(new URL(REPOS_URL)).getResponseCode());
+        assertEquals(1, limiter.getBackoffCount());
+    }
+
+    @Test
+    public void testOtherForbiddenResponsesAreNotOverload() throws IOException {
+        response = new StubConnection(403, "{\"message\":\"Resource not accessible by integration\"}");
+        assertEquals(403, connector.connect(new URL(REPOS_URL)).getResponseCode());
+
+        response = new StubConnection(403, "{\"message\":\"API rate limit exceeded for user ID 1.\"}");
+        response.headers.put("X-RateLimit-Remaining", "0");
+        assertEquals(403, connector.connect(new URL(REPOS_URL)).getResponseCode());
+
+        assertEquals(0, limiter.getBackoffCount());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testRequestIsReleasedWhenItsStreamIsClosed() throws IOException {
+        response = new StubConnection(502, "Bad Gateway");
+        final HttpURLConnection connection = connector.connect(new URL(REPOS_URL));
+        assertEquals(1, limiter.getInFlight());
+
+        // the response code was never asked for
+        read(connection.getErrorStream());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(1, limiter.getBackoffCount());
+
+        // nor released twice
+        connection.disconnect();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        try (InputStream in = stream) {
+            return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+        }
+    }
+
+    private static class StubConnection extends HttpURLConnection {
+        private final int code;
+        private final Map<String, String> headers = new HashMap<>();
+        private final byte[] body;
+
+        StubConnection(int code, String body) throws IOException {
+            super(new URL(REPOS_URL));
+            this.code = code;
+            this.body = body.getBytes(Charsets.UTF_8);
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return code;
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return headers.get(name);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (code >= HTTP_BAD_REQUEST) {
+                throw new IOException("Server returned HTTP response code: " + code);
+            }
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return code >= HTTP_BAD_REQUEST ? new ByteArrayInputStream(body) : null;
+        }
+    }
+}
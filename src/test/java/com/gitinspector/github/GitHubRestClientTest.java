@@ -0,0 +1,113 @@
+package com.gitinspector.github;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GitHubBuilder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the GitHubRestClient class.
+ */
+public class GitHubRestClientTest {
+
+    private HttpServer httpServer;
+
+    private String apiUrl;
+
+    private Deque<String[]> responses = new ArrayDeque<>();
+
+    private List<String> authorizations = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+                // the status code, then the headers and their values, then the body
+                final String[] response = responses.remove();
+                for (int i = 1; i < response.length - 1; i += 2) {
+                    exchange.getResponseHeaders().add(response[i], response[i + 1]);
+                }
+                final byte[] body = response[response.length - 1].getBytes(Charsets.UTF_8);
+                exchange.sendResponseHeaders(Integer.parseInt(response[0]), body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        httpServer.start();
+        apiUrl = "http://localhost:" + httpServer.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        httpServer.stop(0);
+    }
+
+    @Test
+    public void testClientAuthenticatesTheWayTheGitHubClientDoes() throws IOException {
+        final GitHubRestClient restClient = GitHubRestClient.forClient(
+            new GitHubBuilder().withEndpoint(apiUrl).withOAuthToken("s3cr3t", "jrosales").build());
+
+        responses.add(new String[]{"200", "[{\"number\":1}]"});
+        assertEquals(Arrays.asList("1"), list(restClient, apiUrl + "/repos/OMDev/omapi/pulls"));
+        assertEquals(Arrays.asList("token s3cr3t"), authorizations);
+    }
+
+    @Test
+    public void testSearchIsTriedAgainOnceTheRateLimitLifts() throws IOException {
+        final GitHubRestClient restClient = new GitHubRestClient("s3cr3t", new GitHubBuilder().build().getConnector());
+
+        responses.add(new String[]{"403", "Retry-After", "0",
+            "{\"message\":\"You have exceeded a secondary rate limit\"}"});
+        responses.add(new String[]{"403", "X-RateLimit-Remaining", "0", "X-RateLimit-Reset", "0",
+            "{\"message\":\"API rate limit exceeded\"}"});
+        responses.add(new String[]{"200", "{\"total_count\":1,\"items\":[{\"path\":\"a.txt\"}]}"});
+        final List<String> paths = new ArrayList<>();
+        restClient.search(apiUrl + "/search/code?q=darn", null, new GitHubRestClient.ElementReader() {
+            @Override
+            public boolean read(JsonNode item) {
+                paths.add(item.path("path").asText());
+                return true;
+            }
+        });
+        assertEquals(Arrays.asList("a.txt"), paths);
+        assertEquals(3, authorizations.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testOtherForbiddenResponsesAreNotTriedAgain() throws IOException {
+        final GitHubRestClient restClient = new GitHubRestClient("s3cr3t", new GitHubBuilder().build().getConnector());
+
+        responses.add(new String[]{"403", "{\"message\":\"Resource not accessible by integration\"}"});
+        list(restClient, apiUrl + "/repos/OMDev/omapi/pulls");
+    }
+
+    private static List<String> list(GitHubRestClient restClient, String url) throws IOException {
+        final List<String> numbers = new ArrayList<>();
+        restClient.list(url, new GitHubRestClient.ElementReader() {
+            @Override
+            public boolean read(JsonNode element) {
+                numbers.add(element.path("number").asText());
+                return true;
+            }
+        });
+        return numbers;
+    }
+}
@@ -0,0 +1,107 @@
+package com.gitinspector.github;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the RateLimitGovernor class.
+ */
+public class RateLimitGovernorTest {
+
+    private static final long RESET_AT_MILLIS = 3600000;
+
+    private long now;
+
+    private RateLimitGovernor governor;
+
+    @Before
+    public void setUp() {
+        governor = new RateLimitGovernor(10) {
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+        governor.registerTask("JiraTagJob");
+        governor.registerTask("ReadMeJob");
+        governor.startTask("JiraTagJob");
+        governor.startTask("ReadMeJob");
+    }
+
+    @Test
+    public void testEverythingIsAllowedUntilTheBudgetIsKnown() {
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(governor.tryAcquire("JiraTagJob"));
+        }
+        assertEquals(-1, governor.getRemainingBudget());
+    }
+
+    @Test
+    public void testEachTaskGetsItsShare() {
+        // (100 - 10 reserved) / 2 tasks = a share of 45 each
+        governor.update(100, 100, RESET_AT_MILLIS);
+
+        assertEquals(45, acquireAll("JiraTagJob"));
+        assertEquals(45, acquireAll("ReadMeJob"));
+        assertEquals(0, acquireAll(null));
+        assertEquals(10, governor.getRemainingBudget());
+    }
+
+    @Test
+    public void testTaskMayUseWhatIsLeftOnceTheOthersUsedTheirShares() {
+        governor.update(100, 100, RESET_AT_MILLIS);
+
+        assertEquals(45, acquireAll("ReadMeJob"));
+        // the share of ReadMeJob is used up, so everything but the reserve is left for JiraTagJob
+        assertEquals(45, acquireAll("JiraTagJob"));
+
+        // the server counted requests we did not make (e.g. made by another client)
+        governor.update(100, 5, RESET_AT_MILLIS);
+        assertFalse(governor.tryAcquire(null));
+        assertEquals(5, governor.getRemainingBudget());
+    }
+
+    @Test
+    public void testBudgetIsRestoredAtReset() {
+        governor.update(100, 20, RESET_AT_MILLIS);
+        assertEquals(0, acquireAll("JiraTagJob"));
+        assertEquals(3600, governor.getSecondsUntilReset());
+
+        now = RESET_AT_MILLIS;
+        assertEquals(100, governor.getRemainingBudget());
+        assertEquals(45, acquireAll("JiraTagJob"));
+    }
+
+    @Test
+    public void testTaskRunningAloneMayUseTheWholeBudget() {
+        governor.registerTask("ProfanityCheckerJob");
+        governor.registerTask("StaleBranchesJob");
+        governor.finishTask("ReadMeJob");
+        governor.update(100, 100, RESET_AT_MILLIS);
+
+        // the other tasks are registered but idle, so only the reserve is held back
+        assertEquals(90, acquireAll("JiraTagJob"));
+        assertEquals(10, governor.getRemainingBudget());
+    }
+
+    @Test
+    public void testShareOfFinishedTaskIsHandedBack() {
+        governor.update(100, 100, RESET_AT_MILLIS);
+        assertEquals(45, acquireAll("JiraTagJob"));
+
+        governor.finishTask("ReadMeJob");
+        assertEquals(45, acquireAll("JiraTagJob"));
+    }
+
+    private int acquireAll(String taskName) {
+        int acquired = 0;
+        while (governor.tryAcquire(taskName)) {
+            acquired++;
+        }
+        return acquired;
+    }
+}
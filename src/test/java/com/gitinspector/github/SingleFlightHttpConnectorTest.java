@@ -0,0 +1,214 @@
+package com.gitinspector.github;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the SingleFlightHttpConnector class.
+ */
+public class SingleFlightHttpConnectorTest {
+
+    private static final String README_URL = "https://github.example.com/api/v3/repos/OMDev/omapi/contents/README.md";
+
+    private StubConnector server;
+
+    private RequestCoalescer coalescer;
+
+    private SingleFlightHttpConnector connector;
+
+    @Before
+    public void setUp() {
+        server = new StubConnector();
+        coalescer = new RequestCoalescer();
+        connector = new SingleFlightHttpConnector(server, coalescer);
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsShareOneCall() throws Exception {
+        server.responseCode = 200;
+        server.released = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            final List<Future<String>> bodies = new ArrayList<>();
+            bodies.add(executor.submit(get()));
+            awaitInFlight();
+            bodies.add(executor.submit(get()));
+            bodies.add(executor.submit(get()));
+            while (coalescer.getCoalescedRequests() < 2) {
+                Thread.sleep(5);
+            }
+            server.released.countDown();
+
+            for (Future<String> body : bodies) {
+                assertEquals("# omapi", body.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, server.connections);
+        assertEquals(1, coalescer.getSentRequests());
+        assertEquals(2, coalescer.getCoalescedRequests());
+        assertEquals(0, coalescer.getInFlightRequests());
+    }
+
+    @Test
+    public void testRequestsAreNotSharedOnceTheResponseArrived() throws Exception {
+        server.responseCode = 200;
+
+        assertEquals("# omapi", get().call());
+        assertEquals("# omapi", get().call());
+
+        assertEquals(2, server.connections);
+        assertEquals(0, coalescer.getCoalescedRequests());
+    }
+
+    @Test
+    public void testErrorResponseIsSharedTheWayHttpURLConnectionReportsIt() throws IOException {
+        server.responseCode = 404;
+
+        final HttpURLConnection connection = connector.connect(new URL(README_URL));
+        assertEquals(404, connection.getResponseCode());
+        assertEquals("application/json", connection.getHeaderField("content-type"));
+        try {
+            connection.getInputStream();
+            fail("expected a FileNotFoundException");
+        } catch (FileNotFoundException e) {
+            assertEquals(README_URL, e.getMessage());
+        }
+        assertEquals("{\"message\":\"Not Found\"}", read(connection.getErrorStream()));
+    }
+
+    @Test
+    public void testNonGetRequestsAreSentAsIs() throws IOException {
+        server.responseCode = 201;
+
+        final HttpURLConnection connection = connector.connect(new URL(README_URL));
+        connection.setRequestMethod("PUT");
+        connection.setRequestProperty("Accept", "application/vnd.github.v3+json");
+        assertEquals(201, connection.getResponseCode());
+
+        assertEquals("PUT", server.lastConnection.getRequestMethod());
+        assertEquals("application/vnd.github.v3+json", server.lastConnection.getRequestProperty("Accept"));
+        assertEquals(0, coalescer.getSentRequests());
+    }
+
+    private Callable<String> get() {
+        return new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                final HttpURLConnection connection = connector.connect(new URL(README_URL));
+                connection.setRequestProperty("Accept", "application/vnd.github.v3.raw");
+                return read(connection.getInputStream());
+            }
+        };
+    }
+
+    private void awaitInFlight() throws InterruptedException {
+        while (coalescer.getInFlightRequests() == 0) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            return new String(ByteStreams.toByteArray(body), Charsets.UTF_8);
+        }
+    }
+
+    /**
+     * Hands out connections that answer with the configured response code, once released.
+     */
+    private static class StubConnector implements HttpConnector {
+        private volatile int responseCode;
+        private volatile CountDownLatch released = new CountDownLatch(0);
+        private volatile int connections;
+        private volatile StubConnection lastConnection;
+
+        @Override
+        public synchronized HttpURLConnection connect(URL url) {
+            connections++;
+            lastConnection = new StubConnection(url, responseCode, released);
+            return lastConnection;
+        }
+    }
+
+    private static class StubConnection extends HttpURLConnection {
+        private final int code;
+        private final CountDownLatch released;
+
+        StubConnection(URL url, int code, CountDownLatch released) {
+            super(url);
+            this.code = code;
+            this.released = released;
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return code;
+        }
+
+        @Override
+        public String getHeaderFieldKey(int n) {
+            return n == 1 ? "Content-Type" : null;
+        }
+
+        @Override
+        public String getHeaderField(int n) {
+            if (n == 0) {
+                return "HTTP/1.1 " + code;
+            }
+            return n == 1 ? "application/json" : null;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new ByteArrayInputStream("# omapi".getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream("{\"message\":\"Not Found\"}".getBytes(Charsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.gitinspector.matching;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the CommitMessageRules class.
+ */
+public class CommitMessageRulesTest {
+
+    @Test
+    public void testAllRulesAreEvaluatedAtOnce() {
+        final CommitMessageRules rules = new CommitMessageRules();
+        assertEquals(Arrays.asList(CommitMessageRules.JIRA_KEY, CommitMessageRules.REVIEWED_BY,
+            CommitMessageRules.RELEASE_PLUGIN), rules.getRuleNames());
+
+        assertEquals(bits(0, 1), rules.evaluate("OPP-188: Order line item CSV export\n\n[Reviewed By: dcorutiu]"));
+        assertEquals(bits(2), rules.evaluate("[maven-release-plugin] prepare for next development iteration"));
+        assertEquals(bits(), rules.evaluate("bumped version to 4.3.0-SNAPSHOT [maven-release-plugin]"));
+    }
+
+    @Test
+    public void testOrganizationsAddRulesOfTheirOwn() {
+        final Map<String, String> moreRules = new LinkedHashMap<>();
+        moreRules.put("pairedWith", "(?i)paired with @\\w+");
+        moreRules.put(CommitMessageRules.JIRA_KEY, "\\b(?:OM|OPP)-[0-9]+");
+        final CommitMessageRules rules = CommitMessageRules.withDefaultRules(moreRules);
+
+        final BitSet mask = rules.getMask(Arrays.asList(CommitMessageRules.JIRA_KEY, "pairedWith"));
+        assertTrue(rules.holdsAny("Fix the build, Paired with @skhatri", mask));
+        assertTrue(rules.holdsAny("OM-1234 Fix the build", mask));
+        assertFalse(rules.holdsAny("PAY-1234 Fix the build, reviewed by skhatri", mask));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownRulesAreRejected() {
+        new CommitMessageRules().getMask(Collections.singletonList("signedOff"));
+    }
+
+    private static BitSet bits(int... indexes) {
+        final BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
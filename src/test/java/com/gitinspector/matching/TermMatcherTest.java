@@ -0,0 +1,75 @@
+package com.gitinspector.matching;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the TermMatcher class.
+ */
+public class TermMatcherTest {
+
+    @Test
+    public void testOverlappingLiteralsAreAllFound() {
+        final TermMatcher matcher = new TermMatcher(Arrays.asList("hers", "he", "she", "his", "is"));
+
+        assertEquals(Arrays.asList("hers", "he", "she"), matcher.findTerms("ushers"));
+        assertEquals(Arrays.asList("his", "is"), matcher.findTerms("this"));
+        assertEquals(Collections.<String>emptyList(), matcher.findTerms("HERS"));
+    }
+
+    @Test
+    public void testTermsAreFoundAsPatternFindWouldFindThem() {
+        final List<String> terms = Arrays.asList("ab", "b", "abc", "c.a", "ba+b", "ca", "[xy]z", "aaa");
+        final TermMatcher matcher = new TermMatcher(terms);
+        assertFalse(TermMatcher.isLiteral("c.a"));
+        assertTrue(TermMatcher.isLiteral("abc"));
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            final StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(12); j > 0; j--) {
+                text.append("abcxyz".charAt(random.nextInt(6)));
+            }
+
+            final List<String> expectedTerms = new ArrayList<>();
+            for (String term : terms) {
+                if (Pattern.compile(term).matcher(text).find()) {
+                    expectedTerms.add(term);
+                }
+            }
+            assertEquals(text.toString(), expectedTerms, matcher.findTerms(text));
+        }
+    }
+
+    @Test
+    public void testPatternsMatchingAtTheSamePositionAreAllFound() {
+        final List<String> terms = Arrays.asList("a.c", "ab+", "(x)\\1", "[ab]c", "(?<y>y)\\k<y>", "\\\\1");
+        final TermMatcher matcher = new TermMatcher(terms);
+
+        assertEquals(Arrays.asList("a.c", "ab+", "[ab]c"), matcher.findTerms("abc"));
+        assertEquals(Arrays.asList("ab+"), matcher.findTerms("abd"));
+        assertEquals(Arrays.asList("a.c", "ab+", "[ab]c"), matcher.findTerms("abbc abc"));
+        assertEquals(Arrays.asList("(x)\\1", "[ab]c"), matcher.findTerms("xx bc"));
+        assertEquals(Arrays.asList("(?<y>y)\\k<y>", "\\\\1"), matcher.findTerms("yy \\1"));
+        assertEquals(Collections.<String>emptyList(), matcher.findTerms("x y 1"));
+    }
+
+    @Test
+    public void testCaseInsensitiveWholeWords() {
+        final TermMatcher matcher = new TermMatcher(Arrays.asList("darn", "heck+", "-ish"), true, true);
+
+        assertEquals(Arrays.asList("darn", "heck+"), matcher.findTerms("Darn it, HECKK"));
+        assertEquals(Collections.<String>emptyList(), matcher.findTerms("darned heckler"));
+        assertEquals(Arrays.asList("darn", "-ish"), matcher.findTerms("darn_it? no, darn-ish"));
+    }
+}
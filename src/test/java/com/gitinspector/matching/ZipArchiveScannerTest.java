@@ -0,0 +1,61 @@
+package com.gitinspector.matching;
+
+import com.gitinspector.matching.ZipArchiveScanner.FileMatches;
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the ZipArchiveScanner class.
+ */
+public class ZipArchiveScannerTest {
+
+    @Test
+    public void testTermsAreFoundWithTheirLineNumbers() throws IOException {
+        final ZipArchiveScanner scanner = new ZipArchiveScanner(new TermMatcher(Arrays.asList("darn", "heck"), true,
+            true));
+        scanner.setMaxFileSize(1000);
+
+        final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            zip.putNextEntry(new ZipEntry("OMDev-omapi-0c1f2e3/"));
+            addFile(zip, "OMDev-omapi-0c1f2e3/src/Main.java", "class Main {\n  // Darn\n}\n// heck, darn it\r\n");
+            addFile(zip, "OMDev-omapi-0c1f2e3/README.md", "darned heckler\n");
+            addFile(zip, "OMDev-omapi-0c1f2e3/logo.png", "PNG\u0000darn\n");
+            addFile(zip, "OMDev-omapi-0c1f2e3/big.txt", "darn\n" + Strings.repeat("x", 1000));
+        }
+
+        final List<FileMatches> filesWithMatches = scanner.scan(new ByteArrayInputStream(archive.toByteArray()));
+
+        assertEquals(1, filesWithMatches.size());
+        assertEquals("src/Main.java", filesWithMatches.get(0).getPath());
+        final Map<String, List<Integer>> expectedLineNumbers = new LinkedHashMap<>();
+        expectedLineNumbers.put("darn", Arrays.asList(2, 4));
+        expectedLineNumbers.put("heck", Collections.singletonList(4));
+        assertEquals(expectedLineNumbers, filesWithMatches.get(0).getLineNumbers());
+        assertEquals(Arrays.asList("darn", "heck"), filesWithMatches.get(0).getTerms());
+
+        assertEquals(2, scanner.getScannedFiles());
+        assertEquals(1, scanner.getSkippedBinaryFiles());
+        assertEquals(1, scanner.getSkippedLargeFiles());
+    }
+
+    private static void addFile(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
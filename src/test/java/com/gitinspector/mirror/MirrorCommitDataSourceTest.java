@@ -0,0 +1,118 @@
+package com.gitinspector.mirror;
+
+import com.gitinspector.TargetRepositories;
+import com.gitinspector.commits.CommitDataSource;
+import com.gitinspector.commits.CommitWindowWalker;
+import com.gitinspector.domain.GitCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.GHRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the MirrorCommitDataSource class.
+ */
+public class MirrorCommitDataSourceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private GitCommandRunner git = new GitCommandRunner();
+
+    private File origin;
+
+    private GHRepository repo;
+
+    private RepositoryMirrorManager mirrorManager;
+
+    private CommitDataSource fallback;
+
+    private MirrorCommitDataSource mirrorCommitDataSource;
+
+    /**
+     * Builds the following graph in the origin repository:
+     * {@code
+     * merge -> master -> first
+     *       \> feature -/
+     * }
+     */
+    @Before
+    public void setUp() throws IOException {
+        origin = temporaryFolder.newFolder("omapi");
+        git.run(origin, "init", "--quiet", "--initial-branch=master");
+        commit("OMAPI-1 first");
+        git.run(origin, "checkout", "--quiet", "-b", "feature");
+        commit("OMAPI-2 feature");
+        git.run(origin, "checkout", "--quiet", "master");
+        commit("OMAPI-3 master");
+        git.run(origin, "-c", "user.name=jrosales", "-c", "user.email=jrosales@example.com",
+            "merge", "--quiet", "--no-ff", "-m", "Merge feature", "feature");
+
+        repo = mock(GHRepository.class);
+        when(repo.getFullName()).thenReturn("OMDev/omapi");
+        when(repo.getMasterBranch()).thenReturn("master");
+
+        mirrorManager = new RepositoryMirrorManager(mock(TargetRepositories.class),
+            temporaryFolder.newFolder("mirrors").getPath());
+        fallback = mock(CommitDataSource.class);
+        mirrorCommitDataSource = new MirrorCommitDataSource(mirrorManager, fallback);
+    }
+
+    @Test
+    public void testCommitsAreReadFromTheMirror() throws IOException {
+        mirrorManager.sync("OMDev/omapi", "file://" + origin.getAbsolutePath());
+
+        final String mergeSha1 = revParse("master");
+        assertEquals(Arrays.asList("feature", "master"),
+            new ArrayList<>(mirrorCommitDataSource.getBranchTips(repo).keySet()));
+        assertEquals(mergeSha1, mirrorCommitDataSource.getBranchTips(repo).get("master"));
+
+        final GitCommit merge = mirrorCommitDataSource.getCommit(repo, mergeSha1);
+        assertEquals(Arrays.asList(revParse("master^1"), revParse("feature")), merge.getParentSha1s());
+        assertEquals("jrosales", merge.getCommitterName());
+        assertEquals("jrosales@example.com", merge.getCommitterEmail());
+        assertEquals("Merge feature", merge.getMessage());
+
+        final CommitWindowWalker walker = new CommitWindowWalker();
+        walker.setCommitDataSource(mirrorCommitDataSource);
+        final List<String> messages = new ArrayList<>();
+        for (GitCommit commit : walker.assembleCommits(repo, mergeSha1, 7)) {
+            messages.add(commit.getMessage());
+        }
+        assertEquals(Arrays.asList("Merge feature", "OMAPI-3 master", "OMAPI-1 first", "OMAPI-2 feature"), messages);
+
+        verifyZeroInteractions(fallback);
+    }
+
+    @Test
+    public void testRepositoriesThatAreNotMirroredAreReadFromTheFallback() throws IOException {
+        final GitCommit commit = mock(GitCommit.class);
+        when(fallback.getCommit(repo, "master")).thenReturn(commit);
+
+        assertSame(commit, mirrorCommitDataSource.getCommit(repo, "master"));
+        assertEquals(1, mirrorCommitDataSource.getFallbackReads());
+        assertEquals(0, mirrorCommitDataSource.getMirrorReads());
+    }
+
+    private void commit(String message) throws IOException {
+        git.run(origin, "-c", "user.name=jrosales", "-c", "user.email=jrosales@example.com",
+            "commit", "--quiet", "--allow-empty", "-m", message);
+    }
+
+    private String revParse(String revision) throws IOException {
+        return git.run(origin, "rev-parse", revision).trim();
+    }
+}
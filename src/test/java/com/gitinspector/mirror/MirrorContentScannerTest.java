@@ -0,0 +1,118 @@
+package com.gitinspector.mirror;
+
+import com.gitinspector.TargetRepositories;
+import com.gitinspector.matching.TermMatcher;
+import com.gitinspector.matching.ZipArchiveScanner;
+import com.gitinspector.store.BlobVerdict;
+import com.gitinspector.store.BlobVerdictStore;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.GHRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the MirrorContentScanner class.
+ */
+public class MirrorContentScannerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private GitCommandRunner git = new GitCommandRunner();
+
+    private File origin;
+
+    private GHRepository repo;
+
+    private RepositoryMirrorManager mirrorManager;
+
+    private MirrorContentScanner mirrorContentScanner;
+
+    private ZipArchiveScanner scanner = new ZipArchiveScanner(new TermMatcher(Arrays.asList("darn", "heck"), true,
+        true));
+
+    @Before
+    public void setUp() throws IOException {
+        origin = temporaryFolder.newFolder("omapi");
+        git.run(origin, "init", "--quiet", "--initial-branch=master");
+        // as GitHub does, so that the mirror is a partial clone whose blobs can be fetched by their SHA
+        git.run(origin, "config", "uploadpack.allowFilter", "true");
+        git.run(origin, "config", "uploadpack.allowAnySHA1InWant", "true");
+
+        repo = mock(GHRepository.class);
+        when(repo.getFullName()).thenReturn("OMDev/omapi");
+        when(repo.getMasterBranch()).thenReturn("master");
+
+        mirrorManager = new RepositoryMirrorManager(mock(TargetRepositories.class),
+            temporaryFolder.newFolder("mirrors").getPath());
+        mirrorContentScanner = new MirrorContentScanner(mirrorManager,
+            new BlobVerdictStore(temporaryFolder.newFolder("verdicts").getPath()));
+    }
+
+    @Test
+    public void testOnlyTheBlobsThatChangedAreScanned() throws IOException {
+        writeFile("README.md", "OMAPI\n");
+        writeFile("src/Main.java", "class Main {\n  // darn\n}\n");
+        writeFile("src/Util.java", "class Util {\n}\n");
+        commit("OMAPI-1 first");
+
+        assertEquals(Collections.singletonList("src/Main.java:{darn=[2]}"), scan());
+        assertEquals(3, mirrorContentScanner.getScannedBlobs());
+        assertEquals(1, mirrorContentScanner.getFullScans());
+        // the mirror was cloned without its blobs
+        assertEquals(3, mirrorContentScanner.getPrefetchedBlobs());
+
+        writeFile("src/Util.java", "class Util {\n  // heck\n}\n");
+        writeFile("src/Copy.java", "class Main {\n  // darn\n}\n");
+        commit("OMAPI-2 second");
+
+        // the copy is known by its blob, so only the changed Util.java is read
+        assertEquals(Arrays.asList("src/Copy.java:{darn=[2]}", "src/Main.java:{darn=[2]}", "src/Util.java:{heck=[2]}"),
+            scan());
+        assertEquals(4, mirrorContentScanner.getScannedBlobs());
+        assertEquals(1, mirrorContentScanner.getFullScans());
+        assertEquals(4, mirrorContentScanner.getPrefetchedBlobs());
+
+        git.run(origin, "rm", "--quiet", "src/Main.java");
+        commit("OMAPI-3 third");
+
+        assertEquals(Arrays.asList("src/Copy.java:{darn=[2]}", "src/Util.java:{heck=[2]}"), scan());
+        assertEquals(4, mirrorContentScanner.getScannedBlobs());
+    }
+
+    private List<String> scan() throws IOException {
+        mirrorManager.sync("OMDev/omapi", "file://" + origin.getAbsolutePath());
+        assertEquals("true\n", git.run(mirrorManager.getMirror("OMDev/omapi"), "config", "remote.origin.promisor"));
+        final List<String> verdicts = new ArrayList<>();
+        for (BlobVerdict verdict : mirrorContentScanner.scan("ProfanityCheckerJob", repo, scanner, "1")) {
+            verdicts.add(verdict.getPath() + ":" + verdict.getLineNumbers());
+        }
+        return verdicts;
+    }
+
+    private void writeFile(String path, String content) throws IOException {
+        final File file = new File(origin, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        git.run(origin, "add", path);
+    }
+
+    private void commit(String message) throws IOException {
+        git.run(origin, "-c", "user.name=jrosales", "-c", "user.email=jrosales@example.com",
+            "commit", "--quiet", "-m", message);
+    }
+}
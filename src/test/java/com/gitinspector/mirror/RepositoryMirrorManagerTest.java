@@ -0,0 +1,118 @@
+package com.gitinspector.mirror;
+
+import com.gitinspector.TargetRepositories;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.GHRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the RepositoryMirrorManager class.
+ */
+public class RepositoryMirrorManagerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private GitCommandRunner git = new GitCommandRunner();
+
+    private File originDirectory;
+
+    private TargetRepositories targetRepositories;
+
+    private RepositoryMirrorManager mirrorManager;
+
+    @Before
+    public void setUp() throws IOException {
+        originDirectory = temporaryFolder.newFolder("origins");
+        targetRepositories = mock(TargetRepositories.class);
+        mirrorManager = new RepositoryMirrorManager(targetRepositories, temporaryFolder.newFolder("mirrors").getPath());
+        mirrorManager.setCloneUrlFormat(toUrl(originDirectory) + "/%s");
+    }
+
+    @Test
+    public void testMirrorFollowsTheOrigin() throws IOException {
+        final File origin = createOrigin("OMDev/omapi");
+        commit(origin, "OMAPI-1 first");
+        final String cloneUrl = toUrl(origin);
+
+        mirrorManager.sync("OMDev/omapi", cloneUrl);
+        final File mirror = mirrorManager.getMirror("OMDev/omapi");
+        assertEquals(revParse(origin), revParse(mirror));
+
+        commit(origin, "OMAPI-2 second");
+        mirrorManager.sync("OMDev/omapi", cloneUrl);
+        assertEquals(revParse(origin), revParse(mirror));
+        assertEquals(2, mirrorManager.getSyncs());
+    }
+
+    @Test
+    public void testMirrorsOutOfScopeAreDeleted() throws IOException {
+        commit(createOrigin("OMDev/omapi"), "OMAPI-1 first");
+        commit(createOrigin("OMDev/oms"), "OMS-1 first");
+        final GHRepository omapi = newRepository("OMDev/omapi");
+        final GHRepository oms = newRepository("OMDev/oms");
+
+        when(targetRepositories.getTargetedRepositories()).thenReturn(Arrays.asList(omapi, oms));
+        mirrorManager.syncAll();
+        assertTrue(mirrorManager.getMirror("OMDev/omapi").isDirectory());
+        assertTrue(mirrorManager.getMirror("OMDev/oms").isDirectory());
+        assertEquals(2, mirrorManager.getMirrorCount());
+
+        when(targetRepositories.getTargetedRepositories()).thenReturn(Arrays.asList(oms));
+        mirrorManager.syncAll();
+        assertFalse(mirrorManager.getMirror("OMDev/omapi").exists());
+        assertTrue(mirrorManager.getMirror("OMDev/oms").isDirectory());
+        assertEquals(1, mirrorManager.getMirrorCount());
+    }
+
+    @Test
+    public void testSyncLag() throws IOException {
+        final File origin = createOrigin("OMDev/omapi");
+        commit(origin, "OMAPI-1 first");
+        assertEquals(-1, mirrorManager.getSyncLagSeconds("OMDev/omapi"));
+
+        when(targetRepositories.getPushedAt("OMDev/omapi")).thenReturn(new Date(System.currentTimeMillis() - 60000));
+        mirrorManager.sync("OMDev/omapi", toUrl(origin));
+        assertEquals(0, mirrorManager.getSyncLagSeconds("OMDev/omapi"));
+    }
+
+    private File createOrigin(String repoFullName) throws IOException {
+        final File origin = new File(originDirectory, repoFullName);
+        assertTrue(origin.mkdirs());
+        git.run(origin, "init", "--quiet");
+        return origin;
+    }
+
+    private void commit(File origin, String message) throws IOException {
+        git.run(origin, "-c", "user.name=jrosales", "-c", "user.email=jrosales@example.com",
+            "commit", "--quiet", "--allow-empty", "-m", message);
+    }
+
+    private String revParse(File repository) throws IOException {
+        return git.run(repository, "rev-parse", "HEAD").trim();
+    }
+
+    private static String toUrl(File directory) {
+        // a file:// URL rather than a path, so that git clones it the way it clones a remote repository
+        return "file://" + directory.getAbsolutePath();
+    }
+
+    private static GHRepository newRepository(String fullName) {
+        final GHRepository repo = mock(GHRepository.class);
+        when(repo.getFullName()).thenReturn(fullName);
+        return repo;
+    }
+}
@@ -0,0 +1,134 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.TargetRepositories;
+import com.gitinspector.domain.ReportResult;
+import com.gitinspector.domain.recordable.StringStatistic;
+import com.gitinspector.domain.recordable.Violation;
+import com.gitinspector.ownership.RepoOwnership;
+import com.gitinspector.recording.TaskMessageRecorder;
+import com.gitinspector.stats.GitStatisticsTracker;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GHRepository;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the AbstractScheduledTask class.
+ */
+public class AbstractScheduledTaskTest {
+
+    private static final int REPO_COUNT = 8;
+
+    private TargetRepositories targetRepositories;
+
+    @Before
+    public void setUp() throws IOException {
+        final List<GHRepository> repos = new ArrayList<>();
+        for (int i = 0; i < REPO_COUNT; i++) {
+            final GHRepository repo = mock(GHRepository.class);
+            when(repo.getFullName()).thenReturn("OMDev/repo" + i);
+            repos.add(repo);
+        }
+
+        targetRepositories = mock(TargetRepositories.class);
+        when(targetRepositories.getTargetedRepositories()).thenReturn(repos);
+    }
+
+    @Test
+    public void testParallelEvaluationKeepsTheOrderOfTheRepositories() throws Exception {
+        final SlowTask task = new SlowTask(targetRepositories);
+        task.setRepositoryParallelism(4);
+
+        final ReportResult<Violation, StringStatistic> reportResult = task.execute();
+
+        assertEquals(REPO_COUNT, reportResult.getViolations().size());
+        for (int i = 0; i < REPO_COUNT; i++) {
+            assertEquals("OMDev/repo" + i, reportResult.getViolations().get(i).getRepoFullName());
+        }
+        assertEquals(REPO_COUNT, task.statsTracker.getTotalHitsForOrg("OMDev"));
+        assertEquals(REPO_COUNT / 2, task.statsTracker.getPositiveHitsForOrg("OMDev"));
+    }
+
+    @Test
+    public void testParallelEvaluationRethrowsTheFirstFailure() throws Exception {
+        final SlowTask task = new SlowTask(targetRepositories);
+        task.setRepositoryParallelism(4);
+        task.failingRepoFullName = "OMDev/repo5";
+
+        try {
+            task.execute();
+            fail("expected the failure of OMDev/repo5");
+        } catch (IOException e) {
+            assertEquals("OMDev/repo5", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testParallelLookupsKeepTheOrderOfTheItems() throws IOException {
+        final SlowTask task = new SlowTask(targetRepositories);
+        task.setItemParallelism(3);
+
+        final List<Integer> items = Arrays.asList(5, 4, 3, 2, 1, 0);
+        final List<String> results = task.lookUpAll(items, new ItemLookup<Integer, String>() {
+            @Override
+            public String lookUp(Integer item) throws IOException {
+                try {
+                    Thread.sleep(item * 10);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return "item" + item;
+            }
+        });
+
+        assertEquals(Arrays.asList("item5", "item4", "item3", "item2", "item1", "item0"), results);
+    }
+
+    /**
+     * Reports a violation per repository; the first repositories take the longest to evaluate.
+     */
+    private static class SlowTask extends AbstractScheduledTask<Violation> {
+        private final GitStatisticsTracker statsTracker = new GitStatisticsTracker("slow");
+        private String failingRepoFullName;
+
+        public SlowTask(TargetRepositories targetRepositories) {
+            super(mock(TaskMessageRecorder.class), mock(RepoOwnership.class), targetRepositories);
+        }
+
+        @Override
+        public ReportResult<Violation, StringStatistic> execute() throws Exception {
+            final ReportResult<Violation, StringStatistic> reportResult = new ReportResult<>();
+            evaluateRepositories(reportResult, new RepositoryEvaluator<Violation>() {
+                @Override
+                public void evaluate(GHRepository repo, ReportResult<Violation, StringStatistic> repoResult)
+                    throws Exception {
+                    final String repoFullName = repo.getFullName();
+                    final int index = Integer.parseInt(repoFullName.substring("OMDev/repo".length()));
+                    Thread.sleep((REPO_COUNT - index) * 10);
+                    if (repoFullName.equals(failingRepoFullName)) {
+                        throw new IOException(repoFullName);
+                    }
+
+                    repoResult.addViolation(new Violation("OMDev", repoFullName, "jrosales"));
+                    statsTracker.addHitToRepo(repoFullName, index % 2 == 0);
+                }
+            });
+            return reportResult;
+        }
+
+        @Override
+        public String getRuleMessage() {
+            return "Slow";
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.TargetRepositories;
+import com.gitinspector.ownership.RepoOwnership;
+import com.gitinspector.recording.TaskMessageRecorder;
+import org.junit.Test;
+import org.kohsuke.github.GHRepository;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the FetchCycleContext class.
+ */
+public class FetchCycleContextTest {
+
+    @Test
+    public void testTargetedRepositoriesAreFetchedOncePerCycle() throws IOException {
+        final TargetRepositories targetRepositories = mock(TargetRepositories.class);
+        final GHRepository omapi = mock(GHRepository.class);
+        when(targetRepositories.getTargetedRepositories()).thenReturn(Arrays.asList(omapi));
+
+        FetchCycleContext fetchCycleContext = new FetchCycleContext(targetRepositories);
+
+        fetchCycleContext.beginCycle();
+        assertEquals(Arrays.asList(omapi), fetchCycleContext.getTargetedRepositories());
+        assertEquals(Arrays.asList(omapi), fetchCycleContext.getTargetedRepositories());
+        verify(targetRepositories, times(1)).getTargetedRepositories();
+
+        fetchCycleContext.beginCycle();
+        assertEquals(Arrays.asList(omapi), fetchCycleContext.getTargetedRepositories());
+        verify(targetRepositories, times(2)).getTargetedRepositories();
+    }
+
+    @Test
+    public void testWidestCommitWindowOfRegisteredTasks() {
+        final TargetRepositories targetRepositories = mock(TargetRepositories.class);
+        final TaskMessageRecorder messageRecorder = mock(TaskMessageRecorder.class);
+        final RepoOwnership repoOwnership = mock(RepoOwnership.class);
+
+        FetchCycleContext fetchCycleContext = new FetchCycleContext(targetRepositories);
+        assertEquals(0, fetchCycleContext.getWidestCommitWindowDays());
+
+        JiraTagJob jiraTagJob = new JiraTagJob(targetRepositories, messageRecorder, repoOwnership, 7);
+        jiraTagJob.setFetchCycleContext(fetchCycleContext);
+        ValidCodeReviewJob validCodeReviewJob = new ValidCodeReviewJob(targetRepositories, messageRecorder, repoOwnership, 14);
+        validCodeReviewJob.setFetchCycleContext(fetchCycleContext);
+        new ReadMeJob(targetRepositories, messageRecorder, repoOwnership).setFetchCycleContext(fetchCycleContext);
+        assertEquals(14, fetchCycleContext.getWidestCommitWindowDays());
+
+        // changes made over JMX are picked up
+        jiraTagJob.setNumberOfDaysThreshold(30);
+        assertEquals(30, fetchCycleContext.getWidestCommitWindowDays());
+    }
+}
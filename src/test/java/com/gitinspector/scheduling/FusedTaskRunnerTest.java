@@ -0,0 +1,100 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.TargetRepositories;
+import com.gitinspector.commits.CommitDataSource;
+import com.gitinspector.domain.GitCommit;
+import com.gitinspector.domain.recordable.FlaggedCommit;
+import com.gitinspector.domain.recordable.ReportingRecordable;
+import com.gitinspector.matching.ZipArchiveScanner;
+import com.gitinspector.mirror.MirrorContentScanner;
+import com.gitinspector.ownership.RepoOwnership;
+import com.gitinspector.recording.TaskMessageRecorder;
+import com.gitinspector.store.BlobVerdict;
+import org.junit.Test;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the FusedTaskRunner class.
+ */
+public class FusedTaskRunnerTest {
+
+    private static final String C1 = "2f22765d04931a078909145ca628d2264c852d7d";
+    private static final String C2 = "6b1f53303a732ccc8c6aae6640399827c15250e3";
+    private static final String C3 = "a625406f6977d45c1391b078f4d3656e0b75bfcb";
+
+    @Test
+    public void testEachRepositoryIsVisitedOnceAndEachCommitFlaggedOnce() throws Exception {
+        final GHRepository repo = mock(GHRepository.class);
+        when(repo.getFullName()).thenReturn("OMDev/omapi");
+        when(repo.getMasterBranch()).thenReturn("master");
+        final TargetRepositories targetRepositories = mock(TargetRepositories.class);
+        when(targetRepositories.getTargetedRepositories()).thenReturn(Arrays.asList(repo));
+
+        final Map<String, GitCommit> commits = new HashMap<>();
+        commits.put(C1, newCommit(C1, null, "OMAPI-1 darn it"));
+        commits.put(C2, newCommit(C2, C1, "darn WIP"));
+        commits.put(C3, newCommit(C3, C2, "fix the build"));
+        final CommitDataSource commitDataSource = mock(CommitDataSource.class);
+        when(commitDataSource.getBranchTips(repo)).thenReturn(Collections.singletonMap("master", C3));
+        when(commitDataSource.listCommitsSince(eq(repo), eq(C3), any(Date.class))).thenReturn(commits);
+        final FetchCycleContext fetchCycleContext = new FetchCycleContext(targetRepositories);
+        fetchCycleContext.setCommitDataSource(commitDataSource);
+
+        final TaskMessageRecorder messageRecorder = mock(TaskMessageRecorder.class);
+        final RepoOwnership repoOwnership = mock(RepoOwnership.class);
+        final JiraTagJob jiraTagJob = new JiraTagJob(targetRepositories, messageRecorder, repoOwnership, 7);
+        final ProfanityCheckerJob profanityCheckerJob = new ProfanityCheckerJob(targetRepositories, messageRecorder,
+            repoOwnership, 7, mock(GitHub.class), Arrays.asList("darn"));
+        final MirrorContentScanner mirrorContentScanner = mock(MirrorContentScanner.class);
+        when(mirrorContentScanner.scan(anyString(), eq(repo), any(ZipArchiveScanner.class), anyString()))
+            .thenReturn(Collections.<BlobVerdict>emptyList());
+        profanityCheckerJob.setMirrorContentScanner(mirrorContentScanner);
+
+        new FusedTaskRunner(fetchCycleContext, messageRecorder, Arrays.asList(jiraTagJob, profanityCheckerJob)).run();
+
+        verify(commitDataSource, times(1)).listCommitsSince(eq(repo), eq(C3), any(Date.class));
+
+        final ArgumentCaptor<ReportingRecordable> flaggedCommits = ArgumentCaptor.forClass(ReportingRecordable.class);
+        verify(messageRecorder, times(3)).recordReportingRecordable(eq("FusedTaskRunner"), flaggedCommits.capture());
+        final List<ReportingRecordable> recorded = flaggedCommits.getAllValues();
+        assertFlagged(recorded.get(0), C3, "{JiraTagJob=[]}");
+        assertFlagged(recorded.get(1), C2, "{JiraTagJob=[], ProfanityCheckerJob=[darn]}");
+        assertFlagged(recorded.get(2), C1, "{ProfanityCheckerJob=[darn]}");
+
+        // the statistics are still reported by each task
+        verify(messageRecorder, atLeastOnce())
+            .recordReportingRecordable(eq("JiraTagJob"), any(ReportingRecordable.class));
+        verify(messageRecorder, atLeastOnce())
+            .recordReportingRecordable(eq("ProfanityCheckerJob"), any(ReportingRecordable.class));
+    }
+
+    private static void assertFlagged(ReportingRecordable recorded, String sha1, String findingsByRule) {
+        final FlaggedCommit flaggedCommit = (FlaggedCommit) recorded;
+        assertEquals(sha1, flaggedCommit.getCommitSha());
+        assertEquals(findingsByRule, flaggedCommit.getFindingsByRule().toString());
+    }
+
+    private static GitCommit newCommit(String sha1, String parentSha1, String message) {
+        return new GitCommit(sha1, parentSha1 == null ? Collections.<String>emptyList() : Arrays.asList(parentSha1),
+            "jrosales", "jrosales@example.com", new Date(), message);
+    }
+}
@@ -0,0 +1,138 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.TargetRepositories;
+import com.gitinspector.commits.CommitWindowWalker;
+import com.gitinspector.domain.CommitVerdict;
+import com.gitinspector.domain.GitCommit;
+import com.gitinspector.store.CommitVerdictStore;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.GHBranch;
+import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitUser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the IncrementalCommitEvaluator class.
+ */
+public class IncrementalCommitEvaluatorTest {
+
+    private static final String C1 = "2f22765d04931a078909145ca628d2264c852d7d";
+    private static final String C2 = "6b1f53303a732ccc8c6aae6640399827c15250e3";
+    private static final String C3 = "a625406f6977d45c1391b078f4d3656e0b75bfcb";
+    private static final String REWRITTEN = "67ec0b56968c731a4f3b2537d7720dbe70ac28f3";
+    private static final String OLD = "c00dbbc9dadfbe1e232e93a729dd4752fade0abf";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private GHRepository repo;
+
+    private GHBranch master;
+
+    private FetchCycleContext fetchCycleContext;
+
+    private IncrementalCommitEvaluator incrementalCommitEvaluator;
+
+    private RecordingEvaluator evaluator = new RecordingEvaluator();
+
+    @Before
+    public void setUp() throws IOException {
+        repo = mock(GHRepository.class);
+        when(repo.getFullName()).thenReturn("OMDev/omapi");
+        when(repo.getMasterBranch()).thenReturn("master");
+        master = mock(GHBranch.class);
+        when(repo.getBranches()).thenReturn(Collections.singletonMap("master", master));
+
+        mockCommit(OLD, 30);
+        mockCommit(C1, 3, OLD);
+        mockCommit(C2, 2, C1);
+        mockCommit(C3, 1, C2);
+        mockCommit(REWRITTEN, 1, C1);
+
+        fetchCycleContext = new FetchCycleContext(mock(TargetRepositories.class));
+        fetchCycleContext.setCommitWindowWalker(new CommitWindowWalker(false, false));
+        incrementalCommitEvaluator = new IncrementalCommitEvaluator(
+            new CommitVerdictStore(temporaryFolder.getRoot().getAbsolutePath()), fetchCycleContext);
+    }
+
+    @Test
+    public void testOnlyNewCommitsAreEvaluated() throws IOException {
+        assertEquals(Arrays.asList(C2, C1), evaluate(C2, "1"));
+        assertEquals(Arrays.asList(C2, C1), evaluator.evaluatedSha1s);
+
+        assertEquals(Arrays.asList(C3, C2, C1), evaluate(C3, "1"));
+        assertEquals(Arrays.asList(C3), evaluator.evaluatedSha1s);
+
+        assertEquals(Arrays.asList(C3, C2, C1), evaluate(C3, "1"));
+        assertEquals(Collections.<String>emptyList(), evaluator.evaluatedSha1s);
+    }
+
+    @Test
+    public void testWholeWindowIsEvaluatedWhenTheCheckpointCannotBeUsed() throws IOException {
+        evaluate(C2, "1");
+
+        // the rules changed
+        assertEquals(Arrays.asList(C2, C1), evaluate(C2, "2"));
+        assertEquals(Arrays.asList(C2, C1), evaluator.evaluatedSha1s);
+
+        // master was rewritten, so c2 is no longer a part of it
+        assertEquals(Arrays.asList(REWRITTEN, C1), evaluate(REWRITTEN, "2"));
+        assertEquals(Arrays.asList(REWRITTEN, C1), evaluator.evaluatedSha1s);
+    }
+
+    private List<String> evaluate(String tipSha1, String rulesVersion) throws IOException {
+        when(master.getSHA1()).thenReturn(tipSha1);
+        fetchCycleContext.beginCycle();
+        evaluator.evaluatedSha1s.clear();
+
+        final List<String> sha1s = new ArrayList<>();
+        for (CommitVerdict verdict : incrementalCommitEvaluator.evaluate("JiraTagJob", rulesVersion, repo, 7, evaluator)) {
+            sha1s.add(verdict.getSha1());
+        }
+        return sha1s;
+    }
+
+    private void mockCommit(String sha1, int daysAgo, String... parentSha1s) throws IOException {
+        final GitUser committer = mock(GitUser.class);
+        when(committer.getDate()).thenReturn(DateTime.now().minusDays(daysAgo).toDate());
+        when(committer.getName()).thenReturn("jrosales");
+
+        final GHCommit.ShortInfo shortInfo = mock(GHCommit.ShortInfo.class);
+        when(shortInfo.getCommitter()).thenReturn(committer);
+
+        final GHCommit commit = mock(GHCommit.class);
+        when(commit.getSHA1()).thenReturn(sha1);
+        when(commit.getParentSHA1s()).thenReturn(Arrays.asList(parentSha1s));
+        when(commit.getCommitShortInfo()).thenReturn(shortInfo);
+
+        when(repo.getCommit(sha1)).thenReturn(commit);
+    }
+
+    /**
+     * Records the commits it is asked to evaluate.
+     */
+    private static class RecordingEvaluator implements CommitEvaluator {
+        private List<String> evaluatedSha1s = new ArrayList<>();
+
+        @Override
+        public CommitVerdict evaluate(GitCommit commit) {
+            evaluatedSha1s.add(commit.getSha1());
+            return new CommitVerdict(commit.getSha1(), "jrosales", commit.getCommittedAt(), true,
+                Collections.<String>emptyList());
+        }
+    }
+}
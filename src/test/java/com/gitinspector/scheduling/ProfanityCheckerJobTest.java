@@ -0,0 +1,106 @@
+package com.gitinspector.scheduling;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.gitinspector.TargetRepositories;
+import com.gitinspector.domain.recordable.FileWithProfanity;
+import com.gitinspector.github.GitHubRestClient;
+import com.gitinspector.ownership.RepoOwnership;
+import com.gitinspector.recording.TaskMessageRecorder;
+import org.junit.Test;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the ProfanityCheckerJob class.
+ */
+public class ProfanityCheckerJobTest {
+
+    private static final String TEXT_MATCH_MEDIA_TYPE = "application/vnd.github.v3.text-match+json";
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testSearchedFilesAreAttributedFromTheirFragments() throws Exception {
+        final GHRepository repo = mock(GHRepository.class);
+        when(repo.getFullName()).thenReturn("OMDev/omapi");
+        when(repo.getUrl()).thenReturn(new URL("https://github.example.com/api/v3/repos/OMDev/omapi"));
+
+        final Map<String, ArrayNode> resultsByQuery = new LinkedHashMap<>();
+        resultsByQuery.put("\"darn\" OR \"heck\" OR \"drat\" repo:OMDev/omapi", results(
+            item("a.txt", "darn it"), item("b.txt", "what the HECK", "drat."), item("c.txt", "dar-\nn")));
+        resultsByQuery.put("\"darn\" repo:OMDev/omapi", results(item("a.txt"), item("c.txt")));
+        resultsByQuery.put("\"heck\" repo:OMDev/omapi", results(item("b.txt")));
+        resultsByQuery.put("\"drat\" repo:OMDev/omapi", results(item("b.txt"), item("c.txt")));
+        final GitHubRestClient restClient = mock(GitHubRestClient.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws IOException {
+                final String url = (String) invocation.getArguments()[0];
+                assertEquals("https://github.example.com/api/v3/search/code", url.substring(0, url.indexOf('?')));
+                final String query = URLDecoder.decode(url.replaceAll(".*[?&]q=([^&]*).*", "$1"), "UTF-8");
+                final GitHubRestClient.ElementReader reader =
+                    (GitHubRestClient.ElementReader) invocation.getArguments()[2];
+                for (JsonNode item : resultsByQuery.get(query)) {
+                    reader.read(item);
+                }
+                return null;
+            }
+        }).when(restClient).search(anyString(), eq(TEXT_MATCH_MEDIA_TYPE), any(GitHubRestClient.ElementReader.class));
+
+        final ProfanityCheckerJob job = new ProfanityCheckerJob(mock(TargetRepositories.class),
+            mock(TaskMessageRecorder.class), mock(RepoOwnership.class), 7, mock(GitHub.class),
+            Arrays.asList("darn", "heck", "drat"));
+        job.setRestClient(restClient);
+
+        final Map<String, List<String>> termsByPath = new LinkedHashMap<>();
+        for (FileWithProfanity file : job.searchFiles(repo)) {
+            termsByPath.put(file.getFileName(), file.getProfanityList());
+        }
+        assertEquals("{a.txt=[darn], b.txt=[heck, drat], c.txt=[darn, drat]}", termsByPath.toString());
+
+        // only the file whose fragments hold none of the terms is searched for again, a term at a time
+        verify(restClient, times(4)).search(anyString(), eq(TEXT_MATCH_MEDIA_TYPE),
+            any(GitHubRestClient.ElementReader.class));
+    }
+
+    private ArrayNode results(ObjectNode... items) {
+        final ArrayNode results = objectMapper.createArrayNode();
+        for (ObjectNode item : items) {
+            results.add(item);
+        }
+        return results;
+    }
+
+    private ObjectNode item(String path, String... fragments) {
+        final ObjectNode item = objectMapper.createObjectNode();
+        item.put("path", path);
+        final ArrayNode textMatches = item.putArray("text_matches");
+        for (String fragment : fragments) {
+            textMatches.addObject().put("fragment", fragment);
+        }
+        return item;
+    }
+}
@@ -0,0 +1,66 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.domain.ClosedPullRequest;
+import com.gitinspector.domain.GitCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the PullRequestCommitIndex class.
+ */
+public class PullRequestCommitIndexTest {
+
+    private static final String A1 = "f29bc91bbdab169fc0c0a326965953d11c7dff83";
+    private static final String A2 = "b9f85daa6f83cf02ce5c31913d1f64d3f5c8fade";
+    private static final String B1 = "7e83ca2a65d6f90a809c8570c6c905a941b87732";
+    private static final String S1 = "640d87e741e6aa4c669a82a4cd304787960513ab";
+    private static final String C1 = "2f22765d04931a078909145ca628d2264c852d7d";
+    private static final String M0 = "dd43186d84cb2a94322d06bb4aa6a95514dde3d7";
+    private static final String MERGE = "14091a9f2461267ee7e02525b4f1f2923f1c9849";
+
+    private ClosedPullRequest firstPullRequest;
+    private ClosedPullRequest secondPullRequest;
+
+    private PullRequestCommitIndex index;
+
+    @Before
+    public void setUp() {
+        firstPullRequest = new ClosedPullRequest(1, "first", new Date(), new Date(), A2, null,
+            Arrays.asList(A1, A2));
+        secondPullRequest = new ClosedPullRequest(2, "second", new Date(), new Date(), B1, S1,
+            Arrays.asList(B1));
+        index = new PullRequestCommitIndex(Arrays.asList(firstPullRequest, secondPullRequest));
+    }
+
+    @Test
+    public void testCommitsAreMappedToTheirPullRequest() {
+        assertSame(firstPullRequest, index.getPullRequest(newCommit(A1, M0)));
+        assertSame(secondPullRequest, index.getPullRequest(newCommit(B1, A2)));
+        assertNull(index.getPullRequest(newCommit(C1, B1)));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testSquashMergedCommitsAreMappedThroughTheMergeCommitSha() {
+        // a squash merge makes a new commit that holds none of the commits of the pull request
+        assertSame(secondPullRequest, index.getPullRequest(newCommit(S1, A2)));
+    }
+
+    @Test
+    public void testMergeCommitsAreMappedThroughTheirMergedParent() {
+        assertSame(secondPullRequest, index.getPullRequest(newCommit(MERGE, M0, B1)));
+        // the first parent is the previous master commit, which says nothing about the merge itself
+        assertNull(index.getPullRequest(newCommit(MERGE, A2, C1)));
+    }
+
+    private GitCommit newCommit(String sha1, String... parentSha1s) {
+        return new GitCommit(sha1, Arrays.asList(parentSha1s), "jrosales", "jrosales@example.com", new Date(), "");
+    }
+}
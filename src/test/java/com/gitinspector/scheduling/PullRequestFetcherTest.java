@@ -0,0 +1,201 @@
+package com.gitinspector.scheduling;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.gitinspector.domain.ClosedPullRequest;
+import com.gitinspector.github.GitHubRestClient;
+import com.gitinspector.store.PullRequestStore;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.GHRepository;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the PullRequestFetcher class.
+ */
+public class PullRequestFetcherTest {
+
+    private static final String A1 = "f29bc91bbdab169fc0c0a326965953d11c7dff83";
+    private static final String B1 = "7e83ca2a65d6f90a809c8570c6c905a941b87732";
+    private static final String B2 = "32f28ea03b1b20126629d2ca63fc6665b0bbb604";
+    private static final String C1 = "2f22765d04931a078909145ca628d2264c852d7d";
+    private static final String Z1 = "380a4c847a577ff635238aa9418580f1a54981f4";
+    private static final String M1 = "ae23b94ccaf714337e4ce5ba99ef3dc257e300df";
+
+    private static final String REPO_URL = "https://github.example.com/api/v3/repos/OMDev/omapi";
+
+    private static final String PULLS_URL = REPO_URL + "/pulls?state=closed&sort=updated&direction=desc&per_page=100";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private GitHubRestClient restClient;
+
+    private GHRepository repo;
+
+    private PullRequestStore pullRequestStore;
+
+    private int listedPullRequests;
+
+    @Before
+    public void setUp() throws IOException {
+        restClient = mock(GitHubRestClient.class);
+        repo = mock(GHRepository.class);
+        when(repo.getFullName()).thenReturn("OMDev/omapi");
+        when(repo.getUrl()).thenReturn(new URL(REPO_URL));
+        pullRequestStore = new PullRequestStore(temporaryFolder.getRoot().getAbsolutePath());
+    }
+
+    @Test
+    public void testOnlyPullRequestsChangedSinceTheLastSyncAreFetched() throws IOException {
+        mockCommits(1, A1);
+        mockCommits(2, B1, B2);
+        mockPullRequests(newPullRequest(2, "OM-2 second", 3, 3, B2),
+            merged(newPullRequest(1, "OM-1 first", 4, 4, A1), M1));
+
+        final List<ClosedPullRequest> firstSync = new PullRequestFetcher(restClient, repo, 7, pullRequestStore)
+            .getCachedPullRequests();
+        assertEquals(2, firstSync.size());
+        assertEquals(2, listedPullRequests);
+
+        // the title of the second pull request was edited after the first sync
+        mockPullRequests(newPullRequest(2, "OM-3 second", 3, 0, B2), newPullRequest(1, "OM-1 first", 4, 4, A1));
+
+        final PullRequestFetcher fetcher = new PullRequestFetcher(restClient, repo, 7, pullRequestStore);
+        final List<ClosedPullRequest> secondSync = fetcher.getCachedPullRequests();
+
+        assertEquals(2, secondSync.size());
+        // the listing stops at the first pull request that was not updated since the first sync
+        assertEquals(2, listedPullRequests);
+        verify(restClient, times(1)).list(eq(REPO_URL + "/pulls/1/commits?per_page=100"),
+            any(GitHubRestClient.ElementReader.class));
+        verify(restClient, times(2)).list(eq(REPO_URL + "/pulls/2/commits?per_page=100"),
+            any(GitHubRestClient.ElementReader.class));
+        assertEquals(1, fetcher.getTicketIndex().getPullRequests("OM-3").size());
+        assertEquals(2, fetcher.getCommitIndex().getPullRequest(B1).getNumber());
+        // the first pull request, which was squash merged, comes from the store
+        assertEquals(1, fetcher.getCommitIndex().getPullRequest(M1).getNumber());
+        // the second one was closed without being merged
+        assertEquals(null, fetcher.getCommitIndex().getPullRequest(testMergeCommitSha1(2)));
+    }
+
+    @Test
+    public void testSyncIsMarkedWithTheNewestUpdateGitHubTold() throws IOException {
+        mockCommits(1, A1);
+        mockCommits(2, B1);
+        mockPullRequests(newPullRequest(2, "OM-2 second", 3, 3, B1));
+        new PullRequestFetcher(restClient, repo, 7, pullRequestStore).getCachedPullRequests();
+        assertEquals(DateTime.now().minusDays(3).toDate().getTime(),
+            pullRequestStore.load("OMDev/omapi").getSyncedAt().getTime(), 60000);
+
+        // closed as the first sync ran, by a clock running behind ours
+        final ObjectNode closedDuringSync = newPullRequest(1, "OM-1 first", 0, 0, A1);
+        closedDuringSync.put("updated_at", DateTime.now().minusMinutes(1).toString());
+        mockPullRequests(closedDuringSync, newPullRequest(2, "OM-2 second", 3, 3, B1));
+
+        final PullRequestFetcher fetcher = new PullRequestFetcher(restClient, repo, 7, pullRequestStore);
+        assertEquals(2, fetcher.getCachedPullRequests().size());
+        assertEquals(1, fetcher.getCommitIndex().getPullRequest(A1).getNumber());
+    }
+
+    @Test
+    public void testPullRequestsOutsideOfTheWindowAreNeitherListedNorFetched() throws IOException {
+        mockCommits(1, A1);
+        mockCommits(2, B1);
+        mockCommits(3, C1);
+        mockPullRequests(newPullRequest(3, "reopened and closed again long ago", 30, 1, C1),
+            newPullRequest(2, "recent", 1, 1, B1), newPullRequest(1, "old", 10, 10, A1),
+            newPullRequest(0, "older", 20, 20, Z1));
+
+        final PullRequestFetcher fetcher = new PullRequestFetcher(restClient, repo, 7, pullRequestStore);
+        assertEquals(1, fetcher.getCachedPullRequests().size());
+        assertEquals(2, fetcher.getCachedPullRequests().get(0).getNumber());
+        assertEquals(3, listedPullRequests);
+        verify(restClient, times(0)).list(eq(REPO_URL + "/pulls/3/commits?per_page=100"),
+            any(GitHubRestClient.ElementReader.class));
+
+        assertEquals(0, fetcher.narrowTo(1).getCachedPullRequests().size());
+        assertEquals(1, pullRequestStore.load("OMDev/omapi").getPullRequests().size());
+    }
+
+    private void mockPullRequests(JsonNode... pullRequests) throws IOException {
+        listedPullRequests = 0;
+        final ArrayNode page = objectMapper.createArrayNode();
+        for (JsonNode pullRequest : pullRequests) {
+            page.add(pullRequest);
+        }
+        mockList(PULLS_URL, page, true);
+    }
+
+    private void mockCommits(int number, String... commitSha1s) throws IOException {
+        final ArrayNode page = objectMapper.createArrayNode();
+        for (String commitSha1 : commitSha1s) {
+            page.addObject().put("sha", commitSha1);
+        }
+        mockList(REPO_URL + "/pulls/" + number + "/commits?per_page=100", page, false);
+    }
+
+    private void mockList(String url, final ArrayNode page, final boolean countListed) throws IOException {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws IOException {
+                final GitHubRestClient.ElementReader reader =
+                    (GitHubRestClient.ElementReader) invocation.getArguments()[1];
+                for (JsonNode element : page) {
+                    if (countListed) {
+                        listedPullRequests++;
+                    }
+                    if (!reader.read(element)) {
+                        break;
+                    }
+                }
+                return null;
+            }
+        }).when(restClient).list(eq(url), any(GitHubRestClient.ElementReader.class));
+    }
+
+    private ObjectNode newPullRequest(int number, String title, int closedDaysAgo, int updatedDaysAgo,
+                                      String headSha1) {
+        final ObjectNode pullRequest = objectMapper.createObjectNode();
+        pullRequest.put("number", number);
+        pullRequest.put("title", title);
+        pullRequest.put("closed_at", DateTime.now().minusDays(closedDaysAgo).toString());
+        pullRequest.put("updated_at", DateTime.now().minusDays(updatedDaysAgo).toString());
+        pullRequest.putObject("head").put("sha", headSha1);
+        // pull requests closed without being merged still have a (test) merge commit
+        pullRequest.put("merge_commit_sha", testMergeCommitSha1(number));
+        pullRequest.putNull("merged_at");
+        return pullRequest;
+    }
+
+    private static String testMergeCommitSha1(int number) {
+        return String.format("%040x", number);
+    }
+
+    private static ObjectNode merged(ObjectNode pullRequest, String mergeCommitSha1) {
+        pullRequest.put("merge_commit_sha", mergeCommitSha1);
+        pullRequest.put("merged_at", pullRequest.path("closed_at").textValue());
+        return pullRequest;
+    }
+}
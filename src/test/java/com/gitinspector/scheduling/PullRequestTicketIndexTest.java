@@ -0,0 +1,46 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.domain.ClosedPullRequest;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the PullRequestTicketIndex class.
+ */
+public class PullRequestTicketIndexTest {
+
+    @Test
+    public void testExtractTicketKey() {
+        assertEquals("OM-1234", PullRequestTicketIndex.extractTicketKey("OM-1234 fix the order totals"));
+        assertEquals("OM-1234", PullRequestTicketIndex.extractTicketKey("Merge branch 'feature/om-1234' into master\n\nOM-99"));
+        assertEquals("PAY2-7", PullRequestTicketIndex.extractTicketKey("[PAY2-7] retry failed payments"));
+        assertNull(PullRequestTicketIndex.extractTicketKey("no ticket here"));
+        assertNull(PullRequestTicketIndex.extractTicketKey(null));
+    }
+
+    @Test
+    public void testPullRequestsAreFoundByTicketKey() {
+        final ClosedPullRequest first = pullRequest(1, "OM-1234: fix the order totals");
+        final ClosedPullRequest second = pullRequest(2, "om-1234 and OM-1235 follow up");
+        final ClosedPullRequest third = pullRequest(3, "Bump version");
+
+        final PullRequestTicketIndex index = new PullRequestTicketIndex(Arrays.asList(first, second, third));
+
+        assertEquals(Arrays.asList(first, second), index.getPullRequests("om-1234"));
+        assertEquals(Collections.singletonList(second), index.getPullRequests("OM-1235"));
+        assertTrue(index.getPullRequests("OM-123").isEmpty());
+        assertEquals(2, index.size());
+    }
+
+    private ClosedPullRequest pullRequest(int number, String title) {
+        return new ClosedPullRequest(number, title, new Date(), new Date(), null, null,
+            Collections.<String>emptyList());
+    }
+}
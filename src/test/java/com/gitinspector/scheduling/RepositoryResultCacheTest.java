@@ -0,0 +1,83 @@
+package com.gitinspector.scheduling;
+
+import com.gitinspector.domain.ReportResult;
+import com.gitinspector.domain.recordable.StringStatistic;
+import com.gitinspector.domain.recordable.Violation;
+import com.gitinspector.stats.GitStatisticsTracker;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the RepositoryResultCache class.
+ */
+public class RepositoryResultCacheTest {
+
+    private static final String REPO = "OMDev/omapi";
+
+    private RepositoryResultCache<Violation> repositoryResultCache;
+
+    private Date pushedAt;
+
+    @Before
+    public void setUp() {
+        repositoryResultCache = new RepositoryResultCache<>();
+        pushedAt = DateTime.now().minusDays(1).toDate();
+
+        // another repository was evaluated before this one
+        final ReportResult<Violation, StringStatistic> reportResult = new ReportResult<>();
+        final GitStatisticsTracker statsTracker = new GitStatisticsTracker("reposWithReadMe");
+        reportResult.addViolation(new Violation("OMDev", "OMDev/other", "jrosales"));
+        statsTracker.addHitToRepo("OMDev/other", false);
+
+        final RepositoryResultCache<Violation>.Recording recording =
+            repositoryResultCache.startRecording(REPO, pushedAt, "1", reportResult, statsTracker);
+        reportResult.addViolation(new Violation("OMDev", REPO, "jrosales"));
+        reportResult.addStatistic(new StringStatistic("OMDev", REPO, "jrosales", "numberOfBranches", "3"));
+        statsTracker.addHitToRepo(REPO, true);
+        statsTracker.addHitToRepo(REPO, true);
+        statsTracker.addHitToRepo(REPO, false);
+        recording.finish(null);
+    }
+
+    @Test
+    public void testReplayOfUnchangedRepository() {
+        final ReportResult<Violation, StringStatistic> reportResult = new ReportResult<>();
+        final GitStatisticsTracker statsTracker = new GitStatisticsTracker("reposWithReadMe");
+
+        assertTrue(repositoryResultCache.replay(REPO, new Date(pushedAt.getTime()), "1", reportResult, statsTracker));
+
+        assertEquals(1, reportResult.getViolations().size());
+        assertEquals(REPO, reportResult.getViolations().get(0).getRepoFullName());
+        assertEquals(1, reportResult.getStatistics().size());
+        assertEquals(3, statsTracker.getTotalHitsForRepo(REPO));
+        assertEquals(2, statsTracker.getPositiveHitsForRepo(REPO));
+        assertEquals(3, statsTracker.getTotalHitsForOrg("OMDev"));
+    }
+
+    @Test
+    public void testNoReplayOfChangedRepository() {
+        final ReportResult<Violation, StringStatistic> reportResult = new ReportResult<>();
+
+        assertFalse(repositoryResultCache.replay(REPO, new Date(), "1", reportResult));
+        assertFalse(repositoryResultCache.replay(REPO, null, "1", reportResult));
+        assertFalse(repositoryResultCache.replay(REPO, pushedAt, "2", reportResult));
+        assertFalse(repositoryResultCache.replay("OMDev/other", pushedAt, "1", reportResult));
+        assertTrue(reportResult.getAllReportingRecordables().isEmpty());
+    }
+
+    @Test
+    public void testNoReplayOfExpiredResult() {
+        final ReportResult<Violation, StringStatistic> reportResult = new ReportResult<>();
+        repositoryResultCache.startRecording(REPO, pushedAt, "1", reportResult)
+            .finish(DateTime.now().minusMinutes(1).toDate());
+
+        assertFalse(repositoryResultCache.replay(REPO, pushedAt, "1", reportResult));
+    }
+}
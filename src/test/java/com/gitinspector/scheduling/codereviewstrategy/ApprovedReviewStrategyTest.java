@@ -0,0 +1,89 @@
+package com.gitinspector.scheduling.codereviewstrategy;
+
+import com.gitinspector.domain.ClosedPullRequest;
+import com.gitinspector.domain.GitCommit;
+import com.gitinspector.domain.GitUser;
+import com.gitinspector.domain.PullRequestReview;
+import com.gitinspector.github.PullRequestReviewFetcher;
+import com.gitinspector.ownership.RepoOwnership;
+import com.gitinspector.scheduling.PullRequestCommitIndex;
+import com.gitinspector.scheduling.PullRequestFetcher;
+import org.junit.Test;
+import org.kohsuke.github.GHRepository;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the ApprovedReviewStrategy class.
+ */
+public class ApprovedReviewStrategyTest {
+
+    private static final String A1 = "f29bc91bbdab169fc0c0a326965953d11c7dff83";
+    private static final String A2 = "b9f85daa6f83cf02ce5c31913d1f64d3f5c8fade";
+    private static final String B1 = "7e83ca2a65d6f90a809c8570c6c905a941b87732";
+    private static final String C1 = "2f22765d04931a078909145ca628d2264c852d7d";
+    private static final String D1 = "ee17560c8b77385b5bb8d8687820f9b82f3fdcdf";
+
+    @Test
+    public void testReviewsAreFetchedOncePerPullRequest() throws Exception {
+        final GHRepository repo = mock(GHRepository.class);
+        when(repo.getFullName()).thenReturn("OMDev/omapi");
+        final RepoOwnership repoOwnership = mock(RepoOwnership.class);
+        when(repoOwnership.getRepositoryReviewers("OMDev/omapi")).thenReturn(Arrays.asList(
+            new GitUser("dcorutiu", "dcorutiu@example.com"), new GitUser("skhatri", "skhatri@example.com")));
+
+        final PullRequestFetcher pullRequestFetcher = mock(PullRequestFetcher.class);
+        when(pullRequestFetcher.getCommitIndex()).thenReturn(new PullRequestCommitIndex(Arrays.asList(
+            newPullRequest(1, A1, A2), newPullRequest(2, B1), newPullRequest(3, C1))));
+        final PullRequestReviewFetcher reviewFetcher = mock(PullRequestReviewFetcher.class);
+        when(reviewFetcher.getReviews(repo, 1)).thenReturn(Arrays.asList(
+            newReview("jrosales", PullRequestReview.APPROVED), newReview("dcorutiu", PullRequestReview.APPROVED),
+            newReview("dcorutiu", PullRequestReview.COMMENTED)));
+        when(reviewFetcher.getReviews(repo, 2)).thenReturn(Arrays.asList(
+            newReview("skhatri", PullRequestReview.APPROVED),
+            newReview("skhatri", PullRequestReview.CHANGES_REQUESTED)));
+        when(reviewFetcher.getReviews(repo, 3)).thenReturn(Arrays.asList(
+            newReview("dcorutiu", PullRequestReview.APPROVED)));
+
+        final List<GitCommit> commits = Arrays.asList(
+            newCommit(A2, "jrosales@example.com"),
+            newCommit(A1, "jrosales@example.com"),
+            newCommit(B1, "jrosales@example.com"),
+            // approving one's own commit does not count; the reviewer is matched by email address
+            newCommit(C1, "DCorutiu@example.com"),
+            newCommit(D1, "jrosales@example.com"));
+        final BitSet validCommits = new BitSet();
+        new ApprovedReviewStrategy(repoOwnership).markValidCommits(commits,
+            new ReviewContext(repo, commits, pullRequestFetcher, reviewFetcher), validCommits);
+
+        assertEquals("{0, 1}", validCommits.toString());
+        verify(reviewFetcher, times(1)).getReviews(repo, 1);
+        verify(reviewFetcher, times(1)).getReviews(repo, 2);
+        verify(reviewFetcher, times(1)).getReviews(repo, 3);
+        verifyNoMoreInteractions(reviewFetcher);
+    }
+
+    private static ClosedPullRequest newPullRequest(int number, String... commitSha1s) {
+        return new ClosedPullRequest(number, "PR " + number, new Date(), new Date(), null, null,
+            Arrays.asList(commitSha1s));
+    }
+
+    private static PullRequestReview newReview(String reviewerLogin, String state) {
+        return new PullRequestReview(reviewerLogin, state, null, new Date());
+    }
+
+    private static GitCommit newCommit(String sha1, String committerEmail) {
+        return new GitCommit(sha1, Collections.<String>emptyList(), "dev", committerEmail, new Date(), "fix");
+    }
+}
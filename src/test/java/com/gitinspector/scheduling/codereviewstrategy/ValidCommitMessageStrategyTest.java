@@ -0,0 +1,47 @@
+package com.gitinspector.scheduling.codereviewstrategy;
+
+import com.gitinspector.domain.GitCommit;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the ValidCommitMessageStrategy class.
+ */
+public class ValidCommitMessageStrategyTest {
+
+    private static final String C1 = "2f22765d04931a078909145ca628d2264c852d7d";
+
+    @Test
+    public void testOnlyCommitsNotValidatedYetAreEvaluated() throws Exception {
+        final GitCommit mergedThroughPullRequest = mock(GitCommit.class);
+        final List<GitCommit> commits = Arrays.asList(
+            newCommit("OPP-188: Order line item CSV export [Reviewed By: dcorutiu]"),
+            mergedThroughPullRequest,
+            newCommit("Updating failing test in QuickBuild."),
+            newCommit("GC-1424- code review feedback, reviewed by skhatri"));
+        final BitSet validCommits = new BitSet();
+        validCommits.set(1);
+
+        new ValidCommitMessageStrategy().markValidCommits(commits, new ReviewContext(null, commits, null),
+            validCommits);
+
+        assertEquals("{0, 1, 3}", validCommits.toString());
+        // an earlier strategy already found it to have been reviewed
+        verify(mergedThroughPullRequest, never()).getMessage();
+    }
+
+    private static GitCommit newCommit(String message) {
+        return new GitCommit(C1, Collections.<String>emptyList(), "jrosales", "jrosales@example.com", new Date(),
+            message);
+    }
+}
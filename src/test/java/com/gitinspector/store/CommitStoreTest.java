@@ -0,0 +1,87 @@
+package com.gitinspector.store;
+
+import com.gitinspector.domain.GitCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the CommitStore class.
+ */
+public class CommitStoreTest {
+
+    private static final String MERGE = "14091a9f2461267ee7e02525b4f1f2923f1c9849";
+    private static final String MASTER = "4f26aeafdb2367620a393c973eddbe8f8b846ebd";
+    private static final String FEATURE = "4b7615dce52c4c05ce4e1d374e9c61a13717ac7c";
+    private static final String FIRST = "e0996a37c13d44c3b06074939d43fa3759bd32c1";
+    private static final String SECOND = "352f7829a2384b001cc12b0c2613c756454a1f6a";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String storeDirectory;
+
+    private CommitStore commitStore;
+
+    @Before
+    public void setUp() throws IOException {
+        storeDirectory = temporaryFolder.getRoot().getAbsolutePath();
+        commitStore = new CommitStore(storeDirectory);
+    }
+
+    @Test
+    public void testCommitsSurviveReopening() throws IOException {
+        final Date committedAt = new Date();
+        commitStore.put(new GitCommit(MERGE, Arrays.asList(MASTER, FEATURE), "jrosales", "jrosales@example.com",
+            committedAt, "OMAPI-1 merge the feature"));
+        commitStore.put(new GitCommit(MASTER, Collections.<String>emptyList(), null, null, committedAt, ""));
+        commitStore.close();
+
+        final CommitStore reopenedStore = new CommitStore(storeDirectory);
+        assertEquals(2, reopenedStore.getSize());
+
+        final GitCommit merge = reopenedStore.get(MERGE);
+        assertEquals(Arrays.asList(MASTER, FEATURE), merge.getParentSha1s());
+        assertEquals("jrosales", merge.getCommitterName());
+        assertEquals("jrosales@example.com", merge.getCommitterEmail());
+        assertEquals(committedAt, merge.getCommittedAt());
+        assertEquals("OMAPI-1 merge the feature", merge.getMessage());
+
+        assertNull(reopenedStore.get(MASTER).getCommitterName());
+        assertNull(reopenedStore.get(FEATURE));
+    }
+
+    @Test
+    public void testIncompleteRecordIsCutOff() throws IOException {
+        commitStore.put(new GitCommit(FIRST, Collections.<String>emptyList(), "jrosales", null, new Date(), "first"));
+        final long firstRecordEnd = commitStore.getSizeInBytes();
+        commitStore.put(new GitCommit(SECOND, Arrays.asList(FIRST), "jrosales", null, new Date(), "second"));
+        commitStore.close();
+
+        // a crash while the second record was being written
+        try (RandomAccessFile storeFile = new RandomAccessFile(new File(storeDirectory, "commits.dat"), "rw")) {
+            storeFile.setLength(firstRecordEnd + 10);
+        }
+
+        final CommitStore reopenedStore = new CommitStore(storeDirectory);
+        assertTrue(reopenedStore.contains(FIRST));
+        assertFalse(reopenedStore.contains(SECOND));
+        assertEquals(firstRecordEnd, reopenedStore.getSizeInBytes());
+
+        reopenedStore.put(new GitCommit(SECOND, Arrays.asList(FIRST), "jrosales", null, new Date(), "second"));
+        assertEquals("second", reopenedStore.get(SECOND).getMessage());
+    }
+}